@@ -0,0 +1,176 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import java.util.Arrays;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Spans created by {@link Tracer#createEntrySpan} or {@link Tracer#createExitSpan} and not yet
+ * stopped, most recent last. This is a growable array, so pushing a span only allocates when the
+ * stack is deeper than it has ever been.
+ *
+ * <p>Spans are compared by identity: the span passed to {@link Tracer#stopSpan(Span)} must be the
+ * instance that was pushed, not just one with the same context.
+ *
+ * <p>This type is not thread-safe. To continue work on another thread, {@link #capture()} the stack
+ * and {@link #restore(Snapshot)} it there. To keep a span open after its thread returns,
+ * {@linkplain Tracer#suspendSpan(Span) suspend} it instead.
+ */
+public final class ActiveSpanStack {
+
+    static final int DEFAULT_MAX_DEPTH = 256;
+    static final int INITIAL_CAPACITY = 16;
+
+    static final Span[] EMPTY = new Span[0];
+
+    final int maxDepth;
+    Span[] spans = EMPTY; // allocated lazily as most threads never trace
+    int depth;
+
+    ActiveSpanStack(int maxDepth) {
+        Assert.isTrue(maxDepth > 0, "maxDepth should be positive");
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Throws if another span can't be pushed. Call this before creating a span, so that the span
+     * isn't orphaned.
+     *
+     * @throws IllegalStateException if the stack is already at its maximum depth
+     */
+    void checkCanPush() {
+        if (depth >= maxDepth) {
+            throw new IllegalStateException(
+                "Active span stack exceeds max depth " + maxDepth + ": spans are not being stopped");
+        }
+    }
+
+    void push(Span span) {
+        checkCanPush();
+        if (depth == spans.length) {
+            spans = Arrays.copyOf(spans, Math.min(Math.max(INITIAL_CAPACITY, depth << 1), maxDepth));
+        }
+        spans[depth++] = span;
+    }
+
+    @Nullable
+    Span peek() {
+        return depth == 0 ? null : spans[depth - 1];
+    }
+
+    Span pop() {
+        Span span = spans[--depth];
+        spans[depth] = null; // don't retain finished spans
+        return span;
+    }
+
+    /**
+     * Pushes a span that was active on another thread, so that spans created here become its
+     * children. Unlike {@link #push(Span)}, this returns false instead of throwing when the stack
+     * is full, as the caller is running someone else's task.
+     */
+    boolean pushContinued(Span span) {
+        if (depth >= maxDepth) {
+            return false;
+        }
+        push(span);
+        return true;
+    }
+
+    /**
+     * Pops down to and including a span pushed by {@link #pushContinued(Span)}. Spans above it
+     * were not stopped by the task, so they are dropped instead of left for the next task.
+     */
+    void popContinued(Span span) {
+        while (depth > 0) {
+            if (pop() == span) {
+                return;
+            }
+        }
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    /** Copies the active spans, so that they can be {@link #restore(Snapshot) restored} later. */
+    public Snapshot capture() {
+        return depth == 0 ? Snapshot.EMPTY : new Snapshot(Arrays.copyOf(spans, depth));
+    }
+
+    /**
+     * Replaces the active spans with the snapshot, returning the ones replaced. Restore the result
+     * when done so that the current thread sees its own spans again.
+     *
+     * <p>Ex.
+     * <pre>{@code
+     * // on the calling thread
+     * Snapshot snapshot = tracer.capture();
+     *
+     * // on the thread that continues the work
+     * Snapshot previous = tracer.restore(snapshot);
+     * try {
+     *   invoke();
+     * } finally {
+     *   tracer.restore(previous);
+     * }
+     * }</pre>
+     */
+    public Snapshot restore(Snapshot snapshot) {
+        Assert.notNull(snapshot, "snapshot can not be null");
+        Snapshot previous = capture();
+        Span[] toRestore = snapshot.spans;
+        Assert.state(toRestore.length <= maxDepth,
+            "snapshot depth " + toRestore.length + " exceeds max depth " + maxDepth);
+        if (toRestore.length > spans.length) {
+            spans = Arrays.copyOf(toRestore, Math.max(INITIAL_CAPACITY, toRestore.length));
+        } else {
+            System.arraycopy(toRestore, 0, spans, 0, toRestore.length);
+            if (depth > toRestore.length) {
+                Arrays.fill(spans, toRestore.length, depth, null);
+            }
+        }
+        depth = toRestore.length;
+        return previous;
+    }
+
+    @Override
+    public String toString() {
+        return "ActiveSpanStack{depth=" + depth + ", maxDepth=" + maxDepth + "}";
+    }
+
+    /** An immutable copy of the active spans of a thread, most recent last. */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY = new Snapshot(ActiveSpanStack.EMPTY);
+
+        final Span[] spans;
+
+        Snapshot(Span[] spans) {
+            this.spans = spans;
+        }
+
+        public int depth() {
+            return spans.length;
+        }
+
+        public boolean isEmpty() {
+            return spans.length == 0;
+        }
+
+        /** Returns the span that was active when this snapshot was captured, or null if none was. */
+        @Nullable
+        public Span activeSpan() {
+            return spans.length == 0 ? null : spans[spans.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{depth=" + spans.length + "}";
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+
+/**
+ * A span that was {@linkplain Tracer#suspendSpan(Span) suspended} while its request continues
+ * asynchronously. The span is no longer on any thread's active span stack: {@link #resume()} it on
+ * the thread doing work for the request, and {@link #finish()} it when the request completes.
+ *
+ * <p>Ex. in a servlet container
+ * <pre>{@code
+ * Span span = tracer.createEntrySpan(extractor, request);
+ * invoke(request, response);
+ * if (!request.isAsyncStarted()) {
+ *   tracer.stopSpan(span);
+ *   return;
+ * }
+ * final Continuation continuation = tracer.suspendSpan(span);
+ * request.getAsyncContext().addListener(new AsyncListener() {
+ *   public void onComplete(AsyncEvent event) {
+ *     continuation.finish(); // on any thread
+ *   }
+ *   ...
+ * });
+ * }</pre>
+ *
+ * <p>This type is thread-safe and only holds the span, so it can be stored on the request.
+ */
+public final class Continuation {
+
+    final Tracer tracer;
+    final Span span;
+
+    Continuation(Tracer tracer, Span span) {
+        this.tracer = tracer;
+        this.span = span;
+    }
+
+    /** Returns the suspended span, for example to tag the response before finishing it. */
+    public Span span() {
+        return span;
+    }
+
+    /**
+     * Makes the span active on the current thread until the result is closed, so that spans created
+     * meanwhile are its children. This does not finish the span.
+     *
+     * <p>When the current thread's active span stack is already full, the span is not made active
+     * and closing the result has no effect.
+     */
+    public Scope resume() {
+        if (!tracer.pushContinued(span)) {
+            return Scope.NOOP;
+        }
+        return new ResumedScope(tracer, span);
+    }
+
+    /** Finishes the span. This can be called from any thread, and only the first call has effect. */
+    public void finish() {
+        span.finish();
+    }
+
+    /** Like {@link #finish()}, except with a given timestamp in microseconds. */
+    public void finish(long timestamp) {
+        span.finish(timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "Continuation{span=" + span + "}";
+    }
+
+    static final class ResumedScope implements Scope {
+
+        final Tracer tracer;
+        final Span span;
+
+        ResumedScope(Tracer tracer, Span span) {
+            this.tracer = tracer;
+            this.span = span;
+        }
+
+        /** Must be called on the thread that resumed the span. */
+        @Override
+        public void close() {
+            tracer.popContinued(span);
+        }
+
+        @Override
+        public String toString() {
+            return "ResumedScope{span=" + span + "}";
+        }
+    }
+}
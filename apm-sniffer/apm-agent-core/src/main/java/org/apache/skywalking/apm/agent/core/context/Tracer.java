@@ -9,7 +9,6 @@ import static org.apache.skywalking.apm.agent.core.context.internal.Lists.concat
 
 import java.io.Closeable;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
@@ -17,6 +16,7 @@ import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
 import org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.internal.ThreadBindings;
 import org.apache.skywalking.apm.agent.core.context.internal.recorder.PendingSpan;
 import org.apache.skywalking.apm.agent.core.context.internal.recorder.PendingSpans;
 import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext;
@@ -31,6 +31,7 @@ import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Inj
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContextOrSamplingFlags;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceIdContext;
 import org.apache.skywalking.apm.agent.core.context.sampler.Sampler;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
 import org.apache.skywalking.apm.agent.core.util.Assert;
 import org.apache.skywalking.apm.agent.logging.Log;
 import org.apache.skywalking.apm.agent.logging.LogFactory;
@@ -88,7 +89,9 @@ public class Tracer {
     private final CurrentTraceContext currentTraceContext;
     private final boolean traceId128Bit, supportsJoin, alwaysSampleLocal;
     private final AtomicBoolean noop;
-    private final LinkedList<Span> activeSpanStack = new LinkedList<>();
+    // The only per-thread state: everything else is shared by all threads using this tracer
+    private final ThreadBindings<ActiveSpanStack> activeSpanStacks;
+    private final int maxActiveSpanDepth;
 
     Tracer(
         Clock clock,
@@ -100,7 +103,9 @@ public class Tracer {
         boolean traceId128Bit,
         boolean supportsJoin,
         boolean alwaysSampleLocal,
-        AtomicBoolean noop) {
+        AtomicBoolean noop,
+        ThreadBindings<ActiveSpanStack> activeSpanStacks,
+        int maxActiveSpanDepth) {
         this.clock = clock;
         this.propagationFactory = propagationFactory;
         this.finishedSpanHandler = finishedSpanHandler;
@@ -111,6 +116,8 @@ public class Tracer {
         this.supportsJoin = supportsJoin;
         this.alwaysSampleLocal = alwaysSampleLocal;
         this.noop = noop;
+        this.activeSpanStacks = activeSpanStacks;
+        this.maxActiveSpanDepth = maxActiveSpanDepth;
     }
 
     /**
@@ -137,7 +144,9 @@ public class Tracer {
             traceId128Bit,
             supportsJoin,
             alwaysSampleLocal,
-            noop);
+            noop,
+            activeSpanStacks,
+            maxActiveSpanDepth);
     }
 
     /**
@@ -337,6 +346,45 @@ public class Tracer {
         return _toSpan(nextContext(flags, traceIdHigh, traceId, localRootId, spanId, extra));
     }
 
+    /**
+     * Like {@link #nextSpan(TraceContextOrSamplingFlags)}, except the sampler function decides new
+     * traces before the {@link Sampler trace ID sampler}. It isn't called when the extracted flags
+     * already carry a decision.
+     */
+    public <T> Span nextSpan(SamplerFunction<T> samplerFunction, @Nullable T arg,
+        TraceContextOrSamplingFlags extracted) {
+        Assert.notNull(samplerFunction, "samplerFunction can not be null");
+        Assert.notNull(extracted, "extracted can not be null");
+        // Only decide when neither the request nor an implicit parent has, so budgets aren't spent
+        // on decisions that would be ignored
+        if (extracted.sampled() == null && (extracted.samplingFlags() == null
+            || currentTraceContext.get() == null)) {
+            Boolean sampled = samplerFunction.trySample(arg);
+            if (sampled != null) {
+                extracted = extracted.sampled(sampled.booleanValue());
+            }
+        }
+        return nextSpan(extracted);
+    }
+
+    /**
+     * Like {@link #nextSpan()}, except the sampler function decides if a new trace is started,
+     * before the {@link Sampler trace ID sampler}. Children of the current span keep its decision.
+     */
+    public <T> Span nextSpan(SamplerFunction<T> samplerFunction, @Nullable T arg) {
+        Assert.notNull(samplerFunction, "samplerFunction can not be null");
+        TraceContext parent = currentTraceContext.get();
+        if (parent != null) {
+            return newChild(parent);
+        }
+        Boolean sampled = samplerFunction.trySample(arg);
+        if (sampled == null) {
+            return newTrace();
+        }
+        return nextSpan(sampled ? TraceContextOrSamplingFlags.SAMPLED
+            : TraceContextOrSamplingFlags.NOT_SAMPLED);
+    }
+
     public Span toSpan(TraceContext context) {
         return _toSpan(decorateExternal(context));
     }
@@ -564,56 +612,160 @@ public class Tracer {
         return nextId;
     }
 
-    private Span push(Span span) {
-        this.activeSpanStack.addLast(span);
-        return span;
-    }
-
-    private Span peek() {
-        if (activeSpanStack.isEmpty()) {
-            return null;
-        }
-        return activeSpanStack.getLast();
-    }
-
-    private Span pop() {
-        return activeSpanStack.removeLast();
+    public <C> Span createEntrySpan(Extractor<C> extractor,C carrier) {
+        return createEntrySpan(extractor, carrier, SamplerFunction.deferDecision(), null);
     }
 
-    public <C> Span createEntrySpan(Extractor<C> extractor,C carrier) {
+    /**
+     * Starts a span for an incoming request and makes it the active span. Unless the request carries
+     * a sampling decision, the sampler function decides new traces.
+     *
+     * @see #nextSpan(SamplerFunction, Object, TraceContextOrSamplingFlags)
+     */
+    public <C, T> Span createEntrySpan(Extractor<C> extractor, C carrier,
+        SamplerFunction<T> samplerFunction, @Nullable T arg) {
+        ActiveSpanStack activeSpanStack = activeSpanStack();
+        activeSpanStack.checkCanPush();
         TraceContextOrSamplingFlags extracted = extractor.extract(carrier);
-        Span span = nextSpan(extracted);
-        return push(span.start());
+        Span span = nextSpan(samplerFunction, arg, extracted).start();
+        activeSpanStack.push(span);
+        return span;
     }
 
     public Span activeSpan() {
-        Span span = peek();
+        Span span = peekActiveSpan();
         Assert.notNull(span,"No active span");
         return span;
     }
 
+    /**
+     * Finishes the span, which must be the {@linkplain #activeSpan() active one}, and returns true
+     * if no spans remain active.
+     *
+     * @throws IllegalStateException if the span isn't the same instance as the active span
+     */
     public boolean stopSpan(Span span) {
-        Span lastSpan = peek();
-        if (span.equals(lastSpan)) {
-            pop();
-            span.finish();
-        } else {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        if (activeSpanStack == null || span != activeSpanStack.peek()) {
             throw new IllegalStateException("Stopping the unexpected span = " + span);
         }
+        activeSpanStack.pop();
+        span.finish();
+        return releaseIfEmpty(activeSpanStack);
+    }
 
-        return activeSpanStack.isEmpty();
+    /**
+     * Removes the span, which must be the {@linkplain #activeSpan() active one}, from this thread
+     * without finishing it. Use this when a request continues asynchronously, so that the thread
+     * can serve other requests while the span stays open.
+     *
+     * @throws IllegalStateException if the span isn't the same instance as the active span
+     * @see Continuation
+     */
+    public Continuation suspendSpan(Span span) {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        if (activeSpanStack == null || span != activeSpanStack.peek()) {
+            throw new IllegalStateException("Suspending the unexpected span = " + span);
+        }
+        activeSpanStack.pop();
+        releaseIfEmpty(activeSpanStack);
+        return new Continuation(this, span);
     }
 
     public <C> Span createExitSpan(Injector<C> injector,C carrier) {
-        Span parent = peek();
+        return createExitSpan(injector, carrier, SamplerFunction.deferDecision(), null);
+    }
+
+    /**
+     * Starts a span for an outgoing request, injects it into the carrier and makes it the active
+     * span. When there's no active span, the sampler function decides the new trace.
+     *
+     * @see #nextSpan(SamplerFunction, Object)
+     */
+    public <C, T> Span createExitSpan(Injector<C> injector, C carrier,
+        SamplerFunction<T> samplerFunction, @Nullable T arg) {
+        ActiveSpanStack activeSpanStack = activeSpanStack();
+        activeSpanStack.checkCanPush();
+        Span parent = activeSpanStack.peek();
         Span span;
         if (parent == null) {
-            span = nextSpan();
+            span = nextSpan(samplerFunction, arg);
         } else {
             span = newChild(parent.context());
         }
         injector.inject(span.context(),carrier);
-        return push(span.start());
+        span.start();
+        activeSpanStack.push(span);
+        return span;
+    }
+
+    /**
+     * Copies the spans currently active on this thread, so that another thread can {@link
+     * #restore(ActiveSpanStack.Snapshot) restore} them and continue the same request.
+     */
+    public ActiveSpanStack.Snapshot capture() {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        return activeSpanStack != null ? activeSpanStack.capture() : ActiveSpanStack.Snapshot.EMPTY;
+    }
+
+    /**
+     * Replaces the active spans with the snapshot, returning the ones replaced.
+     *
+     * @see ActiveSpanStack#restore(ActiveSpanStack.Snapshot)
+     */
+    public ActiveSpanStack.Snapshot restore(ActiveSpanStack.Snapshot snapshot) {
+        ActiveSpanStack activeSpanStack = activeSpanStack();
+        ActiveSpanStack.Snapshot previous = activeSpanStack.restore(snapshot);
+        releaseIfEmpty(activeSpanStack);
+        return previous;
+    }
+
+    /** Returns the top of the active span stack, or null, without creating the stack. */
+    @Nullable
+    Span peekActiveSpan() {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        return activeSpanStack != null ? activeSpanStack.peek() : null;
+    }
+
+    /** @see ActiveSpanStack#pushContinued(Span) */
+    boolean pushContinued(Span span) {
+        return activeSpanStack().pushContinued(span);
+    }
+
+    /** @see ActiveSpanStack#popContinued(Span) */
+    void popContinued(Span span) {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        if (activeSpanStack != null) {
+            activeSpanStack.popContinued(span);
+            releaseIfEmpty(activeSpanStack);
+        }
+    }
+
+    /** Returns the stack of the current thread, creating it when a span is about to be pushed. */
+    ActiveSpanStack activeSpanStack() {
+        ActiveSpanStack activeSpanStack = activeSpanStacks.get();
+        if (activeSpanStack == null) {
+            activeSpanStack = new ActiveSpanStack(maxActiveSpanDepth);
+            activeSpanStacks.set(activeSpanStack);
+        }
+        return activeSpanStack;
+    }
+
+    /**
+     * Returns true if the stack is empty, in which case it is released when the thread is virtual.
+     * Pooled platform threads keep theirs, so that the next request doesn't allocate it again.
+     */
+    boolean releaseIfEmpty(ActiveSpanStack activeSpanStack) {
+        if (!activeSpanStack.isEmpty()) {
+            return false;
+        }
+        activeSpanStacks.removeIfVirtual();
+        return true;
+    }
+
+    /** Discards the active span stack of the current thread, including any spans not yet stopped. */
+    void removeActiveSpanStack() {
+        activeSpanStacks.remove();
     }
 
     public Clock getClock() {
@@ -0,0 +1,61 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.ContextBridge;
+
+/**
+ * Propagates the tracer's context into tasks wrapped by the {@link ContextBridge}.
+ *
+ * <p>The captured reference is the {@linkplain Tracer#activeSpan() active span} when there is one,
+ * which is pushed onto the worker's active span stack, so that spans created by the task are its
+ * children. Otherwise, it is the {@linkplain CurrentTraceContext#get() current trace context},
+ * which is scoped on the worker. Capturing is a lookup, so only the task wrapper is allocated per
+ * task, and nothing is captured until {@link TracingManager} has built the tracing component.
+ */
+public final class TracerContextBridge extends ContextBridge {
+
+    /**
+     * Installs the bridge. Only call this once the bridge is injected into the bootstrap class
+     * loader, or the JDK will not see it.
+     */
+    public static void install() {
+        ContextBridge.install(new TracerContextBridge());
+    }
+
+    TracerContextBridge() {
+    }
+
+    @Override
+    protected Object capture() {
+        Tracing tracing = TracingManager.current(); // executors may run before tracing is built
+        if (tracing == null) {
+            return null;
+        }
+        Span activeSpan = tracing.tracer().peekActiveSpan();
+        if (activeSpan != null) {
+            return activeSpan;
+        }
+        return tracing.currentTraceContext().get();
+    }
+
+    @Override
+    protected Object attach(Object context) {
+        Tracing tracing = TracingManager.getInstance();
+        if (context instanceof Span) {
+            Span span = (Span) context;
+            return tracing.tracer().pushContinued(span) ? span : null;
+        }
+        return tracing.currentTraceContext().newScope((TraceContext) context);
+    }
+
+    @Override
+    protected void detach(Object context, Object attached) {
+        if (attached instanceof Scope) {
+            ((Scope) attached).close();
+        } else if (attached != null) {
+            TracingManager.getInstance().tracer().popContinued((Span) attached);
+        }
+    }
+}
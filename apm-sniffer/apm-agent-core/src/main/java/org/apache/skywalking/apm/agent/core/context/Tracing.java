@@ -4,21 +4,30 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
+import org.apache.skywalking.apm.agent.core.context.handler.TailSampling;
 import org.apache.skywalking.apm.agent.core.context.internal.IpLiteral;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.internal.ThreadBindings;
 import org.apache.skywalking.apm.agent.core.context.internal.handler.FinishedSpanHandlers;
 import org.apache.skywalking.apm.agent.core.context.internal.handler.ZipkinFinishedSpanHandler;
+import org.apache.skywalking.apm.agent.core.context.internal.recorder.ArenaPendingSpans;
 import org.apache.skywalking.apm.agent.core.context.internal.recorder.PendingSpans;
+import org.apache.skywalking.apm.agent.core.context.internal.recorder.WeakPendingSpans;
 import org.apache.skywalking.apm.agent.core.context.propagation.B3Propagation;
 import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext;
 import org.apache.skywalking.apm.agent.core.context.propagation.Propagation;
 import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Factory;
 import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.KeyFactory;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.context.reporter.AsyncReporter;
+import org.apache.skywalking.apm.agent.core.context.reporter.SpanSink;
+import org.apache.skywalking.apm.agent.core.context.sampler.HttpSamplingRequest;
 import org.apache.skywalking.apm.agent.core.context.sampler.Sampler;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
 import org.apache.skywalking.apm.agent.core.util.Assert;
 import org.apache.skywalking.apm.agent.logging.Log;
 import org.apache.skywalking.apm.agent.logging.LogFactory;
@@ -62,6 +71,14 @@ public abstract class Tracing implements Closeable {
      */
     public abstract Sampler sampler();
 
+    /**
+     * Decides new traces started by http instrumentation, based on the request, before {@link
+     * #sampler()} is consulted.
+     *
+     * @see Builder#httpSampler(SamplerFunction)
+     */
+    public abstract SamplerFunction<HttpSamplingRequest> httpSampler();
+
     /**
      * This supports in-process propagation, typically across thread boundaries. This includes
      * utilities for concurrent types like {@linkplain java.util.concurrent.ExecutorService}.
@@ -112,6 +129,11 @@ public abstract class Tracing implements Closeable {
      */
     public abstract void setNoop(boolean noop);
 
+    /**
+     * Discards the {@link Tracer#createEntrySpan entry and exit spans} active on the current thread
+     * without finishing them. This is only needed when a thread is abandoned mid-request, as the
+     * per-thread state left after the last span is stopped is an empty stack.
+     */
     public abstract void remove();
 
     /**
@@ -135,11 +157,15 @@ public abstract class Tracing implements Closeable {
         Reporter<zipkin2.Span> spanReporter;
         Clock clock;
         Sampler sampler = Sampler.ALWAYS_SAMPLE;
+        SamplerFunction<HttpSamplingRequest> httpSampler = SamplerFunction.deferDecision();
         CurrentTraceContext currentTraceContext = CurrentTraceContext.Default.inheritable();
         boolean traceId128Bit = false, supportsJoin = true;
         Propagation.Factory propagationFactory = B3Propagation.FACTORY;
         ErrorParser errorParser = new ErrorParser();
         List<FinishedSpanHandler> finishedSpanHandlers = new ArrayList<>();
+        @Nullable TailSampling tailSampling;
+        long orphanedSpanTimeoutNanos; // zero means orphans are detected by garbage collection
+        int maxActiveSpanDepth = ActiveSpanStack.DEFAULT_MAX_DEPTH;
 
         /**
          * Lower-case label of the remote node in the service graph, such as "favstar". Avoid names with
@@ -187,22 +213,22 @@ public abstract class Tracing implements Closeable {
         }
 
         /**
-         * Controls how spans are reported. Defaults to logging, but often an
-         * {@link AsyncReporter}
-         * which batches spans before sending to Zipkin.
+         * Controls how spans are reported. Defaults to logging, but often an {@link AsyncReporter}
+         * which batches spans on a dedicated thread before sending them out of process.
          *
-         * The {@link AsyncReporter} includes a {@link Sender}, which is a driver for transports like
-         * http, kafka and scribe.
+         * The {@link AsyncReporter} includes a {@link SpanSink}, which is a driver for transports like
+         * a local file or UDP.
          *
-         * <p>For example, here's how to batch send spans via http:
+         * <p>For example, here's how to batch send spans to a local UDP listener:
          *
          * <pre>{@code
-         * spanReporter = AsyncReporter.create(URLConnectionSender.create("http://localhost:9411/api/v2/spans"));
+         * spanReporter = AsyncReporter.newBuilder(UdpSpanSink.create("127.0.0.1", 9410)).build();
          *
          * tracingBuilder.spanReporter(spanReporter);
          * }</pre>
          *
-         * <p>See https://github.com/apache/incubator-zipkin-reporter-java
+         * <p>When an {@link AsyncReporter} is used, finished spans are queued as they are, and
+         * encoded directly from the recorded span on its thread instead of the application thread.
          */
         public Builder spanReporter(Reporter<zipkin2.Span> spanReporter) {
             Assert.notNull(spanReporter, "spanReporter can not be null");
@@ -237,6 +263,24 @@ public abstract class Tracing implements Closeable {
             return this;
         }
 
+        /**
+         * Decides new traces started by http server and client instrumentation, which see the
+         * request method and path. When this returns null, or by default, {@link #sampler(Sampler)}
+         * decides on the trace ID instead.
+         *
+         * <p>For example, to keep chatty endpoints from crowding out rare ones:
+         * <pre>{@code
+         * tracingBuilder.httpSampler(AdaptiveHttpSampler.create(5, 1000));
+         * }</pre>
+         *
+         * @see org.apache.skywalking.apm.agent.core.context.sampler.AdaptiveHttpSampler
+         */
+        public Builder httpSampler(SamplerFunction<HttpSamplingRequest> httpSampler) {
+            Assert.notNull(httpSampler, "httpSampler can not be null");
+            this.httpSampler = httpSampler;
+            return this;
+        }
+
         /**
          * Responsible for implementing {@link Tracer#startScopedSpan(String)}, {@link
          * Tracer#currentSpanCustomizer()}, {@link Tracer#currentSpan()} and {@link
@@ -315,6 +359,51 @@ public abstract class Tracing implements Closeable {
             return this;
         }
 
+        /**
+         * Reports traces the {@link #sampler(Sampler) sampler} didn't choose when they have errors or
+         * are slow. This makes every span recorded locally, and buffers unsampled ones until their
+         * local root finishes, so it costs more than head sampling alone.
+         *
+         * <p>This has no effect when the {@link #spanReporter(Reporter) span reporter} is {@link
+         * Reporter#NOOP}.
+         *
+         * @see TailSampling#metrics()
+         */
+        public Builder tailSampling(TailSampling tailSampling) {
+            Assert.notNull(tailSampling, "tailSampling can not be null");
+            this.tailSampling = tailSampling;
+            return this;
+        }
+
+        /**
+         * Reports spans which are neither finished nor abandoned within the timeout, with a
+         * "brave.flush" annotation. By default, such orphaned spans are only reported after their
+         * trace context is garbage collected.
+         *
+         * <p>Setting this switches span bookkeeping from a weakly keyed concurrent map to lock
+         * striped tables swept by a background thread. This avoids allocating a weak reference per
+         * span and makes orphan reporting independent of GC pressure, at the cost of a timeout that
+         * must be longer than the longest legitimate span.
+         */
+        public Builder orphanedSpanTimeout(long timeout, TimeUnit unit) {
+            Assert.isTrue(timeout > 0, "timeout should be positive");
+            Assert.notNull(unit, "unit can not be null");
+            this.orphanedSpanTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Limits how many spans created by {@link Tracer#createEntrySpan} or {@link
+         * Tracer#createExitSpan} can be active on a thread at the same time. Creating one more throws
+         * {@link IllegalStateException}, which usually means an instrumentation isn't stopping its
+         * spans. Defaults to 256.
+         */
+        public Builder maxActiveSpanDepth(int maxActiveSpanDepth) {
+            Assert.isTrue(maxActiveSpanDepth > 0, "maxActiveSpanDepth should be positive");
+            this.maxActiveSpanDepth = maxActiveSpanDepth;
+            return this;
+        }
+
         public Tracing build() {
             if (clock == null) {
                 clock = Platform.get().clock();
@@ -345,60 +434,61 @@ public abstract class Tracing implements Closeable {
 
     static final class Default extends Tracing {
 
-        //private final Tracer tracer;
+        private final Tracer tracer;
         private final Propagation.Factory propagationFactory;
         private final Propagation<String> stringPropagation;
         private final CurrentTraceContext currentTraceContext;
         private final Sampler sampler;
+        private final SamplerFunction<HttpSamplingRequest> httpSampler;
         private final Clock clock;
         private final ErrorParser errorParser;
         private final AtomicBoolean noop;
-        private final Builder builder;
-        private final ThreadLocal<Tracer> tracerThreadLocal;
-        private FinishedSpanHandler zipkinFirehose = FinishedSpanHandler.NOOP;
-        private FinishedSpanHandler finishedSpanHandler;
+        // shared by all threads, so orphans are visible regardless of which thread started them
+        private final PendingSpans pendingSpans;
 
         Default(Builder builder) {
-            this.builder = builder;
-            this.tracerThreadLocal = new ThreadLocal<>();
             this.clock = builder.clock;
             this.errorParser = builder.errorParser;
             this.propagationFactory = builder.propagationFactory;
             this.stringPropagation = builder.propagationFactory.create(KeyFactory.STRING);
             this.currentTraceContext = builder.currentTraceContext;
             this.sampler = builder.sampler;
+            this.httpSampler = builder.httpSampler;
             this.noop = new AtomicBoolean();
 
             List<FinishedSpanHandler> finishedSpanHandlers = builder.finishedSpanHandlers;
 
             // If a Zipkin reporter is present, it is invoked after the user-supplied finished
             // span handlers.
-
+            FinishedSpanHandler zipkinFirehose = FinishedSpanHandler.NOOP;
             if (builder.spanReporter != Reporter.NOOP) {
                 zipkinFirehose = new ZipkinFinishedSpanHandler(builder.spanReporter, errorParser,
                     builder.localServiceName, builder.localIp, builder.localPort);
                 finishedSpanHandlers = new ArrayList<>(finishedSpanHandlers);
-                finishedSpanHandlers.add(zipkinFirehose);
+                // Orphans bypass tail sampling, as their trace may have been decided already
+                finishedSpanHandlers.add(builder.tailSampling != null
+                    ? builder.tailSampling.newHandler(zipkinFirehose) : zipkinFirehose);
             }
 
             // Compose the handlers into one which honors Tracing.noop
-            finishedSpanHandler = FinishedSpanHandlers
+            FinishedSpanHandler finishedSpanHandler = FinishedSpanHandlers
                 .noopAware(FinishedSpanHandlers.compose(finishedSpanHandlers), noop);
+            this.pendingSpans = builder.orphanedSpanTimeoutNanos > 0
+                ? new ArenaPendingSpans(clock, zipkinFirehose, noop,
+                builder.orphanedSpanTimeoutNanos, TimeUnit.NANOSECONDS)
+                : new WeakPendingSpans(clock, zipkinFirehose, noop);
+
+            this.tracer = new Tracer(clock, propagationFactory, finishedSpanHandler, pendingSpans,
+                sampler, currentTraceContext,
+                builder.traceId128Bit || propagationFactory.requires128BitTraceId(),
+                builder.supportsJoin && propagationFactory.supportsJoin(),
+                finishedSpanHandler.alwaysSampleLocal(), noop,
+                new ThreadBindings<ActiveSpanStack>(), builder.maxActiveSpanDepth);
             maybeSetCurrent();
         }
 
         @Override
         public Tracer tracer() {
-            Tracer tracer = tracerThreadLocal.get();
-            if (tracer == null) {
-                tracer = new Tracer(builder.clock, builder.propagationFactory, finishedSpanHandler
-                    , new PendingSpans(clock, zipkinFirehose, noop), builder.sampler,
-                    builder.currentTraceContext,
-                    builder.traceId128Bit || propagationFactory.requires128BitTraceId(),
-                    builder.supportsJoin && propagationFactory.supportsJoin(),
-                    finishedSpanHandler.alwaysSampleLocal(), noop);
-                tracerThreadLocal.set(tracer);
-            }
             return tracer;
         }
 
@@ -417,6 +507,11 @@ public abstract class Tracing implements Closeable {
             return sampler;
         }
 
+        @Override
+        public SamplerFunction<HttpSamplingRequest> httpSampler() {
+            return httpSampler;
+        }
+
         @Override
         public CurrentTraceContext currentTraceContext() {
             return currentTraceContext;
@@ -439,7 +534,7 @@ public abstract class Tracing implements Closeable {
 
         @Override
         public void remove() {
-            tracerThreadLocal.remove();
+            tracer.removeActiveSpanStack();
         }
 
         private void maybeSetCurrent() {
@@ -455,6 +550,7 @@ public abstract class Tracing implements Closeable {
 
         @Override
         public void close() {
+            pendingSpans.close();
             if (current != this) {
                 return;
             }
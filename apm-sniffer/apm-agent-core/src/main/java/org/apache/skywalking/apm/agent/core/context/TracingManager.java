@@ -1,11 +1,13 @@
 package org.apache.skywalking.apm.agent.core.context;
 
 import org.apache.skywalking.apm.agent.core.boot.BootService;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.propagation.B3Propagation;
 import org.apache.skywalking.apm.agent.core.context.propagation.ExtraFieldPropagation;
 import org.apache.skywalking.apm.agent.core.context.propagation.ThreadLocalCurrentTraceContext;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
 import org.apache.skywalking.apm.agent.logging.Log;
 import org.apache.skywalking.apm.agent.logging.LogFactory;
 
@@ -13,13 +15,16 @@ public class TracingManager implements BootService {
 
     private static final Log logger = LogFactory.getLog(TracingManager.class);
 
-    private static Tracing INSTANCE;
+    // volatile for visibility on current(). writes guarded by TracingManager.class
+    static volatile Tracing INSTANCE;
 
     public static Tracing getInstance() {
-        if (INSTANCE == null) {
+        Tracing result = INSTANCE;
+        if (result == null) {
             synchronized (TracingManager.class) {
-                if (INSTANCE == null) {
-                    INSTANCE = Tracing.newBuilder().localServiceName("hello-world")
+                result = INSTANCE;
+                if (result == null) {
+                    INSTANCE = result = Tracing.newBuilder().localServiceName("hello-world")
                         .propagationFactory(
                             ExtraFieldPropagation.newFactory(B3Propagation.FACTORY, "user-name"))
                         .currentTraceContext(ThreadLocalCurrentTraceContext.create())
@@ -27,6 +32,15 @@ public class TracingManager implements BootService {
                 }
             }
         }
+        return result;
+    }
+
+    /**
+     * Returns the tracing component, or null until {@link #getInstance()} created it. Use this in
+     * code which may run before tracing is needed, such as executors, so it isn't built early.
+     */
+    @Nullable
+    public static Tracing current() {
         return INSTANCE;
     }
 
@@ -35,6 +49,15 @@ public class TracingManager implements BootService {
         return tracer.createEntrySpan(extractor,carrier);
     }
 
+    /**
+     * Like {@link #createEntrySpan(Extractor, Object)}, except the sampler function decides new
+     * traces.
+     */
+    public static <C, T> Span createEntrySpan(Extractor<C> extractor, C carrier,
+        SamplerFunction<T> samplerFunction, T arg) {
+        return getInstance().tracer().createEntrySpan(extractor, carrier, samplerFunction, arg);
+    }
+
     public static Span activeSpan() {
         Tracer tracer = getInstance().tracer();
         return tracer.activeSpan();
@@ -45,10 +68,12 @@ public class TracingManager implements BootService {
     }
 
     public static void stopSpan(Span span) {
-        Tracer tracer = getInstance().tracer();
-        if (tracer.stopSpan(span)) {
-            getInstance().remove();
-        }
+        getInstance().tracer().stopSpan(span);
+    }
+
+    /** Removes the active span from the current thread without finishing it. */
+    public static Continuation suspendSpan(Span span) {
+        return getInstance().tracer().suspendSpan(span);
     }
 
     public static <C> Span createExitSpan(Injector<C> injector,C carrier) {
@@ -56,6 +81,28 @@ public class TracingManager implements BootService {
         return tracer.createExitSpan(injector,carrier);
     }
 
+    /**
+     * Like {@link #createExitSpan(Injector, Object)}, except the sampler function decides new
+     * traces.
+     */
+    public static <C, T> Span createExitSpan(Injector<C> injector, C carrier,
+        SamplerFunction<T> samplerFunction, T arg) {
+        return getInstance().tracer().createExitSpan(injector, carrier, samplerFunction, arg);
+    }
+
+    /**
+     * Copies the spans active on the current thread, for {@link #restore(ActiveSpanStack.Snapshot)}
+     * on the thread that continues the request.
+     */
+    public static ActiveSpanStack.Snapshot capture() {
+        return getInstance().tracer().capture();
+    }
+
+    /** Replaces the spans active on the current thread, returning the ones replaced. */
+    public static ActiveSpanStack.Snapshot restore(ActiveSpanStack.Snapshot snapshot) {
+        return getInstance().tracer().restore(snapshot);
+    }
+
     @Override
     public void prepare() throws Throwable {
 
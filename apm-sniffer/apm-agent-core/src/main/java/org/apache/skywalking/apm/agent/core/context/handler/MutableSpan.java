@@ -263,7 +263,7 @@ public final class MutableSpan implements Cloneable {
     public void tag(String key,String value) {
         Assert.hasLength(key,"key can not be empty");
         Assert.notNull(value,"value can not be null");
-        for (int i = 0;i < tags.size();i ++) {
+        for (int i = 0;i < tags.size();i += 2) {
             if (key.equals(tags.get(i))) {
                 tags.set(i + 1,value);
                 return;
@@ -298,7 +298,7 @@ public final class MutableSpan implements Cloneable {
         if (annotations == null) {
             return;
         }
-        for (int i = 0;i < annotations.size();i ++) {
+        for (int i = 0;i < annotations.size();i += 2) {
             long timestamp = (long) annotations.get(i);
             annotationConsumer.accept(target,timestamp,annotations.get(i + 1).toString());
         }
@@ -309,7 +309,7 @@ public final class MutableSpan implements Cloneable {
         if (annotations == null) {
             return;
         }
-        for (int i = 0;i < annotations.size();i ++) {
+        for (int i = 0;i < annotations.size();i += 2) {
             String value = annotations.get(i + 1).toString();
             String newValue = annotationUpdater.update((Long) annotations.get(i),value);
             if (updateOrRemove(annotations,i,value,newValue)) {
@@ -327,7 +327,7 @@ public final class MutableSpan implements Cloneable {
             list.remove(i);
             return true;
         } else if (!value.equals(newValue)) {
-            list.set(i,newValue);
+            list.set(i + 1,newValue);
         }
         return false;
     }
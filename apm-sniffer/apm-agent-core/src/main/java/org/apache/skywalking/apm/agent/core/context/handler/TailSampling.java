@@ -0,0 +1,116 @@
+package org.apache.skywalking.apm.agent.core.context.handler;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Retains traces the {@link org.apache.skywalking.apm.agent.core.context.sampler.Sampler head
+ * sampler} didn't choose, when they turn out to be interesting after the fact. A local trace is
+ * interesting when any of its spans has an {@link MutableSpan#error() error}, a 5xx {@code
+ * http.status_code} tag or lasted at least the {@link Builder#slowThreshold(long, TimeUnit) slow
+ * threshold}.
+ *
+ * <p>Ex.
+ * <pre>{@code
+ * tailSampling = TailSampling.newBuilder().slowThreshold(2, TimeUnit.SECONDS).build();
+ * tracing = Tracing.newBuilder()
+ *   .sampler(CountingSampler.create(0.01f))
+ *   .tailSampling(tailSampling)
+ *   .build();
+ * }</pre>
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>This {@link FinishedSpanHandler#alwaysSampleLocal() records every span locally}. Spans that
+ * aren't sampled are buffered by their {@link
+ * org.apache.skywalking.apm.agent.core.context.propagation.TraceContext#localRootId() local root}
+ * until that root finishes. If any span was interesting by then, the whole local trace is reported
+ * as if it were sampled, otherwise it is dropped. Once a trace is interesting, its later spans are
+ * reported without buffering.
+ *
+ * <p>Headers are unaffected: remote services still see the head decision, so a trace retained
+ * here is only complete for this process.
+ *
+ * <p>Buffers are bounded by {@link Builder#maxSpans(int)} and {@link
+ * Builder#maxSpansPerTrace(int)}. When a limit is reached, the oldest undecided traces are evicted
+ * and counted in {@link #metrics()}. Buffers are pooled, so steady traffic doesn't allocate one per
+ * trace.
+ */
+public final class TailSampling {
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        long slowThresholdMicros = TimeUnit.SECONDS.toMicros(1);
+        int maxSpans = 10000;
+        int maxSpansPerTrace = 1000;
+
+        Builder() {
+        }
+
+        /** Spans lasting at least this long make their trace interesting. Defaults to 1 second. */
+        public Builder slowThreshold(long threshold, TimeUnit unit) {
+            Assert.isTrue(threshold > 0, "threshold should be positive");
+            Assert.notNull(unit, "unit can not be null");
+            this.slowThresholdMicros = unit.toMicros(threshold);
+            return this;
+        }
+
+        /**
+         * Maximum spans buffered while their trace is undecided. This is the main memory cap: each
+         * buffered span holds its recorded data. Defaults to 10000.
+         */
+        public Builder maxSpans(int maxSpans) {
+            Assert.isTrue(maxSpans > 0, "maxSpans should be positive");
+            this.maxSpans = maxSpans;
+            return this;
+        }
+
+        /**
+         * Maximum spans buffered for one local trace. A trace exceeding this is evicted, so that a
+         * runaway loop can't take the whole buffer. Defaults to 1000.
+         */
+        public Builder maxSpansPerTrace(int maxSpansPerTrace) {
+            Assert.isTrue(maxSpansPerTrace > 0, "maxSpansPerTrace should be positive");
+            this.maxSpansPerTrace = maxSpansPerTrace;
+            return this;
+        }
+
+        public TailSampling build() {
+            return new TailSampling(this);
+        }
+    }
+
+    final long slowThresholdMicros;
+    final int maxSpans, maxSpansPerTrace;
+    final TailSamplingMetrics metrics = new TailSamplingMetrics();
+
+    TailSampling(Builder builder) {
+        this.slowThresholdMicros = builder.slowThresholdMicros;
+        this.maxSpans = builder.maxSpans;
+        this.maxSpansPerTrace = Math.min(builder.maxSpansPerTrace, builder.maxSpans);
+    }
+
+    public TailSamplingMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Internal: returns a handler that buffers unsampled spans and passes retained ones to the
+     * downstream handler, which only sees spans that are sampled. Used by {@code Tracing}, which
+     * places it in front of span reporting.
+     */
+    public FinishedSpanHandler newHandler(FinishedSpanHandler downstream) {
+        Assert.notNull(downstream, "downstream can not be null");
+        return new TailSamplingFinishedSpanHandler(this, downstream);
+    }
+
+    @Override
+    public String toString() {
+        return "TailSampling{slowThresholdMicros=" + slowThresholdMicros + ", maxSpans=" + maxSpans
+            + ", maxSpansPerTrace=" + maxSpansPerTrace + "}";
+    }
+}
@@ -0,0 +1,224 @@
+package org.apache.skywalking.apm.agent.core.context.handler;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+
+/**
+ * Buffers unsampled spans by local root until their trace is decided.
+ *
+ * <p>State is split into stripes by local root ID, each guarded by its own lock, so that threads
+ * finishing spans of different traces rarely contend. Spans are reported to the downstream handler
+ * outside the lock.
+ *
+ * @see TailSampling
+ */
+final class TailSamplingFinishedSpanHandler extends FinishedSpanHandler {
+
+    static final int STRIPES = 16; // power of two
+    /** Decisions remembered per stripe, so that children finishing after their root are decided. */
+    static final int DECIDED_PER_STRIPE = 256;
+    /** Empty buffers kept per stripe for reuse. */
+    static final int POOLED_PER_STRIPE = 32;
+    /** Spans a new buffer holds before growing. Larger buffers aren't pooled. */
+    static final int INITIAL_CAPACITY = 8;
+
+    final FinishedSpanHandler downstream;
+    final TailSamplingMetrics metrics;
+    final long slowThresholdMicros;
+    final int maxSpansPerStripe, maxSpansPerTrace;
+    final Stripe[] stripes = new Stripe[STRIPES];
+
+    TailSamplingFinishedSpanHandler(TailSampling tailSampling, FinishedSpanHandler downstream) {
+        this.downstream = downstream;
+        this.metrics = tailSampling.metrics;
+        this.slowThresholdMicros = tailSampling.slowThresholdMicros;
+        this.maxSpansPerStripe = Math.max(1, tailSampling.maxSpans / STRIPES);
+        this.maxSpansPerTrace = Math.min(tailSampling.maxSpansPerTrace, maxSpansPerStripe);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean handle(TraceContext context, MutableSpan span) {
+        if (Boolean.TRUE.equals(context.sampled())) {
+            return downstream.handle(context, span);
+        }
+
+        boolean interesting = isInteresting(span);
+        long localRootId = context.localRootId();
+        Stripe stripe = stripes[(int) localRootId & (STRIPES - 1)];
+        TraceBuffer toReport = null;
+        boolean reportSpan = false;
+        synchronized (stripe) {
+            Boolean decision = stripe.decided.get(localRootId);
+            if (decision != null) { // a child finishing after its trace was decided
+                reportSpan = decision || interesting;
+                if (!reportSpan) {
+                    metrics.spansDropped.increment();
+                }
+            } else if (interesting) {
+                stripe.decided.put(localRootId, Boolean.TRUE);
+                toReport = stripe.traces.remove(localRootId);
+                if (toReport != null) {
+                    stripe.spanCount -= toReport.size;
+                    metrics.spansBuffered.add(-toReport.size);
+                }
+                metrics.tracesRetained.increment();
+                reportSpan = true;
+            } else if (context.spanId() == localRootId) { // the trace finished unremarkably
+                stripe.decided.put(localRootId, Boolean.FALSE);
+                TraceBuffer buffer = stripe.traces.remove(localRootId);
+                int dropped = 1;
+                if (buffer != null) {
+                    dropped += buffer.size;
+                    stripe.spanCount -= buffer.size;
+                    metrics.spansBuffered.add(-buffer.size);
+                    stripe.release(buffer);
+                }
+                metrics.spansDropped.add(dropped);
+                metrics.tracesDropped.increment();
+            } else {
+                buffer(stripe, localRootId, context, span);
+            }
+        }
+
+        if (toReport != null) {
+            for (int i = 0, length = toReport.size * 2; i < length; i += 2) {
+                report((TraceContext) toReport.entries[i], (MutableSpan) toReport.entries[i + 1]);
+            }
+            synchronized (stripe) {
+                stripe.release(toReport);
+            }
+        }
+        if (reportSpan) {
+            report(context, span);
+        }
+        return true;
+    }
+
+    /** Called under the stripe lock to add a span of an undecided trace. */
+    void buffer(Stripe stripe, long localRootId, TraceContext context, MutableSpan span) {
+        TraceBuffer buffer = stripe.traces.get(localRootId);
+        if (buffer == null) {
+            buffer = stripe.acquire();
+            stripe.traces.put(localRootId, buffer);
+        } else if (buffer.size == maxSpansPerTrace) {
+            // Don't let one trace take the whole buffer. Later spans are only reported when
+            // interesting themselves.
+            stripe.traces.remove(localRootId);
+            stripe.decided.put(localRootId, Boolean.FALSE);
+            evict(stripe, buffer, 1);
+            return;
+        }
+        buffer.add(context, span);
+        stripe.spanCount++;
+        metrics.spansBuffered.increment();
+
+        // Evict the oldest traces until the stripe is within its share of the span limit
+        Iterator<Map.Entry<Long, TraceBuffer>> oldest = stripe.traces.entrySet().iterator();
+        while (stripe.spanCount > maxSpansPerStripe) {
+            Map.Entry<Long, TraceBuffer> entry = oldest.next();
+            oldest.remove();
+            stripe.decided.put(entry.getKey(), Boolean.FALSE);
+            evict(stripe, entry.getValue(), 0);
+        }
+    }
+
+    /** Called under the stripe lock to discard an undecided trace and any unbuffered spans of it. */
+    void evict(Stripe stripe, TraceBuffer buffer, int unbuffered) {
+        stripe.spanCount -= buffer.size;
+        metrics.spansBuffered.add(-buffer.size);
+        metrics.spansEvicted.add(buffer.size + unbuffered);
+        metrics.tracesEvicted.increment();
+        stripe.release(buffer);
+    }
+
+    boolean isInteresting(MutableSpan span) {
+        if (span.error() != null || span.tag("error") != null) {
+            return true;
+        }
+        String statusCode = span.tag("http.status_code");
+        if (statusCode != null && statusCode.length() == 3 && statusCode.charAt(0) == '5') {
+            return true;
+        }
+        long start = span.startTimestamp(), finish = span.finishTimestamp();
+        return start != 0L && finish != 0L && finish - start >= slowThresholdMicros;
+    }
+
+    /** Reports a retained span downstream as if it were sampled. */
+    void report(TraceContext context, MutableSpan span) {
+        int flags = InternalPropagation.sampled(true, InternalPropagation.instance.flags(context));
+        metrics.spansRetained.increment();
+        try {
+            downstream.handle(InternalPropagation.instance.withFlags(context, flags), span);
+        } catch (RuntimeException ex) {
+            Platform.get().log("error reporting {0}", context, ex);
+        }
+    }
+
+    @Override
+    public boolean alwaysSampleLocal() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingFinishedSpanHandler{" + downstream + "}";
+    }
+
+    static final class Stripe {
+        // insertion order, so that the first entry is the oldest trace
+        final LinkedHashMap<Long, TraceBuffer> traces = new LinkedHashMap<>();
+        final Decisions decided = new Decisions();
+        final ArrayDeque<TraceBuffer> pool = new ArrayDeque<>();
+        int spanCount;
+
+        TraceBuffer acquire() {
+            TraceBuffer buffer = pool.poll();
+            return buffer != null ? buffer : new TraceBuffer();
+        }
+
+        /** Pools the buffer unless it grew, clearing it so that it doesn't retain spans. */
+        void release(TraceBuffer buffer) {
+            if (buffer.entries.length != INITIAL_CAPACITY * 2 || pool.size() == POOLED_PER_STRIPE) {
+                return;
+            }
+            Arrays.fill(buffer.entries, 0, buffer.size * 2, null);
+            buffer.size = 0;
+            pool.push(buffer);
+        }
+    }
+
+    /** Decisions by local root ID, forgetting the oldest beyond {@link #DECIDED_PER_STRIPE}. */
+    static final class Decisions extends LinkedHashMap<Long, Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > DECIDED_PER_STRIPE;
+        }
+    }
+
+    /** Spans of one local trace, stored as context and span pairs. */
+    static final class TraceBuffer {
+        Object[] entries = new Object[INITIAL_CAPACITY * 2];
+        int size;
+
+        void add(TraceContext context, MutableSpan span) {
+            int index = size * 2;
+            if (index == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[index] = context;
+            entries[index + 1] = span;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.apache.skywalking.apm.agent.core.context.handler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what {@link TailSampling} did with spans the head sampler didn't choose. Values are
+ * cumulative, except {@link #spansBuffered()}.
+ */
+public final class TailSamplingMetrics {
+
+    final LongAdder spansBuffered = new LongAdder();
+    final LongAdder spansRetained = new LongAdder();
+    final LongAdder spansDropped = new LongAdder();
+    final LongAdder spansEvicted = new LongAdder();
+    final LongAdder tracesRetained = new LongAdder();
+    final LongAdder tracesDropped = new LongAdder();
+    final LongAdder tracesEvicted = new LongAdder();
+
+    TailSamplingMetrics() {
+    }
+
+    /** Spans currently buffered while their trace is undecided. */
+    public long spansBuffered() {
+        return spansBuffered.sum();
+    }
+
+    /** Spans reported because their trace was interesting. */
+    public long spansRetained() {
+        return spansRetained.sum();
+    }
+
+    /** Spans discarded because their trace finished without being interesting. */
+    public long spansDropped() {
+        return spansDropped.sum();
+    }
+
+    /** Spans discarded undecided, because a buffer limit was reached. */
+    public long spansEvicted() {
+        return spansEvicted.sum();
+    }
+
+    /** Local traces which became interesting. */
+    public long tracesRetained() {
+        return tracesRetained.sum();
+    }
+
+    /** Local traces whose root finished without them being interesting. */
+    public long tracesDropped() {
+        return tracesDropped.sum();
+    }
+
+    /** Local traces discarded undecided, because a buffer limit was reached. */
+    public long tracesEvicted() {
+        return tracesEvicted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingMetrics{spansBuffered=" + spansBuffered + ", spansRetained="
+            + spansRetained + ", spansDropped=" + spansDropped + ", spansEvicted=" + spansEvicted
+            + ", tracesRetained=" + tracesRetained + ", tracesDropped=" + tracesDropped
+            + ", tracesEvicted=" + tracesEvicted + "}";
+    }
+}
@@ -0,0 +1,87 @@
+package org.apache.skywalking.apm.agent.core.context.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reuses fixed-size buffers used while encoding or decoding, which are copied out before the
+ * method that acquired them returns.
+ *
+ * <p>Platform threads keep a buffer in a thread local, as they are usually pooled and so encode
+ * many times. {@linkplain Platform#isVirtual(Thread) Virtual threads} usually run a single request,
+ * so a thread local would allocate the buffer and a thread local map each time. Instead, they
+ * borrow from shared slots, about two per carrier thread. A borrowed buffer is owned exclusively
+ * until {@linkplain #release(Object) released}, so this is safe however the
+ * virtual threads move between carriers. When a slot is empty, a new buffer is allocated.
+ *
+ * <p>Ex.
+ * <pre>{@code
+ * char[] buffer = BUFFERS.acquire();
+ * int length = write(context, buffer);
+ * String result = new String(buffer, 0, length);
+ * BUFFERS.release(buffer);
+ * }</pre>
+ */
+public abstract class BufferPool<B> {
+
+    static final int SLOTS = slots(Runtime.getRuntime().availableProcessors());
+
+    public static BufferPool<char[]> ofChars(final int length) {
+        return new BufferPool<char[]>() {
+            @Override
+            protected char[] newBuffer() {
+                return new char[length];
+            }
+        };
+    }
+
+    public static BufferPool<byte[]> ofBytes(final int length) {
+        return new BufferPool<byte[]>() {
+            @Override
+            protected byte[] newBuffer() {
+                return new byte[length];
+            }
+        };
+    }
+
+    final ThreadLocal<B> local = new ThreadLocal<>();
+    final AtomicReferenceArray<B> shared = new AtomicReferenceArray<>(SLOTS);
+
+    protected abstract B newBuffer();
+
+    /** Returns a buffer only the current thread uses until it is released. */
+    public B acquire() {
+        Thread thread = Thread.currentThread();
+        if (Platform.get().isVirtual(thread)) {
+            B buffer = shared.getAndSet(slot(thread), null);
+            return buffer != null ? buffer : newBuffer();
+        }
+        B buffer = local.get();
+        if (buffer == null) {
+            buffer = newBuffer();
+            local.set(buffer);
+        }
+        return buffer;
+    }
+
+    /** Returns the buffer for reuse. The caller must not use it afterwards. */
+    public void release(B buffer) {
+        Thread thread = Thread.currentThread();
+        if (Platform.get().isVirtual(thread)) {
+            shared.lazySet(slot(thread), buffer); // if another buffer was returned, one is dropped
+        }
+        // platform threads keep theirs in the thread local
+    }
+
+    static int slot(Thread thread) {
+        return (int) thread.getId() & (SLOTS - 1);
+    }
+
+    /** Returns a power of two of at least twice the processors, so most carriers get a slot. */
+    static int slots(int processors) {
+        int result = 1;
+        while (result < processors * 2) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
@@ -7,8 +7,17 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
 
+/**
+ * Scopes an extra to a span when the context is decorated.
+ *
+ * <p>The first decoration registers the {@link #type()} with {@link ExtraSlots}, so that finding
+ * the extra is an index lookup. This isn't done on construction, as subtypes may return a field
+ * which isn't assigned yet.
+ */
 public abstract class ExtraFactory<E> {
 
+    private boolean registered; // racy, as registering again is harmless
+
     public abstract Class<E> type();
 
     protected abstract E create();
@@ -27,6 +36,10 @@ public abstract class ExtraFactory<E> {
     public final TraceContext decorate(TraceContext context) {
         long traceId = context.traceId(), spanId = context.spanId();
         Class<E> type = type();
+        if (!registered) {
+            ExtraSlots.register(type);
+            registered = true;
+        }
 
         List<Object> extra = context.extra();
         int extraSize = extra.size();
@@ -40,12 +53,7 @@ public abstract class ExtraFactory<E> {
 
         // if the first item is a fields object, try to claim or copy its fields
         if (type.isInstance(first)) {
-            E existing = (E) first;
-            if (tryToClaim(existing, traceId, spanId)) {
-                consolidated = existing;
-            } else { // otherwise we need to consolidate the fields
-                consolidated = createExtraAndClaim(existing, traceId, spanId);
-            }
+            consolidated = claimOrCopy((E) first, traceId, spanId);
         }
 
         // If we had only one extra, there are a few options:
@@ -67,6 +75,10 @@ public abstract class ExtraFactory<E> {
             extra.add(createExtraAndClaim(traceId, spanId));
             return contextWithExtra(context, Collections.unmodifiableList(extra));
         }
+        if (consolidated != null && consolidated != first) {
+            extra = ensureMutable(extra);
+            extra.set(0, consolidated);
+        }
 
         // If we get here, we have at least one extra, but don't yet know if we need to create
         // a new list. For example, if there is an unassociated fields object we may be able to
@@ -78,25 +90,22 @@ public abstract class ExtraFactory<E> {
             }
             E existing = (E) next;
             if (consolidated == null) {
-                if (tryToClaim(existing, traceId, spanId)) {
-                    consolidated = existing;
-                    continue;
+                consolidated = claimOrCopy(existing, traceId, spanId);
+                if (consolidated != existing) {
+                    extra = ensureMutable(extra);
+                    extra.set(i, consolidated);
                 }
-                consolidated = createExtraAndClaim(existing, traceId, spanId);
-                extra = ensureMutable(extra);
-                extra.set(i, consolidated);
-            } else {
-                consolidate(existing, consolidated);
-                extra = ensureMutable(extra);
-                extra.remove(i); // drop the previous fields item as we consolidated it
-                extraSize--;
-                i--;
+                continue;
             }
+            consolidate(existing, consolidated);
+            extra = ensureMutable(extra);
+            extra.remove(i); // drop the previous fields item as we consolidated it
+            extraSize--;
+            i--;
         }
         if (consolidated == null) {
-            consolidated = createExtraAndClaim(traceId, spanId);
             extra = ensureMutable(extra);
-            extra.add(consolidated);
+            extra.add(createExtraAndClaim(traceId, spanId));
         }
         if (extra == context.extra()) {
             return context;
@@ -104,6 +113,14 @@ public abstract class ExtraFactory<E> {
         return contextWithExtra(context, Collections.unmodifiableList(extra));
     }
 
+    /** Returns the input if it was claimed, otherwise a claimed copy. */
+    E claimOrCopy(E existing, long traceId, long spanId) {
+        if (tryToClaim(existing, traceId, spanId)) {
+            return existing;
+        }
+        return createExtraAndClaim(existing, traceId, spanId);
+    }
+
     // TODO: this is internal. If we ever expose it otherwise, we should use Lists.ensureImmutable
     protected TraceContext contextWithExtra(TraceContext context, List<Object> immutableExtra) {
         return InternalPropagation.instance.withExtra(context, immutableExtra);
@@ -0,0 +1,63 @@
+package org.apache.skywalking.apm.agent.core.context.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns a slot to each type of {@link org.apache.skywalking.apm.agent.core.context.propagation.TraceContext#extra()
+ * extra} registered by a propagation component, so that a context can look its extra up by index
+ * instead of scanning.
+ *
+ * <p>Types are registered during setup, usually when an {@link ExtraFactory} first decorates a
+ * context, so registration copies on write and lookups don't lock.
+ */
+public final class ExtraSlots {
+
+    static final Class<?>[] NONE = new Class<?>[0];
+
+    static volatile Class<?>[] types = NONE;
+
+    /** Returns the slot of the type, assigning the next one if it doesn't have one yet. */
+    public static synchronized int register(Class<?> type) {
+        int slot = slotOf(type);
+        if (slot != -1) {
+            return slot;
+        }
+        Class<?>[] result = Arrays.copyOf(types, types.length + 1);
+        result[types.length] = type;
+        types = result;
+        return types.length - 1;
+    }
+
+    /** Returns the slot of the type, or -1 if it wasn't registered. */
+    public static int slotOf(Class<?> type) {
+        Class<?>[] types = ExtraSlots.types;
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the first extra of each registered type, indexed by slot. */
+    public static Object[] index(List<Object> extra) {
+        Class<?>[] types = ExtraSlots.types;
+        Object[] result = new Object[types.length];
+        for (int i = 0, length = extra.size(); i < length; i++) {
+            Object next = extra.get(i);
+            for (int slot = 0; slot < types.length; slot++) {
+                if (types[slot] == next.getClass()) {
+                    if (result[slot] == null) {
+                        result[slot] = next;
+                    }
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    ExtraSlots() {
+    }
+}
@@ -63,7 +63,9 @@ public final class HexCodec {
     public static String toLowerHex(long v) {
         char[] data = RecyclableBuffers.idBuffer();
         writeHexLong(data, 0, v);
-        return new String(data, 0, 16);
+        String result = new String(data, 0, 16);
+        RecyclableBuffers.releaseIdBuffer(data);
+        return result;
     }
 
     /**
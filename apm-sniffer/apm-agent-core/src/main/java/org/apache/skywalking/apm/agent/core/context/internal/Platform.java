@@ -1,5 +1,8 @@
 package org.apache.skywalking.apm.agent.core.context.internal;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
@@ -91,6 +94,14 @@ public abstract class Platform {
      */
     public abstract long nextTraceIdHigh();
 
+    /**
+     * Returns true if the thread is a virtual thread, which is cheap to create and so usually runs
+     * a single task. Thread-local buffers and state aren't reused on such threads.
+     */
+    public boolean isVirtual(Thread thread) {
+        return false;
+    }
+
     public Clock clock() {
         return new Clock() {
             @Override
@@ -129,6 +140,10 @@ public abstract class Platform {
 
     /** Attempt to match the host runtime to a capable Platform implementation. */
     private static Platform findPlatform() {
+        Platform jre21 = Jre21.buildIfSupport();
+        if (jre21 != null) {
+            return jre21;
+        }
         Platform jre7 = Jre7.buildIfSupport();
         if (jre7 != null) {
             return jre7;
@@ -137,6 +152,41 @@ public abstract class Platform {
         return new Jre6();
     }
 
+    static class Jre21 extends Jre7 {
+
+        // static, so that the JIT can inline the handle
+        static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+        static Jre21 buildIfSupport() {
+            return IS_VIRTUAL != null ? new Jre21() : null;
+        }
+
+        static MethodHandle findIsVirtual() {
+            // Find JRE21 new methods.
+            try {
+                return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+                    MethodType.methodType(boolean.class));
+            } catch (NoSuchMethodException | IllegalAccessException ex) {
+                // pre JRE21
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isVirtual(Thread thread) {
+            try {
+                return (boolean) IS_VIRTUAL.invokeExact(thread);
+            } catch (Throwable ex) {
+                return false; // isVirtual doesn't throw
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Jre21{}";
+        }
+    }
+
     static class Jre7 extends Platform {
 
         static Jre7 buildIfSupport() {
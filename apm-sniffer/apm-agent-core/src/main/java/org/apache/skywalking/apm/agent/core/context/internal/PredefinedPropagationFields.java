@@ -2,70 +2,122 @@ package org.apache.skywalking.apm.agent.core.context.internal;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 
-/** Copy-on-write keeps propagation changes in a child context from affecting its parent */
+/**
+ * Values of a fixed set of fields, stored in an array indexed like the field names.
+ *
+ * <p>A child shares its parent's values until either writes, and only the first write after
+ * sharing copies them. This keeps propagation changes in a child context from affecting its parent,
+ * without copying the array on every write. Reads don't lock: they see the array last published by a
+ * write.
+ */
 public class PredefinedPropagationFields extends PropagationFields {
 
-    private final String[] fieldNames;
-    private volatile String[] values; // guarded by this, copy on write
+    /**
+     * Field names and their indices. Create one per configuration and share it with all fields
+     * objects, so that names are resolved with a hash lookup instead of a scan.
+     */
+    public static final class FieldIndex {
 
-    protected PredefinedPropagationFields(String... fieldNames) {
-        this.fieldNames = fieldNames;
+        final String[] fieldNames;
+        final Map<String, Integer> indices;
+
+        public static FieldIndex create(String... fieldNames) {
+            return new FieldIndex(fieldNames.clone());
+        }
+
+        FieldIndex(String[] fieldNames) {
+            this.fieldNames = fieldNames;
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < fieldNames.length; i++) {
+                indices.put(fieldNames[i], i);
+            }
+            this.indices = indices;
+        }
+
+        /** Returns the index of the field, or -1 if it isn't one of these. */
+        public int indexOf(String name) {
+            Integer index = indices.get(name);
+            return index != null ? index : -1;
+        }
+
+        public int size() {
+            return fieldNames.length;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(fieldNames);
+        }
+    }
+
+    private final FieldIndex fieldIndex;
+    private volatile String[] values; // null until a value is set. Written under this lock
+    private boolean owned; // guarded by this. false until values are copied for this instance
+
+    protected PredefinedPropagationFields(FieldIndex fieldIndex) {
+        this.fieldIndex = fieldIndex;
     }
 
     protected PredefinedPropagationFields(PredefinedPropagationFields parent,
-        String... fieldNames) {
-        this.fieldNames = fieldNames;
+        FieldIndex fieldIndex) {
+        this.fieldIndex = fieldIndex;
         checkSameFields(parent);
-        this.values = parent.values;
+        this.values = parent.share();
+    }
+
+    /** Returns the values for a child, so that neither writes to them in place afterwards. */
+    private String[] share() {
+        synchronized (this) {
+            owned = false;
+            return values;
+        }
     }
 
     @Override
     public String get(String name) {
-        int index = indexOf(name);
+        int index = fieldIndex.indexOf(name);
         return index != -1 ? get(index) : null;
     }
 
     public String get(int index) {
-        if (index > fieldNames.length) {
+        String[] elements = values;
+        if (elements == null || index < 0 || index >= elements.length) {
             return null;
         }
-
-        String[] elements;
-        synchronized (this) {
-            elements = values;
-        }
-        return elements != null ? elements[index] : null;
+        return elements[index];
     }
 
     @Override
     public final void put(String name, String value) {
-        int index = indexOf(name);
+        int index = fieldIndex.indexOf(name);
         if (index != -1) {
             put(index, value);
         }
     }
 
     public final void put(int index, String value) {
-        if (index > fieldNames.length) {
+        if (index < 0 || index >= fieldIndex.size()) {
             return;
         }
 
         synchronized (this) {
             String[] elements = values;
             if (elements == null) {
-                elements = new String[fieldNames.length];
-                elements[index] = value;
+                elements = new String[fieldIndex.size()];
+                owned = true;
             } else if (value.equals(elements[index])) {
                 return;
-            } else {
+            } else if (!owned) { // shared with a parent or child
                 elements = Arrays.copyOf(elements, elements.length);
-                elements[index] = value;
+                owned = true;
             }
-            values = elements;
+            elements[index] = value;
+            values = elements; // publishes the write to readers, which don't lock
         }
     }
 
@@ -81,54 +133,43 @@ public class PredefinedPropagationFields extends PropagationFields {
             return;
         }
         for (int i = 0; i < parentValues.length; i++) {
-            if (parentValues[i] != null && get(i) != null) {
+            if (parentValues[i] != null && get(i) == null) {
                 put(i, parentValues[i]);
             }
         }
     }
 
     private void checkSameFields(PredefinedPropagationFields predefinedParent) {
-        if (!Arrays.equals(fieldNames, predefinedParent.fieldNames)) {
+        if (fieldIndex != predefinedParent.fieldIndex
+            && !Arrays.equals(fieldIndex.fieldNames, predefinedParent.fieldIndex.fieldNames)) {
             throw new IllegalStateException(
                 String.format("Mixed name configuration unsupported: found %s, expected %s",
-                    Arrays.toString(fieldNames), Arrays.toString(predefinedParent.fieldNames)));
+                    fieldIndex, predefinedParent.fieldIndex));
         }
     }
 
     @Override
     public Map<String, String> toMap() {
-        String[] elements;
-        synchronized (this) {
-            elements = values;
-        }
-
+        String[] elements = values;
         if (elements == null) {
             return Collections.emptyMap();
         }
 
         Map<String, String> contents = new LinkedHashMap<>();
-        for (int i = 0; i < fieldNames.length; i++) {
+        for (int i = 0; i < elements.length; i++) {
             String maybeValue = elements[i];
             if (maybeValue == null) {
                 continue;
             }
-            contents.put(fieldNames[i], maybeValue);
+            contents.put(fieldIndex.fieldNames[i], maybeValue);
         }
         return Collections.unmodifiableMap(contents);
     }
 
-    private int indexOf(String name) {
-        for (int i = 0; i < fieldNames.length; i++) {
-            if (fieldNames[i].equals(name)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     @Override
     public int hashCode() {
-        return values == null ? 0 : Arrays.hashCode(values);
+        String[] elements = values;
+        return elements == null ? 0 : Arrays.hashCode(elements);
     }
 
     @Override
@@ -139,7 +180,7 @@ public class PredefinedPropagationFields extends PropagationFields {
         if (!(o instanceof PredefinedPropagationFields)) {
             return false;
         }
-        PredefinedPropagationFields that = (PredefinedPropagationFields) o;
-        return values == null ? that.values == null : Arrays.equals(values, that.values);
+        String[] elements = values, thatElements = ((PredefinedPropagationFields) o).values;
+        return elements == null ? thatElements == null : Arrays.equals(elements, thatElements);
     }
 }
@@ -0,0 +1,152 @@
+package org.apache.skywalking.apm.agent.core.context.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Like a {@link ThreadLocal}, except on {@linkplain Platform#isVirtual(Thread) virtual threads},
+ * where a value is only held while it is bound, similar to a scoped value.
+ *
+ * <p>Reading a thread local creates the thread's map of thread locals, even when there is no
+ * value. That is amortized on pooled platform threads, but each of millions of short-lived virtual
+ * threads would pay for it, even to learn that no trace is in progress. On virtual threads, values
+ * are held in a map shared by all threads instead, so reading an absent value creates no state on
+ * the thread and {@linkplain #remove() removing} it leaves nothing behind.
+ *
+ * <p>Callers should remove a value when their scope ends, as they would close a {@link
+ * org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope}. When they
+ * don't, the value is released like a thread local's would be: threads are weakly referenced, so a
+ * value bound on a virtual thread is dropped from the map once the thread is collected.
+ *
+ * <p>The weak keys are derived from WeakConcurrentMap by Rafael Winterhalter, like those of {@link
+ * org.apache.skywalking.apm.agent.core.plugin.loader.InterceptorInstanceLoader}.
+ */
+public final class ThreadBindings<T> {
+
+    final ThreadLocal<T> local = new ThreadLocal<>();
+
+    // Even though we only put by ThreadKey, we allow get and remove by LookupKey
+    final ConcurrentMap<Object, T> virtual = new ConcurrentHashMap<>();
+
+    final ReferenceQueue<Thread> collectedThreads = new ReferenceQueue<>();
+
+    @Nullable
+    public T get() {
+        Thread thread = Thread.currentThread();
+        if (Platform.get().isVirtual(thread)) {
+            return virtual.get(new LookupKey(thread));
+        }
+        return local.get();
+    }
+
+    /** Binds the value to the current thread, or removes the binding when the value is null. */
+    public void set(@Nullable T value) {
+        Thread thread = Thread.currentThread();
+        if (Platform.get().isVirtual(thread)) {
+            expungeCollectedThreads();
+            if (value != null) {
+                virtual.put(new ThreadKey(thread, collectedThreads), value);
+            } else {
+                virtual.remove(new LookupKey(thread));
+            }
+        } else if (value != null) {
+            local.set(value);
+        } else {
+            local.remove();
+        }
+    }
+
+    public void remove() {
+        set(null);
+    }
+
+    /**
+     * Removes the binding if the current thread is virtual. Use this when a value is worth keeping
+     * for the next task of a pooled thread, but not for a thread that will likely end soon.
+     */
+    public void removeIfVirtual() {
+        Thread thread = Thread.currentThread();
+        if (Platform.get().isVirtual(thread)) {
+            expungeCollectedThreads();
+            virtual.remove(new LookupKey(thread));
+        }
+    }
+
+    /** Removes the values of virtual threads which were collected while still bound. */
+    void expungeCollectedThreads() {
+        Object key;
+        while ((key = collectedThreads.poll()) != null) {
+            virtual.remove(key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadBindings{virtualBindings=" + virtual.size() + "}";
+    }
+
+    /** Real keys weakly reference the thread, so that we get notified when it is collected. */
+    static final class ThreadKey extends WeakReference<Thread> {
+
+        final int hashCode;
+
+        ThreadKey(Thread thread, ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            hashCode = System.identityHashCode(thread);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Resolves hash code collisions
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            Thread thread = get();
+            if (thread == null) {
+                return false; // only equal to itself once collected
+            } else if (other instanceof ThreadKey) {
+                return thread == ((ThreadKey) other).get();
+            } else if (other instanceof LookupKey) {
+                return thread == ((LookupKey) other).thread;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lookup keys are cheaper than real keys as reference tracking is not involved. We cannot use
+     * the {@linkplain Thread} directly as a lookup key, as it wouldn't equal the real key.
+     */
+    static final class LookupKey {
+
+        final Thread thread;
+
+        LookupKey(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(thread);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof ThreadKey) {
+                return thread == ((ThreadKey) other).get();
+            } else if (other instanceof LookupKey) {
+                return thread == ((LookupKey) other).thread;
+            }
+            return false;
+        }
+    }
+}
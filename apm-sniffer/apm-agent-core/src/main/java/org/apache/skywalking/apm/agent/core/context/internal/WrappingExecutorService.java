@@ -57,7 +57,7 @@ public abstract class WrappingExecutorService implements ExecutorService {
         for (Callable<T> task : tasks) {
             result.add(wrap(task));
         }
-        return tasks;
+        return result;
     }
 
     @Override
@@ -0,0 +1,263 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import java.nio.ByteBuffer;
+import org.apache.skywalking.apm.agent.core.context.ErrorParser;
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import zipkin2.codec.Encoding;
+
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.asciiSizeInBytes;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.jsonEscapedSizeInBytes;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeAscii;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeJsonEscaped;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeLowerHex;
+
+/** Writes the same fields in the same order as {@code zipkin2.internal.V2SpanWriter}. */
+final class JsonV2SpanEncoder extends MutableSpanBytesEncoder {
+
+    static final byte[] TRACE_ID = "{\"traceId\":\"".getBytes();
+    static final byte[] PARENT_ID = "\",\"parentId\":\"".getBytes();
+    static final byte[] ID = "\",\"id\":\"".getBytes();
+    static final byte[] KIND = ",\"kind\":\"".getBytes();
+    static final byte[] NAME = ",\"name\":\"".getBytes();
+    static final byte[] TIMESTAMP = ",\"timestamp\":".getBytes();
+    static final byte[] DURATION = ",\"duration\":".getBytes();
+    static final byte[] LOCAL_ENDPOINT = ",\"localEndpoint\":".getBytes();
+    static final byte[] REMOTE_ENDPOINT = ",\"remoteEndpoint\":".getBytes();
+    static final byte[] ANNOTATIONS = ",\"annotations\":[".getBytes();
+    static final byte[] TAGS = ",\"tags\":{".getBytes();
+    static final byte[] DEBUG = ",\"debug\":true".getBytes();
+    static final byte[] SHARED = ",\"shared\":true".getBytes();
+
+    static final byte[] SERVICE_NAME = "\"serviceName\":\"".getBytes();
+    static final byte[] IPV4 = "\"ipv4\":\"".getBytes();
+    static final byte[] IPV6 = "\"ipv6\":\"".getBytes();
+    static final byte[] PORT = "\"port\":".getBytes();
+
+    static final byte[] ANNOTATION_TIMESTAMP = "{\"timestamp\":".getBytes();
+    static final byte[] ANNOTATION_VALUE = ",\"value\":\"".getBytes();
+    static final byte[] QUOTE_COLON_QUOTE = {'"', ':', '"'};
+
+    static final byte[][] KIND_NAMES = new byte[Kind.values().length][];
+
+    static {
+        for (Kind kind : Kind.values()) {
+            KIND_NAMES[kind.ordinal()] = kind.name().getBytes();
+        }
+    }
+
+    JsonV2SpanEncoder(ErrorParser errorParser, String localServiceName, @Nullable String localIp,
+        int localPort) {
+        super(errorParser, localServiceName, localIp, localPort);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    @Override
+    int spanSizeInBytes(TraceContext context, MutableSpan span) {
+        int sizeInBytes = TRACE_ID.length + (context.traceIdHigh() != 0L ? 32 : 16);
+        if (context.parentIdAsLong() != 0L) {
+            sizeInBytes += PARENT_ID.length + 16;
+        }
+        sizeInBytes += ID.length + 16 + 1; // closing quote of the ID
+
+        Kind kind = span.kind();
+        if (kind != null) {
+            sizeInBytes += KIND.length + KIND_NAMES[kind.ordinal()].length + 1;
+        }
+        String name = span.name();
+        if (!isEmpty(name)) {
+            sizeInBytes += NAME.length + jsonEscapedSizeInBytes(name) + 1;
+        }
+        long timestamp = span.startTimestamp();
+        if (timestamp != 0L) {
+            sizeInBytes += TIMESTAMP.length + asciiSizeInBytes(timestamp);
+        }
+        long duration = duration(span);
+        if (duration != 0L) {
+            sizeInBytes += DURATION.length + asciiSizeInBytes(duration);
+        }
+
+        sizeInBytes += LOCAL_ENDPOINT.length
+            + endpointSizeInBytes(localServiceName(span), localIp(span), localPort(span));
+        if (hasRemoteEndpoint(span)) {
+            sizeInBytes += REMOTE_ENDPOINT.length
+                + endpointSizeInBytes(span.remoteServiceName(), span.remoteIp(), span.remotePort());
+        }
+
+        SortedEntries entries = SortedEntries.of(span);
+        int count = entries.annotationCount;
+        if (count > 0) {
+            sizeInBytes += ANNOTATIONS.length + count - 1 + 1; // commas and closing bracket
+            for (int i = 0; i < count; i++) {
+                sizeInBytes += ANNOTATION_TIMESTAMP.length
+                    + asciiSizeInBytes(entries.annotationTimestamps[i]) + ANNOTATION_VALUE.length
+                    + jsonEscapedSizeInBytes(entries.annotationValues[i]) + 2; // "}
+            }
+        }
+        count = entries.tagCount;
+        if (count > 0) {
+            sizeInBytes += TAGS.length + count - 1 + 1; // commas and closing brace
+            for (int i = 0; i < count; i++) {
+                // "key":"value"
+                sizeInBytes += jsonEscapedSizeInBytes(entries.tagKeys[i])
+                    + jsonEscapedSizeInBytes(entries.tagValues[i]) + 5;
+            }
+        }
+        entries.clear();
+
+        if (context.debug()) {
+            sizeInBytes += DEBUG.length;
+        }
+        if (shared(span)) {
+            sizeInBytes += SHARED.length;
+        }
+        return sizeInBytes + 1; // closing brace
+    }
+
+    @Override
+    public void write(TraceContext context, MutableSpan span, ByteBuffer buffer) {
+        buffer.put(TRACE_ID);
+        writeLowerHex(buffer, context.traceIdHigh(), context.traceId());
+        long parentId = context.parentIdAsLong();
+        if (parentId != 0L) {
+            buffer.put(PARENT_ID);
+            writeLowerHex(buffer, 0L, parentId);
+        }
+        buffer.put(ID);
+        writeLowerHex(buffer, 0L, context.spanId());
+        buffer.put((byte) '"');
+
+        Kind kind = span.kind();
+        if (kind != null) {
+            buffer.put(KIND);
+            buffer.put(KIND_NAMES[kind.ordinal()]);
+            buffer.put((byte) '"');
+        }
+        String name = span.name();
+        if (!isEmpty(name)) {
+            buffer.put(NAME);
+            writeJsonEscaped(buffer, name, true);
+            buffer.put((byte) '"');
+        }
+        long timestamp = span.startTimestamp();
+        if (timestamp != 0L) {
+            buffer.put(TIMESTAMP);
+            writeAscii(buffer, timestamp);
+        }
+        long duration = duration(span);
+        if (duration != 0L) {
+            buffer.put(DURATION);
+            writeAscii(buffer, duration);
+        }
+
+        buffer.put(LOCAL_ENDPOINT);
+        writeEndpoint(buffer, localServiceName(span), localIp(span), localPort(span));
+        if (hasRemoteEndpoint(span)) {
+            buffer.put(REMOTE_ENDPOINT);
+            writeEndpoint(buffer, span.remoteServiceName(), span.remoteIp(), span.remotePort());
+        }
+
+        SortedEntries entries = SortedEntries.of(span);
+        int count = entries.annotationCount;
+        if (count > 0) {
+            buffer.put(ANNOTATIONS);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    buffer.put((byte) ',');
+                }
+                buffer.put(ANNOTATION_TIMESTAMP);
+                writeAscii(buffer, entries.annotationTimestamps[i]);
+                buffer.put(ANNOTATION_VALUE);
+                writeJsonEscaped(buffer, entries.annotationValues[i], false);
+                buffer.put((byte) '"');
+                buffer.put((byte) '}');
+            }
+            buffer.put((byte) ']');
+        }
+        count = entries.tagCount;
+        if (count > 0) {
+            buffer.put(TAGS);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    buffer.put((byte) ',');
+                }
+                buffer.put((byte) '"');
+                writeJsonEscaped(buffer, entries.tagKeys[i], false);
+                buffer.put(QUOTE_COLON_QUOTE);
+                writeJsonEscaped(buffer, entries.tagValues[i], false);
+                buffer.put((byte) '"');
+            }
+            buffer.put((byte) '}');
+        }
+        entries.clear();
+
+        if (context.debug()) {
+            buffer.put(DEBUG);
+        }
+        if (shared(span)) {
+            buffer.put(SHARED);
+        }
+        buffer.put((byte) '}');
+    }
+
+    static int endpointSizeInBytes(@Nullable String serviceName, @Nullable String ip, int port) {
+        int sizeInBytes = 2, fields = 0; // braces
+        if (!isEmpty(serviceName)) {
+            sizeInBytes += SERVICE_NAME.length + jsonEscapedSizeInBytes(serviceName) + 1;
+            fields++;
+        }
+        if (isValidIp(ip)) {
+            sizeInBytes += IPV4.length + ip.length() + 1;
+            fields++;
+        }
+        if (port > 0) {
+            sizeInBytes += PORT.length + asciiSizeInBytes(port);
+            fields++;
+        }
+        return fields > 1 ? sizeInBytes + fields - 1 : sizeInBytes;
+    }
+
+    static void writeEndpoint(ByteBuffer buffer, @Nullable String serviceName, @Nullable String ip,
+        int port) {
+        buffer.put((byte) '{');
+        boolean wroteField = false;
+        if (!isEmpty(serviceName)) {
+            buffer.put(SERVICE_NAME);
+            writeJsonEscaped(buffer, serviceName, true);
+            buffer.put((byte) '"');
+            wroteField = true;
+        }
+        if (isValidIp(ip)) {
+            if (wroteField) {
+                buffer.put((byte) ',');
+            }
+            buffer.put(WriteBuffers.isIpv6(ip) ? IPV6 : IPV4);
+            WriteBuffers.writeUtf8(buffer, ip, true);
+            buffer.put((byte) '"');
+            wroteField = true;
+        }
+        if (port > 0) {
+            if (wroteField) {
+                buffer.put((byte) ',');
+            }
+            buffer.put(PORT);
+            writeAscii(buffer, port);
+        }
+        buffer.put((byte) '}');
+    }
+
+    static boolean isValidIp(@Nullable String ip) {
+        if (isEmpty(ip)) {
+            return false;
+        }
+        byte[] ipBytes = WriteBuffers.ipBytes();
+        return WriteBuffers.isIpv6(ip) ? WriteBuffers.parseIpv6(ip, ipBytes)
+            : WriteBuffers.parseIpv4(ip, ipBytes);
+    }
+}
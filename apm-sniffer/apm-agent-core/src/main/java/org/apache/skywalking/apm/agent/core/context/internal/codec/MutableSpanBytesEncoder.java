@@ -0,0 +1,141 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import java.nio.ByteBuffer;
+import org.apache.skywalking.apm.agent.core.context.ErrorParser;
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+import zipkin2.codec.Encoding;
+
+/**
+ * Writes a {@link MutableSpan} and its {@link TraceContext} directly in a Zipkin wire format. This
+ * is the same data as {@link org.apache.skywalking.apm.agent.core.context.internal.handler.MutableSpanConverter}
+ * followed by {@code zipkin2.codec.SpanBytesEncoder}, except no {@code zipkin2.Span}, endpoint, tag
+ * map or annotation list is allocated on the way. Like {@code zipkin2.Span.Builder}, tags are
+ * written sorted by key, and annotations sorted by timestamp without duplicates, so the bytes are
+ * the same.
+ *
+ * <p>Encoding is two-pass: {@link #sizeInBytes(TraceContext, MutableSpan)} first, then {@link
+ * #write(TraceContext, MutableSpan, ByteBuffer)} into a buffer with at least that many bytes
+ * remaining. The buffer can be reused across spans.
+ *
+ * <p>{@link Encoding#PROTO3} output is a single entry of the {@code ListOfSpans} message, so encoded
+ * spans can be concatenated into a list. {@link Encoding#JSON} output is a JSON v2 span object.
+ */
+// internal until we figure out how the api should sit.
+public abstract class MutableSpanBytesEncoder {
+
+    public static MutableSpanBytesEncoder create(Encoding encoding, ErrorParser errorParser,
+        String localServiceName, @Nullable String localIp, int localPort) {
+        Assert.notNull(encoding, "encoding can not be null");
+        switch (encoding) {
+            case JSON:
+                return new JsonV2SpanEncoder(errorParser, localServiceName, localIp, localPort);
+            case PROTO3:
+                return new Proto3SpanEncoder(errorParser, localServiceName, localIp, localPort);
+            default:
+                throw new UnsupportedOperationException(encoding + " is not supported");
+        }
+    }
+
+    final ErrorParser errorParser;
+    final String localServiceName;
+    @Nullable
+    final String localIp;
+    final int localPort;
+
+    MutableSpanBytesEncoder(ErrorParser errorParser, String localServiceName,
+        @Nullable String localIp, int localPort) {
+        Assert.notNull(errorParser, "errorParser can not be null");
+        Assert.notNull(localServiceName, "localServiceName can not be null");
+        this.errorParser = errorParser;
+        this.localServiceName = localServiceName;
+        this.localIp = localIp;
+        this.localPort = localPort;
+    }
+
+    public abstract Encoding encoding();
+
+    /**
+     * Returns the encoded size of the span. If the span has an error which isn't tagged yet, this
+     * parses it first, so call this once before {@link #write(TraceContext, MutableSpan,
+     * ByteBuffer)}.
+     */
+    public final int sizeInBytes(TraceContext context, MutableSpan span) {
+        Assert.notNull(context, "context can not be null");
+        Assert.notNull(span, "span can not be null");
+        if (span.error() != null && span.tag("error") == null) {
+            errorParser.error(span.error(), span);
+        }
+        return spanSizeInBytes(context, span);
+    }
+
+    /**
+     * Writes the span at the buffer's position, advancing it by {@link #sizeInBytes(TraceContext,
+     * MutableSpan)}.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has less remaining bytes than the span
+     * size.
+     */
+    public abstract void write(TraceContext context, MutableSpan span, ByteBuffer buffer);
+
+    /**
+     * Encodes the span with a thread-local buffer. The only allocation is the returned array.
+     */
+    public final byte[] encode(TraceContext context, MutableSpan span) {
+        int sizeInBytes = sizeInBytes(context, span);
+        ByteBuffer buffer = WriteBuffers.threadLocalBuffer(sizeInBytes);
+        write(context, span, buffer);
+        byte[] result = new byte[sizeInBytes];
+        buffer.flip();
+        buffer.get(result);
+        return result;
+    }
+
+    abstract int spanSizeInBytes(TraceContext context, MutableSpan span);
+
+    // The below resolve the same endpoint and field defaults as MutableSpanConverter and zipkin2.Span
+
+    final String localServiceName(MutableSpan span) {
+        String serviceName = span.localServiceName();
+        return serviceName != null ? serviceName : localServiceName;
+    }
+
+    @Nullable
+    final String localIp(MutableSpan span) {
+        String ip = span.localIp();
+        return ip != null ? ip : localIp;
+    }
+
+    final int localPort(MutableSpan span) {
+        int port = span.localPort();
+        return port > 0 ? port : localPort;
+    }
+
+    static boolean hasRemoteEndpoint(MutableSpan span) {
+        return span.remoteServiceName() != null || span.remoteIp() != null;
+    }
+
+    /** Zipkin drops empty strings, as opposed to writing them */
+    static boolean isEmpty(@Nullable String value) {
+        return value == null || value.isEmpty();
+    }
+
+    /** Zipkin omits duration unless both timestamps are present and rounds it up to 1 */
+    static long duration(MutableSpan span) {
+        long start = span.startTimestamp(), finish = span.finishTimestamp();
+        return start != 0L && finish != 0L ? Math.max(finish - start, 1L) : 0L;
+    }
+
+    /** Zipkin ignores the shared flag on client spans */
+    static boolean shared(MutableSpan span) {
+        return span.shared() && span.kind() != Kind.CLIENT;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + localServiceName + "}";
+    }
+}
@@ -0,0 +1,269 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import java.nio.ByteBuffer;
+import org.apache.skywalking.apm.agent.core.context.ErrorParser;
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import zipkin2.codec.Encoding;
+
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.utf8SizeInBytes;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.varintSizeInBytes;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeLongBe;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeLongLe;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeUtf8;
+import static org.apache.skywalking.apm.agent.core.context.internal.codec.WriteBuffers.writeVarint;
+
+/**
+ * Writes a span as one entry of the {@code zipkin.proto3.ListOfSpans} message, like {@code
+ * zipkin2.internal.Proto3ZipkinFields}. Field keys below are {@code (field_number << 3) |
+ * wire_type}.
+ */
+final class Proto3SpanEncoder extends MutableSpanBytesEncoder {
+
+    static final int LIST_OF_SPANS_SPANS = (1 << 3) | 2;
+
+    static final int SPAN_TRACE_ID = (1 << 3) | 2;
+    static final int SPAN_PARENT_ID = (2 << 3) | 2;
+    static final int SPAN_ID = (3 << 3) | 2;
+    static final int SPAN_KIND = 4 << 3;
+    static final int SPAN_NAME = (5 << 3) | 2;
+    static final int SPAN_TIMESTAMP = (6 << 3) | 1;
+    static final int SPAN_DURATION = 7 << 3;
+    static final int SPAN_LOCAL_ENDPOINT = (8 << 3) | 2;
+    static final int SPAN_REMOTE_ENDPOINT = (9 << 3) | 2;
+    static final int SPAN_ANNOTATION = (10 << 3) | 2;
+    static final int SPAN_TAG = (11 << 3) | 2;
+    static final int SPAN_DEBUG = 12 << 3;
+    static final int SPAN_SHARED = 13 << 3;
+
+    static final int ENDPOINT_SERVICE_NAME = (1 << 3) | 2;
+    static final int ENDPOINT_IPV4 = (2 << 3) | 2;
+    static final int ENDPOINT_IPV6 = (3 << 3) | 2;
+    static final int ENDPOINT_PORT = 4 << 3;
+
+    static final int ANNOTATION_TIMESTAMP = (1 << 3) | 1;
+    static final int ANNOTATION_VALUE = (2 << 3) | 2;
+
+    static final int ENTRY_KEY = (1 << 3) | 2;
+    static final int ENTRY_VALUE = (2 << 3) | 2;
+
+    Proto3SpanEncoder(ErrorParser errorParser, String localServiceName, @Nullable String localIp,
+        int localPort) {
+        super(errorParser, localServiceName, localIp, localPort);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.PROTO3;
+    }
+
+    @Override
+    int spanSizeInBytes(TraceContext context, MutableSpan span) {
+        SortedEntries entries = SortedEntries.of(span);
+        int sizeInBytes = spanFieldsSizeInBytes(context, span, entries);
+        entries.clear();
+        return 1 + varintSizeInBytes(sizeInBytes) + sizeInBytes;
+    }
+
+    int spanFieldsSizeInBytes(TraceContext context, MutableSpan span, SortedEntries entries) {
+        int sizeInBytes = 2 + (context.traceIdHigh() != 0L ? 16 : 8);
+        if (context.parentIdAsLong() != 0L) {
+            sizeInBytes += 2 + 8;
+        }
+        sizeInBytes += 2 + 8;
+
+        if (span.kind() != null) {
+            sizeInBytes += 2;
+        }
+        String name = span.name();
+        if (!isEmpty(name)) {
+            sizeInBytes += lengthDelimitedSizeInBytes(utf8SizeInBytes(name));
+        }
+        if (span.startTimestamp() != 0L) {
+            sizeInBytes += 1 + 8;
+        }
+        long duration = duration(span);
+        if (duration != 0L) {
+            sizeInBytes += 1 + varintSizeInBytes(duration);
+        }
+
+        sizeInBytes += lengthDelimitedSizeInBytes(
+            endpointSizeInBytes(localServiceName(span), localIp(span), localPort(span)));
+        if (hasRemoteEndpoint(span)) {
+            sizeInBytes += lengthDelimitedSizeInBytes(
+                endpointSizeInBytes(span.remoteServiceName(), span.remoteIp(), span.remotePort()));
+        }
+
+        for (int i = 0; i < entries.annotationCount; i++) {
+            sizeInBytes += lengthDelimitedSizeInBytes(
+                annotationSizeInBytes(entries.annotationValues[i]));
+        }
+        for (int i = 0; i < entries.tagCount; i++) {
+            sizeInBytes += lengthDelimitedSizeInBytes(
+                entrySizeInBytes(entries.tagKeys[i], entries.tagValues[i]));
+        }
+
+        if (context.debug()) {
+            sizeInBytes += 2;
+        }
+        if (shared(span)) {
+            sizeInBytes += 2;
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public void write(TraceContext context, MutableSpan span, ByteBuffer buffer) {
+        SortedEntries entries = SortedEntries.of(span);
+        buffer.put((byte) LIST_OF_SPANS_SPANS);
+        writeVarint(buffer, spanFieldsSizeInBytes(context, span, entries));
+
+        long traceIdHigh = context.traceIdHigh();
+        buffer.put((byte) SPAN_TRACE_ID);
+        if (traceIdHigh != 0L) {
+            buffer.put((byte) 16);
+            writeLongBe(buffer, traceIdHigh);
+        } else {
+            buffer.put((byte) 8);
+        }
+        writeLongBe(buffer, context.traceId());
+        long parentId = context.parentIdAsLong();
+        if (parentId != 0L) {
+            buffer.put((byte) SPAN_PARENT_ID);
+            buffer.put((byte) 8);
+            writeLongBe(buffer, parentId);
+        }
+        buffer.put((byte) SPAN_ID);
+        buffer.put((byte) 8);
+        writeLongBe(buffer, context.spanId());
+
+        Kind kind = span.kind();
+        if (kind != null) {
+            buffer.put((byte) SPAN_KIND);
+            buffer.put((byte) (kind.ordinal() + 1)); // SPAN_KIND_UNSPECIFIED is 0
+        }
+        String name = span.name();
+        if (!isEmpty(name)) {
+            buffer.put((byte) SPAN_NAME);
+            writeVarint(buffer, utf8SizeInBytes(name));
+            writeUtf8(buffer, name, true);
+        }
+        long timestamp = span.startTimestamp();
+        if (timestamp != 0L) {
+            buffer.put((byte) SPAN_TIMESTAMP);
+            writeLongLe(buffer, timestamp);
+        }
+        long duration = duration(span);
+        if (duration != 0L) {
+            buffer.put((byte) SPAN_DURATION);
+            writeVarint(buffer, duration);
+        }
+
+        buffer.put((byte) SPAN_LOCAL_ENDPOINT);
+        writeEndpoint(buffer, localServiceName(span), localIp(span), localPort(span));
+        if (hasRemoteEndpoint(span)) {
+            buffer.put((byte) SPAN_REMOTE_ENDPOINT);
+            writeEndpoint(buffer, span.remoteServiceName(), span.remoteIp(), span.remotePort());
+        }
+
+        for (int i = 0; i < entries.annotationCount; i++) {
+            writeAnnotation(buffer, entries.annotationTimestamps[i], entries.annotationValues[i]);
+        }
+        for (int i = 0; i < entries.tagCount; i++) {
+            writeTag(buffer, entries.tagKeys[i], entries.tagValues[i]);
+        }
+        entries.clear();
+
+        if (context.debug()) {
+            buffer.put((byte) SPAN_DEBUG);
+            buffer.put((byte) 1);
+        }
+        if (shared(span)) {
+            buffer.put((byte) SPAN_SHARED);
+            buffer.put((byte) 1);
+        }
+    }
+
+    static int lengthDelimitedSizeInBytes(int sizeInBytes) {
+        return 1 + varintSizeInBytes(sizeInBytes) + sizeInBytes;
+    }
+
+    static int endpointSizeInBytes(@Nullable String serviceName, @Nullable String ip, int port) {
+        int sizeInBytes = 0;
+        if (!isEmpty(serviceName)) {
+            sizeInBytes += lengthDelimitedSizeInBytes(utf8SizeInBytes(serviceName));
+        }
+        int ipLength = parseIp(ip);
+        if (ipLength != 0) {
+            sizeInBytes += 2 + ipLength;
+        }
+        if (port > 0) {
+            sizeInBytes += 1 + varintSizeInBytes(port);
+        }
+        return sizeInBytes;
+    }
+
+    static void writeEndpoint(ByteBuffer buffer, @Nullable String serviceName, @Nullable String ip,
+        int port) {
+        writeVarint(buffer, endpointSizeInBytes(serviceName, ip, port));
+        if (!isEmpty(serviceName)) {
+            buffer.put((byte) ENDPOINT_SERVICE_NAME);
+            writeVarint(buffer, utf8SizeInBytes(serviceName));
+            writeUtf8(buffer, serviceName, true);
+        }
+        int ipLength = parseIp(ip);
+        if (ipLength != 0) {
+            buffer.put((byte) (ipLength == 4 ? ENDPOINT_IPV4 : ENDPOINT_IPV6));
+            buffer.put((byte) ipLength);
+            buffer.put(WriteBuffers.ipBytes(), 0, ipLength);
+        }
+        if (port > 0) {
+            buffer.put((byte) ENDPOINT_PORT);
+            writeVarint(buffer, port);
+        }
+    }
+
+    /** Parses the IP into {@link WriteBuffers#ipBytes()}, returning its length or zero if invalid */
+    static int parseIp(@Nullable String ip) {
+        if (isEmpty(ip)) {
+            return 0;
+        }
+        byte[] ipBytes = WriteBuffers.ipBytes();
+        if (WriteBuffers.isIpv6(ip)) {
+            return WriteBuffers.parseIpv6(ip, ipBytes) ? 16 : 0;
+        }
+        return WriteBuffers.parseIpv4(ip, ipBytes) ? 4 : 0;
+    }
+
+    static int annotationSizeInBytes(String value) {
+        return 1 + 8 + lengthDelimitedSizeInBytes(utf8SizeInBytes(value));
+    }
+
+    static int entrySizeInBytes(String key, String value) {
+        return lengthDelimitedSizeInBytes(utf8SizeInBytes(key))
+            + lengthDelimitedSizeInBytes(utf8SizeInBytes(value));
+    }
+
+    static void writeTag(ByteBuffer buffer, String key, String value) {
+        buffer.put((byte) SPAN_TAG);
+        writeVarint(buffer, entrySizeInBytes(key, value));
+        buffer.put((byte) ENTRY_KEY);
+        writeVarint(buffer, utf8SizeInBytes(key));
+        writeUtf8(buffer, key, false);
+        buffer.put((byte) ENTRY_VALUE);
+        writeVarint(buffer, utf8SizeInBytes(value));
+        writeUtf8(buffer, value, false);
+    }
+
+    static void writeAnnotation(ByteBuffer buffer, long timestamp, String value) {
+        buffer.put((byte) SPAN_ANNOTATION);
+        writeVarint(buffer, annotationSizeInBytes(value));
+        buffer.put((byte) ANNOTATION_TIMESTAMP);
+        writeLongLe(buffer, timestamp);
+        buffer.put((byte) ANNOTATION_VALUE);
+        writeVarint(buffer, utf8SizeInBytes(value));
+        writeUtf8(buffer, value, false);
+    }
+}
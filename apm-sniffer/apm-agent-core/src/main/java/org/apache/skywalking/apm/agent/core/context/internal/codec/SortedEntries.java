@@ -0,0 +1,119 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import java.util.Arrays;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan.AnnotationConsumer;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan.TagConsumer;
+
+/**
+ * The tags and annotations of a span in the order {@code zipkin2.Span.Builder} normalizes them to:
+ * tags sorted by key, and annotations sorted by timestamp then value, without duplicates. Encoders
+ * size and write a span from the same entries, so both passes see the same order.
+ *
+ * <p>Instances are reused per thread. Spans rarely have more than a few entries, so they are
+ * sorted in place by insertion.
+ */
+final class SortedEntries implements TagConsumer<SortedEntries>,
+    AnnotationConsumer<SortedEntries> {
+
+    static final ThreadLocal<SortedEntries> CURRENT = new ThreadLocal<>();
+
+    /** Returns the sorted entries of the span, valid until the next call on this thread. */
+    static SortedEntries of(MutableSpan span) {
+        SortedEntries result = CURRENT.get();
+        if (result == null) {
+            result = new SortedEntries();
+            CURRENT.set(result);
+        }
+        result.clear();
+        span.forEachTag(result, result);
+        span.forEachAnnotation(result, result);
+        result.sortTags();
+        result.sortAnnotations();
+        return result;
+    }
+
+    String[] tagKeys = new String[8], tagValues = new String[8];
+    int tagCount;
+
+    long[] annotationTimestamps = new long[4];
+    String[] annotationValues = new String[4];
+    int annotationCount;
+
+    /** Drops references to the last span's strings. */
+    void clear() {
+        Arrays.fill(tagKeys, 0, tagCount, null);
+        Arrays.fill(tagValues, 0, tagCount, null);
+        Arrays.fill(annotationValues, 0, annotationCount, null);
+        tagCount = annotationCount = 0;
+    }
+
+    @Override
+    public void accept(SortedEntries target, String key, String value) {
+        if (tagCount == tagKeys.length) {
+            tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+            tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+        }
+        tagKeys[tagCount] = key;
+        tagValues[tagCount++] = value;
+    }
+
+    @Override
+    public void accept(SortedEntries target, long timestamp, String value) {
+        if (annotationCount == annotationTimestamps.length) {
+            annotationTimestamps = Arrays.copyOf(annotationTimestamps, annotationCount * 2);
+            annotationValues = Arrays.copyOf(annotationValues, annotationCount * 2);
+        }
+        annotationTimestamps[annotationCount] = timestamp;
+        annotationValues[annotationCount++] = value;
+    }
+
+    /** Keys are already unique, as {@link MutableSpan#tag(String, String)} replaces values. */
+    void sortTags() {
+        for (int i = 1; i < tagCount; i++) {
+            String key = tagKeys[i], value = tagValues[i];
+            int j = i - 1;
+            for (; j >= 0 && tagKeys[j].compareTo(key) > 0; j--) {
+                tagKeys[j + 1] = tagKeys[j];
+                tagValues[j + 1] = tagValues[j];
+            }
+            tagKeys[j + 1] = key;
+            tagValues[j + 1] = value;
+        }
+    }
+
+    void sortAnnotations() {
+        for (int i = 1; i < annotationCount; i++) {
+            long timestamp = annotationTimestamps[i];
+            String value = annotationValues[i];
+            int j = i - 1;
+            for (; j >= 0 && compare(j, timestamp, value) > 0; j--) {
+                annotationTimestamps[j + 1] = annotationTimestamps[j];
+                annotationValues[j + 1] = annotationValues[j];
+            }
+            annotationTimestamps[j + 1] = timestamp;
+            annotationValues[j + 1] = value;
+        }
+        int last = 0; // dedupe adjacent equal annotations
+        for (int i = 1; i < annotationCount; i++) {
+            if (compare(last, annotationTimestamps[i], annotationValues[i]) != 0) {
+                last++;
+                annotationTimestamps[last] = annotationTimestamps[i];
+                annotationValues[last] = annotationValues[i];
+            }
+        }
+        if (annotationCount > 0) {
+            Arrays.fill(annotationValues, last + 1, annotationCount, null);
+            annotationCount = last + 1;
+        }
+    }
+
+    /** Same as {@code zipkin2.Annotation.compareTo} */
+    int compare(int index, long timestamp, String value) {
+        long thisTimestamp = annotationTimestamps[index];
+        if (thisTimestamp != timestamp) {
+            return thisTimestamp < timestamp ? -1 : 1;
+        }
+        return annotationValues[index].compareTo(value);
+    }
+}
@@ -0,0 +1,396 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import java.nio.ByteBuffer;
+import org.apache.skywalking.apm.agent.core.context.internal.HexCodec;
+import org.apache.skywalking.apm.agent.core.context.internal.RecyclableBuffers;
+
+/**
+ * Primitive writes used by the span encoders. All methods write at the buffer's position and
+ * advance it, without allocating.
+ *
+ * <p>UTF-8 and varint logic is derived from {@code zipkin2.internal.WriteBuffer}.
+ */
+final class WriteBuffers {
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<>();
+
+    private static final ThreadLocal<byte[]> IP_BYTES = new ThreadLocal<>();
+
+    /** Returns a thread-local buffer cleared for writing, of at least the given capacity. */
+    static ByteBuffer threadLocalBuffer(int minCapacity) {
+        ByteBuffer buffer = BUFFER.get();
+        if (buffer == null || buffer.capacity() < minCapacity) {
+            buffer = ByteBuffer.allocate(Math.max(minCapacity, 1024));
+            BUFFER.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /** Returns a thread-local 16 byte array used while parsing an IP literal into bytes. */
+    static byte[] ipBytes() {
+        byte[] ipBytes = IP_BYTES.get();
+        if (ipBytes == null) {
+            ipBytes = new byte[16];
+            IP_BYTES.set(ipBytes);
+        }
+        return ipBytes;
+    }
+
+    static void writeAscii(ByteBuffer buffer, byte[] ascii) {
+        buffer.put(ascii);
+    }
+
+    /** Writes 16 or 32 lower-hex characters, using {@link HexCodec#writeHexLong}. */
+    static void writeLowerHex(ByteBuffer buffer, long high, long low) {
+        char[] id = RecyclableBuffers.idBuffer();
+        int length = 0;
+        if (high != 0L) {
+            HexCodec.writeHexLong(id, 0, high);
+            length = 16;
+        }
+        HexCodec.writeHexLong(id, length, low);
+        length += 16;
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) id[i]);
+        }
+        RecyclableBuffers.releaseIdBuffer(id);
+    }
+
+    static int asciiSizeInBytes(long v) {
+        if (v == 0) {
+            return 1;
+        }
+        if (v == Long.MIN_VALUE) {
+            return 20;
+        }
+        boolean negative = false;
+        if (v < 0) {
+            v = -v; // making it positive, but we need to keep track it was negative
+            negative = true;
+        }
+        int width = 1;
+        while ((v /= 10) != 0) {
+            width++;
+        }
+        return negative ? width + 1 : width;
+    }
+
+    static void writeAscii(ByteBuffer buffer, long v) {
+        if (v == Long.MIN_VALUE) {
+            writeAscii(buffer, LONG_MIN_VALUE);
+            return;
+        }
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        int width = asciiSizeInBytes(v);
+        int pos = buffer.position() + width;
+        buffer.position(pos);
+        do {
+            buffer.put(--pos, DIGITS[(int) (v % 10)]);
+            v /= 10;
+        }
+        while (v != 0);
+    }
+
+    private static final byte[] LONG_MIN_VALUE = "-9223372036854775808".getBytes();
+
+    private static final byte[] DIGITS = "0123456789".getBytes();
+
+    /**
+     * Returns the UTF-8 size of the string, with unpaired surrogates encoded as '?'.
+     */
+    static int utf8SizeInBytes(String string) {
+        int sizeInBytes = 0;
+        for (int i = 0, len = string.length(); i < len; i++) {
+            char ch = string.charAt(i);
+            if (ch < 0x80) {
+                sizeInBytes++;
+            } else if (ch < 0x800) {
+                sizeInBytes += 2;
+            } else if (ch < 0xd800 || ch > 0xdfff) {
+                sizeInBytes += 3;
+            } else {
+                int low = i + 1 < len ? string.charAt(i + 1) : 0;
+                if (ch > 0xdbff || low < 0xdc00 || low > 0xdfff) {
+                    sizeInBytes++; // '?'
+                } else {
+                    sizeInBytes += 4;
+                    i++;
+                }
+            }
+        }
+        return sizeInBytes;
+    }
+
+    /**
+     * Writes the string as UTF-8, optionally lower-casing ASCII letters as zipkin does for names.
+     */
+    static void writeUtf8(ByteBuffer buffer, String string, boolean lowerCase) {
+        for (int i = 0, len = string.length(); i < len; i++) {
+            char ch = string.charAt(i);
+            if (ch < 0x80) {
+                if (lowerCase && ch >= 'A' && ch <= 'Z') {
+                    ch += 'a' - 'A';
+                }
+                buffer.put((byte) ch);
+            } else if (ch < 0x800) {
+                buffer.put((byte) (0xc0 | (ch >> 6)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            } else if (ch < 0xd800 || ch > 0xdfff) {
+                buffer.put((byte) (0xe0 | (ch >> 12)));
+                buffer.put((byte) (0x80 | ((ch >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            } else {
+                int low = i + 1 < len ? string.charAt(i + 1) : 0;
+                if (ch > 0xdbff || low < 0xdc00 || low > 0xdfff) {
+                    buffer.put((byte) '?');
+                } else {
+                    int codePoint = 0x010000 + (((ch & 0x3ff) << 10) | (low & 0x3ff));
+                    buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+                    i++;
+                }
+            }
+        }
+    }
+
+    /** Size of the string as a quoted and escaped JSON string, without the quotes. */
+    static int jsonEscapedSizeInBytes(String string) {
+        int sizeInBytes = utf8SizeInBytes(string);
+        for (int i = 0, len = string.length(); i < len; i++) {
+            char c = string.charAt(i);
+            if (c < 0x20) {
+                sizeInBytes += replacementFor(c) != null ? 1 : 5;
+            } else if (c == '"' || c == '\\') {
+                sizeInBytes += 1;
+            } else if (c == '\u2028' || c == '\u2029') {
+                sizeInBytes += 3; // 6 byte escape instead of 3 byte UTF-8
+            }
+        }
+        return sizeInBytes;
+    }
+
+    /** Writes the escaped JSON string, without the quotes. */
+    static void writeJsonEscaped(ByteBuffer buffer, String string, boolean lowerCase) {
+        int afterReplacement = 0;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            byte[] replacement;
+            if (c < 0x20) {
+                replacement = replacementFor(c);
+                if (replacement == null) {
+                    replacement = controlCharReplacement(c);
+                }
+            } else if (c == '"') {
+                replacement = QUOTE;
+            } else if (c == '\\') {
+                replacement = BACKSLASH;
+            } else if (c == '\u2028') {
+                replacement = U2028;
+            } else if (c == '\u2029') {
+                replacement = U2029;
+            } else {
+                continue;
+            }
+            if (afterReplacement < i) {
+                writeUtf8(buffer, string, afterReplacement, i, lowerCase);
+            }
+            buffer.put(replacement);
+            afterReplacement = i + 1;
+        }
+        if (afterReplacement == 0) {
+            writeUtf8(buffer, string, lowerCase);
+        } else if (afterReplacement < length) {
+            writeUtf8(buffer, string, afterReplacement, length, lowerCase);
+        }
+    }
+
+    private static void writeUtf8(ByteBuffer buffer, String string, int begin, int end,
+        boolean lowerCase) {
+        // substrings only happen when escaping, which is rare in tags and names
+        writeUtf8(buffer, string.substring(begin, end), lowerCase);
+    }
+
+    private static final byte[] QUOTE = {'\\', '"'};
+    private static final byte[] BACKSLASH = {'\\', '\\'};
+    private static final byte[] U2028 = "\\u2028".getBytes();
+    private static final byte[] U2029 = "\\u2029".getBytes();
+    private static final byte[][] CONTROL_CHARS = new byte[0x20][];
+
+    static {
+        CONTROL_CHARS['\b'] = "\\b".getBytes();
+        CONTROL_CHARS['\t'] = "\\t".getBytes();
+        CONTROL_CHARS['\n'] = "\\n".getBytes();
+        CONTROL_CHARS['\f'] = "\\f".getBytes();
+        CONTROL_CHARS['\r'] = "\\r".getBytes();
+    }
+
+    private static byte[] replacementFor(char c) {
+        return CONTROL_CHARS[c];
+    }
+
+    private static final byte[][] UNICODE_ESCAPES = new byte[0x20][];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            UNICODE_ESCAPES[i] = String.format("\\u%04x", i).getBytes();
+        }
+    }
+
+    private static byte[] controlCharReplacement(char c) {
+        return UNICODE_ESCAPES[c];
+    }
+
+    static int varintSizeInBytes(int v) {
+        if ((v & (0xffffffff << 7)) == 0) {
+            return 1;
+        }
+        if ((v & (0xffffffff << 14)) == 0) {
+            return 2;
+        }
+        if ((v & (0xffffffff << 21)) == 0) {
+            return 3;
+        }
+        if ((v & (0xffffffff << 28)) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+
+    static int varintSizeInBytes(long v) {
+        int size = 1;
+        while ((v & ~0x7fL) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarint(ByteBuffer buffer, int v) {
+        while ((v & ~0x7f) != 0) {
+            buffer.put((byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    static void writeVarint(ByteBuffer buffer, long v) {
+        while ((v & ~0x7fL) != 0) {
+            buffer.put((byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    /** Protocol buffers fixed64 fields are little-endian */
+    static void writeLongLe(ByteBuffer buffer, long v) {
+        for (int i = 0; i < 8; i++) {
+            buffer.put((byte) (v & 0xff));
+            v >>>= 8;
+        }
+    }
+
+    /** Big-endian, as used for zipkin proto3 ID fields */
+    static void writeLongBe(ByteBuffer buffer, long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer.put((byte) ((v >>> shift) & 0xff));
+        }
+    }
+
+    static boolean isIpv6(String ip) {
+        return ip.indexOf(':') != -1;
+    }
+
+    /**
+     * Parses a validated IPv4 literal into the first 4 bytes of the output. Returns false if
+     * malformed.
+     */
+    static boolean parseIpv4(String ip, byte[] out) {
+        int octet = 0, value = 0, digits = 0;
+        for (int i = 0, length = ip.length(); i < length; i++) {
+            char c = ip.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || octet == 3) {
+                    return false;
+                }
+                out[octet++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                value = value * 10 + (c - '0');
+                if (value > 255) {
+                    return false;
+                }
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || octet != 3) {
+            return false;
+        }
+        out[3] = (byte) value;
+        return true;
+    }
+
+    /**
+     * Parses an IPv6 literal without embedded IPv4 into the 16 byte output. Returns false if
+     * malformed.
+     */
+    static boolean parseIpv6(String ip, byte[] out) {
+        int length = ip.length(), i = 0, pos = 0, compressAt = -1;
+        if (length >= 2 && ip.charAt(0) == ':' && ip.charAt(1) == ':') {
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < length) {
+            if (pos == 16) {
+                return false;
+            }
+            int value = 0, digits = 0;
+            for (; i < length && ip.charAt(i) != ':'; i++) {
+                int digit = Character.digit(ip.charAt(i), 16);
+                if (digit == -1 || digits == 4) {
+                    return false;
+                }
+                value = (value << 4) | digit;
+                digits++;
+            }
+            if (digits == 0) {
+                return false;
+            }
+            out[pos++] = (byte) (value >> 8);
+            out[pos++] = (byte) value;
+            if (i < length) { // skip the colon
+                if (++i == length) {
+                    return false; // trailing colon
+                }
+                if (ip.charAt(i) == ':') {
+                    if (compressAt != -1) {
+                        return false; // only one "::" is allowed
+                    }
+                    compressAt = pos;
+                    i++;
+                }
+            }
+        }
+        if (compressAt == -1) {
+            return pos == 16;
+        }
+        int tail = pos - compressAt;
+        System.arraycopy(out, compressAt, out, 16 - tail, tail);
+        for (int j = compressAt; j < 16 - tail; j++) {
+            out[j] = 0;
+        }
+        return true;
+    }
+
+    private WriteBuffers() {
+    }
+}
@@ -6,6 +6,7 @@ import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
 import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan.AnnotationConsumer;
 import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan.TagConsumer;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
 import org.apache.skywalking.apm.agent.core.util.Assert;
 import zipkin2.Endpoint;
 import zipkin2.Span;
@@ -33,6 +34,25 @@ public final class MutableSpanConverter {
             Endpoint.newBuilder().serviceName(localServiceName).ip(localIp).port(localPort).build();
     }
 
+    /**
+     * Converts the span and its identifiers into a zipkin span. This is shared between the
+     * synchronous reporting path and the {@link
+     * org.apache.skywalking.apm.agent.core.context.reporter.AsyncReporter} drain thread.
+     */
+    public Span convert(TraceContext context,MutableSpan span) {
+        Span.Builder builderWithContextData = Span.newBuilder()
+            .traceId(context.traceIdString())
+            .parentId(context.parentIdString())
+            .id(context.spanIdString());
+
+        if (context.debug()) {
+            builderWithContextData.debug(true);
+        }
+
+        convert(span,builderWithContextData);
+        return builderWithContextData.build();
+    }
+
     void convert(MutableSpan span,Span.Builder result) {
         result.name(span.name());
 
@@ -80,7 +100,7 @@ public final class MutableSpanConverter {
             ip = localIp;
         }
         if (port <= 0) {
-            port = 0;
+            port = localPort;
         }
         if (localServiceName.equals(serviceName)
             && (Objects.equals(localIp, ip))
@@ -3,8 +3,10 @@ package org.apache.skywalking.apm.agent.core.context.internal.handler;
 import org.apache.skywalking.apm.agent.core.context.ErrorParser;
 import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
 import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.internal.codec.MutableSpanBytesEncoder;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
-import zipkin2.Span;
+import org.apache.skywalking.apm.agent.core.context.reporter.AsyncReporter;
 import zipkin2.reporter.Reporter;
 
 
@@ -13,11 +15,21 @@ public final class ZipkinFinishedSpanHandler extends FinishedSpanHandler {
 
     private final Reporter<zipkin2.Span> spanReporter;
     private final MutableSpanConverter converter;
+    // When present, encoding is deferred to the reporter's thread instead of the caller's
+    @Nullable
+    private final AsyncReporter asyncReporter;
 
     public ZipkinFinishedSpanHandler(Reporter<zipkin2.Span> spanReporter, ErrorParser errorParser
         ,String serviceName,String ip,int port) {
         this.spanReporter = spanReporter;
         this.converter = new MutableSpanConverter(errorParser,serviceName,ip,port);
+        if (spanReporter instanceof AsyncReporter) {
+            asyncReporter = (AsyncReporter) spanReporter;
+            asyncReporter.encoder(MutableSpanBytesEncoder.create(asyncReporter.encoding(),
+                errorParser,serviceName,ip,port));
+        } else {
+            asyncReporter = null;
+        }
     }
 
     @Override
@@ -26,17 +38,12 @@ public final class ZipkinFinishedSpanHandler extends FinishedSpanHandler {
             return true;
         }
 
-        Span.Builder builderWithContextData = Span.newBuilder()
-            .traceId(context.traceIdString())
-            .parentId(context.parentIdString())
-            .id(context.spanIdString());
-
-        if (context.debug()) {
-            builderWithContextData.debug(true);
+        if (asyncReporter != null) {
+            asyncReporter.report(context,span);
+            return true;
         }
 
-        converter.convert(span,builderWithContextData);
-        spanReporter.report(builderWithContextData.build());
+        spanReporter.report(converter.convert(context,span));
         return true;
     }
 
@@ -0,0 +1,340 @@
+package org.apache.skywalking.apm.agent.core.context.internal.recorder;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.skywalking.apm.agent.core.context.Clock;
+import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Similar to Finagle's deadline span map: spans which are neither finished nor abandoned within a
+ * timeout are flushed by a background thread, with a "brave.flush" annotation added to them.
+ *
+ * <p>Spans are recorded in a fixed set of arenas: open-addressed tables keyed by the primitive
+ * (traceIdHigh, traceId, spanId) tuple and the shared flag. Starting a span costs no key or weak
+ * reference allocation.
+ *
+ * <p>The arena of a span is selected by the hash of its IDs, so a span is always in the same arena
+ * whichever thread looks it up, and threads need no registration. Lookup and creation take only
+ * the arena's lock, which makes creation unique. There are several arenas per CPU, so their locks
+ * are rarely contended.
+ *
+ * @see WeakPendingSpans for the GC driven alternative
+ */
+public final class ArenaPendingSpans extends PendingSpans {
+
+    /** The log2 of the arena count: a power of two of at least four arenas per CPU. */
+    static final int ARENA_BITS = Math.min(10, Math.max(4,
+        32 - Integer.numberOfLeadingZeros(Runtime.getRuntime().availableProcessors() * 4 - 1)));
+
+    private final long timeoutNanos;
+    private final long sweepIntervalNanos;
+    private final Arena[] arenas = new Arena[1 << ARENA_BITS];
+    private final Thread sweeper;
+    private volatile boolean closed;
+
+    /**
+     * @param timeout how long a span can be pending before it is flushed as an orphan
+     */
+    public ArenaPendingSpans(Clock clock, FinishedSpanHandler handler, AtomicBoolean noop,
+        long timeout, TimeUnit unit) {
+        super(clock, handler, noop);
+        Assert.isTrue(timeout > 0, "timeout should be positive");
+        Assert.notNull(unit, "unit can not be null");
+        this.timeoutNanos = unit.toNanos(timeout);
+        // sweeping more often than the timeout bounds how late an orphan is flushed
+        this.sweepIntervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10),
+            Math.min(timeoutNanos / 4, TimeUnit.SECONDS.toNanos(1)));
+        for (int i = 0; i < arenas.length; i++) {
+            arenas[i] = new Arena();
+        }
+        this.sweeper = new Thread(new Sweeper(), "ArenaPendingSpans sweeper");
+        this.sweeper.setDaemon(true);
+        this.sweeper.start();
+    }
+
+    @Override
+    public PendingSpan getOrCreate(TraceContext context, boolean start) {
+        Assert.notNull(context, "context can not be null");
+        long traceIdHigh = context.traceIdHigh(), traceId = context.traceId();
+        long spanId = context.spanId();
+        boolean shared = context.shared();
+        int hash = hash(traceIdHigh, traceId, spanId, shared);
+
+        Arena arena = arenaOf(hash);
+        PendingSpan result = arena.get(traceIdHigh, traceId, spanId, shared, hash);
+        if (result != null) {
+            return result;
+        }
+        // looked up outside of the arena's lock, as the parent is usually in another arena
+        TickClock parentClock = getClockFromParent(context);
+        synchronized (arena) {
+            result = arena.get(traceIdHigh, traceId, spanId, shared, hash);
+            if (result == null) {
+                result = newPendingSpan(context, start, parentClock);
+                arena.put(context, result, hash, System.nanoTime() + timeoutNanos);
+            }
+            return result;
+        }
+    }
+
+    /** Trace contexts are equal only on trace ID and span ID. try to get the parent's clock */
+    @Nullable
+    private TickClock getClockFromParent(TraceContext context) {
+        long parentId = context.parentIdAsLong();
+
+        // NOTE: we still look for lookup key even on root span, as a client span can be root, and a
+        // server can share the same ID. Essentially, a shared span is similar to a child.
+        if (!context.shared() && parentId == 0L) {
+            return null;
+        }
+        long spanId = parentId != 0L ? parentId : context.spanId();
+        long traceIdHigh = context.traceIdHigh(), traceId = context.traceId();
+        int hash = hash(traceIdHigh, traceId, spanId, false);
+        PendingSpan parent = arenaOf(hash).get(traceIdHigh, traceId, spanId, false, hash);
+        return parent != null ? (TickClock) parent.clock() : null;
+    }
+
+    @Override
+    public boolean remove(TraceContext context) {
+        Assert.notNull(context, "context can not be null");
+        long traceIdHigh = context.traceIdHigh(), traceId = context.traceId();
+        long spanId = context.spanId();
+        boolean shared = context.shared();
+        int hash = hash(traceIdHigh, traceId, spanId, shared);
+        return arenaOf(hash).remove(traceIdHigh, traceId, spanId, shared, hash) != null;
+    }
+
+    /** Uses the high bits of the hash, as the low bits select the slot in the arena. */
+    private Arena arenaOf(int hash) {
+        return arenas[hash >>> (32 - ARENA_BITS)];
+    }
+
+    /** Stops the sweeper thread. Pending spans are left as-is. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(sweeper);
+    }
+
+    /** Flushes spans whose deadline passed. */
+    void sweep(long nanoTime) {
+        ArrayList<Object> expired = new ArrayList<>();
+        for (Arena arena : arenas) {
+            arena.drainExpired(nanoTime, expired);
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        long flushTime = 0L;
+        boolean noop = isNoop();
+        for (int i = 0; i < expired.size(); i += 2) {
+            TraceContext context = (TraceContext) expired.get(i);
+            if (noop || !Boolean.TRUE.equals(context.sampled())) {
+                continue;
+            }
+            if (flushTime == 0L) {
+                flushTime = clock.currentTimeMicroseconds();
+            }
+            flush(context, (PendingSpan) expired.get(i + 1), flushTime, "timeout");
+        }
+    }
+
+    /** Approximate count of pending spans */
+    int size() {
+        int size = 0;
+        for (Arena arena : arenas) {
+            size += arena.size;
+        }
+        return size;
+    }
+
+    static int hash(long traceIdHigh, long traceId, long spanId, boolean shared) {
+        long h = traceIdHigh * 0x9E3779B97F4A7C15L;
+        h = (h ^ traceId) * 0x9E3779B97F4A7C15L;
+        h = (h ^ spanId) * 0x9E3779B97F4A7C15L;
+        int result = (int) (h ^ (h >>> 32));
+        return shared ? ~result : result;
+    }
+
+    @Override
+    public String toString() {
+        return "ArenaPendingSpans{size=" + size() + ", arenas=" + arenas.length + "}";
+    }
+
+    final class Sweeper implements Runnable {
+
+        @Override
+        public void run() {
+            while (!closed) {
+                LockSupport.parkNanos(this, sweepIntervalNanos);
+                if (closed) {
+                    break;
+                }
+                try {
+                    sweep(System.nanoTime());
+                } catch (RuntimeException e) {
+                    Platform.get().log("error sweeping {0}", ArenaPendingSpans.this, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressed table with linear probing and backward shift deletion. The three ID fields of a
+     * slot are adjacent in {@link #ids}, so a probe reads one or two cache lines and dereferences
+     * nothing until the IDs match.
+     *
+     * <p>Access is guarded by the arena's monitor.
+     */
+    static final class Arena {
+
+        static final int INITIAL_CAPACITY = 16;
+
+        long[] ids; // traceIdHigh, traceId, spanId per slot
+        TraceContext[] contexts;
+        PendingSpan[] values;
+        long[] deadlines;
+        volatile int size;
+
+        Arena() {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            ids = new long[capacity * 3];
+            contexts = new TraceContext[capacity];
+            values = new PendingSpan[capacity];
+            deadlines = new long[capacity];
+        }
+
+        synchronized PendingSpan get(long traceIdHigh, long traceId, long spanId, boolean shared,
+            int hash) {
+            int slot = indexOf(traceIdHigh, traceId, spanId, shared, hash);
+            return slot != -1 ? values[slot] : null;
+        }
+
+        synchronized void put(TraceContext context, PendingSpan value, int hash, long deadline) {
+            if ((size + 1) * 2 > values.length) {
+                resize(values.length * 2);
+            }
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot * 3] = context.traceIdHigh();
+            ids[slot * 3 + 1] = context.traceId();
+            ids[slot * 3 + 2] = context.spanId();
+            contexts[slot] = context;
+            values[slot] = value;
+            deadlines[slot] = deadline;
+            size++;
+        }
+
+        @Nullable
+        synchronized PendingSpan remove(long traceIdHigh, long traceId, long spanId,
+            boolean shared, int hash) {
+            int slot = indexOf(traceIdHigh, traceId, spanId, shared, hash);
+            if (slot == -1) {
+                return null;
+            }
+            PendingSpan result = values[slot];
+            delete(slot);
+            return result;
+        }
+
+        /** Removes expired entries, adding their context and value to the output */
+        synchronized void drainExpired(long nanoTime, ArrayList<Object> output) {
+            if (size == 0) {
+                return;
+            }
+            for (int slot = 0; slot < values.length; ) {
+                if (values[slot] != null && nanoTime - deadlines[slot] >= 0) {
+                    output.add(contexts[slot]);
+                    output.add(values[slot]);
+                    delete(slot); // may shift a later entry into this slot, so revisit it
+                } else {
+                    slot++;
+                }
+            }
+        }
+
+        private int indexOf(long traceIdHigh, long traceId, long spanId, boolean shared,
+            int hash) {
+            if (size == 0) {
+                return -1;
+            }
+            int mask = values.length - 1;
+            for (int slot = hash & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                int i = slot * 3;
+                if (ids[i + 2] == spanId && ids[i + 1] == traceId && ids[i] == traceIdHigh
+                    && contexts[slot].shared() == shared) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /** Backward shift deletion: moves later entries of the probe sequence into the gap */
+        private void delete(int slot) {
+            int mask = values.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = homeSlot(next) & mask;
+                // move the entry if its home isn't cyclically within (gap, next]
+                if (gap <= next ? (home <= gap || home > next) : (home <= gap && home > next)) {
+                    move(next, gap);
+                    gap = next;
+                }
+            }
+            ids[gap * 3] = ids[gap * 3 + 1] = ids[gap * 3 + 2] = 0L;
+            contexts[gap] = null;
+            values[gap] = null;
+            deadlines[gap] = 0L;
+            size--;
+        }
+
+        private int homeSlot(int slot) {
+            int i = slot * 3;
+            return hash(ids[i], ids[i + 1], ids[i + 2], contexts[slot].shared());
+        }
+
+        private void move(int from, int to) {
+            System.arraycopy(ids, from * 3, ids, to * 3, 3);
+            contexts[to] = contexts[from];
+            values[to] = values[from];
+            deadlines[to] = deadlines[from];
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = ids;
+            TraceContext[] oldContexts = contexts;
+            PendingSpan[] oldValues = values;
+            long[] oldDeadlines = deadlines;
+            allocate(capacity);
+            int mask = capacity - 1;
+            for (int from = 0; from < oldValues.length; from++) {
+                if (oldValues[from] == null) {
+                    continue;
+                }
+                int i = from * 3;
+                int slot = hash(oldIds[i], oldIds[i + 1], oldIds[i + 2],
+                    oldContexts[from].shared()) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(oldIds, i, ids, slot * 3, 3);
+                contexts[slot] = oldContexts[from];
+                values[slot] = oldValues[from];
+                deadlines[slot] = oldDeadlines[from];
+            }
+        }
+    }
+}
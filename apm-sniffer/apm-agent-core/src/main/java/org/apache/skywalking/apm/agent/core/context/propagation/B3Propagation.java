@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.apache.skywalking.apm.agent.core.context.propagation.B3SinglePropagation.B3SingleExtractor;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
 import org.apache.skywalking.apm.agent.core.util.Assert;
@@ -84,17 +85,28 @@ public class B3Propagation<K> implements Propagation<K> {
 
     static final class B3Injector<C,K> implements Injector<C> {
 
+        static final byte[] ONE = {'1'}, ZERO = {'0'}; // shared, so never modified
+
         final B3Propagation<K> propagation;
 
         final Setter<C,K> setter;
 
+        @Nullable
+        final BytesSetter<C,K> bytesSetter;
+
+        @SuppressWarnings("unchecked")
         B3Injector(B3Propagation<K> propagation,Setter<C,K> setter) {
             this.propagation = propagation;
             this.setter = setter;
+            this.bytesSetter = setter instanceof BytesSetter ? (BytesSetter<C,K>) setter : null;
         }
 
         @Override
         public void inject(TraceContext traceContext, C carrier) {
+            if (bytesSetter != null) {
+                injectBytes(traceContext,carrier);
+                return;
+            }
             setter.put(carrier,propagation.traceIdKey,traceContext.traceIdString());
             setter.put(carrier,propagation.spanIdKey,traceContext.spanIdString());
             String parentId = traceContext.parentIdString();
@@ -107,6 +119,20 @@ public class B3Propagation<K> implements Propagation<K> {
                 setter.put(carrier,propagation.sampledKey,traceContext.sampled() ? "1" : "0");
             }
         }
+
+        void injectBytes(TraceContext traceContext, C carrier) {
+            bytesSetter.put(carrier,propagation.traceIdKey,traceContext.traceIdBytes());
+            bytesSetter.put(carrier,propagation.spanIdKey,traceContext.spanIdBytes());
+            byte[] parentId = traceContext.parentIdBytes();
+            if (parentId != null) {
+                bytesSetter.put(carrier,propagation.parentSpanIdKey,parentId);
+            }
+            if (traceContext.debug()) {
+                bytesSetter.put(carrier,propagation.debugKey,ONE);
+            } else if (traceContext.sampled() != null) {
+                bytesSetter.put(carrier,propagation.sampledKey,traceContext.sampled() ? ONE : ZERO);
+            }
+        }
     }
 
     @Override
@@ -6,6 +6,7 @@ import static org.apache.skywalking.apm.agent.core.context.internal.InternalProp
 import static org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation.FLAG_SAMPLED_SET;
 
 import java.util.Collections;
+import org.apache.skywalking.apm.agent.core.context.internal.BufferPool;
 import org.apache.skywalking.apm.agent.core.context.internal.HexCodec;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.internal.Platform;
@@ -54,9 +55,11 @@ public final class B3SingleFormat {
    * with the client.
    */
   public static String writeB3SingleFormatWithoutParentId(TraceContext context) {
-    char[] buffer = getCharBuffer();
+    char[] buffer = CHAR_BUFFERS.acquire();
     int length = writeB3SingleFormat(context, 0L, buffer);
-    return new String(buffer, 0, length);
+    String result = new String(buffer, 0, length);
+    CHAR_BUFFERS.release(buffer);
+    return result;
   }
 
   /**
@@ -64,9 +67,11 @@ public final class B3SingleFormat {
    * array or byte buffer values. For example, {@link ByteBuffer#wrap(byte[])} can wrap the result.
    */
   public static byte[] writeB3SingleFormatWithoutParentIdAsBytes(TraceContext context) {
-    char[] buffer = getCharBuffer();
+    char[] buffer = CHAR_BUFFERS.acquire();
     int length = writeB3SingleFormat(context, 0L, buffer);
-    return asciiToNewByteArray(buffer, length);
+    byte[] result = asciiToNewByteArray(buffer, length);
+    CHAR_BUFFERS.release(buffer);
+    return result;
   }
 
   /**
@@ -78,9 +83,14 @@ public final class B3SingleFormat {
    * reuses a client's span ID, prefer {@link #writeB3SingleFormatWithoutParentId(TraceContext)}.
    */
   public static String writeB3SingleFormat(TraceContext context) {
-    char[] buffer = getCharBuffer();
-    int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
-    return new String(buffer, 0, length);
+    String result = context.b3SingleString; // cached, as each injection of a context writes it
+    if (result == null) {
+      char[] buffer = CHAR_BUFFERS.acquire();
+      int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
+      result = context.b3SingleString = new String(buffer, 0, length);
+      CHAR_BUFFERS.release(buffer);
+    }
+    return result;
   }
 
   /**
@@ -88,9 +98,16 @@ public final class B3SingleFormat {
    * byte buffer values. For example, {@link ByteBuffer#wrap(byte[])} can wrap the result.
    */
   public static byte[] writeB3SingleFormatAsBytes(TraceContext context) {
-    char[] buffer = getCharBuffer();
-    int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
-    return asciiToNewByteArray(buffer, length);
+    return b3SingleFormatBytes(context).clone();
+  }
+
+  /** Like {@link #writeB3SingleFormatAsBytes}, but cached. Don't modify the result. */
+  static byte[] b3SingleFormatBytes(TraceContext context) {
+    byte[] result = context.b3SingleBytes;
+    if (result == null) {
+      result = context.b3SingleBytes = TraceContext.asciiBytes(writeB3SingleFormat(context));
+    }
+    return result;
   }
 
   private static int writeB3SingleFormat(TraceContext context, long parentId, char[] result) {
@@ -315,16 +332,7 @@ public final class B3SingleFormat {
     return result;
   }
 
-  private static final ThreadLocal<char[]> CHAR_BUFFER = new ThreadLocal<>();
-
-  private static char[] getCharBuffer() {
-    char[] charBuffer = CHAR_BUFFER.get();
-    if (charBuffer == null) {
-      charBuffer = new char[FORMAT_MAX_LENGTH];
-      CHAR_BUFFER.set(charBuffer);
-    }
-    return charBuffer;
-  }
+  private static final BufferPool<char[]> CHAR_BUFFERS = BufferPool.ofChars(FORMAT_MAX_LENGTH);
 
   private static boolean isLowerHex(char c) {
     return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
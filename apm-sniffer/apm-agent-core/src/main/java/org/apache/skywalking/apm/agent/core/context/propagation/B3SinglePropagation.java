@@ -2,6 +2,7 @@ package org.apache.skywalking.apm.agent.core.context.propagation;
 
 import java.util.Collections;
 import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
 import org.apache.skywalking.apm.agent.core.util.Assert;
@@ -51,13 +52,23 @@ public class B3SinglePropagation<K> implements Propagation<K> {
 
         private final Setter<C,K> setter;
 
+        @Nullable
+        private final BytesSetter<C,K> bytesSetter;
+
+        @SuppressWarnings("unchecked")
         B3SingleInjector(B3SinglePropagation<K> propagation,Setter<C,K> setter) {
             this.propagation = propagation;
             this.setter = setter;
+            this.bytesSetter = setter instanceof BytesSetter ? (BytesSetter<C,K>) setter : null;
         }
 
         @Override
         public void inject(TraceContext traceContext, C carrier) {
+            if (bytesSetter != null) {
+                bytesSetter.put(carrier,propagation.b3Key,
+                    B3SingleFormat.b3SingleFormatBytes(traceContext));
+                return;
+            }
             setter.put(carrier,propagation.b3Key,B3SingleFormat.writeB3SingleFormat(traceContext));
         }
     }
@@ -0,0 +1,133 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Implements the propagation format described in {@link TraceContextBinaryFormat}, for carriers
+ * with byte array values such as binary RPC metadata or messaging headers.
+ *
+ * <p>Values are read and written as bytes, so the setter must be a {@link BytesSetter} and the
+ * getter a {@link BytesGetter}. Keys can be of any type, for example byte arrays created by a
+ * custom {@link KeyFactory}.
+ *
+ * <p>Ex. to propagate as "grpc-trace-bin", with a correlation ID:
+ * <pre>{@code
+ * tracingBuilder.propagationFactory(ExtraFieldPropagation.newFactory(
+ *   BinaryPropagation.FACTORY, "x-vcap-request-id"));
+ * }</pre>
+ */
+public final class BinaryPropagation<K> implements Propagation<K> {
+
+    /** Propagates the binary trace context in the key "grpc-trace-bin". */
+    public static final Propagation.Factory FACTORY = newFactory("grpc-trace-bin");
+
+    public static Propagation.Factory newFactory(String keyName) {
+        Assert.hasText(keyName, "keyName is empty");
+        return new BinaryFactory(keyName);
+    }
+
+    static final class BinaryFactory extends Propagation.Factory {
+
+        final String keyName;
+
+        BinaryFactory(String keyName) {
+            this.keyName = keyName;
+        }
+
+        @Override
+        public <K> Propagation<K> create(KeyFactory<K> factory) {
+            return new BinaryPropagation<>(factory.create(keyName));
+        }
+
+        /** The caller's span ID is propagated without its parent, so servers can't share it. */
+        @Override
+        public boolean supportsJoin() {
+            return false;
+        }
+
+        /** The trace ID is always 128-bit in this format. */
+        @Override
+        public boolean requires128BitTraceId() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "BinaryPropagationFactory{" + keyName + "}";
+        }
+    }
+
+    private final K key;
+
+    private final List<K> fields;
+
+    private BinaryPropagation(K key) {
+        this.key = key;
+        this.fields = Collections.singletonList(key);
+    }
+
+    @Override
+    public List<K> keys() {
+        return fields;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <C> Injector<C> injector(Setter<C, K> setter) {
+        Assert.isTrue(setter instanceof BytesSetter, "setter must be a BytesSetter");
+        return new BinaryInjector<>(key, (BytesSetter<C, K>) setter);
+    }
+
+    static final class BinaryInjector<C, K> implements Injector<C> {
+
+        private final K key;
+
+        private final BytesSetter<C, K> setter;
+
+        BinaryInjector(K key, BytesSetter<C, K> setter) {
+            this.key = key;
+            this.setter = setter;
+        }
+
+        @Override
+        public void inject(TraceContext traceContext, C carrier) {
+            setter.put(carrier, key, TraceContextBinaryFormat.writeBinaryFormat(traceContext));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <C> Extractor<C> extractor(Getter<C, K> getter) {
+        Assert.isTrue(getter instanceof BytesGetter, "getter must be a BytesGetter");
+        return new BinaryExtractor<>(key, (BytesGetter<C, K>) getter);
+    }
+
+    static final class BinaryExtractor<C, K> implements Extractor<C> {
+
+        private final K key;
+
+        private final BytesGetter<C, K> getter;
+
+        BinaryExtractor(K key, BytesGetter<C, K> getter) {
+            this.key = key;
+            this.getter = getter;
+        }
+
+        @Override
+        public TraceContextOrSamplingFlags extract(C carrier) {
+            Assert.notNull(carrier, "carrier can not be null");
+            byte[] value = getter.getBytes(carrier, key);
+            if (value == null) {
+                return TraceContextOrSamplingFlags.EMPTY;
+            }
+            TraceContextOrSamplingFlags extracted =
+                TraceContextBinaryFormat.parseBinaryFormat(value);
+            // if null, the trace context is malformed so return empty
+            return extracted != null ? extracted : TraceContextOrSamplingFlags.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Accepts several propagation formats, extracting with the first that finds trace data in the
+ * carrier, and injecting all of them.
+ *
+ * <p>Ex. to accept W3C, B3 single and multiple header formats, in that order of preference:
+ * <pre>{@code
+ * tracingBuilder.propagationFactory(ExtraFieldPropagation.newFactory(
+ *   CompositePropagation.newFactory(W3CPropagation.FACTORY, B3Propagation.FACTORY),
+ *   "x-vcap-request-id"));
+ * }</pre>
+ *
+ * <p>Place the composite inside {@link ExtraFieldPropagation}, as above, not the other way around:
+ * extraction stops at the first format with a result, and extra fields always produce one.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>{@link #keys()} is the union of the keys of each format, computed once. During extraction,
+ * formats read the carrier through a small cache holding the value of each of these keys, so a
+ * header is read at most once per extraction even when several formats look for it, for example
+ * "b3". Absent headers are cached too, as most formats won't find theirs. This matters for carriers
+ * such as servlet requests, where each read scans the headers.
+ */
+public final class CompositePropagation<K> implements Propagation<K> {
+
+    /**
+     * @param formats the formats to extract, in order of preference. All of them are injected.
+     */
+    public static Propagation.Factory newFactory(Propagation.Factory... formats) {
+        Assert.notNull(formats, "formats can not be null");
+        Assert.isTrue(formats.length > 0, "formats is empty");
+        for (int i = 0; i < formats.length; i++) {
+            Assert.notNull(formats[i], "formats[" + i + "] can not be null");
+        }
+        return new CompositeFactory(formats.clone());
+    }
+
+    static final class CompositeFactory extends Propagation.Factory {
+
+        final Propagation.Factory[] formats;
+
+        CompositeFactory(Propagation.Factory[] formats) {
+            this.formats = formats;
+        }
+
+        @Override
+        public <K> Propagation<K> create(KeyFactory<K> factory) {
+            return new CompositePropagation<>(this, factory);
+        }
+
+        /** Joining is only supported when all formats support it, as any of them may extract. */
+        @Override
+        public boolean supportsJoin() {
+            for (Propagation.Factory format : formats) {
+                if (!format.supportsJoin()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean requires128BitTraceId() {
+            for (Propagation.Factory format : formats) {
+                if (format.requires128BitTraceId()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public TraceContext decorate(TraceContext context) {
+            for (Propagation.Factory format : formats) {
+                context = format.decorate(context);
+            }
+            return context;
+        }
+
+        @Override
+        public String toString() {
+            return "CompositePropagationFactory" + Arrays.toString(formats);
+        }
+    }
+
+    private final Propagation<K>[] formats;
+
+    private final List<K> keys;
+
+    @SuppressWarnings("unchecked")
+    private CompositePropagation(CompositeFactory factory, KeyFactory<K> keyFactory) {
+        this.formats = (Propagation<K>[]) new Propagation<?>[factory.formats.length];
+        List<K> keys = new ArrayList<>();
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = factory.formats[i].create(keyFactory);
+            for (K key : formats[i].keys()) {
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    @Override
+    public List<K> keys() {
+        return keys;
+    }
+
+    @Override
+    public <C> Injector<C> injector(Setter<C, K> setter) {
+        return new CompositeInjector<>(this, setter);
+    }
+
+    static final class CompositeInjector<C, K> implements Injector<C> {
+
+        private final Injector<C>[] injectors;
+
+        @SuppressWarnings("unchecked")
+        CompositeInjector(CompositePropagation<K> propagation, Setter<C, K> setter) {
+            this.injectors = (Injector<C>[]) new Injector<?>[propagation.formats.length];
+            for (int i = 0; i < injectors.length; i++) {
+                injectors[i] = propagation.formats[i].injector(setter);
+            }
+        }
+
+        @Override
+        public void inject(TraceContext traceContext, C carrier) {
+            for (Injector<C> injector : injectors) {
+                injector.inject(traceContext, carrier);
+            }
+        }
+    }
+
+    @Override
+    public <C> Extractor<C> extractor(Getter<C, K> getter) {
+        return new CompositeExtractor<>(this, getter);
+    }
+
+    static final class CompositeExtractor<C, K> implements Extractor<C> {
+
+        final Object[] keys;
+
+        final Getter<C, K> getter;
+
+        private final Extractor<CarrierCache<C, K>>[] extractors;
+
+        @SuppressWarnings("unchecked")
+        CompositeExtractor(CompositePropagation<K> propagation, Getter<C, K> getter) {
+            this.keys = propagation.keys.toArray();
+            this.getter = getter;
+            this.extractors =
+                (Extractor<CarrierCache<C, K>>[]) new Extractor<?>[propagation.formats.length];
+            Getter<CarrierCache<C, K>, K> cachingGetter;
+            // Binary values aren't cached, as usually only one format reads them
+            if (getter instanceof BytesGetter) {
+                final BytesGetter<C, K> bytesGetter = (BytesGetter<C, K>) getter;
+                cachingGetter = new BytesGetter<CarrierCache<C, K>, K>() {
+                    @Override
+                    public byte[] getBytes(CarrierCache<C, K> cache, K key) {
+                        return bytesGetter.getBytes(cache.carrier, key);
+                    }
+
+                    @Override
+                    public String get(CarrierCache<C, K> cache, K key) {
+                        return cache.get(key);
+                    }
+                };
+            } else {
+                cachingGetter = new Getter<CarrierCache<C, K>, K>() {
+                    @Override
+                    public String get(CarrierCache<C, K> cache, K key) {
+                        return cache.get(key);
+                    }
+                };
+            }
+            for (int i = 0; i < extractors.length; i++) {
+                extractors[i] = propagation.formats[i].extractor(cachingGetter);
+            }
+        }
+
+        @Override
+        public TraceContextOrSamplingFlags extract(C carrier) {
+            Assert.notNull(carrier, "carrier can not be null");
+            CarrierCache<C, K> cache = new CarrierCache<>(this, carrier);
+            for (Extractor<CarrierCache<C, K>> extractor : extractors) {
+                TraceContextOrSamplingFlags extracted = extractor.extract(cache);
+                if (!TraceContextOrSamplingFlags.EMPTY.equals(extracted)) {
+                    return extracted;
+                }
+            }
+            return TraceContextOrSamplingFlags.EMPTY;
+        }
+    }
+
+    /** Values read from the carrier during one extraction, indexed like the keys. */
+    static final class CarrierCache<C, K> {
+
+        static final String ABSENT = new String("absent"); // compared by identity
+
+        final CompositeExtractor<C, K> extractor;
+
+        final C carrier;
+
+        final String[] values; // null until read
+
+        CarrierCache(CompositeExtractor<C, K> extractor, C carrier) {
+            this.extractor = extractor;
+            this.carrier = carrier;
+            this.values = new String[extractor.keys.length];
+        }
+
+        String get(K key) {
+            int index = indexOf(extractor.keys, key);
+            if (index == -1) { // not a declared key, so don't cache it
+                return extractor.getter.get(carrier, key);
+            }
+            String value = values[index];
+            if (value == null) {
+                value = extractor.getter.get(carrier, key);
+                values[index] = value != null ? value : ABSENT;
+                return value;
+            }
+            return value != ABSENT ? value : null;
+        }
+
+        /** Keys are usually the same instances the formats declared, so check identity first. */
+        static int indexOf(Object[] keys, Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.apache.skywalking.apm.agent.core.context.internal.HexCodec.lenientLowerHexToUnsignedLong;
+
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.ScopeDecorator;
+
+/**
+ * Adds correlation properties "traceId" and "spanId" to a logging context, such as SLF4J's MDC,
+ * when a scope is created, and restores the previous values when it is closed.
+ *
+ * <h3>Design notes</h3>
+ *
+ * <p>Some logging contexts copy their map on each write, so this writes as little as it can. A
+ * child span usually stays in the same trace, so the trace ID is compared against the previous
+ * value without encoding it, and isn't written again. The span ID is the one cached on the {@link
+ * TraceContext}, so encoding happens at most once per span. When nothing changed, the scope is
+ * returned as-is.
+ *
+ * <p>Ex.
+ * <pre>{@code
+ * tracing = Tracing.newBuilder()
+ *                  .currentTraceContext(ThreadLocalCurrentTraceContext.newBuilder()
+ *                    .addScopeDecorator(MDCScopeDecorator.create())
+ *                    .build()
+ *                  ).build();
+ * }</pre>
+ */
+public abstract class CorrelationFieldScopeDecorator implements ScopeDecorator {
+
+    static final String TRACE_ID = "traceId", SPAN_ID = "spanId";
+
+    /** Returns the correlation property of the specified name, or null if absent. */
+    @Nullable
+    protected abstract String get(String key);
+
+    /** Replaces the correlation property of the specified name. */
+    protected abstract void put(String key, String value);
+
+    /** Removes the correlation property of the specified name. */
+    protected abstract void remove(String key);
+
+    @Override
+    public Scope decorateScope(@Nullable TraceContext currentSpan, Scope scope) {
+        String previousTraceId = get(TRACE_ID), previousSpanId = get(SPAN_ID);
+        boolean traceIdChanged, spanIdChanged;
+        if (currentSpan != null) {
+            traceIdChanged = !isTraceId(previousTraceId, currentSpan);
+            if (traceIdChanged) {
+                put(TRACE_ID, currentSpan.traceIdString());
+            }
+            String spanId = currentSpan.spanIdString();
+            spanIdChanged = !spanId.equals(previousSpanId);
+            if (spanIdChanged) {
+                put(SPAN_ID, spanId);
+            }
+        } else {
+            traceIdChanged = previousTraceId != null;
+            if (traceIdChanged) {
+                remove(TRACE_ID);
+            }
+            spanIdChanged = previousSpanId != null;
+            if (spanIdChanged) {
+                remove(SPAN_ID);
+            }
+        }
+        if (!traceIdChanged && !spanIdChanged) {
+            return scope;
+        }
+        return new CorrelationFieldScope(this, scope, traceIdChanged ? previousTraceId : null,
+            spanIdChanged ? previousSpanId : null, traceIdChanged, spanIdChanged);
+    }
+
+    /** Returns true if the hex string is the trace ID of the context, without encoding it. */
+    static boolean isTraceId(@Nullable String traceIdString, TraceContext context) {
+        if (traceIdString == null) {
+            return false;
+        }
+        long traceIdHigh = context.traceIdHigh();
+        if (traceIdString.length() != (traceIdHigh != 0L ? 32 : 16)) {
+            return false;
+        }
+        int index = 0;
+        if (traceIdHigh != 0L) {
+            if (lenientLowerHexToUnsignedLong(traceIdString, 0, 16) != traceIdHigh) {
+                return false;
+            }
+            index = 16;
+        }
+        return lenientLowerHexToUnsignedLong(traceIdString, index, index + 16) == context.traceId();
+    }
+
+    void replace(String key, @Nullable String value) {
+        if (value != null) {
+            put(key, value);
+        } else {
+            remove(key);
+        }
+    }
+
+    static final class CorrelationFieldScope implements Scope {
+
+        final CorrelationFieldScopeDecorator decorator;
+        final Scope delegate;
+        @Nullable
+        final String previousTraceId, previousSpanId;
+        final boolean traceIdChanged, spanIdChanged;
+
+        CorrelationFieldScope(CorrelationFieldScopeDecorator decorator, Scope delegate,
+            @Nullable String previousTraceId, @Nullable String previousSpanId,
+            boolean traceIdChanged, boolean spanIdChanged) {
+            this.decorator = decorator;
+            this.delegate = delegate;
+            this.previousTraceId = previousTraceId;
+            this.previousSpanId = previousSpanId;
+            this.traceIdChanged = traceIdChanged;
+            this.spanIdChanged = spanIdChanged;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            if (traceIdChanged) {
+                decorator.replace(TRACE_ID, previousTraceId);
+            }
+            if (spanIdChanged) {
+                decorator.replace(SPAN_ID, previousSpanId);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
@@ -2,8 +2,6 @@ package org.apache.skywalking.apm.agent.core.context.propagation;
 
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -59,14 +57,18 @@ public abstract class CurrentTraceContext {
      */
     public abstract Scope newScope(@Nullable TraceContext currentSpan);
 
-    private final List<ScopeDecorator> scopeDecorators;
+    static final ScopeDecorator[] NO_SCOPE_DECORATORS = new ScopeDecorator[0];
+
+    // Flattened at build time, so decorating a scope is a loop over an array, or nothing when empty
+    private final ScopeDecorator[] scopeDecorators;
 
     protected CurrentTraceContext() {
-        this.scopeDecorators = Collections.emptyList();
+        this.scopeDecorators = NO_SCOPE_DECORATORS;
     }
 
     protected CurrentTraceContext(Builder builder) {
-        this.scopeDecorators = new ArrayList<>(builder.scopeDecorators);
+        this.scopeDecorators = builder.scopeDecorators.isEmpty() ? NO_SCOPE_DECORATORS
+            : builder.scopeDecorators.toArray(new ScopeDecorator[0]);
     }
 
     /**
@@ -90,8 +92,9 @@ public abstract class CurrentTraceContext {
      * }</pre>
      */
     protected Scope decorateScope(@Nullable TraceContext currentSpan, Scope scope) {
-        for (ScopeDecorator scopeDecorator : scopeDecorators) {
-            scope = scopeDecorator.decorateScope(currentSpan, scope);
+        ScopeDecorator[] scopeDecorators = this.scopeDecorators;
+        for (int i = 0, length = scopeDecorators.length; i < length; i++) {
+            scope = scopeDecorators[i].decorateScope(currentSpan, scope);
         }
         return scope;
     }
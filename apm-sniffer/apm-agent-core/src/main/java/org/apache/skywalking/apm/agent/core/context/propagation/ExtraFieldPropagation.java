@@ -14,6 +14,7 @@ import java.util.Set;
 import org.apache.skywalking.apm.agent.core.context.Tracing;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.internal.PredefinedPropagationFields;
+import org.apache.skywalking.apm.agent.core.context.internal.PredefinedPropagationFields.FieldIndex;
 import org.apache.skywalking.apm.agent.core.context.internal.PropagationFields;
 import org.apache.skywalking.apm.agent.core.context.internal.PropagationFieldsFactory;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
@@ -419,16 +420,20 @@ public final class ExtraFieldPropagation<K> implements Propagation<K> {
         public TraceContextOrSamplingFlags extract(C carrier) {
             TraceContextOrSamplingFlags result = delegate.extract(carrier);
 
-            // always allocate in case fields are added late
-            Extra fields = propagation.factory.extraFactory.create();
+            // Only allocate when a field is present. Otherwise, decorating the context of the next
+            // span adds empty fields, in case they are set late.
+            Extra fields = null;
             for (int i = 0, length = propagation.keys.size(); i < length; i++) {
                 String maybeValue = getter.get(carrier, propagation.keys.get(i));
                 if (maybeValue == null) {
                     continue;
                 }
+                if (fields == null) {
+                    fields = propagation.factory.extraFactory.create();
+                }
                 fields.put(propagation.factory.keyToField[i], maybeValue);
             }
-            return result.toBuilder().addExtra(fields).build();
+            return fields != null ? result.toBuilder().addExtra(fields).build() : result;
         }
     }
 
@@ -454,10 +459,10 @@ public final class ExtraFieldPropagation<K> implements Propagation<K> {
 
     static final class ExtraFactory extends PropagationFieldsFactory<Extra> {
 
-        final String[] fieldNames;
+        final FieldIndex fieldIndex; // resolved once, shared by all fields of this factory
 
         ExtraFactory(String[] fieldNames) {
-            this.fieldNames = fieldNames;
+            this.fieldIndex = FieldIndex.create(fieldNames);
         }
 
         @Override
@@ -467,12 +472,12 @@ public final class ExtraFieldPropagation<K> implements Propagation<K> {
 
         @Override
         protected Extra create() {
-            return new Extra(fieldNames);
+            return new Extra(fieldIndex);
         }
 
         @Override
         protected Extra create(Extra parent) {
-            return new Extra(parent, fieldNames);
+            return new Extra(parent, fieldIndex);
         }
 
         @Override
@@ -483,12 +488,12 @@ public final class ExtraFieldPropagation<K> implements Propagation<K> {
 
     static final class Extra extends PredefinedPropagationFields {
 
-        Extra(String... fieldNames) {
-            super(fieldNames);
+        Extra(FieldIndex fieldIndex) {
+            super(fieldIndex);
         }
 
-        Extra(Extra parent, String... fieldNames) {
-            super(parent, fieldNames);
+        Extra(Extra parent, FieldIndex fieldIndex) {
+            super(parent, fieldIndex);
         }
     }
 
@@ -0,0 +1,96 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Adds {@code org.slf4j.MDC} properties "traceId" and "spanId" when a {@link TraceContext} is in
+ * scope. These are replaced with previous values when the scope is closed.
+ *
+ * <p>The agent doesn't bundle SLF4J, so the application's MDC is called through method handles,
+ * looked up once when this is created.
+ *
+ * @see CorrelationFieldScopeDecorator
+ */
+public final class MDCScopeDecorator extends CorrelationFieldScopeDecorator {
+
+    static final String MDC_CLASS = "org.slf4j.MDC";
+
+    /** Uses the MDC visible to the current thread's context class loader. */
+    public static CurrentTraceContext.ScopeDecorator create() {
+        return create(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Uses the MDC visible to the class loader of the application's logging library.
+     *
+     * @throws IllegalArgumentException if SLF4J isn't visible to the class loader
+     */
+    public static CurrentTraceContext.ScopeDecorator create(ClassLoader classLoader) {
+        Assert.notNull(classLoader, "classLoader can not be null");
+        try {
+            Class<?> mdc = Class.forName(MDC_CLASS, true, classLoader);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            return new MDCScopeDecorator(
+                lookup.findStatic(mdc, "get", MethodType.methodType(String.class, String.class)),
+                lookup.findStatic(mdc, "put",
+                    MethodType.methodType(void.class, String.class, String.class)),
+                lookup.findStatic(mdc, "remove", MethodType.methodType(void.class, String.class)));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(MDC_CLASS + " isn't usable from " + classLoader, e);
+        }
+    }
+
+    final MethodHandle get, put, remove;
+
+    MDCScopeDecorator(MethodHandle get, MethodHandle put, MethodHandle remove) {
+        this.get = get;
+        this.put = put;
+        this.remove = remove;
+    }
+
+    @Override
+    protected String get(String key) {
+        try {
+            return (String) get.invokeExact(key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    protected void put(String key, String value) {
+        try {
+            put.invokeExact(key, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    protected void remove(String key) {
+        try {
+            remove.invokeExact(key);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /** MDC methods don't declare checked exceptions, so anything thrown is unchecked. */
+    static RuntimeException rethrow(Throwable e) {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw new IllegalStateException(e);
+    }
+
+    @Override
+    public String toString() {
+        return "MDCScopeDecorator{}";
+    }
+}
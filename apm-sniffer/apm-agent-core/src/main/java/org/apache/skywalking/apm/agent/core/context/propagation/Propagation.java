@@ -1,5 +1,6 @@
 package org.apache.skywalking.apm.agent.core.context.propagation;
 
+import java.nio.charset.Charset;
 import java.util.List;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
@@ -96,6 +97,27 @@ public interface Propagation<K> {
 
     }
 
+    /**
+     * A setter for carriers with byte array values, such as HTTP/2 or messaging headers. Injectors
+     * that cache the encoding of a context pass it as-is, instead of a string to convert each time.
+     *
+     * <p>Arrays passed to {@link #put(Object, Object, byte[])} may be shared between carriers, so
+     * implementations must not modify them.
+     */
+    abstract class BytesSetter<C,K> implements Setter<C,K> {
+
+        static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        public abstract void put(C carrier,K key,byte[] value);
+
+        /** Used for values without a cached encoding, such as extra fields. */
+        @Override
+        public void put(C carrier,K key,String value) {
+            put(carrier,key,value.getBytes(UTF_8));
+        }
+
+    }
+
     /**
      * The propagation fields defined. If your carrier is reused, you should delete the fields here
      * before calling {@link Setter#put(Object, Object, String)}.
@@ -132,6 +154,25 @@ public interface Propagation<K> {
 
     }
 
+    /**
+     * A getter for carriers with byte array values, such as HTTP/2 or messaging headers. Binary
+     * formats, such as {@link BinaryPropagation}, read values with {@link
+     * #getBytes(Object, Object)} without converting them to strings.
+     */
+    abstract class BytesGetter<C,K> implements Getter<C,K> {
+
+        @Nullable
+        public abstract byte[] getBytes(C carrier,K key);
+
+        /** Used by text formats, such as extra fields. */
+        @Override
+        public String get(C carrier,K key) {
+            byte[] value = getBytes(carrier,key);
+            return value != null ? new String(value,BytesSetter.UTF_8) : null;
+        }
+
+    }
+
     /**
      * @param getter invoked for each propagation key to get.
      */
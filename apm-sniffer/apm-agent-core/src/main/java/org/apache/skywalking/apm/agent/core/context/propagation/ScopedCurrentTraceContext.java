@@ -0,0 +1,96 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.internal.ThreadBindings;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * In-process trace context propagation which works like {@link ThreadLocalCurrentTraceContext} on
+ * platform threads, and like a scoped value on {@linkplain Platform#isVirtual(Thread) virtual
+ * threads}.
+ *
+ * <h3>Design notes</h3>
+ *
+ * <p>Virtual threads are cheap enough to start one per request, so there can be millions of them.
+ * A thread local would create a map of thread locals on each, as soon as any code asks whether a
+ * trace is in progress, and hold the context until the thread ends. Here, the context of a virtual
+ * thread is only held while a scope is open: {@link #get()} allocates nothing when there is no
+ * context, and closing the outermost scope leaves nothing behind.
+ *
+ * <p>{@code java.lang.ScopedValue} itself can't back this type: it is only available in recent
+ * runtimes and binds a value for the duration of a callback, whereas {@link
+ * #newScope(TraceContext)} returns a scope closed later. As with scoped values, it is a
+ * programming error to not close the scope, which here would retain the context until the virtual
+ * thread is collected.
+ *
+ * <p>This type is opt-in, as it didn't measure faster than {@link ThreadLocalCurrentTraceContext}
+ * on virtual threads. Use it when retained thread locals are a concern:
+ * <pre>{@code
+ * tracing = Tracing.newBuilder()
+ *                  .currentTraceContext(ScopedCurrentTraceContext.create())
+ *                  ...
+ *                  .build();
+ * }</pre>
+ *
+ * <p>Like {@link ThreadLocalCurrentTraceContext}, the storage is static, so all tracer instances
+ * see each other's contexts.
+ */
+public class ScopedCurrentTraceContext extends CurrentTraceContext {
+
+    public static CurrentTraceContext create() {
+        return new Builder().build();
+    }
+
+    public static CurrentTraceContext.Builder newBuilder() {
+        return new Builder();
+    }
+
+    static final ThreadBindings<TraceContext> DEFAULT = new ThreadBindings<>();
+
+    static final class Builder extends CurrentTraceContext.Builder {
+
+        @Override
+        public CurrentTraceContext build() {
+            return new ScopedCurrentTraceContext(this, DEFAULT);
+        }
+    }
+
+    private final ThreadBindings<TraceContext> bindings;
+
+    ScopedCurrentTraceContext(CurrentTraceContext.Builder builder,
+        ThreadBindings<TraceContext> bindings) {
+        super(builder);
+        Assert.notNull(bindings, "bindings can not be null");
+        this.bindings = bindings;
+    }
+
+    @Override
+    public TraceContext get() {
+        return bindings.get();
+    }
+
+    @Override
+    public Scope newScope(@Nullable TraceContext currentSpan) {
+        TraceContext previous = bindings.get();
+        bindings.set(currentSpan);
+        return decorateScope(currentSpan, new BindingScope(bindings, previous));
+    }
+
+    static final class BindingScope implements Scope {
+
+        final ThreadBindings<TraceContext> bindings;
+        @Nullable
+        final TraceContext previous;
+
+        BindingScope(ThreadBindings<TraceContext> bindings, @Nullable TraceContext previous) {
+            this.bindings = bindings;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            bindings.set(previous); // unbinds when previous is null
+        }
+    }
+}
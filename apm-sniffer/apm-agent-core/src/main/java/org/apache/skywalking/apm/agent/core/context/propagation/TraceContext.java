@@ -13,6 +13,7 @@ import static org.apache.skywalking.apm.agent.core.context.internal.Lists.ensure
 import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.internal.ExtraSlots;
 import org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation;
 import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
 import org.apache.skywalking.apm.agent.core.context.internal.Platform;
@@ -176,15 +177,33 @@ public final class TraceContext extends SamplingFlags {
      * and this can break logic.
      */
     @Nullable
+    @SuppressWarnings("unchecked")
     public <T> T findExtra(Class<T> type) {
-        return findExtra(type, extra);
+        Assert.notNull(type, "type can not be null");
+        int slot = ExtraSlots.slotOf(type);
+        return slot != -1 ? (T) findExtra(slot) : findExtra(type, extra);
+    }
+
+    /** Returns the first extra of the type registered in the slot, or null if there isn't one. */
+    @Nullable
+    Object findExtra(int slot) {
+        Object[] slots = extraSlots;
+        if (slots == null || slot >= slots.length) { // types may be registered after indexing
+            extraSlots = slots = ExtraSlots.index(extra);
+            if (slot >= slots.length) {
+                return null;
+            }
+        }
+        return slots[slot];
     }
 
     public Builder toBuilder() {
         return new Builder(this);
     }
 
-    private volatile String traceIdString; // Lazily initialized and cached.
+    // Encodings below are lazily initialized and cached. Like String.hash, a racy write is safe:
+    // threads that see null encode again, and String's final fields make it safe to publish.
+    private String traceIdString;
 
     /** Returns the hex representation of the span's trace ID */
     public String traceIdString() {
@@ -195,6 +214,7 @@ public final class TraceContext extends SamplingFlags {
                 writeHexLong(result, 0, traceIdHigh);
                 writeHexLong(result, 16, traceId);
                 r = new String(result);
+                RecyclableBuffers.releaseIdBuffer(result);
             } else {
                 r = toLowerHex(traceId);
             }
@@ -203,7 +223,7 @@ public final class TraceContext extends SamplingFlags {
         return r;
     }
 
-    private volatile String parentIdString; // Lazily initialized and cached.
+    private String parentIdString;
 
     /** Returns the hex representation of the span's parent ID */
     @Nullable
@@ -215,7 +235,7 @@ public final class TraceContext extends SamplingFlags {
         return r;
     }
 
-    private volatile String localRootIdString; // Lazily initialized and cached.
+    private String localRootIdString;
 
     /** Returns the hex representation of the span's local root ID */
     @Nullable
@@ -227,7 +247,7 @@ public final class TraceContext extends SamplingFlags {
         return r;
     }
 
-    private volatile String spanIdString; // Lazily initialized and cached.
+    private String spanIdString;
 
     /** Returns the hex representation of the span's ID */
     public String spanIdString() {
@@ -238,6 +258,51 @@ public final class TraceContext extends SamplingFlags {
         return r;
     }
 
+    String b3SingleString; // cached by B3SingleFormat
+
+    // For carriers with byte array values. These are volatile as, unlike strings, arrays aren't
+    // safe to publish with a race. They are shared between injections, so must not be modified.
+    private volatile byte[] traceIdBytes, spanIdBytes, parentIdBytes;
+
+    volatile byte[] b3SingleBytes; // cached by B3SingleFormat
+
+    /** Like {@link #traceIdString()}, but as US-ASCII bytes. Don't modify the result. */
+    byte[] traceIdBytes() {
+        byte[] r = traceIdBytes;
+        if (r == null) {
+            r = traceIdBytes = asciiBytes(traceIdString());
+        }
+        return r;
+    }
+
+    /** Like {@link #parentIdString()}, but as US-ASCII bytes. Don't modify the result. */
+    @Nullable
+    byte[] parentIdBytes() {
+        byte[] r = parentIdBytes;
+        if (r == null && parentId != 0L) {
+            r = parentIdBytes = asciiBytes(parentIdString());
+        }
+        return r;
+    }
+
+    /** Like {@link #spanIdString()}, but as US-ASCII bytes. Don't modify the result. */
+    byte[] spanIdBytes() {
+        byte[] r = spanIdBytes;
+        if (r == null) {
+            r = spanIdBytes = asciiBytes(spanIdString());
+        }
+        return r;
+    }
+
+    static byte[] asciiBytes(String value) {
+        int length = value.length();
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) value.charAt(i);
+        }
+        return result;
+    }
+
     /** Returns {@code $traceId/$spanId} */
     @Override
     public String toString() {
@@ -503,6 +568,9 @@ public final class TraceContext extends SamplingFlags {
 
     private final List<Object> extra;
 
+    // Extra indexed by ExtraSlots, built on first lookup. Racy, as the result is always the same
+    private volatile Object[] extraSlots;
+
     TraceContext(int flags, long traceIdHigh, long traceId, long localRootId, long parentId,
         long spanId, List<Object> extra) {
         super(flags);
@@ -569,7 +637,8 @@ public final class TraceContext extends SamplingFlags {
     @SuppressWarnings("unchecked")
     static <T> T findExtra(Class<T> type, List<Object> extra) {
         Assert.notNull(type, "type can not be null");
-        for (Object object : extra) {
+        for (int i = 0, length = extra.size(); i < length; i++) { // avoid allocating an iterator
+            Object object = extra.get(i);
             if (object.getClass() == type) {
                 return (T) object;
             }
@@ -0,0 +1,202 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation.FLAG_SAMPLED;
+import static org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation.FLAG_SAMPLED_SET;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import org.apache.skywalking.apm.agent.core.context.internal.BufferPool;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+
+/**
+ * This format corresponds to the binary layout of the gRPC "grpc-trace-bin" header, which encodes
+ * fields as an ID byte followed by a fixed length value.
+ *
+ * <pre>{@code
+ * {version=0}{0}{trace-id: 16 bytes}{1}{span-id: 8 bytes}[{2}{trace-options: 1 byte}]
+ * }</pre>
+ *
+ * <p>IDs are big-endian, so a sampled span is the following 29 bytes, compared to 55 or more
+ * characters for the text formats:
+ * {@code 00 00 4bf92f3577b34da6a3ce929d0e0e4736 01 00f067aa0ba902b7 02 01}
+ *
+ * <p>The trace ID is always 128-bit, so a 64-bit trace ID is written with 8 leading zero bytes.
+ * The span ID is the caller's, as the parent ID isn't propagated.
+ *
+ * <p>Only bit 0 of the trace options is defined, which is set when the context is {@link
+ * TraceContext#sampled() sampled} or {@link TraceContext#debug() debug}. When the sampling
+ * decision is deferred, the trace options field is omitted. Readers skip fields they don't know,
+ * as later versions may only append fields.
+ */
+public final class TraceContextBinaryFormat {
+    static final byte VERSION = 0, TRACE_ID_FIELD = 0, SPAN_ID_FIELD = 1, TRACE_OPTIONS_FIELD = 2;
+    static final int FORMAT_MAX_LENGTH = 1 + 1 + 16 + 1 + 8 + 1 + 1; // version, 3 fields and IDs
+    static final int FORMAT_DEFERRED_LENGTH = FORMAT_MAX_LENGTH - 2; // no trace options
+
+    /** Returns the number of bytes {@link #writeBinaryFormat(TraceContext)} writes. */
+    public static int sizeInBytes(TraceContext context) {
+        return context.sampled() != null ? FORMAT_MAX_LENGTH : FORMAT_DEFERRED_LENGTH;
+    }
+
+    public static byte[] writeBinaryFormat(TraceContext context) {
+        byte[] result = new byte[sizeInBytes(context)];
+        writeBinaryFormat(context, result, 0);
+        return result;
+    }
+
+    /**
+     * Writes the context at the offset, for example into the header section of an RPC frame.
+     *
+     * @return the number of bytes written
+     */
+    public static int writeBinaryFormat(TraceContext context, byte[] destination, int offset) {
+        int length = sizeInBytes(context);
+        if (offset < 0 || destination.length - offset < length) { // don't build the message eagerly
+            throw new IllegalArgumentException(
+                "destination can't hold " + length + " bytes at offset " + offset);
+        }
+        int pos = offset;
+        destination[pos++] = VERSION;
+        destination[pos++] = TRACE_ID_FIELD;
+        pos = writeLong(destination, pos, context.traceIdHigh());
+        pos = writeLong(destination, pos, context.traceId());
+        destination[pos++] = SPAN_ID_FIELD;
+        pos = writeLong(destination, pos, context.spanId());
+        Boolean sampled = context.sampled();
+        if (sampled != null) {
+            destination[pos++] = TRACE_OPTIONS_FIELD;
+            destination[pos++] = (byte) (context.debug() || sampled ? 1 : 0);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes the context at the buffer's position, advancing it. IDs are big-endian regardless of
+     * the buffer's byte order.
+     */
+    public static void writeBinaryFormat(TraceContext context, ByteBuffer destination) {
+        int length = sizeInBytes(context);
+        if (destination.remaining() < length) {
+            throw new IllegalArgumentException("destination can't hold " + length + " bytes");
+        }
+        if (destination.hasArray()) {
+            int offset = destination.arrayOffset() + destination.position();
+            writeBinaryFormat(context, destination.array(), offset);
+            destination.position(destination.position() + length);
+        } else {
+            byte[] buffer = BYTE_BUFFERS.acquire();
+            writeBinaryFormat(context, buffer, 0);
+            destination.put(buffer, 0, length);
+            BYTE_BUFFERS.release(buffer);
+        }
+    }
+
+    static int writeLong(byte[] destination, int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            destination[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    /** Returns null after logging if the input isn't valid binary trace context. */
+    @Nullable
+    public static TraceContextOrSamplingFlags parseBinaryFormat(byte[] bytes) {
+        return parseBinaryFormat(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads from the buffer's position to its limit, without advancing the position.
+     */
+    @Nullable
+    public static TraceContextOrSamplingFlags parseBinaryFormat(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            return parseBinaryFormat(bytes.array(), bytes.arrayOffset() + bytes.position(),
+                bytes.remaining());
+        }
+        // Only the known fields matter, so copy at most their length
+        byte[] buffer = BYTE_BUFFERS.acquire();
+        int length = Math.min(bytes.remaining(), FORMAT_MAX_LENGTH);
+        for (int i = 0; i < length; i++) {
+            buffer[i] = bytes.get(bytes.position() + i);
+        }
+        TraceContextOrSamplingFlags result = parseBinaryFormat(buffer, 0, length);
+        BYTE_BUFFERS.release(buffer);
+        return result;
+    }
+
+    /**
+     * @param offset the start index, inclusive
+     * @param length the number of bytes to read, which may include fields after the known ones
+     */
+    @Nullable
+    public static TraceContextOrSamplingFlags parseBinaryFormat(byte[] bytes, int offset,
+        int length) {
+        if (length <= 0) {
+            Platform.get().log("Invalid input: empty", null);
+            return null;
+        }
+        // A later version may append fields, which are ignored, but not change the known ones
+        if (length < FORMAT_DEFERRED_LENGTH) {
+            Platform.get().log("Invalid input: truncated", null);
+            return null;
+        }
+
+        int pos = offset + 1; // skip the version
+        if (bytes[pos++] != TRACE_ID_FIELD) {
+            Platform.get().log("Invalid input: expected trace ID at offset {0}", 1, null);
+            return null;
+        }
+        long traceIdHigh = readLong(bytes, pos);
+        long traceId = readLong(bytes, pos + 8);
+        pos += 16;
+        if (traceIdHigh == 0L && traceId == 0L) {
+            Platform.get().log("Invalid input: trace ID is all zeros", null);
+            return null;
+        }
+
+        if (bytes[pos++] != SPAN_ID_FIELD) {
+            Platform.get().log("Invalid input: expected span ID at offset {0}", 18, null);
+            return null;
+        }
+        long spanId = readLong(bytes, pos);
+        pos += 8;
+        if (spanId == 0L) {
+            Platform.get().log("Invalid input: span ID is all zeros", null);
+            return null;
+        }
+
+        int flags = 0; // the sampling decision is deferred unless there are trace options
+        if (length > FORMAT_DEFERRED_LENGTH && bytes[pos] == TRACE_OPTIONS_FIELD) {
+            if (length == FORMAT_DEFERRED_LENGTH + 1) {
+                Platform.get().log("Invalid input: truncated trace options", null);
+                return null;
+            }
+            flags = (bytes[pos + 1] & 1) == 1 ? FLAG_SAMPLED_SET | FLAG_SAMPLED : FLAG_SAMPLED_SET;
+        }
+
+        return TraceContextOrSamplingFlags.create(new TraceContext(
+            flags,
+            traceIdHigh,
+            traceId,
+            0L, // localRootId is the first ID used in process, not necessarily the one extracted
+            0L, // the parent of the caller isn't propagated
+            spanId,
+            Collections.emptyList()
+        ));
+    }
+
+    static long readLong(byte[] bytes, int pos) {
+        long result = 0L;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[pos + i] & 0xff);
+        }
+        return result;
+    }
+
+    /** Used for direct buffers, which can't be read or written as an array. */
+    private static final BufferPool<byte[]> BYTE_BUFFERS = BufferPool.ofBytes(FORMAT_MAX_LENGTH);
+
+    TraceContextBinaryFormat() {
+    }
+}
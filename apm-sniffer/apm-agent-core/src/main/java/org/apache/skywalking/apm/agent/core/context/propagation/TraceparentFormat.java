@@ -0,0 +1,166 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.apache.skywalking.apm.agent.core.context.internal.HexCodec.writeHexLong;
+import static org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation.FLAG_SAMPLED;
+import static org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation.FLAG_SAMPLED_SET;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.internal.BufferPool;
+import org.apache.skywalking.apm.agent.core.context.internal.HexCodec;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+
+/**
+ * This format corresponds to the W3C Trace Context header "traceparent", which delimits fields in
+ * the following manner.
+ *
+ * <pre>{@code
+ * traceparent: {version}-{trace-id}-{parent-id}-{trace-flags}
+ * }</pre>
+ *
+ * <p>For example, a sampled span would look like:
+ * {@code 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01}
+ *
+ * <p>The trace ID is always 128-bit, so a 64-bit trace ID is written with 16 leading zeros. The
+ * parent ID is the span ID of the caller.
+ *
+ * <p>Only the sampled bit of the trace flags is defined. When it is set, the context is {@link
+ * TraceContext#sampled() sampled}. When it isn't, the decision is left to the local sampler: the
+ * caller may not have recorded the request, but that doesn't mean it asked not to be traced.
+ * Likewise, {@link TraceContext#debug() debug} is written as sampled.
+ *
+ * <p>See <a href="https://www.w3.org/TR/trace-context/">W3C Trace Context</a>
+ */
+public final class TraceparentFormat {
+    static final int FORMAT_LENGTH = 2 + 1 + 32 + 1 + 16 + 1 + 2; // version-traceid-parentid-flags
+    static final int TRACE_ID_OFFSET = 3, PARENT_ID_OFFSET = 36, FLAGS_OFFSET = 53;
+
+    /** Writes the trace context as a "traceparent" value of version 00. */
+    public static String writeTraceparentFormat(TraceContext context) {
+        char[] buffer = CHAR_BUFFERS.acquire();
+        writeTraceparentFormat(context, buffer);
+        String result = new String(buffer, 0, FORMAT_LENGTH);
+        CHAR_BUFFERS.release(buffer);
+        return result;
+    }
+
+    /**
+     * Like {@link #writeTraceparentFormat(TraceContext)}, but for carriers with byte array or byte
+     * buffer values.
+     */
+    public static byte[] writeTraceparentFormatAsBytes(TraceContext context) {
+        char[] buffer = CHAR_BUFFERS.acquire();
+        writeTraceparentFormat(context, buffer);
+        byte[] result = new byte[FORMAT_LENGTH];
+        for (int i = 0; i < FORMAT_LENGTH; i++) {
+            result[i] = (byte) buffer[i];
+        }
+        CHAR_BUFFERS.release(buffer);
+        return result;
+    }
+
+    static void writeTraceparentFormat(TraceContext context, char[] result) {
+        result[0] = '0'; // version
+        result[1] = '0';
+        result[2] = '-';
+        writeHexLong(result, TRACE_ID_OFFSET, context.traceIdHigh());
+        writeHexLong(result, TRACE_ID_OFFSET + 16, context.traceId());
+        result[PARENT_ID_OFFSET - 1] = '-';
+        writeHexLong(result, PARENT_ID_OFFSET, context.spanId());
+        result[FLAGS_OFFSET - 1] = '-';
+        result[FLAGS_OFFSET] = '0';
+        boolean sampled = context.debug() || Boolean.TRUE.equals(context.sampled());
+        result[FLAGS_OFFSET + 1] = sampled ? '1' : '0';
+    }
+
+    /** Returns null after logging if the input isn't a valid "traceparent" value. */
+    @Nullable
+    public static TraceContextOrSamplingFlags parseTraceparentFormat(CharSequence traceparent) {
+        return parseTraceparentFormat(traceparent, 0, traceparent.length(),
+            Collections.emptyList());
+    }
+
+    /**
+     * @param beginIndex the start index, inclusive
+     * @param endIndex the end index, exclusive
+     * @param extra added to the resulting context, for example {@link W3CPropagation.TraceState}
+     */
+    @Nullable
+    public static TraceContextOrSamplingFlags parseTraceparentFormat(CharSequence traceparent,
+        int beginIndex, int endIndex, List<Object> extra) {
+        int length = endIndex - beginIndex;
+        if (length < FORMAT_LENGTH) {
+            Platform.get().log("Invalid input: truncated", null);
+            return null;
+        }
+
+        // Check the layout before decoding, as decoding can't distinguish invalid input from zero
+        for (int i = 0; i < FORMAT_LENGTH; i++) {
+            char c = traceparent.charAt(beginIndex + i);
+            boolean delimiter = i == TRACE_ID_OFFSET - 1 || i == PARENT_ID_OFFSET - 1
+                || i == FLAGS_OFFSET - 1;
+            if (delimiter ? c != '-' : !isLowerHex(c)) {
+                Platform.get().log(delimiter
+                    ? "Invalid input: expected a hyphen(-) delimiter at offset {0}"
+                    : "Invalid input: expected lower hex at offset {0}", i, null);
+                return null;
+            }
+        }
+
+        char version0 = traceparent.charAt(beginIndex), version1 = traceparent.charAt(beginIndex + 1);
+        if (version0 == 'f' && version1 == 'f') {
+            Platform.get().log("Invalid input: version ff is forbidden", null);
+            return null;
+        }
+        if (version0 == '0' && version1 == '0') {
+            if (length != FORMAT_LENGTH) {
+                Platform.get().log("Invalid input: too long for version 00", null);
+                return null;
+            }
+        } else if (length > FORMAT_LENGTH && traceparent.charAt(beginIndex + FORMAT_LENGTH) != '-') {
+            // later versions may only append fields
+            Platform.get().log("Invalid input: expected a hyphen(-) delimiter at offset {0}",
+                FORMAT_LENGTH, null);
+            return null;
+        }
+
+        int pos = beginIndex + TRACE_ID_OFFSET;
+        long traceIdHigh = HexCodec.lenientLowerHexToUnsignedLong(traceparent, pos, pos + 16);
+        long traceId = HexCodec.lenientLowerHexToUnsignedLong(traceparent, pos + 16, pos + 32);
+        if (traceIdHigh == 0L && traceId == 0L) {
+            Platform.get().log("Invalid input: trace ID is all zeros", null);
+            return null;
+        }
+
+        pos = beginIndex + PARENT_ID_OFFSET;
+        long spanId = HexCodec.lenientLowerHexToUnsignedLong(traceparent, pos, pos + 16);
+        if (spanId == 0L) {
+            Platform.get().log("Invalid input: parent ID is all zeros", null);
+            return null;
+        }
+
+        pos = beginIndex + FLAGS_OFFSET;
+        int traceFlags = (int) HexCodec.lenientLowerHexToUnsignedLong(traceparent, pos, pos + 2);
+        int flags = (traceFlags & 1) == 1 ? FLAG_SAMPLED_SET | FLAG_SAMPLED : 0;
+
+        return TraceContextOrSamplingFlags.create(new TraceContext(
+            flags,
+            traceIdHigh,
+            traceId,
+            0L, // localRootId is the first ID used in process, not necessarily the one extracted
+            0L, // the parent of the caller isn't propagated
+            spanId,
+            extra
+        ));
+    }
+
+    private static final BufferPool<char[]> CHAR_BUFFERS = BufferPool.ofChars(FORMAT_LENGTH);
+
+    private static boolean isLowerHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    TraceparentFormat() {
+    }
+}
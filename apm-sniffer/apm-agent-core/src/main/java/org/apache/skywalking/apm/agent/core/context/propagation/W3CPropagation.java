@@ -0,0 +1,170 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Implements <a href="https://www.w3.org/TR/trace-context/">W3C Trace Context</a>, using the
+ * format described in {@link TraceparentFormat}.
+ *
+ * <p>The "tracestate" header is opaque to this library: when present alongside a valid
+ * "traceparent", it is kept as {@link TraceState} in the context's {@link TraceContext#extra()
+ * extra} and written unchanged to downstream requests.
+ *
+ * <p>Edge services which receive both W3C and B3 headers can use {@link
+ * #newFactory(Propagation.Factory)}. Ex.
+ * <pre>{@code
+ * tracingBuilder.propagationFactory(ExtraFieldPropagation.newFactory(
+ *   W3CPropagation.newFactory(B3Propagation.FACTORY), "x-vcap-request-id"));
+ * }</pre>
+ */
+public final class W3CPropagation<K> implements Propagation<K> {
+
+    /** Extracts and injects only "traceparent" and "tracestate". */
+    public static final Propagation.Factory FACTORY = new W3CFactory();
+
+    /**
+     * Returns a factory which extracts "traceparent" when present, and only reads the headers of
+     * the secondary format when it is absent or malformed. Both formats are injected, so that
+     * downstream services which only understand the secondary format still join the trace.
+     *
+     * <p>This is the same as {@code CompositePropagation.newFactory(FACTORY, secondary)}.
+     */
+    public static Propagation.Factory newFactory(Propagation.Factory secondary) {
+        Assert.notNull(secondary, "secondary can not be null");
+        return CompositePropagation.newFactory(FACTORY, secondary);
+    }
+
+    static final class W3CFactory extends Propagation.Factory {
+
+        @Override
+        public <K> Propagation<K> create(KeyFactory<K> factory) {
+            return new W3CPropagation<>(factory);
+        }
+
+        /** The caller's span ID is propagated as the parent ID, so servers can't share it. */
+        @Override
+        public boolean supportsJoin() {
+            return false;
+        }
+
+        /** The trace ID is always 128-bit in this format. */
+        @Override
+        public boolean requires128BitTraceId() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "W3CPropagationFactory";
+        }
+    }
+
+    /** The opaque value of the "tracestate" header received with the trace context. */
+    public static final class TraceState {
+
+        final String value;
+
+        TraceState(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "TraceState{" + value + "}";
+        }
+    }
+
+    private final K traceparentKey, tracestateKey;
+
+    private final List<K> fields;
+
+    private W3CPropagation(KeyFactory<K> factory) {
+        this.traceparentKey = factory.create("traceparent");
+        this.tracestateKey = factory.create("tracestate");
+        this.fields = Collections.unmodifiableList(Arrays.asList(traceparentKey, tracestateKey));
+    }
+
+    @Override
+    public List<K> keys() {
+        return fields;
+    }
+
+    @Override
+    public <C> Injector<C> injector(Setter<C, K> setter) {
+        return new W3CInjector<>(this, setter);
+    }
+
+    static final class W3CInjector<C, K> implements Injector<C> {
+
+        private final W3CPropagation<K> propagation;
+
+        private final Setter<C, K> setter;
+
+        W3CInjector(W3CPropagation<K> propagation, Setter<C, K> setter) {
+            this.propagation = propagation;
+            this.setter = setter;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void inject(TraceContext traceContext, C carrier) {
+            if (setter instanceof BytesSetter) { // skip encoding a string only to convert it
+                ((BytesSetter<C, K>) setter).put(carrier, propagation.traceparentKey,
+                    TraceparentFormat.writeTraceparentFormatAsBytes(traceContext));
+            } else {
+                setter.put(carrier, propagation.traceparentKey,
+                    TraceparentFormat.writeTraceparentFormat(traceContext));
+            }
+            TraceState traceState = traceContext.findExtra(TraceState.class);
+            if (traceState != null) {
+                setter.put(carrier, propagation.tracestateKey, traceState.value);
+            }
+        }
+    }
+
+    @Override
+    public <C> Extractor<C> extractor(Getter<C, K> getter) {
+        return new W3CExtractor<>(this, getter);
+    }
+
+    static final class W3CExtractor<C, K> implements Extractor<C> {
+
+        private final W3CPropagation<K> propagation;
+
+        private final Getter<C, K> getter;
+
+        W3CExtractor(W3CPropagation<K> propagation, Getter<C, K> getter) {
+            this.propagation = propagation;
+            this.getter = getter;
+        }
+
+        @Override
+        public TraceContextOrSamplingFlags extract(C carrier) {
+            Assert.notNull(carrier, "carrier can not be null");
+            String traceparent = getter.get(carrier, propagation.traceparentKey);
+            if (traceparent != null) {
+                // tracestate is only meaningful with a traceparent, so don't read it otherwise
+                String tracestate = getter.get(carrier, propagation.tracestateKey);
+                List<Object> extra = tracestate != null && !tracestate.isEmpty()
+                    ? Collections.<Object>singletonList(new TraceState(tracestate))
+                    : Collections.emptyList();
+                TraceContextOrSamplingFlags extracted = TraceparentFormat.parseTraceparentFormat(
+                    traceparent, 0, traceparent.length(), extra);
+                if (extracted != null) {
+                    return extracted;
+                }
+            }
+            // absent or malformed, so a composite tries its next format
+            return TraceContextOrSamplingFlags.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.Platform;
+import org.apache.skywalking.apm.agent.core.context.internal.codec.MutableSpanBytesEncoder;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesEncoder;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Reports spans from a dedicated thread, so that application threads never block on span encoding
+ * or I/O.
+ *
+ * <p>Finished spans are handed to a bounded ring buffer. A single daemon thread drains it, encodes
+ * spans and sends them to a {@link SpanSink} in batches bounded by {@link
+ * Builder#messageMaxBytes(int) size} and {@link Builder#messageTimeout(long, TimeUnit) time}. When
+ * the ring buffer is full, spans are dropped and counted in {@link #metrics()}.
+ *
+ * <p>Ex.
+ * <pre>{@code
+ * spanReporter = AsyncReporter.newBuilder(UdpSpanSink.create("127.0.0.1", 9410)).build();
+ *
+ * tracingBuilder.spanReporter(spanReporter);
+ * }</pre>
+ *
+ * <p>When used as the {@link org.apache.skywalking.apm.agent.core.context.Tracing.Builder#spanReporter(Reporter)
+ * span reporter}, the application thread only enqueues the {@link MutableSpan} and its context. The
+ * reporting thread writes it directly in the sink's {@link SpanSink#encoding() encoding}, without
+ * converting it to a {@code zipkin2.Span} first.
+ */
+public final class AsyncReporter implements Reporter<zipkin2.Span>, Flushable, Closeable {
+
+    public static Builder newBuilder(SpanSink sink) {
+        return new Builder(sink);
+    }
+
+    public static final class Builder {
+
+        final SpanSink sink;
+        int queuedMaxSpans = 10000;
+        int messageMaxBytes;
+        long messageTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+
+        Builder(SpanSink sink) {
+            Assert.notNull(sink, "sink can not be null");
+            this.sink = sink;
+            this.messageMaxBytes = sink.messageMaxBytes();
+        }
+
+        /**
+         * Maximum spans waiting to be sent, rounded up to a power of two. Spans reported while the
+         * queue is full are dropped. Defaults to 10000.
+         */
+        public Builder queuedMaxSpans(int queuedMaxSpans) {
+            Assert.isTrue(queuedMaxSpans > 0, "queuedMaxSpans should be positive");
+            this.queuedMaxSpans = queuedMaxSpans;
+            return this;
+        }
+
+        /**
+         * Maximum bytes of a message, which can't exceed {@link SpanSink#messageMaxBytes()}. Defaults
+         * to the sink's maximum.
+         */
+        public Builder messageMaxBytes(int messageMaxBytes) {
+            Assert.isTrue(messageMaxBytes > 0, "messageMaxBytes should be positive");
+            this.messageMaxBytes = Math.min(messageMaxBytes, sink.messageMaxBytes());
+            return this;
+        }
+
+        /**
+         * Maximum time a span waits in a partial batch before the batch is sent. Defaults to 1
+         * second.
+         */
+        public Builder messageTimeout(long timeout, TimeUnit unit) {
+            Assert.isTrue(timeout > 0, "timeout should be positive");
+            Assert.notNull(unit, "unit can not be null");
+            this.messageTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /** Builds the reporter and starts its reporting thread. */
+        public AsyncReporter build() {
+            AsyncReporter result = new AsyncReporter(this);
+            result.flushThread.start();
+            return result;
+        }
+    }
+
+    /** Spans drained per pass, so that a timed out batch isn't delayed by a busy queue */
+    static final int DRAIN_MAX_SPANS = 1024;
+
+    private final SpanSink sink;
+    private final SpanBytesEncoder spanEncoder;
+    private final SpanRingBuffer queue;
+    private final int messageMaxBytes;
+    private final long messageTimeoutNanos;
+    private final ReporterMetrics metrics = new ReporterMetrics();
+    final Thread flushThread;
+
+    // Guards the pending batch. Only contended when flush() is called by another thread.
+    private final Object drainLock = new Object();
+    private final BatchBuilder batch = new BatchBuilder();
+
+    private volatile MutableSpanBytesEncoder encoder;
+    private volatile boolean closed;
+
+    // Set by the reporting thread before it parks on an empty queue, so that a producer wakes it.
+    private volatile boolean flusherParked;
+
+    AsyncReporter(Builder builder) {
+        this.sink = builder.sink;
+        this.spanEncoder = builder.sink.encoding() == Encoding.PROTO3
+            ? SpanBytesEncoder.PROTO3 : SpanBytesEncoder.JSON_V2;
+        this.queue = new SpanRingBuffer(builder.queuedMaxSpans);
+        this.messageMaxBytes = builder.messageMaxBytes;
+        this.messageTimeoutNanos = builder.messageTimeoutNanos;
+        this.flushThread = new Thread(new Flusher(), "AsyncReporter{" + sink + "}");
+        this.flushThread.setDaemon(true);
+    }
+
+    /** The encoding of the sink, which a {@link #encoder(MutableSpanBytesEncoder)} must match. */
+    public Encoding encoding() {
+        return sink.encoding();
+    }
+
+    /**
+     * Internal hook used when this is the {@link org.apache.skywalking.apm.agent.core.context.Tracing.Builder#spanReporter(Reporter)
+     * span reporter}. The encoder carries the local endpoint and error parser of the tracing
+     * component that owns this reporter.
+     */
+    public void encoder(MutableSpanBytesEncoder encoder) {
+        Assert.notNull(encoder, "encoder can not be null");
+        Assert.isTrue(encoder.encoding() == sink.encoding(),
+            "encoder should use the sink's encoding: " + sink.encoding());
+        this.encoder = encoder;
+    }
+
+    /** Enqueues an already converted span, dropping it if the queue is full. */
+    @Override
+    public void report(zipkin2.Span span) {
+        Assert.notNull(span, "span can not be null");
+        enqueue(null, span);
+    }
+
+    /**
+     * Enqueues a finished span, dropping it if the queue is full. The span must not be modified
+     * after this call.
+     */
+    public void report(TraceContext context, MutableSpan span) {
+        Assert.notNull(context, "context can not be null");
+        Assert.notNull(span, "span can not be null");
+        enqueue(context, span);
+    }
+
+    private void enqueue(TraceContext context, Object span) {
+        metrics.spans.increment();
+        if (closed || !queue.offer(context, span)) {
+            metrics.spansDropped.increment();
+        } else if (flusherParked) { // the queue was empty
+            flusherParked = false;
+            LockSupport.unpark(flushThread);
+        }
+    }
+
+    public ReporterMetrics metrics() {
+        return metrics;
+    }
+
+    /** Approximate count of spans waiting to be encoded */
+    public int queuedSpans() {
+        return queue.size();
+    }
+
+    /** Sends all queued spans on the calling thread. */
+    @Override
+    public void flush() {
+        synchronized (drainLock) {
+            while (queue.drainTo(batch, DRAIN_MAX_SPANS) > 0) {
+                // keep draining
+            }
+            batch.send();
+        }
+    }
+
+    /** Stops the reporting thread, then sends any queued spans and closes the sink. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flushThread);
+        try {
+            flushThread.join(TimeUnit.NANOSECONDS.toMillis(messageTimeoutNanos) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            sink.close();
+        } catch (IOException | RuntimeException e) {
+            Platform.get().log("error closing {0}", sink, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncReporter{" + sink + "}";
+    }
+
+    /**
+     * Drains the queue until it is empty, then parks until a producer offers a span or the pending
+     * batch times out. An idle reporter doesn't wake up at all.
+     */
+    final class Flusher implements Runnable {
+
+        @Override
+        public void run() {
+            while (!closed) {
+                long timeoutNanos;
+                synchronized (drainLock) {
+                    int drained = queue.drainTo(batch, DRAIN_MAX_SPANS);
+                    long nanoTime = System.nanoTime();
+                    if (batch.isTimedOut(nanoTime)) {
+                        batch.send();
+                    }
+                    if (drained > 0) {
+                        continue;
+                    }
+                    timeoutNanos = batch.nanosUntilTimeout(nanoTime);
+                }
+                park(timeoutNanos);
+            }
+        }
+
+        /**
+         * The flag is raised before the queue is checked, and producers check the flag after
+         * claiming their slot, so a span offered concurrently either is seen here or unparks us.
+         */
+        void park(long timeoutNanos) {
+            flusherParked = true;
+            if (!closed && queue.isEmpty()) {
+                if (timeoutNanos < 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, timeoutNanos);
+                }
+            }
+            flusherParked = false;
+        }
+    }
+
+    /** Encodes drained spans and sends them when the next one wouldn't fit the message. */
+    final class BatchBuilder implements SpanRingBuffer.Consumer {
+
+        final ArrayList<byte[]> encodedSpans = new ArrayList<>();
+        int encodedBytes;
+        long startNanos;
+
+        @Override
+        public void accept(Object context, Object span) {
+            byte[] encoded = encode(context, span);
+            if (encoded == null) {
+                metrics.spansDropped.increment();
+                return;
+            }
+            if (sink.messageSizeInBytes(1, encoded.length) > messageMaxBytes) {
+                Platform.get().log("dropping span larger than messageMaxBytes: {0}", span, null);
+                metrics.spansDropped.increment();
+                return;
+            }
+            int count = encodedSpans.size() + 1;
+            if (sink.messageSizeInBytes(count, encodedBytes + encoded.length) > messageMaxBytes) {
+                send();
+            }
+            if (encodedSpans.isEmpty()) {
+                startNanos = System.nanoTime();
+            }
+            encodedSpans.add(encoded);
+            encodedBytes += encoded.length;
+        }
+
+        boolean isTimedOut(long nanoTime) {
+            return !encodedSpans.isEmpty() && nanoTime - startNanos >= messageTimeoutNanos;
+        }
+
+        /** Returns how long until the pending batch times out, or -1 if there is none. */
+        long nanosUntilTimeout(long nanoTime) {
+            if (encodedSpans.isEmpty()) {
+                return -1;
+            }
+            return Math.max(0, startNanos + messageTimeoutNanos - nanoTime);
+        }
+
+        void send() {
+            if (encodedSpans.isEmpty()) {
+                return;
+            }
+            metrics.messages.increment();
+            metrics.messageBytes.add(encodedBytes);
+            try {
+                sink.send(encodedSpans);
+            } catch (IOException | RuntimeException e) {
+                metrics.messagesDropped.increment();
+                metrics.spansDropped.add(encodedSpans.size());
+                Platform.get().log("error sending spans to {0}", sink, e);
+            } finally {
+                encodedSpans.clear();
+                encodedBytes = 0;
+            }
+        }
+
+        byte[] encode(Object context, Object span) {
+            try {
+                if (span instanceof zipkin2.Span) {
+                    return spanEncoder.encode((zipkin2.Span) span);
+                }
+                MutableSpanBytesEncoder encoder = AsyncReporter.this.encoder;
+                if (encoder == null) {
+                    return null; // not bound to a tracing component
+                }
+                return encoder.encode((TraceContext) context, (MutableSpan) span);
+            } catch (RuntimeException e) {
+                Platform.get().log("error encoding {0}", context, e);
+                return null;
+            }
+        }
+    }
+}
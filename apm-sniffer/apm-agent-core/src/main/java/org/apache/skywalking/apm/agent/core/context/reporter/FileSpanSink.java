@@ -0,0 +1,67 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * Appends each message to a local file as a single line holding a JSON list of spans. This allows
+ * testing the reporting pipeline without a collector, for example by tailing the file or posting
+ * its lines to Zipkin later.
+ */
+public final class FileSpanSink extends SpanSink {
+
+    static final int DEFAULT_MESSAGE_MAX_BYTES = 512 * 1024;
+
+    public static FileSpanSink create(File file) throws IOException {
+        return create(file, DEFAULT_MESSAGE_MAX_BYTES);
+    }
+
+    public static FileSpanSink create(File file, int messageMaxBytes) throws IOException {
+        Assert.notNull(file, "file can not be null");
+        Assert.isTrue(messageMaxBytes > 0, "messageMaxBytes should be positive");
+        return new FileSpanSink(file, messageMaxBytes);
+    }
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final File file;
+    private final int messageMaxBytes;
+    private final FileOutputStream out;
+    private final FileChannel channel;
+
+    private FileSpanSink(File file, int messageMaxBytes) throws IOException {
+        this.file = file;
+        this.messageMaxBytes = messageMaxBytes;
+        this.out = new FileOutputStream(file, true);
+        this.channel = out.getChannel();
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return messageMaxBytes;
+    }
+
+    @Override
+    public void send(List<byte[]> encodedSpans) throws IOException {
+        ByteBuffer[] buffers = {ByteBuffer.wrap(encodeMessage(encodedSpans)),
+            ByteBuffer.wrap(NEW_LINE)};
+        while (buffers[1].hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    @Override
+    public String toString() {
+        return "FileSpanSink{" + file + "}";
+    }
+}
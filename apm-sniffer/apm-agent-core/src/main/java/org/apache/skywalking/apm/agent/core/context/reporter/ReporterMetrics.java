@@ -0,0 +1,54 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters updated by an {@link AsyncReporter}. Span counters are incremented on application
+ * threads, so they are striped to avoid contending on a single cache line.
+ */
+public final class ReporterMetrics {
+
+    final LongAdder spans = new LongAdder();
+    final LongAdder spansDropped = new LongAdder();
+    final LongAdder messages = new LongAdder();
+    final LongAdder messagesDropped = new LongAdder();
+    final LongAdder messageBytes = new LongAdder();
+
+    ReporterMetrics() {
+    }
+
+    /** Spans offered to the reporter, including dropped ones. */
+    public long spans() {
+        return spans.sum();
+    }
+
+    /**
+     * Spans that were never sent: the queue was full, the span was larger than a message, its
+     * message failed, or the reporter was closed.
+     */
+    public long spansDropped() {
+        return spansDropped.sum();
+    }
+
+    /** Messages attempted by the {@link SpanSink}. */
+    public long messages() {
+        return messages.sum();
+    }
+
+    /** Messages the {@link SpanSink} raised an exception on. */
+    public long messagesDropped() {
+        return messagesDropped.sum();
+    }
+
+    /** Bytes of the encoded spans in attempted messages. */
+    public long messageBytes() {
+        return messageBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ReporterMetrics{spans=" + spans + ", spansDropped=" + spansDropped
+            + ", messages=" + messages + ", messagesDropped=" + messagesDropped
+            + ", messageBytes=" + messageBytes + "}";
+    }
+}
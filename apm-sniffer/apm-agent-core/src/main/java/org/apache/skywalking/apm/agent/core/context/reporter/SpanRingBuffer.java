@@ -0,0 +1,114 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of (context, span) pairs. Producers never block:
+ * when the ring is full, {@link #offer(Object, Object)} returns false and the caller drops the
+ * span.
+ *
+ * <p>Producers claim a slot with a compare-and-set on the producer index, then publish the pair by
+ * an ordered write of the span slot. The consumer reads the span slot to know the pair is visible,
+ * clears it and then advances the consumer index, which frees the slot for producers.
+ *
+ * <p>Derived from the array queues in JCTools, without padding or the producer limit cache.
+ */
+final class SpanRingBuffer {
+
+    interface Consumer {
+
+        void accept(Object context, Object span);
+
+    }
+
+    private static final AtomicLongFieldUpdater<SpanRingBuffer> CONSUMER_INDEX =
+        AtomicLongFieldUpdater.newUpdater(SpanRingBuffer.class, "consumerIndex");
+
+    private final int capacity, mask;
+
+    // written plain by producers before the ordered write of the span slot with the same offset
+    private final Object[] contexts;
+
+    private final AtomicReferenceArray<Object> spans;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    // only written by the consumer
+    private volatile long consumerIndex;
+
+    /** @param capacity rounded up to the next power of two */
+    SpanRingBuffer(int capacity) {
+        this.capacity = roundToPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.contexts = new Object[this.capacity];
+        this.spans = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Returns false if the ring is full. Safe to call from any thread. */
+    boolean offer(Object context, Object span) {
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex >= capacity) {
+                return false;
+            }
+        }
+        while (!producerIndex.compareAndSet(index, index + 1));
+
+        int offset = (int) index & mask;
+        contexts[offset] = context;
+        spans.lazySet(offset, span); // publishes the context, too
+        return true;
+    }
+
+    /**
+     * Passes up to {@code max} pairs to the consumer in order, returning how many were drained.
+     * Only one thread may drain at a time.
+     */
+    int drainTo(Consumer consumer, int max) {
+        long index = consumerIndex;
+        int drained = 0;
+        while (drained < max) {
+            int offset = (int) index & mask;
+            Object span = spans.get(offset);
+            if (span == null) {
+                break; // empty, or the producer which claimed this slot hasn't published yet
+            }
+            Object context = contexts[offset];
+            contexts[offset] = null;
+            spans.lazySet(offset, null);
+            CONSUMER_INDEX.lazySet(this, ++index);
+            drained++;
+            consumer.accept(context, span);
+        }
+        return drained;
+    }
+
+    /**
+     * Returns true if no pair was claimed since the last one drained. The producer index is read
+     * with volatile semantics, so this is ordered with the claim of a concurrent producer.
+     */
+    boolean isEmpty() {
+        return producerIndex.get() == consumerIndex;
+    }
+
+    /** Approximate count of pairs claimed by producers and not yet drained. */
+    int size() {
+        long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    static int roundToPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        int highest = Integer.highestOneBit(value - 1) << 1;
+        return highest < 0 ? 1 << 30 : highest;
+    }
+}
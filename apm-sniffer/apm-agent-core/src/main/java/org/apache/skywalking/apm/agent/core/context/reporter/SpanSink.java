@@ -0,0 +1,60 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.BytesMessageEncoder;
+
+/**
+ * Sends a batch of encoded spans out of process. Only the {@link AsyncReporter} drain thread calls
+ * {@link #send(List)}, so implementations don't need to be thread-safe.
+ *
+ * <p>Spans are encoded in the sink's {@link #encoding()}. A message is the list of the spans in a
+ * batch, as accepted by Zipkin's {@code POST /api/v2/spans} endpoint.
+ *
+ * @see FileSpanSink
+ * @see UdpSpanSink
+ */
+public abstract class SpanSink implements Closeable {
+
+    /**
+     * Encoding of the spans passed to {@link #send(List)}. Defaults to {@link Encoding#JSON}, which
+     * is Zipkin's JSON v2 format.
+     */
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    /** Maximum bytes a single message can hold, including the list delimiters. */
+    public abstract int messageMaxBytes();
+
+    /**
+     * Returns the size of a message holding spans of the given encoded sizes. Used to decide when a
+     * batch is full, without encoding it first.
+     */
+    public int messageSizeInBytes(int spanCount, int spanBytes) {
+        if (encoding() == Encoding.PROTO3) {
+            return spanBytes; // each span is already a ListOfSpans entry
+        }
+        // [span,span,...]
+        return 2 + spanBytes + (spanCount > 1 ? spanCount - 1 : 0);
+    }
+
+    /**
+     * Sends the spans as a single message. An exception means the whole message was dropped.
+     *
+     * @param encodedSpans spans in this sink's {@link #encoding()}, whose {@link #messageSizeInBytes(int, int) message
+     * size} doesn't exceed {@link #messageMaxBytes()}. The list is reused after this returns.
+     */
+    public abstract void send(List<byte[]> encodedSpans) throws IOException;
+
+    /** Encodes the spans as a list in this sink's {@link #encoding()}. */
+    protected byte[] encodeMessage(List<byte[]> encodedSpans) {
+        return BytesMessageEncoder.forEncoding(encoding()).encode(encodedSpans);
+    }
+
+    /** Releases any resources held. Called once by {@link AsyncReporter#close()}. */
+    @Override
+    public abstract void close() throws IOException;
+}
@@ -0,0 +1,81 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+import zipkin2.codec.Encoding;
+
+/**
+ * Sends each message as a single UDP datagram holding a list of spans, in JSON by default. Delivery
+ * is best effort: datagrams lost on the wire are not visible to {@link ReporterMetrics}.
+ *
+ * <p>This is intended for a local relay or a test listener, for example {@code nc -ul 9410}.
+ */
+public final class UdpSpanSink extends SpanSink {
+
+    /** Largest payload of an IPv4 UDP datagram */
+    static final int MAX_DATAGRAM_BYTES = 65507;
+
+    public static UdpSpanSink create(String host, int port) throws IOException {
+        return create(new InetSocketAddress(host, port), MAX_DATAGRAM_BYTES);
+    }
+
+    public static UdpSpanSink create(InetSocketAddress address, int messageMaxBytes)
+        throws IOException {
+        return create(address, messageMaxBytes, Encoding.JSON);
+    }
+
+    /** @param encoding {@link Encoding#JSON} or {@link Encoding#PROTO3} */
+    public static UdpSpanSink create(InetSocketAddress address, int messageMaxBytes,
+        Encoding encoding) throws IOException {
+        Assert.notNull(address, "address can not be null");
+        Assert.isTrue(messageMaxBytes > 0 && messageMaxBytes <= MAX_DATAGRAM_BYTES,
+            "messageMaxBytes should be between 1 and " + MAX_DATAGRAM_BYTES);
+        Assert.isTrue(encoding == Encoding.JSON || encoding == Encoding.PROTO3,
+            "encoding should be JSON or PROTO3");
+        return new UdpSpanSink(address, messageMaxBytes, encoding);
+    }
+
+    private final InetSocketAddress address;
+    private final int messageMaxBytes;
+    private final Encoding encoding;
+    private final DatagramChannel channel;
+
+    private UdpSpanSink(InetSocketAddress address, int messageMaxBytes, Encoding encoding)
+        throws IOException {
+        this.address = address;
+        this.messageMaxBytes = messageMaxBytes;
+        this.encoding = encoding;
+        this.channel = DatagramChannel.open();
+        // connecting skips the security check on each send
+        this.channel.connect(address);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return messageMaxBytes;
+    }
+
+    @Override
+    public void send(List<byte[]> encodedSpans) throws IOException {
+        channel.write(ByteBuffer.wrap(encodeMessage(encodedSpans)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "UdpSpanSink{" + address + "}";
+    }
+}
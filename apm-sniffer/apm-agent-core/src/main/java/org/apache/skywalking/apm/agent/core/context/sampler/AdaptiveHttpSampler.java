@@ -0,0 +1,140 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the rate of new traces of each http endpoint near a target, so that a chatty endpoint like
+ * a health check can't use up the tracing volume of rare ones like a checkout.
+ *
+ * <p>For example, to keep at most 5 new traces per second of each endpoint:
+ * <pre>{@code
+ * tracingBuilder.httpSampler(AdaptiveHttpSampler.create(5, 1000));
+ * }</pre>
+ *
+ * <p>An endpoint is the {@link HttpSamplingRequest}: kind, method, path and, for clients, host. Each
+ * gets a budget of traces per second. Endpoints called less often than that are always sampled, and
+ * busier ones are sampled until their budget for the current second is used.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>Endpoints are kept in a concurrent map bounded by {@code maxEndpoints}. When the map is full,
+ * a single thread evicts endpoints not seen within the last second, then arbitrary ones if that's
+ * not enough. An evicted endpoint starts with a full budget when seen again, so paths with
+ * identifiers in them, such as "/users/1234", should be avoided or the bound kept low.
+ */
+public final class AdaptiveHttpSampler extends SamplerFunction<HttpSamplingRequest> {
+
+    /**
+     * @param tracesPerSecond the amount of new traces per second to keep for each endpoint
+     * @param maxEndpoints upper bound of endpoints tracked at the same time
+     */
+    public static AdaptiveHttpSampler create(int tracesPerSecond, int maxEndpoints) {
+        if (tracesPerSecond < 0) {
+            throw new IllegalArgumentException("tracesPerSecond < 0: was " + tracesPerSecond);
+        }
+        if (maxEndpoints <= 0) {
+            throw new IllegalArgumentException("maxEndpoints <= 0: was " + maxEndpoints);
+        }
+        return new AdaptiveHttpSampler(tracesPerSecond, maxEndpoints);
+    }
+
+    static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int tracesPerSecond;
+    private final int maxEndpoints;
+    private final ConcurrentMap<HttpSamplingRequest, Endpoint> endpoints;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private AdaptiveHttpSampler(int tracesPerSecond, int maxEndpoints) {
+        this.tracesPerSecond = tracesPerSecond;
+        this.maxEndpoints = maxEndpoints;
+        this.endpoints = new ConcurrentHashMap<>(Math.min(maxEndpoints, 256));
+    }
+
+    @Override
+    public Boolean trySample(HttpSamplingRequest request) {
+        return trySample(request, System.nanoTime());
+    }
+
+    Boolean trySample(HttpSamplingRequest request, long now) {
+        if (request == null) {
+            return null;
+        }
+        Endpoint endpoint = endpoints.get(request);
+        if (endpoint == null) {
+            endpoint = addEndpoint(request, now);
+        }
+        return endpoint.tryAcquire(now, tracesPerSecond);
+    }
+
+    /** Returns the amount of endpoints currently tracked. */
+    public int endpointCount() {
+        return endpoints.size();
+    }
+
+    private Endpoint addEndpoint(HttpSamplingRequest request, long now) {
+        if (endpoints.size() >= maxEndpoints && evicting.compareAndSet(false, true)) {
+            try {
+                evict(now);
+            } finally {
+                evicting.set(false);
+            }
+        }
+        Endpoint endpoint = new Endpoint(now);
+        Endpoint previous = endpoints.putIfAbsent(request, endpoint);
+        return previous != null ? previous : endpoint; // lost race
+    }
+
+    /** Evicts idle endpoints, then arbitrary ones until a quarter of the map is free. */
+    private void evict(long now) {
+        for (Iterator<Endpoint> i = endpoints.values().iterator(); i.hasNext(); ) {
+            if (now - i.next().windowStart.get() > NANOS_PER_SECOND) {
+                i.remove();
+            }
+        }
+        int target = maxEndpoints - Math.max(1, maxEndpoints / 4);
+        for (Iterator<Endpoint> i = endpoints.values().iterator();
+            i.hasNext() && endpoints.size() > target; ) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveHttpSampler(" + tracesPerSecond + ")";
+    }
+
+    /** The budget of an endpoint in the current one second window. */
+    static final class Endpoint {
+
+        // Also the last second the endpoint was seen in, which is how idle endpoints are found
+        final AtomicLong windowStart;
+        final AtomicInteger remaining = new AtomicInteger();
+
+        Endpoint(long now) {
+            this.windowStart = new AtomicLong(now - NANOS_PER_SECOND); // first call resets
+        }
+
+        boolean tryAcquire(long now, int tracesPerSecond) {
+            long start = windowStart.get();
+            if (now - start >= NANOS_PER_SECOND && windowStart.compareAndSet(start, now)) {
+                remaining.set(tracesPerSecond);
+            }
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false; // exhausted, so only read until the window resets
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
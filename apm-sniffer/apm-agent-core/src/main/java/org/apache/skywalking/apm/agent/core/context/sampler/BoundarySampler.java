@@ -0,0 +1,56 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+/**
+ * This sampler is appropriate for high-traffic instrumentation (ex edge web servers that each
+ * receive >100K requests) who provision random trace ids.
+ *
+ * <p>The decision is a function of the trace ID alone, so every service which sees the same trace
+ * ID and is configured with the same rate makes the same decision, even if the sampled flag wasn't
+ * propagated to it.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>This uses the lower 63 bits of the trace ID, which are random for IDs created by {@link
+ * org.apache.skywalking.apm.agent.core.context.Tracer}, as a number between 0 and {@link
+ * Long#MAX_VALUE}. The trace is sampled when that number is below a boundary precomputed from the
+ * rate. Nothing is allocated or written when deciding, so there is no contention between threads.
+ */
+public final class BoundarySampler extends Sampler {
+
+    /**
+     * @param rate 0 means never sample, 1 means always sample. Otherwise minimum sample rate is
+     * 0.0001, or 0.01% of traces
+     */
+    public static Sampler create(float rate) {
+        if (rate == 0) {
+            return NEVER_SAMPLE;
+        }
+        if (rate == 1.0) {
+            return ALWAYS_SAMPLE;
+        }
+        if (rate < 0.0001f || rate > 1) {
+            throw new IllegalArgumentException("rate should be between 0.0001 and 1: was " + rate);
+        }
+        return new BoundarySampler(rate);
+    }
+
+    private final float rate;
+    private final long boundary;
+
+    private BoundarySampler(float rate) {
+        this.rate = rate;
+        // widen before multiplying, as a float only has 24 bits of precision
+        this.boundary = (long) ((double) rate * Long.MAX_VALUE);
+    }
+
+    /** Returns true when the lower 63 bits of the trace ID are below the boundary. */
+    @Override
+    public boolean isSampled(long traceId) {
+        return (traceId & Long.MAX_VALUE) < boundary;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundarySampler(" + rate + ")";
+    }
+}
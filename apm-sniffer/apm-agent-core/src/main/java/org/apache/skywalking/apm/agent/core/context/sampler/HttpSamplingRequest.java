@@ -0,0 +1,102 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+import org.apache.skywalking.apm.agent.core.util.Assert;
+
+/**
+ * The attributes of an http request known before its span starts, which an http {@link
+ * SamplerFunction} decides on. Instances are immutable and compare on all fields, so they can be
+ * used as the key of an endpoint.
+ *
+ * <p>Instrumentation creates these without the query string, as otherwise each distinct query would
+ * be a different endpoint.
+ */
+public final class HttpSamplingRequest {
+
+    /** Creates a request received by this process, such as one handled by a servlet container. */
+    public static HttpSamplingRequest server(String method, String path) {
+        return new HttpSamplingRequest(Kind.SERVER, method, path, null);
+    }
+
+    /**
+     * Creates a request sent by this process, such as by an http client.
+     *
+     * @param host the target host name or address, or null if unknown
+     */
+    public static HttpSamplingRequest client(String method, String path, @Nullable String host) {
+        return new HttpSamplingRequest(Kind.CLIENT, method, path, host);
+    }
+
+    private final Kind kind;
+    private final String method, path;
+    @Nullable
+    private final String host;
+    private final int hashCode; // precomputed as these are looked up on each request
+
+    HttpSamplingRequest(Kind kind, String method, String path, @Nullable String host) {
+        Assert.notNull(method, "method can not be null");
+        Assert.notNull(path, "path can not be null");
+        this.kind = kind;
+        this.method = method;
+        this.path = path;
+        this.host = host;
+        int h = 1;
+        h *= 1000003;
+        h ^= kind.hashCode();
+        h *= 1000003;
+        h ^= method.hashCode();
+        h *= 1000003;
+        h ^= path.hashCode();
+        h *= 1000003;
+        h ^= host == null ? 0 : host.hashCode();
+        this.hashCode = h;
+    }
+
+    /** {@link Kind#SERVER} or {@link Kind#CLIENT} */
+    public Kind kind() {
+        return kind;
+    }
+
+    /** The http method, such as "GET" */
+    public String method() {
+        return method;
+    }
+
+    /** The request path without the query string, such as "/api/users" */
+    public String path() {
+        return path;
+    }
+
+    /** The target host of a client request. Null for server requests or when unknown. */
+    @Nullable
+    public String host() {
+        return host;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof HttpSamplingRequest)) {
+            return false;
+        }
+        HttpSamplingRequest that = (HttpSamplingRequest) o;
+        return hashCode == that.hashCode
+            && kind == that.kind
+            && method.equals(that.method)
+            && path.equals(that.path)
+            && (host == null ? that.host == null : host.equals(that.host));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + method + " " + (host != null ? host : "") + path;
+    }
+}
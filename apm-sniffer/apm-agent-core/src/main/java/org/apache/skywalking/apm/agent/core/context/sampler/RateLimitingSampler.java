@@ -0,0 +1,156 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The rate-limited sampler allows you to choose an amount of traces to accept on a per-second
+ * interval. The minimum number is 0 and the max is 2,147,483,647 (max int).
+ *
+ * <p>For example, to allow 10 traces per second, you'd initialize the following:
+ * <pre>{@code
+ * tracingBuilder.sampler(RateLimitingSampler.create(10));
+ * }</pre>
+ *
+ * <h3>Appropriate Usage</h3>
+ *
+ * <p>If the rate is 10 or more traces per second, an attempt is made to distribute the accept
+ * decisions equally across the second. For example, if the rate is 100, 10 will pass every
+ * 100ms.
+ *
+ * <p>Unlike {@link CountingSampler}, the reporting volume doesn't grow with traffic: a spike sees
+ * the same amount of traces per second as a quiet period. Like {@link CountingSampler}, decisions
+ * are not consistent on trace ID.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>The budget of each interval is split into stripes, at most one per processor, each on its own
+ * cache line. A thread takes from the stripe its ID hashes to, and only looks at others when that
+ * one is exhausted. This means threads on different cores don't write to the same memory when
+ * deciding.
+ *
+ * <p>Each stripe holds the number of the interval it was filled for next to the traces left in
+ * it. The interval number is computed from the time, and the first thread to take from a stripe
+ * in a newer interval refills it with the same compare-and-set. So there is no shared reset time,
+ * and no moment when the budget of a new interval looks exhausted.
+ */
+public final class RateLimitingSampler extends Sampler {
+
+    /**
+     * @param tracesPerSecond 0 means never sample. Otherwise the maximum amount of traces accepted
+     * each second.
+     */
+    public static Sampler create(int tracesPerSecond) {
+        if (tracesPerSecond < 0) {
+            throw new IllegalArgumentException("tracesPerSecond < 0: was " + tracesPerSecond);
+        }
+        if (tracesPerSecond == 0) {
+            return NEVER_SAMPLE;
+        }
+        int stripes = Math.min(ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()),
+            Integer.highestOneBit(tracesPerSecond / intervalsPerSecond(tracesPerSecond)));
+        return new RateLimitingSampler(tracesPerSecond, stripes, System.nanoTime());
+    }
+
+    static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // 8 longs are 64 bytes, so each stripe is on a different cache line
+    static final int STRIDE = 8;
+
+    private final int tracesPerSecond;
+    private final int intervalsPerSecond;
+    private final long intervalNanos;
+    private final long startNanos;
+    private final int stripeMask;
+    // Per stripe, the interval it was filled for in the high bits and the traces left in the low
+    private final AtomicLongArray budget;
+
+    /** @param stripes a power of two */
+    RateLimitingSampler(int tracesPerSecond, int stripes, long startNanos) {
+        this.tracesPerSecond = tracesPerSecond;
+        this.intervalsPerSecond = intervalsPerSecond(tracesPerSecond);
+        this.intervalNanos = NANOS_PER_SECOND / intervalsPerSecond;
+        this.startNanos = startNanos;
+        this.stripeMask = stripes - 1;
+        this.budget = new AtomicLongArray(stripes * STRIDE);
+        for (int i = 0; i < stripes; i++) {
+            budget.set(i * STRIDE, share(i, 0L) & 0xFFFFFFFFL);
+        }
+    }
+
+    /** Spreads decisions across the second when there is at least one per decisecond. */
+    static int intervalsPerSecond(int tracesPerSecond) {
+        return tracesPerSecond < 10 ? 1 : 10;
+    }
+
+    @Override
+    public boolean isSampled(long traceId) {
+        return acquire(System.nanoTime());
+    }
+
+    /** Takes one trace from the budget of the interval of the given time. */
+    boolean acquire(long nanoTime) {
+        long interval = Math.max(0L, nanoTime - startNanos) / intervalNanos;
+        int home = stripe(Thread.currentThread().getId());
+        for (int i = 0; i <= stripeMask; i++) {
+            if (tryAcquire((home + i) & stripeMask, interval)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes one trace from the stripe, first refilling it if it was filled for an older interval.
+     * Exhausted stripes are only read.
+     */
+    private boolean tryAcquire(int stripe, long interval) {
+        int index = stripe * STRIDE;
+        long value, update;
+        do {
+            value = budget.get(index);
+            int filledFor = (int) (value >>> 32), remaining = (int) value;
+            // compared by difference, so that the interval number can wrap around
+            if ((int) interval - filledFor > 0) {
+                filledFor = (int) interval;
+                remaining = share(stripe, interval);
+            }
+            if (remaining <= 0) {
+                return false;
+            }
+            update = ((long) filledFor << 32) | ((remaining - 1) & 0xFFFFFFFFL);
+        } while (!budget.compareAndSet(index, value, update));
+        return true;
+    }
+
+    /**
+     * Returns the traces of a stripe in the interval. The traces of an interval are divided across
+     * stripes, giving any remainder to the first ones. Interval sizes differ by at most one, so that
+     * they add up to the traces per second.
+     */
+    int share(int stripe, long interval) {
+        int i = (int) (interval % intervalsPerSecond);
+        long tracesBefore = (long) tracesPerSecond * i / intervalsPerSecond;
+        long tracesAfter = (long) tracesPerSecond * (i + 1) / intervalsPerSecond;
+        int tracesPerInterval = (int) (tracesAfter - tracesBefore);
+
+        int stripes = stripeMask + 1;
+        int share = tracesPerInterval / stripes, remainder = tracesPerInterval % stripes;
+        return stripe < remainder ? share + 1 : share;
+    }
+
+    private int stripe(long threadId) {
+        // mix the bits as thread IDs are sequential
+        long hash = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & stripeMask;
+    }
+
+    static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitingSampler(" + tracesPerSecond + ")";
+    }
+}
@@ -0,0 +1,63 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import org.apache.skywalking.apm.agent.core.context.internal.Nullable;
+
+/**
+ * Decides whether to start a new trace based on an input such as a request, where a {@link Sampler}
+ * only sees the trace ID. Instrumentation passes this to the {@code Tracer} methods which create
+ * spans, such as {@code createEntrySpan(extractor, carrier, samplerFunction, arg)}.
+ *
+ * <p>A sampler function only decides new traces: if a decision was already propagated, such as in
+ * B3 headers, that decision is kept and this function isn't called.
+ *
+ * @param <T> type of the input, for example an http request
+ * @see HttpSamplingRequest
+ * @see AdaptiveHttpSampler
+ */
+public abstract class SamplerFunction<T> {
+
+    static final SamplerFunction<Object> DEFER_DECISION = new SamplerFunction<Object>() {
+        @Override
+        public Boolean trySample(Object arg) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "DeferDecision";
+        }
+    };
+
+    static final SamplerFunction<Object> NEVER_SAMPLE = new SamplerFunction<Object>() {
+        @Override
+        public Boolean trySample(Object arg) {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "NeverSample";
+        }
+    };
+
+    /** Returns a function which always defers to the {@link Sampler trace ID sampler}. */
+    @SuppressWarnings("unchecked")
+    public static <T> SamplerFunction<T> deferDecision() {
+        return (SamplerFunction<T>) DEFER_DECISION;
+    }
+
+    /** Returns a function which never starts new traces, only continuing those already sampled. */
+    @SuppressWarnings("unchecked")
+    public static <T> SamplerFunction<T> neverSample() {
+        return (SamplerFunction<T>) NEVER_SAMPLE;
+    }
+
+    /**
+     * Returns the sampling decision for the input, or null to defer to the {@link Sampler trace ID
+     * sampler}.
+     *
+     * @param arg the input to decide on, such as a request. Null input should defer.
+     */
+    @Nullable
+    public abstract Boolean trySample(@Nullable T arg);
+}
@@ -0,0 +1,98 @@
+package org.apache.skywalking.apm.agent.core.plugin;
+
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+/**
+ * Stands in for a define read from a {@link PluginIndex}, until a class it matches is seen. Only
+ * then is the define loaded and instantiated, and unless its witness classes are missing.
+ */
+final class LazyPluginDefine extends AbstractClassEnhancePluginDefine {
+
+    final String pluginName;
+    final String defineClass;
+    final NameMatch match;
+    final String[] witnessClasses;
+    final ClassLoader classLoader;
+
+    private volatile AbstractClassEnhancePluginDefine delegate;
+    private boolean failed;
+
+    LazyPluginDefine(String pluginName, String defineClass, NameMatch match,
+        String[] witnessClasses, ClassLoader classLoader) {
+        this.pluginName = pluginName;
+        this.defineClass = defineClass;
+        this.match = match;
+        this.witnessClasses = witnessClasses;
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public DynamicType.Builder<?> define(TypeDescription typeDescription,
+        DynamicType.Builder<?> builder, ClassLoader classLoader, EnhanceContext context) {
+        for (String witnessClass : witnessClasses) {
+            if (!WitnessClassFinder.INSTANCE.exist(witnessClass, classLoader)) {
+                logger.warn("enhance class " + typeDescription.getTypeName() + " by plugin " +
+                    defineClass + " is not working. Because witness class " + witnessClass +
+                    " is not existed.");
+                return null;
+            }
+        }
+        AbstractClassEnhancePluginDefine delegate = delegate();
+        return delegate != null ? delegate.define(typeDescription, builder, classLoader, context)
+            : null;
+    }
+
+    @Override
+    protected DynamicType.Builder<?> enhance(TypeDescription typeDescription,
+        DynamicType.Builder<?> newClassBuilder, ClassLoader classLoader,
+        EnhanceContext context) throws PluginException {
+        AbstractClassEnhancePluginDefine delegate = delegate();
+        return delegate != null
+            ? delegate.enhance(typeDescription, newClassBuilder, classLoader, context) : null;
+    }
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return match;
+    }
+
+    @Override
+    protected String[] witnessClasses() {
+        return witnessClasses;
+    }
+
+    AbstractClassEnhancePluginDefine delegate() {
+        AbstractClassEnhancePluginDefine result = delegate;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (delegate == null && !failed) {
+                delegate = newInstance(pluginName, defineClass, classLoader);
+                failed = delegate == null;
+            }
+            return delegate;
+        }
+    }
+
+    /** Returns a new instance of the define, or null if it can't be loaded. */
+    static AbstractClassEnhancePluginDefine newInstance(String pluginName, String defineClass,
+        ClassLoader classLoader) {
+        try {
+            logger.debug("loading plugin class " + defineClass + ".");
+            return (AbstractClassEnhancePluginDefine)
+                Class.forName(defineClass, true, classLoader).newInstance();
+        } catch (Throwable t) {
+            logger.error("load plugin [" + pluginName + "] failure.");
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyPluginDefine{" + defineClass + "}";
+    }
+}
@@ -8,7 +8,9 @@ import org.apache.skywalking.apm.agent.logging.LogFactory;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PluginBootstrap {
 
@@ -27,7 +29,38 @@ public class PluginBootstrap {
             return new ArrayList<>();
         }
 
+        List<AbstractClassEnhancePluginDefine> plugins = loadPlugins(resources,
+            resolver.getIndexResource(), AgentClassLoader.getDefault());
+
+        plugins.addAll(DynamicPluginLoader.INSTANCE.load(AgentClassLoader.getDefault()));
+
+        return plugins;
+    }
+
+    /**
+     * Reads the index of each plugin jar which has one, and the plugin file of the others, or of
+     * those whose index can't be read.
+     */
+    List<AbstractClassEnhancePluginDefine> loadPlugins(List<URL> resources, List<URL> indexes,
+        ClassLoader classLoader) {
+        Set<String> indexedJars = new HashSet<>();
+        List<AbstractClassEnhancePluginDefine> plugins = new ArrayList<>();
+        if (indexes != null) {
+            for (URL indexUrl : indexes) {
+                try {
+                    plugins.addAll(PluginIndex.read(indexUrl.openStream(), classLoader));
+                    indexedJars.add(jarOf(indexUrl, PluginIndex.RESOURCE_NAME));
+                } catch (IOException e) {
+                    logger.warn("plugin index [" + indexUrl + "] init failure, " +
+                        "fall back to plugin file.", e);
+                }
+            }
+        }
+
         for (URL pluginUrl : resources) {
+            if (indexedJars.contains(jarOf(pluginUrl, PluginIndex.DEF_RESOURCE_NAME))) {
+                continue;
+            }
             try {
                 PluginCfg.INSTANCE.load(pluginUrl.openStream());
             } catch (IOException e) {
@@ -37,21 +70,24 @@ public class PluginBootstrap {
 
         List<PluginDefine> pluginClassList = PluginCfg.INSTANCE.getPluginClassList();
 
-        List<AbstractClassEnhancePluginDefine> plugins = new ArrayList<>();
         for (PluginDefine pluginDefine : pluginClassList) {
             try {
                 logger.debug("loading plugin class " + pluginDefine.getDefineClass() + ".");
                 AbstractClassEnhancePluginDefine plugin =
-                        (AbstractClassEnhancePluginDefine) Class.forName(pluginDefine.getDefineClass(), true, AgentClassLoader.getDefault()).newInstance();
+                        (AbstractClassEnhancePluginDefine) Class.forName(pluginDefine.getDefineClass(), true, classLoader).newInstance();
                 plugins.add(plugin);
             } catch (Throwable t) {
                 logger.error("load plugin [" + pluginDefine.getName() + "] failure.");
             }
         }
 
-        plugins.addAll(DynamicPluginLoader.INSTANCE.load(AgentClassLoader.getDefault()));
-
         return plugins;
     }
 
+    /** Returns the location of the jar of a plugin resource. */
+    private static String jarOf(URL resource, String name) {
+        String url = resource.toString();
+        return url.endsWith(name) ? url.substring(0, url.length() - name.length()) : url;
+    }
+
 }
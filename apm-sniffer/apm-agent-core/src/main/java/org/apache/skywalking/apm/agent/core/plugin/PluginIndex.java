@@ -0,0 +1,171 @@
+package org.apache.skywalking.apm.agent.core.plugin;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.exception.IllegalPluginDefineException;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+/**
+ * A binary form of a plugin's {@code skywalking-plugin.def}, written when the plugin is packaged.
+ * Besides the define classes, it records what each define matches, so that the agent can start
+ * without loading and instantiating every define.
+ *
+ * <p>Defines matching a class by name are read as a {@link LazyPluginDefine}, which is only
+ * instantiated once that class is seen. Other defines are instantiated when read, as the agent
+ * needs their instance up front: bootstrap defines are installed separately, and indirect matches
+ * are code.
+ *
+ * <p>The format is a header of {@link #MAGIC}, {@link #VERSION} and the count of defines, followed
+ * by each define:
+ * <pre>{@code
+ * utf plugin name, utf define class, byte kind
+ * if kind is KIND_NAME: utf target class name
+ * short witness class count, utf witness class names
+ * }</pre>
+ */
+public final class PluginIndex {
+
+    /** The name of the index resource, next to {@code skywalking-plugin.def} */
+    public static final String RESOURCE_NAME = "skywalking-plugin.idx";
+
+    static final String DEF_RESOURCE_NAME = "skywalking-plugin.def";
+
+    static final int MAGIC = 0x53575049; // SWPI
+
+    static final byte VERSION = 1;
+
+    static final byte KIND_NAME = 0, KIND_INDIRECT = 1, KIND_BOOTSTRAP = 2, KIND_NONE = 3;
+
+    /**
+     * Writes the index of the {@code skywalking-plugin.def} in the given directory next to it. This
+     * is run by the build of each plugin, with the plugin's classes on the class path.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("usage: PluginIndex <classes directory>");
+        }
+        File directory = new File(args[0]);
+        List<PluginDefine> pluginDefines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(new File(directory, DEF_RESOURCE_NAME)), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                pluginDefines.add(PluginDefine.build(line));
+            }
+        }
+        try (OutputStream out = new FileOutputStream(new File(directory, RESOURCE_NAME))) {
+            write(pluginDefines, PluginIndex.class.getClassLoader(), out);
+        }
+    }
+
+    /** Instantiates each define to record what it matches. */
+    static void write(List<PluginDefine> pluginDefines, ClassLoader classLoader,
+        OutputStream output) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(pluginDefines.size());
+        for (PluginDefine pluginDefine : pluginDefines) {
+            AbstractClassEnhancePluginDefine define = (AbstractClassEnhancePluginDefine)
+                Class.forName(pluginDefine.getDefineClass(), true, classLoader).newInstance();
+            out.writeUTF(pluginDefine.getName());
+            out.writeUTF(pluginDefine.getDefineClass());
+            ClassMatch match = define.enhanceClass();
+            if (define instanceof BootstrapClassEnhancePluginDefine) {
+                out.writeByte(KIND_BOOTSTRAP);
+            } else if (match instanceof NameMatch) {
+                out.writeByte(KIND_NAME);
+                out.writeUTF(((NameMatch) match).getClassName());
+            } else if (match != null) {
+                out.writeByte(KIND_INDIRECT);
+            } else {
+                out.writeByte(KIND_NONE);
+            }
+            String[] witnessClasses = define.witnessClasses();
+            if (witnessClasses == null) {
+                witnessClasses = new String[0];
+            }
+            out.writeShort(witnessClasses.length);
+            for (String witnessClass : witnessClasses) {
+                out.writeUTF(witnessClass);
+            }
+        }
+        out.flush();
+        bytes.writeTo(output);
+    }
+
+    /**
+     * Reads the defines of an index, instantiating those which aren't matched by name.
+     *
+     * @throws IOException if the index is malformed or of another version. The plugin's {@code
+     * skywalking-plugin.def} should be used instead.
+     */
+    static List<AbstractClassEnhancePluginDefine> read(InputStream input,
+        ClassLoader classLoader) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(readFully(input)));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Unsupported plugin index");
+        }
+        int count = in.readInt();
+        List<AbstractClassEnhancePluginDefine> defines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String pluginName = in.readUTF();
+            String defineClass = in.readUTF();
+            byte kind = in.readByte();
+            String className = kind == KIND_NAME ? in.readUTF() : null;
+            String[] witnessClasses = new String[in.readShort()];
+            for (int j = 0; j < witnessClasses.length; j++) {
+                witnessClasses[j] = in.readUTF();
+            }
+            if (kind == KIND_NAME) {
+                defines.add(new LazyPluginDefine(pluginName, defineClass,
+                    NameMatch.byName(className), witnessClasses, classLoader));
+            } else if (kind == KIND_INDIRECT || kind == KIND_BOOTSTRAP) {
+                AbstractClassEnhancePluginDefine define =
+                    LazyPluginDefine.newInstance(pluginName, defineClass, classLoader);
+                if (define != null) {
+                    defines.add(define);
+                }
+            } else if (kind != KIND_NONE) {
+                throw new IOException("Unsupported kind " + kind + " of " + defineClass);
+            }
+        }
+        return defines;
+    }
+
+    /** Reads the whole index at once, as it is small. */
+    static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private PluginIndex() {
+    }
+}
@@ -15,11 +15,22 @@ public class PluginResourcesResolver {
     private static final Log logger = LogFactory.getLog(PluginResourcesResolver.class);
 
     public List<URL> getResource() {
+        return getResource(PluginIndex.DEF_RESOURCE_NAME);
+    }
+
+    /**
+     * @return the {@link PluginIndex} of each plugin jar which has one.
+     */
+    public List<URL> getIndexResource() {
+        return getResource(PluginIndex.RESOURCE_NAME);
+    }
+
+    private List<URL> getResource(String name) {
         List<URL> cfgUrlPaths = new ArrayList<>();
         Enumeration<URL> urls;
 
         try {
-            urls = AgentClassLoader.getDefault().getResources("skywalking-plugin.def");
+            urls = AgentClassLoader.getDefault().getResources(name);
 
             while (urls.hasMoreElements()) {
                 URL pluginUrl = urls.nextElement();
@@ -0,0 +1,66 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.pool.TypePool;
+import org.apache.skywalking.apm.agent.core.plugin.AbstractClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.EnhanceContext;
+import org.apache.skywalking.apm.agent.core.plugin.PluginException;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.EnhanceException;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.ClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.util.StringUtils;
+
+/**
+ * Plugins, which enhance classes of the bootstrap class loader, such as executors. Those classes
+ * can't see agent classes, and are usually loaded before the agent starts, so they can't be
+ * enhanced by {@link ClassEnhancePluginDefine}, which adds a field and delegates to interceptors.
+ * <p>
+ * Instead, the advice of each {@link AdviceInterceptPoint} is inlined and the classes are
+ * retransformed. Advice can call the {@link ContextBridge}, which is {@linkplain
+ * BootstrapClassInjector injected} into the bootstrap class loader with the classes returned by
+ * {@link #bootstrapClasses()}.
+ */
+public abstract class BootstrapClassEnhancePluginDefine extends AbstractClassEnhancePluginDefine {
+
+    @Override
+    protected DynamicType.Builder<?> enhance(TypeDescription typeDescription,
+        DynamicType.Builder<?> newClassBuilder,
+        ClassLoader classLoader,
+        EnhanceContext context) throws PluginException {
+        AdviceInterceptPoint[] adviceInterceptPoints = getAdviceInterceptPoints();
+        if (adviceInterceptPoints == null || adviceInterceptPoints.length == 0) {
+            return newClassBuilder;
+        }
+
+        // advice is read as bytes, so that it is never loaded by the agent class loader
+        ClassFileLocator locator = ClassFileLocator.ForClassLoader.of(getClass().getClassLoader());
+        TypePool typePool = TypePool.Default.of(locator);
+        for (AdviceInterceptPoint adviceInterceptPoint : adviceInterceptPoints) {
+            String adviceClass = adviceInterceptPoint.getAdviceClass();
+            if (StringUtils.isEmpty(adviceClass)) {
+                throw new EnhanceException("no advice define to enhance class " +
+                    typeDescription.getTypeName());
+            }
+            newClassBuilder = newClassBuilder.visit(
+                Advice.to(typePool.describe(adviceClass).resolve(), locator)
+                    .on(adviceInterceptPoint.getMethodsMatcher()));
+        }
+        return newClassBuilder;
+    }
+
+    /**
+     * @return the advice to inline, or null to enhance nothing.
+     */
+    protected abstract AdviceInterceptPoint[] getAdviceInterceptPoints();
+
+    /**
+     * @return names of classes advice refers to besides {@link ContextBridge}, which are injected
+     * into the bootstrap class loader. They must only refer to {@code java.*} types and each other.
+     */
+    public String[] bootstrapClasses() {
+        return new String[] {};
+    }
+}
@@ -0,0 +1,70 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.loading.ClassInjector;
+import org.apache.skywalking.apm.agent.core.plugin.PluginException;
+
+/**
+ * Injects the {@link ContextBridge} and the classes of {@link BootstrapClassEnhancePluginDefine}s
+ * into the bootstrap class loader, so that advice inlined into JDK classes can resolve them.
+ * <p>
+ * This must run before anything loads those classes from the agent class path: class loaders
+ * delegate to their parent first, so once injected, the agent sees the same classes as the JDK.
+ * For that reason, classes are only referred to by name here.
+ */
+public class BootstrapClassInjector {
+
+    static final String[] BRIDGE_CLASSES = {
+        "org.apache.skywalking.apm.agent.core.plugin.bootstrap.ContextBridge",
+        "org.apache.skywalking.apm.agent.core.plugin.bootstrap.TracingTask",
+        "org.apache.skywalking.apm.agent.core.plugin.bootstrap.TracingBiFunction"
+    };
+
+    /**
+     * @throws PluginException when a class can't be read or the instrumentation can't append to the
+     * bootstrap class path.
+     */
+    public static void inject(Instrumentation instrumentation,
+        List<BootstrapClassEnhancePluginDefine> defines) throws PluginException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        addClasses(classes, BootstrapClassInjector.class.getClassLoader(), BRIDGE_CLASSES);
+        for (BootstrapClassEnhancePluginDefine define : defines) {
+            addClasses(classes, define.getClass().getClassLoader(), define.bootstrapClasses());
+        }
+
+        File folder;
+        try {
+            folder = Files.createTempDirectory("skywalking-bootstrap").toFile();
+        } catch (IOException e) {
+            throw new PluginException("Can't create a folder for bootstrap classes", e);
+        }
+        folder.deleteOnExit();
+        ClassInjector.UsingInstrumentation.of(folder,
+            ClassInjector.UsingInstrumentation.Target.BOOTSTRAP, instrumentation)
+            .injectRaw(classes);
+    }
+
+    static void addClasses(Map<String, byte[]> classes, ClassLoader classLoader, String[] names) {
+        if (names == null || names.length == 0) {
+            return;
+        }
+        ClassFileLocator locator = ClassFileLocator.ForClassLoader.of(classLoader);
+        for (String name : names) {
+            if (classes.containsKey(name)) {
+                continue;
+            }
+            try {
+                classes.put(name, locator.locate(name).resolve());
+            } catch (IOException | IllegalStateException e) {
+                throw new PluginException("Can't read bootstrap class " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Lets code in JDK classes, such as advice inlined into {@code ThreadPoolExecutor}, reach the
+ * tracer. This type and the task wrappers are {@linkplain BootstrapClassInjector injected} into the
+ * bootstrap class loader, where agent classes aren't visible, so they only refer to {@code java.*}
+ * types. The agent {@linkplain #install(ContextBridge) installs} the implementation at startup.
+ *
+ * <p>What is captured is opaque here: it is a single reference, such as the active span, which the
+ * implementation restores on the thread that runs the task.
+ */
+public abstract class ContextBridge {
+
+    static volatile ContextBridge instance;
+
+    public static void install(ContextBridge bridge) {
+        instance = bridge;
+    }
+
+    /**
+     * Returns a task that runs the input in the context active now, or the input itself if there is
+     * nothing to propagate. This allocates no more than the wrapper.
+     *
+     * <p>The input can be a {@link Runnable}, a {@link java.util.concurrent.Callable}, or a
+     * function accepted by {@link CompletableFuture} async stages. The result implements the same
+     * interface as the input. Tasks that are already wrapped and the internal tasks of {@link
+     * CompletableFuture}, whose functions are wrapped when the stage is declared, are returned as
+     * is. So are {@link Future}s, such as {@code ForkJoinTask}s and {@code FutureTask}s: executors
+     * and their subclasses look for them by identity or type, ex. in {@code
+     * ThreadPoolExecutor.purge()} or {@code afterExecute}, so wrap the task a future runs instead.
+     */
+    public static Object wrap(Object task) {
+        ContextBridge bridge = instance;
+        if (bridge == null || task == null
+            || task instanceof TracingTask || task instanceof TracingBiFunction
+            || task instanceof Future
+            || task instanceof CompletableFuture.AsynchronousCompletionTask) {
+            return task;
+        }
+        Object context = bridge.capture();
+        if (context == null) {
+            return task;
+        }
+        if (task instanceof BiFunction) { // conflicts with Function, so can't share a wrapper type
+            return new TracingBiFunction<>(bridge, context, (BiFunction<?, ?, ?>) task);
+        }
+        return new TracingTask<>(bridge, context, task);
+    }
+
+    /** Returns the context active on the current thread, or null if there is none. */
+    protected abstract Object capture();
+
+    /**
+     * Makes the captured context active on the current thread, returning what {@link
+     * #detach(Object, Object)} needs to revert that.
+     */
+    protected abstract Object attach(Object context);
+
+    /** Reverts {@link #attach(Object)}, after the task completed or threw. */
+    protected abstract void detach(Object context, Object attached);
+}
@@ -0,0 +1,36 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import java.util.function.BiFunction;
+
+/**
+ * Like {@link TracingTask}, for {@link BiFunction}, whose {@code andThen} method clashes with the
+ * one of {@link java.util.function.Function}.
+ */
+@SuppressWarnings("unchecked")
+final class TracingBiFunction<T, U, V> implements BiFunction<T, U, V> {
+
+    final ContextBridge bridge;
+    final Object context;
+    final BiFunction<T, U, V> delegate;
+
+    TracingBiFunction(ContextBridge bridge, Object context, BiFunction<?, ?, ?> delegate) {
+        this.bridge = bridge;
+        this.context = context;
+        this.delegate = (BiFunction<T, U, V>) delegate;
+    }
+
+    @Override
+    public V apply(T t, U u) {
+        Object attached = bridge.attach(context);
+        try {
+            return delegate.apply(t, u);
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a task in the context captured when it was {@linkplain ContextBridge#wrap(Object) wrapped}.
+ *
+ * <p>This implements each task interface accepted by executors and {@link
+ * java.util.concurrent.CompletableFuture} async stages, except {@link
+ * java.util.function.BiFunction}, so that one wrapper type can replace an argument of any of them.
+ * Only the interface of the delegate will be invoked.
+ */
+@SuppressWarnings("unchecked")
+final class TracingTask<T, U, V>
+    implements Runnable, Callable<V>, Supplier<V>, Function<T, V>, Consumer<T>, BiConsumer<T, U> {
+
+    final ContextBridge bridge;
+    final Object context;
+    final Object delegate;
+
+    TracingTask(ContextBridge bridge, Object context, Object delegate) {
+        this.bridge = bridge;
+        this.context = context;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+        Object attached = bridge.attach(context);
+        try {
+            ((Runnable) delegate).run();
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public V call() throws Exception {
+        Object attached = bridge.attach(context);
+        try {
+            return ((Callable<V>) delegate).call();
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public V get() {
+        Object attached = bridge.attach(context);
+        try {
+            return ((Supplier<V>) delegate).get();
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public V apply(T t) {
+        Object attached = bridge.attach(context);
+        try {
+            return ((Function<T, V>) delegate).apply(t);
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public void accept(T t) {
+        Object attached = bridge.attach(context);
+        try {
+            ((Consumer<T>) delegate).accept(t);
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public void accept(T t, U u) {
+        Object attached = bridge.attach(context);
+        try {
+            ((BiConsumer<T, U>) delegate).accept(t, u);
+        } finally {
+            bridge.detach(context, attached);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
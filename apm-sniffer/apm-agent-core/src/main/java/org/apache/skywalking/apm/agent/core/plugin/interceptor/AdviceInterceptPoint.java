@@ -0,0 +1,30 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * An "Intercept Point" whose advice is inlined into the matched methods, instead of delegating to
+ * an interceptor instance. This changes no class format, so it can enhance classes that are already
+ * loaded, including those of the bootstrap class loader.
+ * <p>
+ * ref to {@link InstanceMethodsInterceptPoint}, which delegates instead.
+ * <p>
+ */
+public interface AdviceInterceptPoint {
+
+    /**
+     * methods matcher, including static methods.
+     *
+     * @return methods matcher
+     */
+    ElementMatcher<MethodDescription> getMethodsMatcher();
+
+    /**
+     * @return represents a class name, the class has {@code net.bytebuddy.asm.Advice} annotated
+     * methods. Its bytecode is copied into the matched methods, so it must only refer to types
+     * visible to the enhanced class.
+     */
+    String getAdviceClass();
+
+}
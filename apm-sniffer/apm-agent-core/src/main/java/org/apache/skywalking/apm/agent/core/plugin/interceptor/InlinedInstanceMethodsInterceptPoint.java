@@ -0,0 +1,14 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor;
+
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAdviceInterceptor;
+
+/**
+ * this interface for those who want the interceptor inlined into the matched methods as advice,
+ * instead of delegating each call to it. This avoids the per-call allocations of delegation.
+ * <p>
+ * The interceptor can be an {@link InstanceMethodsAdviceInterceptor}, or an existing {@code
+ * InstanceMethodsAroundInterceptor}, which is adapted. Only methods declared by the enhanced class
+ * are intercepted, and arguments can't be overridden.
+ */
+public interface InlinedInstanceMethodsInterceptPoint extends InstanceMethodsInterceptPoint {
+}
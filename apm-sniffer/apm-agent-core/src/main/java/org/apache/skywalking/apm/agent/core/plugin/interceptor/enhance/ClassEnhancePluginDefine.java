@@ -15,12 +15,15 @@ import org.apache.skywalking.apm.agent.core.plugin.PluginException;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.ConstructorInterceptPoint;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.DeclaredInstanceMethodsInterceptPoint;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.EnhanceException;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InlinedInstanceMethodsInterceptPoint;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.InstanceMethodsInterceptPoint;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.StaticMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.loader.InterceptorInstanceLoader;
 import org.apache.skywalking.apm.agent.core.util.StringUtils;
 
 import static net.bytebuddy.jar.asm.Opcodes.ACC_PRIVATE;
 import static net.bytebuddy.jar.asm.Opcodes.ACC_VOLATILE;
+import static net.bytebuddy.matcher.ElementMatchers.isMethod;
 import static net.bytebuddy.matcher.ElementMatchers.isStatic;
 import static net.bytebuddy.matcher.ElementMatchers.not;
 
@@ -130,12 +133,22 @@ public abstract class ClassEnhancePluginDefine extends AbstractClassEnhancePlugi
                 ElementMatcher.Junction<MethodDescription> junction =
                     not(isStatic()).and(instanceMethodsInterceptPoint.getMethodMatcher());
 
-                if (instanceMethodsInterceptPoint instanceof DeclaredInstanceMethodsInterceptPoint) {
+                if (instanceMethodsInterceptPoint instanceof DeclaredInstanceMethodsInterceptPoint
+                    || instanceMethodsInterceptPoint instanceof InlinedInstanceMethodsInterceptPoint) {
                     junction =
                         junction.and(ElementMatchers.<MethodDescription>isDeclaredBy(typeDescription));
                 }
 
-                if (instanceMethodsInterceptPoint.isOverrideArgs()) {
+                if (instanceMethodsInterceptPoint instanceof InlinedInstanceMethodsInterceptPoint) {
+                    if (instanceMethodsInterceptPoint.isOverrideArgs()) {
+                        throw new EnhanceException("inlined interceptor " + interceptor +
+                            " can't override arguments of class " + enhanceOriginClassName);
+                    }
+                    InstanceMethodsAdviceInterceptor adviceInterceptor =
+                        loadAdviceInterceptor(interceptor, classLoader);
+                    newClassBuilder = InstMethodsAdvice.apply(newClassBuilder, adviceInterceptor,
+                        isMethod().and(junction));
+                } else if (instanceMethodsInterceptPoint.isOverrideArgs()) {
                     newClassBuilder = newClassBuilder.method(junction)
                         .intercept(MethodDelegation.withDefaultConfiguration()
                         .withBinders(Morph.Binder.install(OverrideCallable.class))
@@ -149,6 +162,27 @@ public abstract class ClassEnhancePluginDefine extends AbstractClassEnhancePlugi
         return newClassBuilder;
     }
 
+    /**
+     * Loads the interceptor of an {@link InlinedInstanceMethodsInterceptPoint} while enhancing, adapting an {@link
+     * InstanceMethodsAroundInterceptor} if needed.
+     */
+    private static InstanceMethodsAdviceInterceptor loadAdviceInterceptor(String interceptor,
+        ClassLoader classLoader) throws PluginException {
+        Object instance;
+        try {
+            instance = InterceptorInstanceLoader.load(interceptor, classLoader);
+        } catch (Throwable ex) {
+            throw new PluginException("Can't create InstanceMethodsAdviceInterceptor.", ex);
+        }
+        if (instance instanceof InstanceMethodsAdviceInterceptor) {
+            return (InstanceMethodsAdviceInterceptor) instance;
+        } else if (instance instanceof InstanceMethodsAroundInterceptor) {
+            return new InstMethodsAroundAdapter((InstanceMethodsAroundInterceptor) instance);
+        }
+        throw new EnhanceException(interceptor + " can't be inlined, as it is neither an " +
+            "InstanceMethodsAdviceInterceptor nor an InstanceMethodsAroundInterceptor");
+    }
+
     /**
      * Constructor methods intercept point. See {@link ConstructorInterceptPoint}
      *
@@ -0,0 +1,169 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.field.FieldDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.LoadedTypeInitializer;
+import net.bytebuddy.implementation.bytecode.StackManipulation;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.implementation.bytecode.collection.ArrayAccess;
+import net.bytebuddy.implementation.bytecode.constant.IntegerConstant;
+import net.bytebuddy.implementation.bytecode.member.FieldAccess;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import static net.bytebuddy.jar.asm.Opcodes.ACC_PRIVATE;
+import static net.bytebuddy.jar.asm.Opcodes.ACC_STATIC;
+import static net.bytebuddy.jar.asm.Opcodes.ACC_SYNTHETIC;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+/**
+ * Advice inlined into the methods of an {@link
+ * org.apache.skywalking.apm.agent.core.plugin.interceptor.InlinedInstanceMethodsInterceptPoint}.
+ * The {@link InstMethodsCallSite}s of a class are held by a static field added to it, which is set
+ * when the class is loaded, and each method gets the index of its own as a constant. So the advice
+ * only loads the call site and calls it, and call sites are collected with the class, instead of
+ * pinning its class loader.
+ * <p>
+ * Unlike {@link InstMethodsInter}, there is no {@code @SuperCall} callable to generate and
+ * allocate, no {@code Method} lookup and no {@link MethodInterceptResult} per call. The arguments
+ * array is only allocated for interceptors that {@linkplain
+ * InstanceMethodsAdviceInterceptor#needsArguments() need it}.
+ */
+public final class InstMethodsAdvice {
+
+    /** Binds the call site of the advised method. */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface CallSite {
+    }
+
+    static final String CALL_SITES_FIELD_PREFIX = "_$CallSites_ws";
+
+    /** Makes the field of each intercept point unique, as a class can be enhanced by several. */
+    static final AtomicInteger CALL_SITES_FIELD_COUNT = new AtomicInteger();
+
+    /** Inlines advice which calls the interceptor around each of the given methods. */
+    public static DynamicType.Builder<?> apply(DynamicType.Builder<?> builder,
+        InstanceMethodsAdviceInterceptor interceptor,
+        ElementMatcher<? super MethodDescription> methods) {
+        CallSiteMapping mapping = new CallSiteMapping(interceptor,
+            CALL_SITES_FIELD_PREFIX + CALL_SITES_FIELD_COUNT.incrementAndGet());
+        return builder
+            .defineField(mapping.fieldName, InstMethodsCallSite[].class,
+                ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC)
+            .initializer(mapping)
+            .visit(Advice.withCustomMapping()
+                .bind(CallSite.class, mapping)
+                .to(interceptor.needsArguments() ? WithArguments.class : WithoutArguments.class)
+                .on(methods));
+    }
+
+    static final class WithArguments {
+
+        @Advice.OnMethodEnter(skipOn = MethodInterceptResult.class, suppress = Throwable.class)
+        static Object enter(@CallSite InstMethodsCallSite callSite,
+            @Advice.Origin Class<?> type,
+            @Advice.This Object self,
+            @Advice.AllArguments Object[] arguments,
+            @Advice.Local("allArguments") Object[] allArguments) {
+            allArguments = arguments; // so that exit sees the same array
+            return callSite.enter(type, self, allArguments);
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
+        static void exit(@CallSite InstMethodsCallSite callSite,
+            @Advice.This Object self,
+            @Advice.Local("allArguments") Object[] allArguments,
+            @Advice.Enter Object state,
+            @Advice.Return(readOnly = false, typing = Assigner.Typing.DYNAMIC) Object ret,
+            @Advice.Thrown Throwable thrown) {
+            ret = callSite.exit(self, allArguments, state, ret, thrown);
+        }
+    }
+
+    static final class WithoutArguments {
+
+        @Advice.OnMethodEnter(skipOn = MethodInterceptResult.class, suppress = Throwable.class)
+        static Object enter(@CallSite InstMethodsCallSite callSite,
+            @Advice.Origin Class<?> type,
+            @Advice.This Object self) {
+            return callSite.enter(type, self, null);
+        }
+
+        @Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
+        static void exit(@CallSite InstMethodsCallSite callSite,
+            @Advice.This Object self,
+            @Advice.Enter Object state,
+            @Advice.Return(readOnly = false, typing = Assigner.Typing.DYNAMIC) Object ret,
+            @Advice.Thrown Throwable thrown) {
+            ret = callSite.exit(self, null, state, ret, thrown);
+        }
+    }
+
+    /**
+     * Creates a call site for each advised method, and loads it from the call sites field of the
+     * class. Enter and exit advice both resolve the mapping, so the index is remembered per method.
+     * Once the class is loaded, sets its call sites field.
+     */
+    static final class CallSiteMapping implements Advice.OffsetMapping, LoadedTypeInitializer {
+
+        final InstanceMethodsAdviceInterceptor interceptor;
+        final String fieldName;
+        final Map<MethodDescription, Integer> indexes = new HashMap<>();
+        final List<InstMethodsCallSite> callSites = new ArrayList<>();
+
+        CallSiteMapping(InstanceMethodsAdviceInterceptor interceptor, String fieldName) {
+            this.interceptor = interceptor;
+            this.fieldName = fieldName;
+        }
+
+        @Override
+        public synchronized Target resolve(TypeDescription instrumentedType,
+            MethodDescription instrumentedMethod, Assigner assigner,
+            Advice.ArgumentHandler argumentHandler, Sort sort) {
+            Integer index = indexes.get(instrumentedMethod);
+            if (index == null) {
+                index = callSites.size();
+                callSites.add(new InstMethodsCallSite(interceptor, instrumentedMethod));
+                indexes.put(instrumentedMethod, index);
+            }
+            FieldDescription field =
+                instrumentedType.getDeclaredFields().filter(named(fieldName)).getOnly();
+            return new Target.ForStackManipulation(new StackManipulation.Compound(
+                FieldAccess.forField(field).read(),
+                IntegerConstant.forValue(index),
+                ArrayAccess.REFERENCE.load()));
+        }
+
+        @Override
+        public synchronized void onLoad(Class<?> type) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(null, callSites.toArray(new InstMethodsCallSite[0]));
+            } catch (Exception e) {
+                throw new IllegalStateException("Can't set the call sites of " + type, e);
+            }
+        }
+
+        @Override
+        public boolean isAlive() {
+            return true;
+        }
+    }
+
+    private InstMethodsAdvice() {
+    }
+}
@@ -0,0 +1,58 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import org.apache.skywalking.apm.agent.logging.Log;
+import org.apache.skywalking.apm.agent.logging.LogFactory;
+
+/**
+ * Adapts an {@link InstanceMethodsAroundInterceptor} to be inlined, with the same semantics as
+ * {@link InstMethodsInter}. The interceptor still gets an arguments array and a {@link
+ * MethodInterceptResult} per call, but the method and argument types are resolved once.
+ */
+final class InstMethodsAroundAdapter implements InstanceMethodsAdviceInterceptor {
+
+    private static final Log logger = LogFactory.getLog(InstMethodsAroundAdapter.class);
+
+    final InstanceMethodsAroundInterceptor interceptor;
+
+    InstMethodsAroundAdapter(InstanceMethodsAroundInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public boolean needsArguments() {
+        return true;
+    }
+
+    @Override
+    public Object beforeMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments) throws Throwable {
+        MethodInterceptResult result = new MethodInterceptResult();
+        interceptor.beforeMethod(objInst, callSite.method(), allArguments,
+            callSite.argumentTypes(), result);
+        return result.isContinue() ? null : result; // a result skips the method
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments, Object state, Object ret, Throwable t) throws Throwable {
+        if (state instanceof MethodInterceptResult) {
+            ret = ((MethodInterceptResult) state)._ret();
+        }
+        if (t != null) {
+            try {
+                interceptor.handleMethodException(objInst, callSite.method(), allArguments,
+                    callSite.argumentTypes(), t);
+            } catch (Throwable e) {
+                logger.error("class [" + objInst.getClass() + "] handle method [" +
+                    callSite.methodName + "] exception failure.", e);
+            }
+        }
+        return interceptor.afterMethod(objInst, callSite.method(), allArguments,
+            callSite.argumentTypes(), ret);
+    }
+
+    @Override
+    public String toString() {
+        return "InstMethodsAroundAdapter{" + interceptor + "}";
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import org.apache.skywalking.apm.agent.core.plugin.PluginException;
+import org.apache.skywalking.apm.agent.logging.Log;
+import org.apache.skywalking.apm.agent.logging.LogFactory;
+
+/**
+ * A method enhanced by {@link InstMethodsAdvice}, and its interceptor. Call sites are created when
+ * the class is transformed, and held by a static field of the class, which the inlined advice
+ * reads by index. So a call costs an array lookup instead of the allocations of delegation, and
+ * call sites live as long as the class, not longer.
+ */
+public final class InstMethodsCallSite {
+
+    private static final Log logger = LogFactory.getLog(InstMethodsCallSite.class);
+
+    final InstanceMethodsAdviceInterceptor interceptor;
+    final String methodName;
+    final String[] parameterTypeNames;
+
+    // Resolved on first use, as the class isn't loaded when it is transformed. Races are benign.
+    Class<?> declaringClass;
+    Method method;
+    Class<?>[] argumentTypes;
+
+    InstMethodsCallSite(InstanceMethodsAdviceInterceptor interceptor, MethodDescription method) {
+        this.interceptor = interceptor;
+        this.methodName = method.getInternalName();
+        this.parameterTypeNames = new String[method.getParameters().size()];
+        int i = 0;
+        for (TypeDescription parameterType : method.getParameters().asTypeList().asErasures()) {
+            parameterTypeNames[i++] = parameterType.getName();
+        }
+    }
+
+    /** Returns the enhanced method. */
+    public Method method() {
+        Method result = method;
+        if (result == null) {
+            result = method = findMethod();
+        }
+        return result;
+    }
+
+    /** Returns the parameter types of the enhanced method. Don't modify the result. */
+    public Class<?>[] argumentTypes() {
+        Class<?>[] result = argumentTypes;
+        if (result == null) {
+            result = argumentTypes = method().getParameterTypes();
+        }
+        return result;
+    }
+
+    /** Called by the inlined advice before the method. */
+    public Object enter(Class<?> type, Object self, Object[] allArguments) {
+        if (declaringClass == null) {
+            declaringClass = type;
+        }
+        try {
+            return interceptor.beforeMethod((EnhancedInstance) self, this, allArguments);
+        } catch (Throwable t) {
+            logger.error("class [" + type + "] before method [" + methodName + "]" +
+                " interceptor failure.", t);
+            return null;
+        }
+    }
+
+    /** Called by the inlined advice after the method, returning its actual return value. */
+    public Object exit(Object self, Object[] allArguments, Object state, Object ret,
+        Throwable thrown) {
+        try {
+            return interceptor.afterMethod((EnhancedInstance) self, this, allArguments, state, ret,
+                thrown);
+        } catch (Throwable t) {
+            logger.error("class [" + declaringClass + "] after method [" + methodName + "]" +
+                " interceptor failure.", t);
+            return ret;
+        }
+    }
+
+    Method findMethod() {
+        for (Method candidate : declaringClass.getDeclaredMethods()) {
+            if (!candidate.getName().equals(methodName)) {
+                continue;
+            }
+            Class<?>[] parameterTypes = candidate.getParameterTypes();
+            if (parameterTypes.length != parameterTypeNames.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameterTypes.length && matches; i++) {
+                matches = parameterTypes[i].getName().equals(parameterTypeNames[i]);
+            }
+            if (matches) {
+                return candidate;
+            }
+        }
+        throw new PluginException("Can't find enhanced method " + methodName + " of " +
+            declaringClass);
+    }
+
+    @Override
+    public String toString() {
+        return "InstMethodsCallSite{" + methodName + Arrays.toString(parameterTypeNames) + "}";
+    }
+}
@@ -0,0 +1,39 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InlinedInstanceMethodsInterceptPoint;
+
+/**
+ * A interceptor, which is inlined into the methods of an {@link
+ * InlinedInstanceMethodsInterceptPoint}. Unlike {@link InstanceMethodsAroundInterceptor}, nothing
+ * is allocated per call unless the interceptor does: the method and its argument types are
+ * resolved once per call site, and the arguments are only copied into an array when {@link
+ * #needsArguments()}.
+ */
+public interface InstanceMethodsAdviceInterceptor {
+
+    /**
+     * Called once when enhancing. When false, {@code allArguments} is always null.
+     */
+    boolean needsArguments();
+
+    /**
+     * called before target method invocation.
+     *
+     * @return state passed to {@link #afterMethod}, or a {@link MethodInterceptResult} with a
+     * {@linkplain MethodInterceptResult#defineReturnValue(Object) defined return value} to skip the
+     * method.
+     */
+    Object beforeMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments) throws Throwable;
+
+    /**
+     * called after target method invocation, even if it threw an exception.
+     *
+     * @param state the result of {@link #beforeMethod}
+     * @param ret the method's original return value, or null if it threw or was skipped.
+     * @param t the exception thrown by the method, or null if it returned.
+     * @return the method's actual return value. This is ignored when the method threw.
+     */
+    Object afterMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments, Object state, Object ret, Throwable t) throws Throwable;
+}
@@ -16,6 +16,12 @@ public class StaticMethodsInter {
 
     private String staticMethodsAroundInterceptorClassName;
 
+    /**
+     * Each enhanced class gets its own instance of this, so the interceptor is loaded on the first
+     * call and kept. Races are benign, as the loader returns the same instance.
+     */
+    private volatile StaticMethodsAroundInterceptor interceptor;
+
     public StaticMethodsInter(String staticMethodsAroundInterceptorClassName) {
         this.staticMethodsAroundInterceptorClassName = staticMethodsAroundInterceptorClassName;
     }
@@ -23,13 +29,17 @@ public class StaticMethodsInter {
     @RuntimeType
     public Object intercept(@Origin Class<?> clazz,@AllArguments Object[] allAruments,
         @Origin Method method,@SuperCall Callable<?> zuper) throws Throwable {
-        StaticMethodsAroundInterceptor interceptor =
-            InterceptorInstanceLoader.load(staticMethodsAroundInterceptorClassName,
-                clazz.getClassLoader());
+        StaticMethodsAroundInterceptor interceptor = this.interceptor;
+        if (interceptor == null) {
+            this.interceptor = interceptor =
+                InterceptorInstanceLoader.load(staticMethodsAroundInterceptorClassName,
+                    clazz.getClassLoader());
+        }
+        Class<?>[] argumentsTypes = method.getParameterTypes();
 
         MethodInterceptResult result = new MethodInterceptResult();
         try {
-            interceptor.beforeMethod(clazz,method,allAruments,method.getParameterTypes(),result);
+            interceptor.beforeMethod(clazz,method,allAruments,argumentsTypes,result);
         } catch (Throwable ex) {
             logger.error("class [" + clazz + "] before static method [" + method.getName() + "] " +
                 "intercept failure.",ex);
@@ -44,8 +54,7 @@ public class StaticMethodsInter {
             }
         } catch (Throwable ex) {
             try {
-                interceptor.handleMethodException(clazz,method,allAruments,
-                    method.getParameterTypes(),ex);
+                interceptor.handleMethodException(clazz,method,allAruments,argumentsTypes,ex);
             } catch (Throwable t) {
                 logger.error("class [" + clazz + "] handle static method [" + method.getName() +
                     "] exception failure.",t);
@@ -53,8 +62,7 @@ public class StaticMethodsInter {
             throw ex;
         } finally {
             try {
-                ret = interceptor.afterMethod(clazz,method,allAruments,method.getParameterTypes()
-                    ,ret);
+                ret = interceptor.afterMethod(clazz,method,allAruments,argumentsTypes,ret);
             } catch (Throwable ex) {
                 logger.error("class [" + clazz + "] after static method [" + method.getName() +
                     "] intercept failure.",ex);
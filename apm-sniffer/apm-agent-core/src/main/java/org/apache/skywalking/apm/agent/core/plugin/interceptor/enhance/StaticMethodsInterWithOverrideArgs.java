@@ -26,6 +26,11 @@ public class StaticMethodsInterWithOverrideArgs {
      */
     private String staticMethodsAroundInterceptorClassName;
 
+    /**
+     * Loaded on the first call, as in {@link StaticMethodsInter}.
+     */
+    private volatile StaticMethodsAroundInterceptor interceptor;
+
     /**
      * Set the name of {@link StaticMethodsInterWithOverrideArgs#staticMethodsAroundInterceptorClassName}
      *
@@ -50,15 +55,18 @@ public class StaticMethodsInterWithOverrideArgs {
     public Object intercept(@Origin Class<?> clazz, @AllArguments Object[] allArguments,
         @Origin Method method,
         @Morph OverrideCallable zuper) throws Throwable {
-        StaticMethodsAroundInterceptor interceptor =
-            InterceptorInstanceLoader.load(staticMethodsAroundInterceptorClassName,
-                clazz.getClassLoader());
+        StaticMethodsAroundInterceptor interceptor = this.interceptor;
+        if (interceptor == null) {
+            this.interceptor = interceptor =
+                InterceptorInstanceLoader.load(staticMethodsAroundInterceptorClassName,
+                    clazz.getClassLoader());
+        }
+        Class<?>[] argumentsTypes = method.getParameterTypes();
 
         MethodInterceptResult result = new MethodInterceptResult();
 
         try {
-            interceptor.beforeMethod(clazz, method, allArguments, method.getParameterTypes(),
-                result);
+            interceptor.beforeMethod(clazz, method, allArguments, argumentsTypes, result);
         } catch (Throwable ex) {
             logger.error("class [" + clazz + "] before static method + [" + method.getName() + "]" +
                 " intercept failure.", ex);
@@ -74,8 +82,8 @@ public class StaticMethodsInterWithOverrideArgs {
             }
         } catch (Throwable ex) {
             try {
-                interceptor.handleMethodException(clazz, method, allArguments,
-                    method.getParameterTypes(), ex);
+                interceptor.handleMethodException(clazz, method, allArguments, argumentsTypes,
+                    ex);
             } catch (Throwable t) {
                 logger.error("class [" + clazz + "] handle static method [" + method.getName() +
                     "] exception failure.", t);
@@ -83,8 +91,8 @@ public class StaticMethodsInterWithOverrideArgs {
             throw ex;
         } finally {
             try {
-                ret = interceptor.afterMethod(clazz, method, allArguments,
-                    method.getParameterTypes(), ret);
+                ret = interceptor.afterMethod(clazz, method, allArguments, argumentsTypes,
+                    ret);
             } catch (Throwable ex) {
                 logger.error("class [" + clazz + "] after static method [" + method.getName() +
                     "] intercept failure.", ex);
@@ -10,13 +10,12 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -39,9 +38,16 @@ public class AgentClassLoader extends ClassLoader {
 
     private List<File> classPath;
 
-    private List<Jar> allJars;
+    /**
+     * Shared by all the loaders with the same class path. Races to resolve it are benign.
+     */
+    private volatile PluginJarIndex index;
 
-    private ReentrantLock jarScanLock = new ReentrantLock();
+    /**
+     * Interceptors loaded by this, when it is the plugin loader of a target class loader. See
+     * {@link InterceptorInstanceLoader}.
+     */
+    final ConcurrentMap<String, Object> interceptors = new ConcurrentHashMap<>();
 
     /**
      * Functional Description: solve the classloader dead lock when jvm start
@@ -88,45 +94,14 @@ public class AgentClassLoader extends ClassLoader {
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
-        List<Jar> allJars = getAllJars();
         String path = name.replace('.','/').concat(".class");
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(path);
-            if (entry != null) {
-                try {
-                    URL classFileUrl = new URL("jar:file:" + jar.sourceFile.getAbsolutePath() +
-                            "!/" + path);
-                    byte[] data;
-                    BufferedInputStream is = null;
-                    ByteArrayOutputStream baos = null;
-                    try {
-                        is = new BufferedInputStream(classFileUrl.openStream());
-                        baos = new ByteArrayOutputStream();
-                        int ch = 0;
-                        while ((ch = is.read()) != -1) {
-                            baos.write(ch);
-                        }
-                        data = baos.toByteArray();
-                    } finally {
-                        if (is != null) {
-                            try {
-                                is.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                        if (baos != null) {
-                            try {
-                                baos.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                    return defineClass(name,data,0,data.length);
-                } catch (IOException ex) {
-                    logger.error("find class fail.",ex);
-                }
+        PluginJarIndex.Resource resource = getIndex().get(path);
+        if (resource != null) {
+            try {
+                byte[] data = resource.read();
+                return defineClass(name,data,0,data.length);
+            } catch (IOException ex) {
+                logger.error("find class fail.",ex);
             }
         }
         throw new ClassNotFoundException("Can not find " + name);
@@ -134,14 +109,11 @@ public class AgentClassLoader extends ClassLoader {
 
     @Override
     protected URL findResource(String name) {
-        List<Jar> allJars = getAllJars();
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(name);
-            if (entry != null) {
-                try {
-                    return new URL("jar:file:" + jar.sourceFile.getAbsolutePath() + "!/" + name);
-                } catch (MalformedURLException ignored) {
-                }
+        PluginJarIndex.Resource resource = getIndex().get(name);
+        if (resource != null) {
+            try {
+                return resource.url();
+            } catch (MalformedURLException ignored) {
             }
         }
         return null;
@@ -149,75 +121,18 @@ public class AgentClassLoader extends ClassLoader {
 
     @Override
     protected Enumeration<URL> findResources(String name) throws IOException {
-        List<URL> allResources = new LinkedList<>();
-        List<Jar> allJars = getAllJars();
-        for (Jar jar : allJars) {
-            JarEntry entry = jar.jarFile.getJarEntry(name);
-            if (entry != null) {
-                allResources.add(new URL("jar:file:" + jar.sourceFile.getAbsolutePath() + "!/" + name));
-            }
-        }
-
-        final Iterator<URL> iterator = allResources.iterator();
-        return new Enumeration<URL>() {
-            @Override
-            public boolean hasMoreElements() {
-                return iterator.hasNext();
-            }
-
-            @Override
-            public URL nextElement() {
-                return iterator.next();
-            }
-        };
-    }
-
-    private List<Jar> getAllJars() {
-        if (allJars == null) {
-            jarScanLock.lock();
-            try {
-                if (allJars == null) {
-                    allJars = new LinkedList<>();
-                    for (File path : classPath) {
-                        if (path.exists() && path.isDirectory()) {
-                            String[] jarFileNames = path.list(new FilenameFilter() {
-                                @Override
-                                public boolean accept(File dir, String name) {
-                                    return name.endsWith(".jar");
-                                }
-                            });
-                            if (jarFileNames != null) {
-                                for (String fileName : jarFileNames) {
-                                    try {
-                                        File file = new File(path, fileName);
-                                        Jar jar = new Jar(new JarFile(file), file);
-                                        allJars.add(jar);
-                                        logger.info(file.toString() + " loaded");
-                                    } catch (IOException ex) {
-                                        logger.error(fileName + " jar file cannot be resolved.",
-                                                ex);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            } finally {
-                jarScanLock.unlock();
-            }
+        PluginJarIndex.Resource resource = getIndex().get(name);
+        if (resource == null) {
+            return Collections.emptyEnumeration();
         }
-        return allJars;
+        return Collections.enumeration(resource.urls());
     }
 
-    private class Jar {
-
-        private JarFile jarFile;
-
-        private File sourceFile;
-
-        private Jar(JarFile jarFile, File sourceFile) {
-            this.jarFile = jarFile;
-            this.sourceFile = sourceFile;
+    private PluginJarIndex getIndex() {
+        PluginJarIndex result = index;
+        if (result == null) {
+            result = index = PluginJarIndex.of(classPath);
         }
+        return result;
     }
 }
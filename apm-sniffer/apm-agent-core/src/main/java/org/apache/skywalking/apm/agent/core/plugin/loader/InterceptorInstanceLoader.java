@@ -1,19 +1,34 @@
 package org.apache.skywalking.apm.agent.core.plugin.loader;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.locks.ReentrantLock;
 import org.apache.skywalking.apm.agent.core.boot.AgentPackageNotFoundException;
 
+/**
+ * Loads interceptors with an {@link AgentClassLoader} child of the class loader of the enhanced
+ * class, so that interceptors can see the classes of the library they intercept.
+ *
+ * <p>There is one plugin loader per target class loader, which caches the interceptors it loaded.
+ * Target loaders are weakly referenced by identity, so that the class loader of an undeployed web
+ * application can be collected. Plugin loaders are weakly referenced too, as each one strongly
+ * references its target loader as its parent. They are kept alive by the interceptors, which are
+ * referenced by the enhanced classes of the target loader.
+ *
+ * <p>Loading is lock-free: racing threads may each create a plugin loader or an interceptor, but
+ * only the first one published is used.
+ *
+ * <p>The internal implementation is derived from WeakConcurrentMap by Rafael Winterhalter. See
+ * https://github.com/raphw/weak-lock-free/blob/master/src/main/java/com/blogspot/mydailyjava/weaklockfree/WeakConcurrentMap.java
+ */
 public class InterceptorInstanceLoader {
 
-    private static ConcurrentMap<String, Object> INSTANCE_CACHE = new ConcurrentHashMap<>();
+    // Even though we only put by LoaderKey, we allow get and remove by LookupKey
+    static final ConcurrentMap<Object, WeakReference<AgentClassLoader>> PLUGIN_LOADERS =
+        new ConcurrentHashMap<>();
 
-    private static ReentrantLock INSTANCE_LOAD_LOCK = new ReentrantLock();
-
-    private static Map<ClassLoader, ClassLoader> EXTEND_PLUGIN_CLASSLOADERS = new HashMap<>();
+    static final ReferenceQueue<ClassLoader> COLLECTED_LOADERS = new ReferenceQueue<>();
 
     @SuppressWarnings("unchecked")
     public static <T> T load(String className,
@@ -22,27 +37,133 @@ public class InterceptorInstanceLoader {
         if (targetClassLoader == null) {
             targetClassLoader = InterceptorInstanceLoader.class.getClassLoader();
         }
-        String instanceKey =
-            className + "_OF_" + targetClassLoader.getClass().getName() + "@" +
-                Integer.toHexString(targetClassLoader.hashCode());
-        Object inst = INSTANCE_CACHE.get(instanceKey);
+        AgentClassLoader pluginLoader = pluginLoader(targetClassLoader);
+        Object inst = pluginLoader.interceptors.get(className);
         if (inst == null) {
-            INSTANCE_LOAD_LOCK.lock();
-            try {
-                ClassLoader pluginLoader = EXTEND_PLUGIN_CLASSLOADERS.get(targetClassLoader);
-                if (pluginLoader == null) {
-                    pluginLoader = new AgentClassLoader(targetClassLoader);
-                    EXTEND_PLUGIN_CLASSLOADERS.put(targetClassLoader, pluginLoader);
+            inst = Class.forName(className, true, pluginLoader).newInstance();
+            Object previous = pluginLoader.interceptors.putIfAbsent(className, inst);
+            if (previous != null) {
+                inst = previous; // lost race
+            }
+        }
+        return (T) inst;
+    }
+
+    /**
+     * Forgets the interceptors of a class loader which is being discarded, such as the class loader
+     * of a web application which is stopped. Classes already enhanced keep their interceptors.
+     *
+     * <p>This isn't required to release the class loader, but releases it sooner than garbage
+     * collection would.
+     */
+    public static void evict(ClassLoader targetClassLoader) {
+        expungeCollectedLoaders();
+        if (targetClassLoader != null) {
+            PLUGIN_LOADERS.remove(new LookupKey(targetClassLoader));
+        }
+    }
+
+    static AgentClassLoader pluginLoader(
+        ClassLoader targetClassLoader) throws AgentPackageNotFoundException {
+        expungeCollectedLoaders();
+        LookupKey lookupKey = new LookupKey(targetClassLoader);
+        WeakReference<AgentClassLoader> ref = PLUGIN_LOADERS.get(lookupKey);
+        AgentClassLoader result = ref != null ? ref.get() : null;
+        if (result != null) {
+            return result;
+        }
+
+        AgentClassLoader pluginLoader = new AgentClassLoader(targetClassLoader);
+        WeakReference<AgentClassLoader> newRef = new WeakReference<>(pluginLoader);
+        while (true) {
+            if (ref == null) {
+                ref = PLUGIN_LOADERS.putIfAbsent(
+                    new LoaderKey(targetClassLoader, COLLECTED_LOADERS), newRef);
+                if (ref == null) {
+                    return pluginLoader;
                 }
-                inst = Class.forName(className, true, pluginLoader).newInstance();
-            } finally {
-                INSTANCE_LOAD_LOCK.unlock();
+            } else if (PLUGIN_LOADERS.replace(lookupKey, ref, newRef)) {
+                return pluginLoader; // the previous plugin loader was collected
+            } else {
+                ref = PLUGIN_LOADERS.get(lookupKey);
+            }
+            result = ref != null ? ref.get() : null;
+            if (result != null) {
+                return result; // lost race
             }
+        }
+    }
+
+    /** Removes the plugin loaders of target loaders which were collected. */
+    static void expungeCollectedLoaders() {
+        Object key;
+        while ((key = COLLECTED_LOADERS.poll()) != null) {
+            PLUGIN_LOADERS.remove(key);
+        }
+    }
+
+    /**
+     * Real keys weakly reference the target loader, so that we get notified when it is collected.
+     */
+    static final class LoaderKey extends WeakReference<ClassLoader> {
+
+        final int hashCode;
+
+        LoaderKey(ClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+            super(loader, queue);
+            hashCode = System.identityHashCode(loader);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Resolves hash code collisions
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            ClassLoader loader = get();
+            if (loader == null) {
+                return false; // only equal to itself once collected
+            } else if (other instanceof LoaderKey) {
+                return loader == ((LoaderKey) other).get();
+            } else if (other instanceof LookupKey) {
+                return loader == ((LookupKey) other).loader;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lookup keys are cheaper than real keys as reference tracking is not involved. We cannot use
+     * the {@linkplain ClassLoader} directly as a lookup key, as its equals is identity.
+     */
+    static final class LookupKey {
+
+        final ClassLoader loader;
+
+        LookupKey(ClassLoader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(loader);
+        }
 
-            if (inst != null) {
-                INSTANCE_CACHE.put(instanceKey, inst);
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof LoaderKey) {
+                return loader == ((LoaderKey) other).get();
+            } else if (other instanceof LookupKey) {
+                return loader == ((LookupKey) other).loader;
             }
+            return false;
         }
-        return (T)inst;
     }
 }
@@ -0,0 +1,171 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.skywalking.apm.agent.logging.Log;
+import org.apache.skywalking.apm.agent.logging.LogFactory;
+
+/**
+ * An index from entry name to the plugin jars containing it, built by scanning the jars once. As
+ * every {@link AgentClassLoader} has the same class path, they share the index and the open jar
+ * files, instead of each one scanning and opening the jars again.
+ */
+final class PluginJarIndex {
+
+    private static final Log logger = LogFactory.getLog(PluginJarIndex.class);
+
+    private static final ConcurrentMap<List<File>, PluginJarIndex> INDEXES =
+        new ConcurrentHashMap<>();
+
+    /** Returns the index of the jars in the given directories, scanning them on first use. */
+    static PluginJarIndex of(List<File> classPath) {
+        PluginJarIndex result = INDEXES.get(classPath);
+        if (result == null) {
+            result = INDEXES.computeIfAbsent(classPath, PluginJarIndex::scan);
+        }
+        return result;
+    }
+
+    // Read-only once built, and published through INDEXES
+    private final Map<String, Resource> resources;
+
+    private PluginJarIndex(Map<String, Resource> resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * Returns the entry of the first jar containing the given name, or null. Other jars containing
+     * it follow in {@link Resource#next}.
+     */
+    Resource get(String name) {
+        return resources.get(name);
+    }
+
+    static PluginJarIndex scan(List<File> classPath) {
+        Map<String, Resource> resources = new HashMap<>();
+        for (File path : classPath) {
+            if (!path.exists() || !path.isDirectory()) {
+                continue;
+            }
+            String[] jarFileNames = path.list(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".jar");
+                }
+            });
+            if (jarFileNames == null) {
+                continue;
+            }
+            for (String fileName : jarFileNames) {
+                File file = new File(path, fileName);
+                try {
+                    Jar jar = new Jar(new JarFile(file), file);
+                    Enumeration<JarEntry> entries = jar.jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        JarEntry entry = entries.nextElement();
+                        Resource resource = new Resource(jar, entry);
+                        Resource first = resources.get(entry.getName());
+                        if (first == null) {
+                            resources.put(entry.getName(), resource);
+                        } else { // keep the jar order of a linear scan
+                            while (first.next != null) {
+                                first = first.next;
+                            }
+                            first.next = resource;
+                        }
+                    }
+                    logger.info(file.toString() + " loaded");
+                } catch (IOException ex) {
+                    logger.error(fileName + " jar file cannot be resolved.", ex);
+                }
+            }
+        }
+        return new PluginJarIndex(resources);
+    }
+
+    static final class Jar {
+
+        final JarFile jarFile;
+
+        /** The prefix of the URL of any entry, so that it is only built once */
+        final String urlPrefix;
+
+        Jar(JarFile jarFile, File sourceFile) {
+            this.jarFile = jarFile;
+            this.urlPrefix = "jar:file:" + sourceFile.getAbsolutePath() + "!/";
+        }
+    }
+
+    /** An entry of a plugin jar. */
+    static final class Resource {
+
+        final Jar jar;
+
+        final JarEntry entry;
+
+        /** The same entry in the next jar containing it, or null. */
+        Resource next;
+
+        Resource(Jar jar, JarEntry entry) {
+            this.jar = jar;
+            this.entry = entry;
+        }
+
+        URL url() throws MalformedURLException {
+            return new URL(jar.urlPrefix + entry.getName());
+        }
+
+        /** Returns all the resources with this name, in jar order. */
+        List<URL> urls() throws MalformedURLException {
+            List<URL> result = new ArrayList<>();
+            for (Resource resource = this; resource != null; resource = resource.next) {
+                result.add(resource.url());
+            }
+            return result;
+        }
+
+        /**
+         * Reads the entry from the already open jar. The size is known for entries of jars written
+         * by maven, so this is usually a single sized read.
+         */
+        byte[] read() throws IOException {
+            try (InputStream is = jar.jarFile.getInputStream(entry)) {
+                long size = entry.getSize();
+                if (size >= 0 && size <= Integer.MAX_VALUE) {
+                    byte[] data = new byte[(int) size];
+                    int offset = 0;
+                    while (offset < data.length) {
+                        int count = is.read(data, offset, data.length - offset);
+                        if (count < 0) {
+                            throw new EOFException("Unexpected end of " + entry.getName());
+                        }
+                        offset += count;
+                    }
+                    return data;
+                }
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = is.read(buffer)) != -1) {
+                    baos.write(buffer, 0, count);
+                }
+                return baos.toByteArray();
+            }
+        }
+    }
+}
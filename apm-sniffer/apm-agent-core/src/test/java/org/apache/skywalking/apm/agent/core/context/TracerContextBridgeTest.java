@@ -0,0 +1,207 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContextOrSamplingFlags;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.ContextBridge;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class TracerContextBridgeTest {
+
+    static final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    Tracing tracing = TracingManager.getInstance();
+    Tracer tracer = tracing.tracer();
+    TracerContextBridge bridge = new TracerContextBridge();
+
+    @After
+    public void uninstall() {
+        ContextBridge.install(null);
+        assertTrue(tracer.capture().isEmpty());
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        worker.shutdownNow();
+    }
+
+    Span entrySpan() {
+        return tracer.createEntrySpan(carrier -> TraceContextOrSamplingFlags.EMPTY, null);
+    }
+
+    Span exitSpan() {
+        return tracer.createExitSpan((context, carrier) -> {
+        }, null);
+    }
+
+    @Test
+    public void capturesNothingOutsideOfTraces() {
+        assertNull(bridge.capture());
+    }
+
+    @Test
+    public void capturesNothingBeforeTracingIsBuilt() {
+        Tracing built = TracingManager.INSTANCE;
+        TracingManager.INSTANCE = null;
+        try {
+            assertNull(bridge.capture());
+            assertNull(TracingManager.current()); // capturing didn't build it
+        } finally {
+            TracingManager.INSTANCE = built;
+        }
+    }
+
+    @Test
+    public void capturesActiveSpan() {
+        Span span = entrySpan();
+        try {
+            assertSame(span, bridge.capture());
+        } finally {
+            tracer.stopSpan(span);
+        }
+    }
+
+    @Test
+    public void capturesCurrentTraceContextWithoutActiveSpan() {
+        TraceContext context = tracer.newTrace().context();
+        try (Scope scope = tracing.currentTraceContext().newScope(context)) {
+            assertSame(context, bridge.capture());
+        }
+    }
+
+    @Test
+    public void attachPushesSpanUntilDetached() throws Exception {
+        Span span = entrySpan();
+        try {
+            worker.submit(() -> {
+                Object attached = bridge.attach(span);
+                assertSame(span, tracer.activeSpan());
+                assertEquals(1, tracer.capture().depth());
+
+                bridge.detach(span, attached);
+                assertTrue(tracer.capture().isEmpty());
+                return null;
+            }).get();
+        } finally {
+            tracer.stopSpan(span);
+        }
+    }
+
+    /** The task doesn't stop its spans, so they mustn't leak into the next task of the worker. */
+    @Test
+    public void detachUnwindsSpansLeftByTask() throws Exception {
+        Span span = entrySpan();
+        try {
+            worker.submit(() -> {
+                Object attached = bridge.attach(span);
+                Span child = exitSpan();
+                assertEquals(span.context().spanId(), child.context().parentIdAsLong());
+
+                bridge.detach(span, attached);
+                assertTrue(tracer.capture().isEmpty());
+                return null;
+            }).get();
+        } finally {
+            tracer.stopSpan(span);
+        }
+    }
+
+    @Test
+    public void attachScopesTraceContextUntilDetached() throws Exception {
+        TraceContext context = tracer.newTrace().context();
+        worker.submit(() -> {
+            Object attached = bridge.attach(context);
+            assertSame(context, tracing.currentTraceContext().get());
+
+            bridge.detach(context, attached);
+            assertNull(tracing.currentTraceContext().get());
+            return null;
+        }).get();
+    }
+
+    @Test
+    public void wrappedTaskRunsInCapturedSpan() throws Exception {
+        ContextBridge.install(bridge);
+        Span span = entrySpan();
+        Callable<Span> task;
+        try {
+            task = wrap(() -> tracer.activeSpan());
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertSame(span, worker.submit(task).get());
+        assertTrue(worker.submit(() -> tracer.capture().isEmpty()).get());
+    }
+
+    @Test
+    public void wrappedTaskUnwindsOnException() throws Exception {
+        ContextBridge.install(bridge);
+        Span span = entrySpan();
+        Callable<Object> task;
+        try {
+            task = wrap(() -> {
+                exitSpan();
+                throw new IllegalStateException("boom");
+            });
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        try {
+            worker.submit(task).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        assertTrue(worker.submit(() -> tracer.capture().isEmpty()).get());
+    }
+
+    @Test
+    public void wrapsOnce() throws Exception {
+        ContextBridge.install(bridge);
+        Span span = entrySpan();
+        Callable<Integer> task;
+        try {
+            Callable<Integer> depth = () -> tracer.capture().depth();
+            task = wrap(depth);
+            assertNotSame(depth, task);
+            assertSame(task, ContextBridge.wrap(task));
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertEquals(1, (int) worker.submit(task).get());
+    }
+
+    @Test
+    public void doesntWrapFutures() {
+        ContextBridge.install(bridge);
+        Span span = entrySpan();
+        try {
+            FutureTask<Object> future = new FutureTask<>(() -> null);
+            assertSame(future, ContextBridge.wrap(future));
+        } finally {
+            tracer.stopSpan(span);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> Callable<V> wrap(Callable<V> task) {
+        return (Callable<V>) ContextBridge.wrap(task);
+    }
+}
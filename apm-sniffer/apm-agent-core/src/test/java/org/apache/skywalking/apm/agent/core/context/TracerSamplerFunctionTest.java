@@ -0,0 +1,120 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContextOrSamplingFlags;
+import org.apache.skywalking.apm.agent.core.context.sampler.AdaptiveHttpSampler;
+import org.apache.skywalking.apm.agent.core.context.sampler.HttpSamplingRequest;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
+import org.junit.After;
+import org.junit.Test;
+
+/** Sampler functions only decide new traces, never overriding a propagated decision. */
+public class TracerSamplerFunctionTest {
+
+    /** Counts its calls, so a test can tell the tracer didn't ask it. */
+    static final class CountingSamplerFunction extends SamplerFunction<String> {
+
+        final Boolean decision;
+        int calls;
+
+        CountingSamplerFunction(Boolean decision) {
+            this.decision = decision;
+        }
+
+        @Override
+        public Boolean trySample(String arg) {
+            calls++;
+            return decision;
+        }
+    }
+
+    Tracer tracer = TracingManager.getInstance().tracer();
+
+    @After
+    public void clear() {
+        assertTrue(tracer.capture().isEmpty());
+    }
+
+    @Test
+    public void propagatedSampledWinsOverLocalDecision() {
+        CountingSamplerFunction function = new CountingSamplerFunction(false);
+
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.SAMPLED, function));
+        assertEquals(0, function.calls);
+    }
+
+    @Test
+    public void propagatedNotSampledWinsOverLocalDecision() {
+        CountingSamplerFunction function = new CountingSamplerFunction(true);
+
+        assertFalse(entrySpanSampled(TraceContextOrSamplingFlags.NOT_SAMPLED, function));
+        assertEquals(0, function.calls);
+    }
+
+    @Test
+    public void propagatedContextWinsOverLocalDecision() {
+        TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true)
+            .build();
+        CountingSamplerFunction function = new CountingSamplerFunction(false);
+
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.create(context), function));
+        assertEquals(0, function.calls);
+    }
+
+    @Test
+    public void localDecisionStartsNewTrace() {
+        CountingSamplerFunction sampled = new CountingSamplerFunction(true);
+        CountingSamplerFunction notSampled = new CountingSamplerFunction(false);
+
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.EMPTY, sampled));
+        assertFalse(entrySpanSampled(TraceContextOrSamplingFlags.EMPTY, notSampled));
+        assertEquals(1, sampled.calls);
+        assertEquals(1, notSampled.calls);
+    }
+
+    @Test
+    public void exitSpanKeepsDecisionOfActiveSpan() {
+        CountingSamplerFunction function = new CountingSamplerFunction(false);
+        Span entry = tracer.createEntrySpan(carrier -> TraceContextOrSamplingFlags.SAMPLED, null);
+        try {
+            Span exit = tracer.createExitSpan((context, carrier) -> {
+            }, null, function, "GET /users");
+            assertTrue(exit.context().sampled());
+            tracer.stopSpan(exit);
+        } finally {
+            tracer.stopSpan(entry);
+        }
+        assertEquals(0, function.calls);
+    }
+
+    /** The adaptive budget is only spent on requests that don't carry a decision. */
+    @Test
+    public void adaptiveSamplerOnlyDecidesRequestsWithoutDecision() {
+        SamplerFunction<HttpSamplingRequest> sampler = AdaptiveHttpSampler.create(1, 100);
+        HttpSamplingRequest request = HttpSamplingRequest.server("GET", "/users");
+
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.SAMPLED, sampler, request));
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.EMPTY, sampler, request));
+        assertFalse(entrySpanSampled(TraceContextOrSamplingFlags.EMPTY, sampler, request));
+        assertTrue(entrySpanSampled(TraceContextOrSamplingFlags.SAMPLED, sampler, request));
+    }
+
+    boolean entrySpanSampled(TraceContextOrSamplingFlags extracted,
+        CountingSamplerFunction function) {
+        return entrySpanSampled(extracted, function, "GET /users");
+    }
+
+    <T> boolean entrySpanSampled(TraceContextOrSamplingFlags extracted,
+        SamplerFunction<T> function, T arg) {
+        Span span = tracer.createEntrySpan(carrier -> extracted, null, function, arg);
+        try {
+            return !span.isNoop() && span.context().sampled();
+        } finally {
+            tracer.stopSpan(span);
+        }
+    }
+}
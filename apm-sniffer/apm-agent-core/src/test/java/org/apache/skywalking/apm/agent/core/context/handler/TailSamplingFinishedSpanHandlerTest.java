@@ -0,0 +1,254 @@
+package org.apache.skywalking.apm.agent.core.context.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.internal.InternalPropagation;
+import org.apache.skywalking.apm.agent.core.context.propagation.SamplingFlags;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.junit.Test;
+
+public class TailSamplingFinishedSpanHandlerTest {
+
+    static {
+        SamplingFlags.EMPTY.sampled(); // initializes InternalPropagation.instance
+    }
+
+    final List<TraceContext> contexts = new ArrayList<>();
+    final List<MutableSpan> spans = new ArrayList<>();
+    final FinishedSpanHandler downstream = new FinishedSpanHandler() {
+        @Override
+        public boolean handle(TraceContext context, MutableSpan span) {
+            contexts.add(context);
+            spans.add(span);
+            return true;
+        }
+    };
+
+    TailSampling tailSampling = TailSampling.newBuilder()
+        .slowThreshold(1, TimeUnit.SECONDS)
+        .build();
+    FinishedSpanHandler handler = tailSampling.newHandler(downstream);
+
+    /** An unsampled span of the local trace rooted at {@code localRootId}. */
+    static TraceContext context(long localRootId, long spanId) {
+        int flags = InternalPropagation.sampled(false, InternalPropagation.FLAG_SAMPLED_LOCAL);
+        return InternalPropagation.instance.newTraceContext(flags, 0L, 1L, localRootId,
+            spanId == localRootId ? 0L : localRootId, spanId, Collections.emptyList());
+    }
+
+    static MutableSpan span() {
+        MutableSpan span = new MutableSpan();
+        span.startTimestamp(1L);
+        span.finishTimestamp(2L);
+        return span;
+    }
+
+    static MutableSpan error() {
+        MutableSpan span = span();
+        span.error(new IllegalStateException());
+        return span;
+    }
+
+    @Test
+    public void sampledSpansPassThrough() {
+        TraceContext context = context(1L, 1L).toBuilder().sampled(true).build();
+        MutableSpan span = span();
+
+        handler.handle(context, span);
+
+        assertSame(context, contexts.get(0));
+        assertSame(span, spans.get(0));
+        assertEquals(0, tailSampling.metrics().spansRetained());
+    }
+
+    @Test
+    public void unremarkableTraceIsDropped() {
+        handler.handle(context(1L, 2L), span());
+        handler.handle(context(1L, 3L), span());
+        assertEquals(2, tailSampling.metrics().spansBuffered());
+
+        handler.handle(context(1L, 1L), span());
+
+        assertTrue(spans.isEmpty());
+        assertEquals(0, tailSampling.metrics().spansBuffered());
+        assertEquals(3, tailSampling.metrics().spansDropped());
+        assertEquals(1, tailSampling.metrics().tracesDropped());
+    }
+
+    @Test
+    public void errorRetainsBufferedAndLaterSpans() {
+        MutableSpan child = span(), errored = error(), root = span();
+        handler.handle(context(1L, 2L), child);
+        handler.handle(context(1L, 3L), errored);
+
+        assertEquals(2, spans.size());
+        assertSame(child, spans.get(0));
+        assertSame(errored, spans.get(1));
+
+        handler.handle(context(1L, 1L), root); // decided, so not buffered
+
+        assertSame(root, spans.get(2));
+        assertEquals(1, tailSampling.metrics().tracesRetained());
+        assertEquals(3, tailSampling.metrics().spansRetained());
+        assertEquals(0, tailSampling.metrics().spansBuffered());
+    }
+
+    @Test
+    public void errorTagRetains() {
+        MutableSpan span = span();
+        span.tag("error", "timeout");
+
+        handler.handle(context(1L, 1L), span);
+
+        assertEquals(1, spans.size());
+    }
+
+    @Test
+    public void serverErrorStatusRetains() {
+        MutableSpan notFound = span(), unavailable = span();
+        notFound.tag("http.status_code", "404");
+        unavailable.tag("http.status_code", "503");
+
+        handler.handle(context(1L, 2L), notFound);
+        assertTrue(spans.isEmpty());
+
+        handler.handle(context(1L, 1L), unavailable);
+
+        assertEquals(2, spans.size());
+    }
+
+    @Test
+    public void slowSpanRetains() {
+        MutableSpan fast = span(), slow = span();
+        fast.finishTimestamp(fast.startTimestamp() + TimeUnit.SECONDS.toMicros(1) - 1);
+        slow.finishTimestamp(slow.startTimestamp() + TimeUnit.SECONDS.toMicros(1));
+
+        handler.handle(context(1L, 2L), fast);
+        assertTrue(spans.isEmpty());
+
+        handler.handle(context(1L, 1L), slow);
+
+        assertEquals(2, spans.size());
+    }
+
+    @Test
+    public void retainedSpansAreReportedAsSampled() {
+        TraceContext child = context(1L, 2L);
+        handler.handle(child, span());
+        handler.handle(context(1L, 1L), error());
+
+        for (TraceContext context : contexts) {
+            assertEquals(Boolean.TRUE, context.sampled());
+            assertTrue(context.sampledLocal());
+        }
+        TraceContext reported = contexts.get(0);
+        assertEquals(child.traceId(), reported.traceId());
+        assertEquals(child.spanId(), reported.spanId());
+        assertEquals(child.parentIdAsLong(), reported.parentIdAsLong());
+        assertEquals(child.localRootId(), reported.localRootId());
+        assertFalse(child.sampled()); // the original is untouched
+    }
+
+    @Test
+    public void lateChildOfDroppedTrace() {
+        handler.handle(context(1L, 1L), span());
+
+        handler.handle(context(1L, 2L), span());
+        assertTrue(spans.isEmpty());
+
+        MutableSpan errored = error();
+        handler.handle(context(1L, 3L), errored);
+
+        assertEquals(1, spans.size()); // only the interesting span itself
+        assertSame(errored, spans.get(0));
+        assertEquals(2, tailSampling.metrics().spansDropped());
+    }
+
+    @Test
+    public void evictsTraceOverMaxSpansPerTrace() {
+        tailSampling = TailSampling.newBuilder().maxSpansPerTrace(2).build();
+        handler = tailSampling.newHandler(downstream);
+
+        handler.handle(context(1L, 2L), span());
+        handler.handle(context(1L, 3L), span());
+        handler.handle(context(1L, 4L), span()); // over the limit
+
+        assertEquals(1, tailSampling.metrics().tracesEvicted());
+        assertEquals(3, tailSampling.metrics().spansEvicted());
+        assertEquals(0, tailSampling.metrics().spansBuffered());
+
+        MutableSpan errored = error();
+        handler.handle(context(1L, 5L), errored);
+
+        assertEquals(1, spans.size()); // the evicted spans are gone
+        assertSame(errored, spans.get(0));
+    }
+
+    @Test
+    public void evictsOldestTraceOfFullStripe() {
+        // two spans per stripe, and local roots 16, 32 and 48 share a stripe
+        tailSampling = TailSampling.newBuilder()
+            .maxSpans(2 * TailSamplingFinishedSpanHandler.STRIPES)
+            .build();
+        handler = tailSampling.newHandler(downstream);
+
+        handler.handle(context(16L, 17L), span());
+        handler.handle(context(32L, 33L), span());
+        handler.handle(context(1L, 2L), span()); // another stripe
+        handler.handle(context(48L, 49L), span()); // evicts 16
+
+        assertEquals(1, tailSampling.metrics().tracesEvicted());
+        assertEquals(1, tailSampling.metrics().spansEvicted());
+        assertEquals(3, tailSampling.metrics().spansBuffered());
+
+        handler.handle(context(16L, 18L), error());
+        assertEquals(1, spans.size()); // 16's buffered span was evicted
+
+        handler.handle(context(32L, 34L), error());
+        assertEquals(3, spans.size()); // 32's buffered span is retained
+        assertEquals(2, tailSampling.metrics().spansBuffered());
+    }
+
+    @Test
+    public void pooledBuffersDontLeakSpans() {
+        for (long root = 1; root <= 100; root++) {
+            handler.handle(context(root, root + 1000), span());
+            handler.handle(context(root, root), span());
+        }
+
+        assertTrue(spans.isEmpty());
+        assertEquals(100, tailSampling.metrics().tracesDropped());
+        assertEquals(0, tailSampling.metrics().spansBuffered());
+
+        TailSamplingFinishedSpanHandler tail = (TailSamplingFinishedSpanHandler) handler;
+        for (TailSamplingFinishedSpanHandler.Stripe stripe : tail.stripes) {
+            assertEquals(0, stripe.spanCount);
+            assertTrue(stripe.traces.isEmpty());
+            for (TailSamplingFinishedSpanHandler.TraceBuffer buffer : stripe.pool) {
+                assertEquals(0, buffer.size);
+                for (Object entry : buffer.entries) {
+                    assertEquals(null, entry);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decisionsAreBounded() {
+        TailSamplingFinishedSpanHandler.Decisions decisions =
+            new TailSamplingFinishedSpanHandler.Decisions();
+        for (long i = 0; i < TailSamplingFinishedSpanHandler.DECIDED_PER_STRIPE + 10; i++) {
+            decisions.put(i, Boolean.TRUE);
+        }
+
+        assertEquals(TailSamplingFinishedSpanHandler.DECIDED_PER_STRIPE, decisions.size());
+        assertFalse(decisions.containsKey(0L)); // the oldest are forgotten first
+    }
+}
@@ -0,0 +1,184 @@
+package org.apache.skywalking.apm.agent.core.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.internal.PredefinedPropagationFields.FieldIndex;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.junit.Test;
+
+public class ExtraFactoryTest {
+
+    static class Fields extends PredefinedPropagationFields {
+
+        Fields(FieldIndex fieldIndex) {
+            super(fieldIndex);
+        }
+
+        Fields(Fields parent, FieldIndex fieldIndex) {
+            super(parent, fieldIndex);
+        }
+    }
+
+    /** Only used by one test, so that its type is registered by that test. */
+    static final class LateFields extends Fields {
+
+        LateFields(FieldIndex fieldIndex) {
+            super(fieldIndex);
+        }
+
+        LateFields(LateFields parent, FieldIndex fieldIndex) {
+            super(parent, fieldIndex);
+        }
+    }
+
+    /** Returns its type from a field, which isn't assigned while the super constructor runs. */
+    static final class FieldsFactory extends PropagationFieldsFactory<Fields> {
+
+        final Class<Fields> type = Fields.class;
+        final FieldIndex fieldIndex = FieldIndex.create("country-code");
+
+        @Override
+        public Class<Fields> type() {
+            return type;
+        }
+
+        @Override
+        protected Fields create() {
+            return new Fields(fieldIndex);
+        }
+
+        @Override
+        protected Fields create(Fields parent) {
+            return new Fields(parent, fieldIndex);
+        }
+    }
+
+    static final class LateFieldsFactory extends PropagationFieldsFactory<LateFields> {
+
+        final Class<LateFields> type = LateFields.class;
+        final FieldIndex fieldIndex = FieldIndex.create("country-code");
+
+        @Override
+        public Class<LateFields> type() {
+            return type;
+        }
+
+        @Override
+        protected LateFields create() {
+            return new LateFields(fieldIndex);
+        }
+
+        @Override
+        protected LateFields create(LateFields parent) {
+            return new LateFields(parent, fieldIndex);
+        }
+    }
+
+    FieldsFactory factory = new FieldsFactory();
+
+    TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+
+    @Test
+    public void registersTypeOfFieldOnFirstDecoration() {
+        LateFieldsFactory factory = new LateFieldsFactory();
+        assertEquals(-1, ExtraSlots.slotOf(LateFields.class));
+
+        TraceContext decorated = factory.decorate(context);
+
+        assertNotEquals(-1, ExtraSlots.slotOf(LateFields.class));
+        assertSame(decorated.extra().get(0), decorated.findExtra(LateFields.class));
+    }
+
+    @Test
+    public void findsExtraAmongOthers() {
+        TraceContext decorated = factory.decorate(context.toBuilder()
+            .extra(Collections.<Object>singletonList("unrelated")).build());
+
+        assertEquals(2, decorated.extra().size());
+        assertSame(decorated.extra().get(1), decorated.findExtra(Fields.class));
+        assertSame("unrelated", decorated.findExtra(String.class));
+    }
+
+    @Test
+    public void decoratingClaimedContextReturnsIt() {
+        TraceContext decorated = factory.decorate(context);
+
+        assertSame(decorated, factory.decorate(decorated));
+    }
+
+    /** The context is immutable, so setting a value changes the fields, not its extra. */
+    @Test
+    public void settingValueKeepsExtra() {
+        TraceContext decorated = factory.decorate(context);
+        List<Object> extra = decorated.extra();
+        Fields fields = decorated.findExtra(Fields.class);
+
+        PropagationFields.put(decorated, "country-code", "FO", Fields.class);
+
+        assertSame(extra, decorated.extra());
+        assertSame(fields, decorated.findExtra(Fields.class));
+        assertEquals("FO", PropagationFields.get(decorated, "country-code", Fields.class));
+    }
+
+    @Test
+    public void eachSpanHasItsOwnFields() {
+        TraceContext parent = factory.decorate(context);
+        TraceContext child = factory.decorate(childOf(parent));
+
+        assertNotSame(parent.findExtra(Fields.class), child.findExtra(Fields.class));
+    }
+
+    @Test
+    public void childValuesDontAffectParent() {
+        TraceContext parent = factory.decorate(context);
+        PropagationFields.put(parent, "country-code", "FO", Fields.class);
+        TraceContext child = factory.decorate(childOf(parent));
+        assertEquals("FO", PropagationFields.get(child, "country-code", Fields.class));
+
+        PropagationFields.put(child, "country-code", "DK", Fields.class);
+
+        assertEquals("FO", PropagationFields.get(parent, "country-code", Fields.class));
+        assertEquals("DK", PropagationFields.get(child, "country-code", Fields.class));
+    }
+
+    @Test
+    public void siblingsDontShareValues() {
+        TraceContext parent = factory.decorate(context);
+        TraceContext first = factory.decorate(childOf(parent));
+        TraceContext second = factory.decorate(childOf(parent).toBuilder().spanId(4L).build());
+
+        PropagationFields.put(first, "country-code", "FO", Fields.class);
+
+        assertNull(PropagationFields.get(parent, "country-code", Fields.class));
+        assertNull(PropagationFields.get(second, "country-code", Fields.class));
+    }
+
+    /** Fields of the same type are consolidated into the copy claimed by the span. */
+    @Test
+    public void consolidatesFieldsIntoClaimedCopy() {
+        Fields first = new Fields(factory.fieldIndex), second = new Fields(factory.fieldIndex);
+        first.tryToClaim(1L, 1L);
+        second.put("country-code", "FO");
+        TraceContext unconsolidated = context.toBuilder()
+            .extra(Arrays.<Object>asList(first, "unrelated", second)).build();
+
+        TraceContext decorated = factory.decorate(unconsolidated);
+
+        assertEquals(2, decorated.extra().size());
+        Fields fields = decorated.findExtra(Fields.class);
+        assertSame(fields, decorated.extra().get(0));
+        assertNotSame(first, fields);
+        assertEquals("FO", fields.get("country-code"));
+    }
+
+    static TraceContext childOf(TraceContext parent) {
+        return parent.toBuilder().parentId(parent.spanId()).spanId(3L).build();
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.skywalking.apm.agent.core.context.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.ReferenceQueue;
+import org.apache.skywalking.apm.agent.core.context.internal.ThreadBindings.LookupKey;
+import org.apache.skywalking.apm.agent.core.context.internal.ThreadBindings.ThreadKey;
+import org.junit.Test;
+
+/**
+ * Tests run on platform threads, so the virtual map is exercised through its keys directly, as
+ * {@link ThreadBindings#set(Object)} would on a virtual thread.
+ */
+public class ThreadBindingsTest {
+
+    ThreadBindings<String> bindings = new ThreadBindings<>();
+
+    @Test
+    public void platformThread_usesThreadLocal() {
+        bindings.set("a");
+
+        assertEquals("a", bindings.get());
+        assertEquals("a", bindings.local.get());
+        assertTrue(bindings.virtual.isEmpty());
+
+        bindings.remove();
+        assertNull(bindings.get());
+    }
+
+    @Test
+    public void platformThread_removeIfVirtualKeepsValue() {
+        bindings.set("a");
+
+        bindings.removeIfVirtual();
+
+        assertEquals("a", bindings.get());
+        bindings.remove();
+    }
+
+    @Test
+    public void keys_equalBySameThread() {
+        Thread thread = Thread.currentThread(), other = new Thread();
+        ReferenceQueue<Thread> queue = new ReferenceQueue<>();
+        ThreadKey key = new ThreadKey(thread, queue);
+
+        assertEquals(key, new ThreadKey(thread, queue));
+        assertEquals(key, new LookupKey(thread));
+        assertEquals(new LookupKey(thread), key);
+        assertEquals(key.hashCode(), new LookupKey(thread).hashCode());
+        assertNotEquals(key, new ThreadKey(other, queue));
+        assertNotEquals(key, new LookupKey(other));
+        assertFalse(key.equals(thread));
+        assertFalse(new LookupKey(thread).equals(thread));
+    }
+
+    /** A cleared key can't be found by lookup anymore, but can still be removed by itself. */
+    @Test
+    public void keys_clearedOnlyEqualsItself() {
+        Thread thread = Thread.currentThread();
+        ThreadKey key = new ThreadKey(thread, bindings.collectedThreads);
+        bindings.virtual.put(key, "a");
+
+        key.clear();
+
+        assertNull(bindings.virtual.get(new LookupKey(thread)));
+        assertEquals("a", bindings.virtual.remove(key));
+    }
+
+    @Test
+    public void lookupKey_findsBoundValue() {
+        Thread thread = Thread.currentThread();
+        bindings.virtual.put(new ThreadKey(thread, bindings.collectedThreads), "a");
+
+        assertEquals("a", bindings.virtual.get(new LookupKey(thread)));
+        assertEquals("a", bindings.virtual.remove(new LookupKey(thread)));
+        assertTrue(bindings.virtual.isEmpty());
+    }
+
+    /** The leak this guards against: a thread ends without removing its value. */
+    @Test
+    public void expungesValuesOfCollectedThreads() throws InterruptedException {
+        bindWithoutRemoving(bindings);
+        assertEquals(1, bindings.virtual.size());
+
+        for (int i = 0; i < 50 && !bindings.virtual.isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10L);
+            bindings.expungeCollectedThreads();
+        }
+
+        assertTrue(bindings.virtual.isEmpty());
+    }
+
+    /** In a separate method, so that no stack slot of the test references the thread. */
+    static void bindWithoutRemoving(final ThreadBindings<String> bindings)
+        throws InterruptedException {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                bindings.virtual.put(new ThreadKey(this, bindings.collectedThreads), "leaked");
+            }
+        };
+        thread.start();
+        thread.join();
+    }
+}
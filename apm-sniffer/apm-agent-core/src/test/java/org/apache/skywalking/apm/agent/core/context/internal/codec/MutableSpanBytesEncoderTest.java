@@ -0,0 +1,208 @@
+package org.apache.skywalking.apm.agent.core.context.internal.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.skywalking.apm.agent.core.context.ErrorParser;
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.handler.MutableSpanConverter;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesEncoder;
+
+/** Each span must encode to the same bytes as {@link MutableSpanConverter} then zipkin would. */
+@RunWith(Parameterized.class)
+public class MutableSpanBytesEncoderTest {
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(
+            new Object[] {Encoding.JSON, SpanBytesEncoder.JSON_V2},
+            new Object[] {Encoding.PROTO3, SpanBytesEncoder.PROTO3});
+    }
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    final SpanBytesEncoder zipkinEncoder;
+    final MutableSpanBytesEncoder encoder;
+    final MutableSpanConverter converter;
+
+    TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true).build();
+    MutableSpan span = new MutableSpan();
+
+    public MutableSpanBytesEncoderTest(Encoding encoding, SpanBytesEncoder zipkinEncoder) {
+        ErrorParser errorParser = new ErrorParser();
+        this.zipkinEncoder = zipkinEncoder;
+        this.encoder = MutableSpanBytesEncoder.create(encoding, errorParser, "frontend",
+            "192.168.1.2", 8080);
+        this.converter = new MutableSpanConverter(errorParser, "frontend", "192.168.1.2", 8080);
+    }
+
+    @Test
+    public void emptySpan() {
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void basicFields() {
+        span.kind(Kind.SERVER);
+        span.name("GET /Users/{id}");
+        span.startTimestamp(1472470996199000L);
+        span.finishTimestamp(1472470996406000L);
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void durationRoundedUp() {
+        span.startTimestamp(1000L);
+        span.finishTimestamp(1000L);
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void unsortedTags() {
+        span.tag("z", "1");
+        span.tag("a", "2");
+        span.tag("http.path", "/api");
+        span.tag("Z", "upper");
+        span.tag("a", "replaced");
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void outOfOrderAndDuplicateAnnotations() {
+        span.annotate(1500L, "b");
+        span.annotate(1100L, "x");
+        span.annotate(1100L, "a");
+        span.annotate(1500L, "b");
+        span.annotate(1100L, "x");
+        span.annotate(900L, "c");
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void manyTagsAndAnnotations() {
+        for (int i = 20; i > 0; i--) {
+            span.tag("key" + i, "value" + i);
+            span.annotate(i % 7, "annotation" + (i % 3));
+        }
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void escapedAndUnicodeStrings() {
+        span.name("\"quoted\"\n");
+        span.tag("emoji", "😀 café");
+        span.tag("control", "\u0001\t ");
+        span.annotate(1L, "back\\slash");
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void remoteEndpoint() {
+        span.kind(Kind.CLIENT);
+        span.remoteServiceName("Backend");
+        span.remoteIpAndPort("10.0.0.1", 9000);
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void remoteEndpoint_ipv6Only() {
+        span.remoteIpAndPort("2001:db8::c001", 0);
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void localEndpointOverride() {
+        span.localServiceName("Backend");
+        span.localIp("2001:db8::c001");
+        span.localPort(443);
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void sharedServer() {
+        span.kind(Kind.SERVER);
+        span.setShared();
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void sharedClientIgnored() {
+        span.kind(Kind.CLIENT);
+        span.setShared();
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void debugWithParentAnd128BitTraceId() {
+        context = TraceContext.newBuilder().traceIdHigh(3L).traceId(1L).parentId(4L).spanId(2L)
+            .debug(true).build();
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void errorTagFromParser() {
+        span.tag("z", "1");
+        span.error(new IllegalStateException("boom"));
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void errorTagFromParser_noMessage() {
+        span.error(new IllegalStateException());
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void explicitErrorTagWins() {
+        span.tag("error", "500");
+        span.error(new IllegalStateException("boom"));
+
+        assertSameAsZipkin();
+    }
+
+    @Test
+    public void sizeInBytesMatchesWrittenBytes() {
+        span.name("get");
+        span.tag("z", "1");
+        span.tag("a", "2");
+        span.annotate(2L, "b");
+        span.annotate(1L, "a");
+        span.annotate(2L, "b");
+
+        assertEquals(encoder.encode(context, span).length, encoder.sizeInBytes(context, span));
+    }
+
+    void assertSameAsZipkin() {
+        byte[] encoded = encoder.encode(context, span); // tags any error first
+        byte[] expected = zipkinEncoder.encode(converter.convert(context, span));
+
+        if (encoder.encoding() == Encoding.JSON) {
+            assertEquals(new String(expected, UTF_8), new String(encoded, UTF_8));
+        }
+        assertArrayEquals(expected, encoded);
+    }
+}
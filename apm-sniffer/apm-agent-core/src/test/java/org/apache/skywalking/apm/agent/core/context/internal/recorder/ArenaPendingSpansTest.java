@@ -0,0 +1,268 @@
+package org.apache.skywalking.apm.agent.core.context.internal.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.skywalking.apm.agent.core.context.Clock;
+import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan.AnnotationConsumer;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.junit.After;
+import org.junit.Test;
+
+public class ArenaPendingSpansTest {
+
+    static final Clock CLOCK = new Clock() {
+        @Override
+        public long currentTimeMicroseconds() {
+            return 1000L;
+        }
+    };
+
+    final List<TraceContext> flushed = new ArrayList<>();
+    final FinishedSpanHandler handler = new FinishedSpanHandler() {
+        @Override
+        public synchronized boolean handle(TraceContext context, MutableSpan span) {
+            flushed.add(context);
+            return true;
+        }
+    };
+
+    ArenaPendingSpans pendingSpans;
+    ExecutorService executor;
+
+    /** The sweeper wakes up once a second, so it doesn't interfere with explicit sweeps. */
+    ArenaPendingSpans withTimeout(long timeout, TimeUnit unit) {
+        return pendingSpans =
+            new ArenaPendingSpans(CLOCK, handler, new AtomicBoolean(), timeout, unit);
+    }
+
+    @After
+    public void close() {
+        if (pendingSpans != null) {
+            pendingSpans.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    static TraceContext context(long spanId) {
+        return TraceContext.newBuilder().traceId(1L).spanId(spanId).sampled(true).build();
+    }
+
+    @Test
+    public void getOrCreate_returnsSameSpan() {
+        withTimeout(1, TimeUnit.HOURS);
+        TraceContext context = context(2L);
+
+        PendingSpan span = pendingSpans.getOrCreate(context, true);
+
+        assertSame(span, pendingSpans.getOrCreate(context, true));
+        assertSame(span, pendingSpans.getOrCreate(context(2L), false));
+        assertNotSame(span, pendingSpans.getOrCreate(context(3L), false));
+        assertNotSame(span, pendingSpans.getOrCreate(
+            context.toBuilder().shared(true).build(), false));
+        assertEquals(3, pendingSpans.size());
+    }
+
+    @Test
+    public void getOrCreate_seesSpanCreatedOnAnotherThread() throws Exception {
+        withTimeout(1, TimeUnit.HOURS);
+        executor = Executors.newSingleThreadExecutor();
+        final TraceContext context = context(2L);
+
+        PendingSpan span = executor.submit(new Callable<PendingSpan>() {
+            @Override
+            public PendingSpan call() {
+                return pendingSpans.getOrCreate(context, true);
+            }
+        }).get();
+
+        assertSame(span, pendingSpans.getOrCreate(context, true));
+        assertTrue(pendingSpans.remove(context));
+        assertFalse(pendingSpans.remove(context));
+        assertEquals(0, pendingSpans.size());
+    }
+
+    @Test
+    public void getOrCreate_sharesClockOfParentCreatedOnAnotherThread() throws Exception {
+        withTimeout(1, TimeUnit.HOURS);
+        executor = Executors.newSingleThreadExecutor();
+        final TraceContext parent = context(2L);
+
+        PendingSpan parentSpan = executor.submit(new Callable<PendingSpan>() {
+            @Override
+            public PendingSpan call() {
+                return pendingSpans.getOrCreate(parent, true);
+            }
+        }).get();
+        PendingSpan child = pendingSpans.getOrCreate(
+            parent.toBuilder().parentId(2L).spanId(3L).build(), true);
+
+        assertSame(parentSpan.clock(), child.clock());
+    }
+
+    /** Threads aren't registered, so spans of threads which ended are still found. */
+    @Test
+    public void getOrCreate_seesSpansOfEndedThreads() throws Exception {
+        withTimeout(1, TimeUnit.HOURS);
+        List<PendingSpan> spans = new ArrayList<>();
+        for (long spanId = 1; spanId <= 50; spanId++) {
+            executor = Executors.newSingleThreadExecutor();
+            final TraceContext context = context(spanId);
+            spans.add(executor.submit(new Callable<PendingSpan>() {
+                @Override
+                public PendingSpan call() {
+                    return pendingSpans.getOrCreate(context, true);
+                }
+            }).get());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(50, pendingSpans.size());
+        for (long spanId = 1; spanId <= 50; spanId++) {
+            PendingSpan span = spans.get((int) spanId - 1);
+            assertSame(span, pendingSpans.getOrCreate(context(spanId), true));
+            assertTrue(pendingSpans.remove(context(spanId)));
+        }
+        assertEquals(0, pendingSpans.size());
+    }
+
+    @Test
+    public void getOrCreate_concurrentCreationIsUnique() throws Exception {
+        withTimeout(1, TimeUnit.HOURS);
+        int threads = 8;
+        executor = Executors.newFixedThreadPool(threads);
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+
+        for (long spanId = 1; spanId <= 200; spanId++) {
+            final TraceContext context = context(spanId);
+            List<Future<PendingSpan>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<PendingSpan>() {
+                    @Override
+                    public PendingSpan call() throws Exception {
+                        barrier.await();
+                        return pendingSpans.getOrCreate(context, true);
+                    }
+                }));
+            }
+            PendingSpan first = results.get(0).get();
+            for (Future<PendingSpan> result : results) {
+                assertSame(first, result.get());
+            }
+        }
+
+        assertEquals(200, pendingSpans.size());
+        pendingSpans.sweep(System.nanoTime() + TimeUnit.HOURS.toNanos(2));
+        assertEquals(200, flushed.size()); // each span is flushed once
+    }
+
+    @Test
+    public void sweep_flushesExpiredSampledSpans() {
+        withTimeout(1, TimeUnit.HOURS);
+        PendingSpan sampled = pendingSpans.getOrCreate(context(2L), true);
+        pendingSpans.getOrCreate(context(3L).toBuilder().sampled(false).build(), true);
+
+        pendingSpans.sweep(System.nanoTime());
+
+        assertTrue(flushed.isEmpty());
+        assertEquals(2, pendingSpans.size());
+
+        pendingSpans.sweep(System.nanoTime() + TimeUnit.HOURS.toNanos(2));
+
+        assertEquals(1, flushed.size());
+        assertEquals(context(2L), flushed.get(0));
+        assertEquals(0, pendingSpans.size());
+        assertEquals(1, annotationCount(sampled.state(), "brave.flush"));
+        assertFalse(pendingSpans.remove(context(2L)));
+    }
+
+    @Test
+    public void sweep_skipsRemovedSpans() {
+        withTimeout(1, TimeUnit.HOURS);
+        pendingSpans.getOrCreate(context(2L), true);
+        pendingSpans.remove(context(2L));
+
+        pendingSpans.sweep(System.nanoTime() + TimeUnit.HOURS.toNanos(2));
+
+        assertTrue(flushed.isEmpty());
+    }
+
+    @Test
+    public void sweep_nothingWhenNoop() {
+        pendingSpans =
+            new ArenaPendingSpans(CLOCK, handler, new AtomicBoolean(true), 1, TimeUnit.HOURS);
+        pendingSpans.getOrCreate(context(2L), true);
+
+        pendingSpans.sweep(System.nanoTime() + TimeUnit.HOURS.toNanos(2));
+
+        assertTrue(flushed.isEmpty());
+        assertEquals(0, pendingSpans.size());
+    }
+
+    @Test
+    public void sweeperFlushesAfterTimeout() throws InterruptedException {
+        withTimeout(20, TimeUnit.MILLISECONDS);
+        pendingSpans.getOrCreate(context(2L), true);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flushedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, flushedCount());
+        assertEquals(0, pendingSpans.size());
+    }
+
+    @Test
+    public void arenaSurvivesResizeAndRemoval() {
+        withTimeout(1, TimeUnit.HOURS);
+        List<PendingSpan> spans = new ArrayList<>();
+        for (long spanId = 1; spanId <= 100; spanId++) {
+            spans.add(pendingSpans.getOrCreate(context(spanId), true));
+        }
+        for (long spanId = 1; spanId <= 100; spanId += 2) {
+            assertTrue(pendingSpans.remove(context(spanId)));
+        }
+        for (long spanId = 2; spanId <= 100; spanId += 2) {
+            PendingSpan span = spans.get((int) spanId - 1);
+            assertSame(span, pendingSpans.getOrCreate(context(spanId), true));
+        }
+        assertEquals(50, pendingSpans.size());
+    }
+
+    int flushedCount() {
+        synchronized (handler) {
+            return flushed.size();
+        }
+    }
+
+    static int annotationCount(MutableSpan span, final String value) {
+        final int[] count = {0};
+        span.forEachAnnotation(new AnnotationConsumer<Object>() {
+            @Override
+            public void accept(Object target, long timestamp, String annotation) {
+                if (annotation.equals(value)) {
+                    count[0]++;
+                }
+            }
+        }, null);
+        return count[0];
+    }
+}
@@ -0,0 +1,96 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.BytesGetter;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.BytesSetter;
+import org.junit.Test;
+
+public class BinaryPropagationTest {
+
+    static final BytesSetter<Map<String, byte[]>, String> SETTER =
+        new BytesSetter<Map<String, byte[]>, String>() {
+            @Override
+            public void put(Map<String, byte[]> carrier, String key, byte[] value) {
+                carrier.put(key, value);
+            }
+        };
+
+    static final BytesGetter<Map<String, byte[]>, String> GETTER =
+        new BytesGetter<Map<String, byte[]>, String>() {
+            @Override
+            public byte[] getBytes(Map<String, byte[]> carrier, String key) {
+                return carrier.get(key);
+            }
+        };
+
+    Propagation<String> propagation = ExtraFieldPropagation.newFactory(
+        BinaryPropagation.FACTORY, "x-vcap-request-id").create(Propagation.KeyFactory.STRING);
+
+    TraceContext context = ExtraFieldPropagation.newFactory(
+        BinaryPropagation.FACTORY, "x-vcap-request-id").decorate(TraceContext.newBuilder()
+        .traceIdHigh(1L)
+        .traceId(2L)
+        .spanId(3L)
+        .sampled(true)
+        .build());
+
+    Map<String, byte[]> carrier = new LinkedHashMap<>();
+
+    @Test
+    public void injectsBinaryContextAndTextExtraFields() {
+        ExtraFieldPropagation.set(context, "x-vcap-request-id", "216a2aea45d08fc9");
+
+        propagation.injector(SETTER).inject(context, carrier);
+
+        assertArrayEquals(TraceContextBinaryFormat.writeBinaryFormat(context),
+            carrier.get("grpc-trace-bin"));
+        assertEquals("216a2aea45d08fc9",
+            new String(carrier.get("x-vcap-request-id"), BytesSetter.UTF_8));
+    }
+
+    @Test
+    public void roundTrip() {
+        ExtraFieldPropagation.set(context, "x-vcap-request-id", "216a2aea45d08fc9");
+        propagation.injector(SETTER).inject(context, carrier);
+
+        TraceContextOrSamplingFlags extracted = propagation.extractor(GETTER).extract(carrier);
+
+        assertEquals(context, extracted.context());
+        assertEquals("216a2aea45d08fc9",
+            ExtraFieldPropagation.get(extracted.context(), "x-vcap-request-id"));
+    }
+
+    @Test
+    public void extract_malformedIsEmpty() {
+        carrier.put("grpc-trace-bin", new byte[] {0, 0, 1});
+
+        assertSame(TraceContextOrSamplingFlags.EMPTY,
+            BinaryPropagation.FACTORY.create(Propagation.KeyFactory.STRING)
+                .extractor(GETTER).extract(carrier));
+    }
+
+    @Test
+    public void composite_fallsBackToTextFormats() {
+        Propagation<String> composite = CompositePropagation.newFactory(
+            BinaryPropagation.FACTORY, B3SinglePropagation.FACTORY)
+            .create(Propagation.KeyFactory.STRING);
+        carrier.put("b3", B3SingleFormat.writeB3SingleFormatAsBytes(context));
+
+        assertEquals(context, composite.extractor(GETTER).extract(carrier).context());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void injector_requiresBytesSetter() {
+        BinaryPropagation.FACTORY.create(Propagation.KeyFactory.STRING).injector(
+            new Propagation.Setter<Map<String, String>, String>() {
+                @Override
+                public void put(Map<String, String> carrier, String key, String value) {
+                }
+            });
+    }
+}
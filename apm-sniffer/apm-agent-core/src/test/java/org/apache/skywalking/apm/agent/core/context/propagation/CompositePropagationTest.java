@@ -0,0 +1,185 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.context.propagation.CompositePropagation.CarrierCache;
+import org.apache.skywalking.apm.agent.core.context.propagation.CompositePropagation.CompositeExtractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Getter;
+import org.junit.Test;
+
+/** Uses the formats and baggage of the composite benchmark, counting reads of each header. */
+public class CompositePropagationTest {
+
+    static final String[] BAGGAGE = {
+        "x-vcap-request-id", "x-amzn-trace-id", "x-country-code", "x-user-id", "x-tenant-id",
+        "x-device-id", "x-session-id", "x-experiment"
+    };
+
+    static final String B3_TRACE_ID = "463ac35c9f6413ad48485a3953bb6124";
+    static final String W3C_TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    /** Reads a map, counting how many times each key was read. */
+    static final class CountingGetter implements Getter<Map<String, String>, String> {
+
+        final Map<String, Integer> reads = new LinkedHashMap<>();
+
+        @Override
+        public String get(Map<String, String> carrier, String key) {
+            Integer count = reads.get(key);
+            reads.put(key, count == null ? 1 : count + 1);
+            return carrier.get(key);
+        }
+
+        int reads(String key) {
+            Integer count = reads.get(key);
+            return count == null ? 0 : count;
+        }
+
+        void assertReadAtMostOnce() {
+            for (Map.Entry<String, Integer> entry : reads.entrySet()) {
+                assertTrue(entry.getKey() + " was read " + entry.getValue() + " times",
+                    entry.getValue() <= 1);
+            }
+        }
+    }
+
+    CountingGetter getter = new CountingGetter();
+
+    Propagation<String> propagation = ExtraFieldPropagation.newFactory(
+        CompositePropagation.newFactory(W3CPropagation.FACTORY, B3SinglePropagation.FACTORY,
+            B3Propagation.FACTORY), BAGGAGE).create(Propagation.KeyFactory.STRING);
+
+    Map<String, String> carrier = new LinkedHashMap<>();
+
+    @Test
+    public void b3Request_readsEachHeaderAtMostOnce() {
+        carrier.put("X-B3-TraceId", B3_TRACE_ID);
+        carrier.put("X-B3-SpanId", "48485a3953bb6124");
+        carrier.put("X-B3-ParentSpanId", "463ac35c9f6413ad");
+        carrier.put("X-B3-Sampled", "1");
+        carrier.put("x-vcap-request-id", "216a2aea45d08fc9");
+
+        TraceContext extracted = propagation.extractor(getter).extract(carrier).context();
+
+        assertEquals(B3_TRACE_ID, extracted.traceIdString());
+        assertEquals("216a2aea45d08fc9",
+            ExtraFieldPropagation.get(extracted, "x-vcap-request-id"));
+        getter.assertReadAtMostOnce();
+        // both B3 formats look for the single header, but it is only read once
+        assertEquals(1, getter.reads("b3"));
+        assertEquals(1, getter.reads("traceparent"));
+        // tracestate is only read with a traceparent
+        assertEquals(0, getter.reads("tracestate"));
+    }
+
+    @Test
+    public void w3cRequest_stopsAtFirstFormat() {
+        carrier.put("traceparent", "00-" + W3C_TRACE_ID + "-00f067aa0ba902b7-01");
+        carrier.put("tracestate", "congo=t61rcWkgMzE");
+        carrier.put("x-country-code", "FO");
+
+        TraceContext extracted = propagation.extractor(getter).extract(carrier).context();
+
+        assertEquals(W3C_TRACE_ID, extracted.traceIdString());
+        assertEquals("FO", ExtraFieldPropagation.get(extracted, "x-country-code"));
+        getter.assertReadAtMostOnce();
+        assertEquals(0, getter.reads("b3"));
+        assertEquals(0, getter.reads("X-B3-TraceId"));
+    }
+
+    @Test
+    public void noTraceHeaders_readsEachHeaderAtMostOnce() {
+        carrier.put("x-user-id", "1234");
+
+        TraceContextOrSamplingFlags extracted = propagation.extractor(getter).extract(carrier);
+
+        assertNull(extracted.context());
+        assertEquals(1, extracted.extra().size()); // the baggage
+        getter.assertReadAtMostOnce();
+        assertEquals(1, getter.reads("b3"));
+        assertEquals(1, getter.reads("X-B3-TraceId"));
+    }
+
+    @Test
+    public void firstFormatWins() {
+        carrier.put("traceparent", "00-" + W3C_TRACE_ID + "-00f067aa0ba902b7-01");
+        carrier.put("X-B3-TraceId", B3_TRACE_ID);
+        carrier.put("X-B3-SpanId", "48485a3953bb6124");
+
+        assertEquals(W3C_TRACE_ID, extract(W3CPropagation.FACTORY, B3Propagation.FACTORY));
+        assertEquals(B3_TRACE_ID, extract(B3Propagation.FACTORY, W3CPropagation.FACTORY));
+    }
+
+    @Test
+    public void malformedFormatFallsThrough() {
+        carrier.put("traceparent", "00-" + W3C_TRACE_ID.toUpperCase() + "-00f067aa0ba902b7-01");
+        carrier.put("X-B3-TraceId", B3_TRACE_ID);
+        carrier.put("X-B3-SpanId", "48485a3953bb6124");
+
+        assertEquals(B3_TRACE_ID, extract(W3CPropagation.FACTORY, B3Propagation.FACTORY));
+    }
+
+    /** A header whose value equals the text of the sentinel is still a value. */
+    @Test
+    public void cache_comparesAbsentSentinelByIdentity() {
+        carrier.put("b3", new String("absent"));
+        CarrierCache<Map<String, String>, String> cache = cache();
+
+        assertEquals("absent", cache.get("b3"));
+        assertEquals("absent", cache.get("b3"));
+        assertNotSame(CarrierCache.ABSENT, cache.get("b3"));
+        assertEquals(1, getter.reads("b3"));
+    }
+
+    @Test
+    public void cache_cachesAbsentHeaders() {
+        CarrierCache<Map<String, String>, String> cache = cache();
+
+        assertNull(cache.get("traceparent"));
+        assertNull(cache.get("traceparent"));
+        assertSame(CarrierCache.ABSENT,
+            cache.values[CarrierCache.indexOf(cache.extractor.keys, "traceparent")]);
+        assertEquals(1, getter.reads("traceparent"));
+    }
+
+    @Test
+    public void cache_readsUndeclaredKeysEachTime() {
+        carrier.put("x-undeclared", "1");
+        CarrierCache<Map<String, String>, String> cache = cache();
+
+        assertEquals("1", cache.get("x-undeclared"));
+        assertEquals("1", cache.get("x-undeclared"));
+        assertEquals(2, getter.reads("x-undeclared"));
+    }
+
+    /** Keys built by a key factory may be equal without being the same instance. */
+    @Test
+    public void cache_findsEqualKeys() {
+        carrier.put("traceparent", "value");
+        CarrierCache<Map<String, String>, String> cache = cache();
+
+        assertEquals("value", cache.get(new String("traceparent")));
+        assertEquals("value", cache.get("traceparent"));
+        assertEquals(1, getter.reads("traceparent"));
+    }
+
+    String extract(Propagation.Factory... formats) {
+        return CompositePropagation.newFactory(formats).create(Propagation.KeyFactory.STRING)
+            .extractor(getter).extract(carrier).context().traceIdString();
+    }
+
+    @SuppressWarnings("unchecked")
+    CarrierCache<Map<String, String>, String> cache() {
+        CompositeExtractor<Map<String, String>, String> extractor =
+            (CompositeExtractor<Map<String, String>, String>) CompositePropagation.newFactory(
+                W3CPropagation.FACTORY, B3SinglePropagation.FACTORY, B3Propagation.FACTORY)
+                .create(Propagation.KeyFactory.STRING).extractor(getter);
+        return new CarrierCache<>(extractor, carrier);
+    }
+}
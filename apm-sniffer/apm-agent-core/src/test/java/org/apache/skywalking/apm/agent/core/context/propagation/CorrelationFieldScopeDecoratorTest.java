@@ -0,0 +1,94 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+import org.junit.Test;
+
+public class CorrelationFieldScopeDecoratorTest {
+
+    final Map<String, String> fields = new LinkedHashMap<>();
+    int writes;
+
+    CorrelationFieldScopeDecorator decorator = new CorrelationFieldScopeDecorator() {
+        @Override
+        protected String get(String key) {
+            return fields.get(key);
+        }
+
+        @Override
+        protected void put(String key, String value) {
+            writes++;
+            fields.put(key, value);
+        }
+
+        @Override
+        protected void remove(String key) {
+            writes++;
+            fields.remove(key);
+        }
+    };
+
+    CurrentTraceContext currentTraceContext = ThreadLocalCurrentTraceContext.newBuilder()
+        .addScopeDecorator(decorator)
+        .build();
+
+    TraceContext parent = TraceContext.newBuilder().traceIdHigh(1L).traceId(2L).spanId(3L).build();
+    TraceContext child = parent.toBuilder().parentId(3L).spanId(4L).build();
+
+    @Test
+    public void addsAndRestoresFields() {
+        try (Scope scope = currentTraceContext.newScope(parent)) {
+            assertEquals(parent.traceIdString(), fields.get("traceId"));
+            assertEquals(parent.spanIdString(), fields.get("spanId"));
+
+            try (Scope childScope = currentTraceContext.newScope(child)) {
+                assertEquals(child.spanIdString(), fields.get("spanId"));
+            }
+            assertEquals(parent.spanIdString(), fields.get("spanId"));
+
+            try (Scope clearScope = currentTraceContext.newScope(null)) {
+                assertNull(fields.get("traceId"));
+                assertNull(fields.get("spanId"));
+            }
+            assertEquals(parent.traceIdString(), fields.get("traceId"));
+        }
+        assertNull(fields.get("traceId"));
+        assertNull(fields.get("spanId"));
+    }
+
+    @Test
+    public void childInSameTrace_onlyWritesSpanId() {
+        try (Scope scope = currentTraceContext.newScope(parent)) {
+            writes = 0;
+            try (Scope childScope = currentTraceContext.newScope(child)) {
+                assertEquals(1, writes);
+            }
+            assertEquals(2, writes);
+        }
+    }
+
+    @Test
+    public void sameContext_isNotDecorated() {
+        try (Scope scope = currentTraceContext.newScope(parent)) {
+            writes = 0;
+            try (Scope same = currentTraceContext.newScope(parent)) {
+                assertFalse(same instanceof CorrelationFieldScopeDecorator.CorrelationFieldScope);
+            }
+            assertEquals(0, writes);
+        }
+    }
+
+    @Test
+    public void isTraceId() {
+        assertTrue(CorrelationFieldScopeDecorator.isTraceId(parent.traceIdString(), parent));
+        assertFalse(CorrelationFieldScopeDecorator.isTraceId(null, parent));
+        assertFalse(CorrelationFieldScopeDecorator.isTraceId(
+            TraceContext.newBuilder().traceId(2L).spanId(3L).build().traceIdString(), parent));
+    }
+}
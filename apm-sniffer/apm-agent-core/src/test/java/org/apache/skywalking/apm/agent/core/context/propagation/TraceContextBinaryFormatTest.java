@@ -0,0 +1,259 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class TraceContextBinaryFormatTest {
+
+    static final String TRACE_ID_HIGH = "4bf92f3577b34da6", TRACE_ID = "a3ce929d0e0e4736";
+    static final String SPAN_ID = "00f067aa0ba902b7";
+
+    TraceContext context = TraceContext.newBuilder()
+        .traceIdHigh(Long.parseUnsignedLong(TRACE_ID_HIGH, 16))
+        .traceId(Long.parseUnsignedLong(TRACE_ID, 16))
+        .parentId(1L)
+        .spanId(Long.parseUnsignedLong(SPAN_ID, 16))
+        .sampled(true)
+        .build();
+
+    @Test
+    public void writesDocumentedLayout() {
+        assertEquals("0000" + TRACE_ID_HIGH + TRACE_ID + "01" + SPAN_ID + "0201",
+            hex(TraceContextBinaryFormat.writeBinaryFormat(context)));
+    }
+
+    @Test
+    public void writesDeferredWithoutTraceOptions() {
+        byte[] bytes = TraceContextBinaryFormat.writeBinaryFormat(
+            context.toBuilder().sampled(null).build());
+
+        assertEquals("0000" + TRACE_ID_HIGH + TRACE_ID + "01" + SPAN_ID, hex(bytes));
+    }
+
+    @Test
+    public void writesDebugAsSampled() {
+        byte[] bytes = TraceContextBinaryFormat.writeBinaryFormat(
+            context.toBuilder().debug(true).build());
+
+        assertTrue(TraceContextBinaryFormat.parseBinaryFormat(bytes).context().sampled());
+    }
+
+    @Test
+    public void roundTrip_sampled() {
+        TraceContext parsed = roundTrip(context);
+
+        assertEquals(context.traceIdString(), parsed.traceIdString());
+        assertEquals(context.spanIdString(), parsed.spanIdString());
+        assertEquals("the parent ID isn't propagated", 0L, parsed.parentIdAsLong());
+        assertEquals(Boolean.TRUE, parsed.sampled());
+    }
+
+    @Test
+    public void roundTrip_notSampled() {
+        assertEquals(Boolean.FALSE, roundTrip(context.toBuilder().sampled(false).build()).sampled());
+    }
+
+    @Test
+    public void roundTrip_deferred() {
+        assertNull(roundTrip(context.toBuilder().sampled(null).build()).sampled());
+    }
+
+    @Test
+    public void roundTrip_64BitTraceId() {
+        TraceContext parsed = roundTrip(context.toBuilder().traceIdHigh(0L).build());
+
+        assertEquals(0L, parsed.traceIdHigh());
+        assertEquals(TRACE_ID, parsed.traceIdString());
+    }
+
+    @Test
+    public void byteBuffer_heapAtPosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.position(5);
+        TraceContextBinaryFormat.writeBinaryFormat(context, buffer);
+
+        assertEquals(5 + 29, buffer.position());
+        buffer.flip().position(5);
+        assertEquals(context, TraceContextBinaryFormat.parseBinaryFormat(buffer).context());
+        assertEquals("position isn't advanced by reading", 5, buffer.position());
+    }
+
+    @Test
+    public void byteBuffer_direct() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(29);
+        TraceContextBinaryFormat.writeBinaryFormat(context, buffer);
+        buffer.flip();
+
+        assertEquals(context, TraceContextBinaryFormat.parseBinaryFormat(buffer).context());
+    }
+
+    @Test
+    public void byteArray_atOffset() {
+        byte[] frame = new byte[64];
+        int length = TraceContextBinaryFormat.writeBinaryFormat(context, frame, 10);
+
+        assertEquals(29, length);
+        assertEquals(context,
+            TraceContextBinaryFormat.parseBinaryFormat(frame, 10, length).context());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void byteArray_tooSmall() {
+        TraceContextBinaryFormat.writeBinaryFormat(context, new byte[29], 1);
+    }
+
+    @Test
+    public void ignoresAppendedFields() {
+        byte[] bytes = Arrays.copyOf(TraceContextBinaryFormat.writeBinaryFormat(context), 33);
+        bytes[29] = 3; // an unknown field
+
+        assertEquals(context, TraceContextBinaryFormat.parseBinaryFormat(bytes).context());
+    }
+
+    @Test
+    public void ignoresLaterVersion() {
+        byte[] bytes = TraceContextBinaryFormat.writeBinaryFormat(context);
+        bytes[0] = 1;
+
+        assertEquals(context, TraceContextBinaryFormat.parseBinaryFormat(bytes).context());
+    }
+
+    @Test
+    public void rejectsInvalid() {
+        byte[] valid = TraceContextBinaryFormat.writeBinaryFormat(context);
+
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(new byte[0]));
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(Arrays.copyOf(valid, 20)));
+        assertNull("truncated trace options",
+            TraceContextBinaryFormat.parseBinaryFormat(Arrays.copyOf(valid, 28)));
+
+        byte[] wrongField = valid.clone();
+        wrongField[1] = 1;
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(wrongField));
+
+        wrongField = valid.clone();
+        wrongField[18] = 0;
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(wrongField));
+
+        byte[] zeroTraceId = valid.clone();
+        Arrays.fill(zeroTraceId, 2, 18, (byte) 0);
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(zeroTraceId));
+
+        byte[] zeroSpanId = valid.clone();
+        Arrays.fill(zeroSpanId, 19, 27, (byte) 0);
+        assertNull(TraceContextBinaryFormat.parseBinaryFormat(zeroSpanId));
+    }
+
+    /** The binary format must extract the same trace as the B3 text format would. */
+    @Test
+    public void fuzz_sameAsB3SingleFormat() {
+        Random random = new Random(1L);
+        for (int i = 0; i < 10000; i++) {
+            TraceContext context = randomContext(random);
+
+            TraceContext fromB3 = B3SingleFormat.parseB3SingleFormat(
+                B3SingleFormat.writeB3SingleFormat(context)).context();
+            TraceContext fromBinary = roundTrip(context);
+
+            String message = context.toString();
+            assertEquals(message, fromB3.traceIdHigh(), fromBinary.traceIdHigh());
+            assertEquals(message, fromB3.traceId(), fromBinary.traceId());
+            assertEquals(message, fromB3.spanId(), fromBinary.spanId());
+            assertEquals(message, fromB3.sampled(), fromBinary.sampled());
+            assertEquals(message, 0L, fromBinary.parentIdAsLong());
+            if (!context.debug()) { // the binary format has no debug flag
+                assertEquals(message,
+                    B3SingleFormat.writeB3SingleFormatWithoutParentId(context),
+                    B3SingleFormat.writeB3SingleFormatWithoutParentId(fromBinary));
+            }
+        }
+    }
+
+    /** Corrupt input must be rejected or parsed, never throw, and parse the same once rewritten. */
+    @Test
+    public void fuzz_corruptInput() {
+        Random random = new Random(2L);
+        for (int i = 0; i < 10000; i++) {
+            byte[] bytes;
+            if (random.nextBoolean()) {
+                bytes = new byte[random.nextInt(40)];
+                random.nextBytes(bytes);
+                if (bytes.length > 1 && random.nextBoolean()) {
+                    bytes[1] = 0; // so that more inputs get past the first field
+                }
+            } else {
+                bytes = TraceContextBinaryFormat.writeBinaryFormat(randomContext(random));
+                bytes[random.nextInt(bytes.length)] = (byte) random.nextInt();
+                bytes = Arrays.copyOf(bytes, random.nextInt(bytes.length + 4));
+            }
+
+            TraceContextOrSamplingFlags extracted = TraceContextBinaryFormat.parseBinaryFormat(bytes);
+            if (extracted == null) {
+                continue;
+            }
+            TraceContext parsed = extracted.context();
+            assertNotNull(parsed);
+            assertFalse(parsed.traceIdHigh() == 0L && parsed.traceId() == 0L);
+            assertFalse(parsed.spanId() == 0L);
+
+            TraceContext reparsed = roundTrip(parsed);
+            assertEquals(parsed, reparsed);
+            assertEquals(parsed.sampled(), reparsed.sampled());
+            assertArrayEquals(TraceContextBinaryFormat.writeBinaryFormat(parsed),
+                TraceContextBinaryFormat.writeBinaryFormat(reparsed));
+        }
+    }
+
+    static TraceContext roundTrip(TraceContext context) {
+        TraceContextOrSamplingFlags extracted = TraceContextBinaryFormat.parseBinaryFormat(
+            TraceContextBinaryFormat.writeBinaryFormat(context));
+        assertNotNull(extracted);
+        return extracted.context();
+    }
+
+    static TraceContext randomContext(Random random) {
+        TraceContext.Builder builder = TraceContext.newBuilder()
+            .traceIdHigh(random.nextBoolean() ? random.nextLong() : 0L)
+            .traceId(nonZero(random))
+            .parentId(random.nextBoolean() ? nonZero(random) : 0L)
+            .spanId(nonZero(random));
+        switch (random.nextInt(4)) {
+            case 0:
+                break; // deferred
+            case 1:
+                builder.sampled(false);
+                break;
+            case 2:
+                builder.sampled(true);
+                break;
+            default:
+                builder.debug(true);
+        }
+        return builder.build();
+    }
+
+    static long nonZero(Random random) {
+        long result;
+        do {
+            result = random.nextLong();
+        } while (result == 0L);
+        return result;
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b & 0xff));
+        }
+        return result.toString();
+    }
+}
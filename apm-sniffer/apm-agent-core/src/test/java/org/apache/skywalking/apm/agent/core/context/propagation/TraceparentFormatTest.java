@@ -0,0 +1,184 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.apache.skywalking.apm.agent.core.context.propagation.TraceparentFormat.parseTraceparentFormat;
+import static org.apache.skywalking.apm.agent.core.context.propagation.TraceparentFormat.writeTraceparentFormat;
+import static org.apache.skywalking.apm.agent.core.context.propagation.TraceparentFormat.writeTraceparentFormatAsBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import org.junit.Test;
+
+/** Examples are from the W3C Trace Context specification, where there are any. */
+public class TraceparentFormatTest {
+
+    static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736", PARENT_ID = "00f067aa0ba902b7";
+
+    TraceContext context = TraceContext.newBuilder()
+        .traceIdHigh(0x4bf92f3577b34da6L)
+        .traceId(0xa3ce929d0e0e4736L)
+        .spanId(0x00f067aa0ba902b7L)
+        .sampled(true)
+        .build();
+
+    @Test
+    public void writes_sampled() {
+        assertEquals("00-" + TRACE_ID + "-" + PARENT_ID + "-01", writeTraceparentFormat(context));
+    }
+
+    @Test
+    public void writes_notSampled() {
+        context = context.toBuilder().sampled(false).build();
+
+        assertEquals("00-" + TRACE_ID + "-" + PARENT_ID + "-00", writeTraceparentFormat(context));
+    }
+
+    @Test
+    public void writes_deferredAsNotSampled() {
+        context = context.toBuilder().sampled(null).build();
+
+        assertEquals("00-" + TRACE_ID + "-" + PARENT_ID + "-00", writeTraceparentFormat(context));
+    }
+
+    @Test
+    public void writes_debugAsSampled() {
+        context = context.toBuilder().debug(true).build();
+
+        assertEquals("00-" + TRACE_ID + "-" + PARENT_ID + "-01", writeTraceparentFormat(context));
+    }
+
+    @Test
+    public void writes_64BitTraceIdWithLeadingZeros() {
+        context = context.toBuilder().traceIdHigh(0L).build();
+
+        assertEquals("00-0000000000000000a3ce929d0e0e4736-" + PARENT_ID + "-01",
+            writeTraceparentFormat(context));
+    }
+
+    @Test
+    public void writesBytes() {
+        assertArrayEquals(writeTraceparentFormat(context).getBytes(),
+            writeTraceparentFormatAsBytes(context));
+    }
+
+    @Test
+    public void parses_sampled() {
+        TraceContext parsed = parse("00-" + TRACE_ID + "-" + PARENT_ID + "-01").context();
+
+        assertEquals(context.traceIdHigh(), parsed.traceIdHigh());
+        assertEquals(context.traceId(), parsed.traceId());
+        assertEquals(context.spanId(), parsed.spanId());
+        assertEquals(0L, parsed.parentIdAsLong());
+        assertEquals(Boolean.TRUE, parsed.sampled());
+    }
+
+    /** An unset sampled bit means the caller didn't record, not that it asked not to be traced. */
+    @Test
+    public void parses_notSampledAsDeferred() {
+        assertNull(parse("00-" + TRACE_ID + "-" + PARENT_ID + "-00").sampled());
+    }
+
+    /** Only the sampled bit is defined, so the others are ignored. */
+    @Test
+    public void parses_ignoresUndefinedFlags() {
+        assertEquals(Boolean.TRUE, parse("00-" + TRACE_ID + "-" + PARENT_ID + "-09").sampled());
+        assertNull(parse("00-" + TRACE_ID + "-" + PARENT_ID + "-fe").sampled());
+    }
+
+    @Test
+    public void parses_writtenValue() {
+        TraceContext parsed = parse(writeTraceparentFormat(context)).context();
+
+        assertEquals(context.traceIdString(), parsed.traceIdString());
+        assertEquals(context.spanIdString(), parsed.spanIdString());
+    }
+
+    @Test
+    public void parses_rangeWithExtra() {
+        String traceparent = "traceparent: 00-" + TRACE_ID + "-" + PARENT_ID + "-01;";
+        Object traceState = new W3CPropagation.TraceState("congo=t61rcWkgMzE");
+
+        TraceContext parsed = parseTraceparentFormat(traceparent, 13, traceparent.length() - 1,
+            Collections.singletonList(traceState)).context();
+
+        assertEquals(context.spanId(), parsed.spanId());
+        assertEquals(Collections.singletonList(traceState), parsed.extra());
+    }
+
+    @Test
+    public void parses_futureVersion() {
+        assertTrue(parse("cc-" + TRACE_ID + "-" + PARENT_ID + "-01").sampled());
+    }
+
+    /** Later versions may append fields, after a hyphen. */
+    @Test
+    public void parses_futureVersionWithMoreFields() {
+        assertTrue(parse("cc-" + TRACE_ID + "-" + PARENT_ID + "-01-what-the-future-will-be-like")
+            .sampled());
+        assertTrue(parse("cc-" + TRACE_ID + "-" + PARENT_ID + "-01-").sampled());
+    }
+
+    @Test
+    public void rejects_futureVersionWithoutHyphenAfterFlags() {
+        assertInvalid("cc-" + TRACE_ID + "-" + PARENT_ID + "-01.what-the-future-will-be-like");
+        assertInvalid("cc-" + TRACE_ID + "-" + PARENT_ID + "-010");
+    }
+
+    /** Version 00 is exactly 55 characters, so it can't have a trailing hyphen. */
+    @Test
+    public void rejects_version00WithTrailingCharacters() {
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID + "-01-");
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID + "-01-what-the-future-will-be-like");
+    }
+
+    @Test
+    public void rejects_versionFF() {
+        assertInvalid("ff-" + TRACE_ID + "-" + PARENT_ID + "-01");
+    }
+
+    @Test
+    public void rejects_allZeroTraceId() {
+        assertInvalid("00-00000000000000000000000000000000-" + PARENT_ID + "-01");
+    }
+
+    @Test
+    public void rejects_allZeroParentId() {
+        assertInvalid("00-" + TRACE_ID + "-0000000000000000-01");
+    }
+
+    @Test
+    public void rejects_upperHex() {
+        assertInvalid("0A-" + TRACE_ID + "-" + PARENT_ID + "-01");
+        assertInvalid("00-" + TRACE_ID.toUpperCase() + "-" + PARENT_ID + "-01");
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID.toUpperCase() + "-01");
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID + "-0A");
+    }
+
+    @Test
+    public void rejects_misplacedDelimiters() {
+        assertInvalid("00_" + TRACE_ID + "-" + PARENT_ID + "-01");
+        assertInvalid("00-" + TRACE_ID + "_" + PARENT_ID + "-01");
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID + "_01");
+        assertInvalid("000-" + TRACE_ID + "-" + PARENT_ID + "-1");
+    }
+
+    @Test
+    public void rejects_truncated() {
+        assertInvalid("");
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID);
+        assertInvalid("00-" + TRACE_ID + "-" + PARENT_ID + "-0");
+        assertInvalid("00-" + TRACE_ID.substring(16) + "-" + PARENT_ID + "-01");
+    }
+
+    static TraceContextOrSamplingFlags parse(String traceparent) {
+        TraceContextOrSamplingFlags extracted = parseTraceparentFormat(traceparent);
+        assertTrue(traceparent, extracted != null && extracted.context() != null);
+        return extracted;
+    }
+
+    static void assertInvalid(String traceparent) {
+        assertNull(traceparent, parseTraceparentFormat(traceparent));
+    }
+}
@@ -0,0 +1,156 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Getter;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Setter;
+import org.junit.Test;
+
+public class W3CPropagationTest {
+
+    static final Setter<Map<String, String>, String> SETTER =
+        new Setter<Map<String, String>, String>() {
+            @Override
+            public void put(Map<String, String> carrier, String key, String value) {
+                carrier.put(key, value);
+            }
+        };
+
+    static final Getter<Map<String, String>, String> GETTER =
+        new Getter<Map<String, String>, String>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        };
+
+    static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+    static final String TRACESTATE = "rojo=00f067aa0ba902b7,congo=t61rcWkgMzE";
+
+    Propagation<String> propagation = W3CPropagation.FACTORY.create(Propagation.KeyFactory.STRING);
+
+    Map<String, String> carrier = new LinkedHashMap<>();
+
+    @Test
+    public void keys() {
+        assertEquals(Arrays.asList("traceparent", "tracestate"), propagation.keys());
+    }
+
+    @Test
+    public void roundTrip_keepsTraceState() {
+        carrier.put("traceparent", TRACEPARENT);
+        carrier.put("tracestate", TRACESTATE);
+        TraceContext extracted = propagation.extractor(GETTER).extract(carrier).context();
+        assertEquals(TRACESTATE, extracted.findExtra(W3CPropagation.TraceState.class).value());
+
+        // the tracestate is kept by the child which is sent downstream
+        TraceContext child = extracted.toBuilder().spanId(3L).build();
+        Map<String, String> downstream = new LinkedHashMap<>();
+        propagation.injector(SETTER).inject(child, downstream);
+
+        assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000003-01",
+            downstream.get("traceparent"));
+        assertEquals(TRACESTATE, downstream.get("tracestate"));
+
+        TraceContext roundTrip = propagation.extractor(GETTER).extract(downstream).context();
+        assertEquals(child.traceIdHigh(), roundTrip.traceIdHigh());
+        assertEquals(child.traceId(), roundTrip.traceId());
+        assertEquals(child.spanId(), roundTrip.spanId());
+        assertEquals(Boolean.TRUE, roundTrip.sampled());
+        assertEquals(TRACESTATE, roundTrip.findExtra(W3CPropagation.TraceState.class).value());
+    }
+
+    @Test
+    public void inject_noTraceStateWhenNoneWasReceived() {
+        TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+
+        propagation.injector(SETTER).inject(context, carrier);
+
+        assertEquals(Collections.singleton("traceparent"), carrier.keySet());
+    }
+
+    @Test
+    public void extract_emptyTraceStateIsIgnored() {
+        carrier.put("traceparent", TRACEPARENT);
+        carrier.put("tracestate", "");
+
+        TraceContext extracted = propagation.extractor(GETTER).extract(carrier).context();
+
+        assertNull(extracted.findExtra(W3CPropagation.TraceState.class));
+    }
+
+    @Test
+    public void extract_traceStateWithoutTraceparentIsEmpty() {
+        carrier.put("tracestate", TRACESTATE);
+
+        assertSame(TraceContextOrSamplingFlags.EMPTY,
+            propagation.extractor(GETTER).extract(carrier));
+    }
+
+    @Test
+    public void extract_malformedIsEmpty() {
+        carrier.put("traceparent", TRACEPARENT.toUpperCase());
+        carrier.put("tracestate", TRACESTATE);
+
+        assertSame(TraceContextOrSamplingFlags.EMPTY,
+            propagation.extractor(GETTER).extract(carrier));
+    }
+
+    @Test
+    public void factory_requires128BitTraceIdAndDoesntJoin() {
+        assertTrue(W3CPropagation.FACTORY.requires128BitTraceId());
+        assertFalse(W3CPropagation.FACTORY.supportsJoin());
+    }
+
+    @Test
+    public void newFactory_prefersTraceparent() {
+        Propagation<String> both = W3CPropagation.newFactory(B3Propagation.FACTORY)
+            .create(Propagation.KeyFactory.STRING);
+        carrier.put("traceparent", TRACEPARENT);
+        carrier.put("X-B3-TraceId", "0000000000000001");
+        carrier.put("X-B3-SpanId", "0000000000000002");
+
+        TraceContext extracted = both.extractor(GETTER).extract(carrier).context();
+
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", extracted.traceIdString());
+    }
+
+    @Test
+    public void newFactory_fallsBackToSecondaryOfMalformedTraceparent() {
+        Propagation<String> both = W3CPropagation.newFactory(B3Propagation.FACTORY)
+            .create(Propagation.KeyFactory.STRING);
+        carrier.put("traceparent", "00-garbage");
+        carrier.put("X-B3-TraceId", "0000000000000001");
+        carrier.put("X-B3-SpanId", "0000000000000002");
+
+        TraceContext extracted = both.extractor(GETTER).extract(carrier).context();
+
+        assertEquals(1L, extracted.traceId());
+        assertEquals(2L, extracted.spanId());
+    }
+
+    @Test
+    public void newFactory_injectsBoth() {
+        Propagation<String> both = W3CPropagation.newFactory(B3Propagation.FACTORY)
+            .create(Propagation.KeyFactory.STRING);
+        TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true)
+            .build();
+
+        both.injector(SETTER).inject(context, carrier);
+
+        assertEquals("00-00000000000000000000000000000001-0000000000000002-01",
+            carrier.get("traceparent"));
+        assertEquals("0000000000000001", carrier.get("X-B3-TraceId"));
+        assertEquals("0000000000000002", carrier.get("X-B3-SpanId"));
+        assertTrue(both.keys().containsAll(Arrays.asList("traceparent", "tracestate",
+            "X-B3-TraceId", "X-B3-SpanId")));
+    }
+}
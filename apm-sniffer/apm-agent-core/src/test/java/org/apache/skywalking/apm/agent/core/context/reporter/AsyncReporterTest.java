@@ -0,0 +1,207 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+
+public class AsyncReporterTest {
+
+    static Span span(long id) {
+        return Span.newBuilder().traceId(1L, 1L).id(id).name("get").build();
+    }
+
+    static final int SPAN_BYTES = SpanBytesEncoder.JSON_V2.sizeInBytes(span(1L));
+
+    final TestSink sink = new TestSink();
+    AsyncReporter reporter;
+
+    @After
+    public void close() {
+        if (reporter != null) {
+            reporter.close();
+        }
+    }
+
+    /** The reporting thread isn't started, so spans stay queued until flushed. */
+    AsyncReporter unstarted(AsyncReporter.Builder builder) {
+        return reporter = new AsyncReporter(builder);
+    }
+
+    @Test
+    public void dropsSpansWhenQueueIsFull() {
+        unstarted(AsyncReporter.newBuilder(sink).queuedMaxSpans(2));
+
+        reporter.report(span(1L));
+        reporter.report(span(2L));
+        reporter.report(span(3L));
+
+        assertEquals(2, reporter.queuedSpans());
+        assertEquals(3, reporter.metrics().spans());
+        assertEquals(1, reporter.metrics().spansDropped());
+
+        reporter.flush();
+
+        assertEquals(1, sink.messages.size());
+        assertEquals(2, sink.messages.get(0).size());
+        assertEquals(0, reporter.queuedSpans());
+        assertEquals(1, reporter.metrics().messages());
+        assertEquals(2 * SPAN_BYTES, reporter.metrics().messageBytes());
+    }
+
+    @Test
+    public void splitsMessagesBySize() {
+        // room for two spans per message: [span,span]
+        sink.messageMaxBytes = 2 + 2 * SPAN_BYTES + 1;
+        unstarted(AsyncReporter.newBuilder(sink));
+
+        for (long i = 1; i <= 5; i++) {
+            reporter.report(span(i));
+        }
+        reporter.flush();
+
+        assertEquals(3, sink.messages.size());
+        assertEquals(2, sink.messages.get(0).size());
+        assertEquals(2, sink.messages.get(1).size());
+        assertEquals(1, sink.messages.get(2).size());
+        assertEquals(0, reporter.metrics().spansDropped());
+    }
+
+    @Test
+    public void dropsSpanLargerThanMessage() {
+        sink.messageMaxBytes = SPAN_BYTES; // without the list delimiters
+        unstarted(AsyncReporter.newBuilder(sink));
+
+        reporter.report(span(1L));
+        reporter.flush();
+
+        assertTrue(sink.messages.isEmpty());
+        assertEquals(1, reporter.metrics().spansDropped());
+    }
+
+    @Test
+    public void countsFailedMessages() {
+        sink.fail = true;
+        unstarted(AsyncReporter.newBuilder(sink));
+
+        reporter.report(span(1L));
+        reporter.report(span(2L));
+        reporter.flush();
+
+        assertEquals(1, reporter.metrics().messages());
+        assertEquals(1, reporter.metrics().messagesDropped());
+        assertEquals(2, reporter.metrics().spansDropped());
+    }
+
+    @Test
+    public void closeSendsQueuedSpansAndClosesSink() {
+        unstarted(AsyncReporter.newBuilder(sink));
+
+        reporter.report(span(1L));
+        reporter.report(span(2L));
+        reporter.close();
+
+        assertEquals(1, sink.messages.size());
+        assertEquals(2, sink.messages.get(0).size());
+        assertTrue(sink.closed);
+
+        reporter.report(span(3L));
+
+        assertEquals(1, reporter.metrics().spansDropped());
+        assertEquals(0, reporter.queuedSpans());
+    }
+
+    @Test
+    public void closeStopsReportingThread() throws InterruptedException {
+        reporter = AsyncReporter.newBuilder(sink).messageTimeout(1, TimeUnit.HOURS).build();
+
+        reporter.report(span(1L));
+        reporter.close();
+
+        assertFalse(reporter.flushThread.isAlive());
+        assertEquals(1, sink.spanCount());
+        assertTrue(sink.closed);
+    }
+
+    @Test
+    public void sendsPartialBatchAfterMessageTimeout() throws InterruptedException {
+        reporter = AsyncReporter.newBuilder(sink).messageTimeout(10, TimeUnit.MILLISECONDS).build();
+
+        reporter.report(span(1L));
+
+        awaitSpans(1);
+        assertEquals(1, sink.messages.size());
+    }
+
+    @Test
+    public void idleReportingThreadParksUntilSpanIsReported() throws InterruptedException {
+        reporter = AsyncReporter.newBuilder(sink).messageTimeout(10, TimeUnit.MILLISECONDS).build();
+
+        awaitState(Thread.State.WAITING); // not TIMED_WAITING, so it isn't woken when idle
+
+        reporter.report(span(1L));
+        awaitSpans(1);
+        awaitState(Thread.State.WAITING);
+
+        reporter.report(span(2L));
+        awaitSpans(2);
+    }
+
+    void awaitSpans(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sink.spanCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, sink.spanCount());
+    }
+
+    void awaitState(Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reporter.flushThread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(state, reporter.flushThread.getState());
+    }
+
+    static final class TestSink extends SpanSink {
+
+        final List<List<byte[]>> messages = new ArrayList<>();
+        int messageMaxBytes = 500000;
+        boolean fail;
+        volatile boolean closed;
+
+        @Override
+        public int messageMaxBytes() {
+            return messageMaxBytes;
+        }
+
+        @Override
+        public synchronized void send(List<byte[]> encodedSpans) throws IOException {
+            if (fail) {
+                throw new IOException("failed");
+            }
+            messages.add(new ArrayList<>(encodedSpans));
+        }
+
+        synchronized int spanCount() {
+            int result = 0;
+            for (List<byte[]> message : messages) {
+                result += message.size();
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.apache.skywalking.apm.agent.core.context.reporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class SpanRingBufferTest {
+
+    final List<Object> contexts = new ArrayList<>();
+    final List<Object> spans = new ArrayList<>();
+    final SpanRingBuffer.Consumer consumer = new SpanRingBuffer.Consumer() {
+        @Override
+        public void accept(Object context, Object span) {
+            contexts.add(context);
+            spans.add(span);
+        }
+    };
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(1, new SpanRingBuffer(0).capacity());
+        assertEquals(1, new SpanRingBuffer(1).capacity());
+        assertEquals(8, new SpanRingBuffer(5).capacity());
+        assertEquals(8, new SpanRingBuffer(8).capacity());
+        assertEquals(1 << 30, SpanRingBuffer.roundToPowerOfTwo(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void drainsInOrderWithContexts() {
+        SpanRingBuffer ring = new SpanRingBuffer(4);
+        assertTrue(ring.isEmpty());
+        ring.offer("c1", "s1");
+        ring.offer(null, "s2");
+        assertFalse(ring.isEmpty());
+        assertEquals(2, ring.size());
+
+        assertEquals(2, ring.drainTo(consumer, 10));
+
+        assertEquals(Arrays.asList("c1", null), contexts);
+        assertEquals(Arrays.asList("s1", "s2"), spans);
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void rejectsOffersWhenFull() {
+        SpanRingBuffer ring = new SpanRingBuffer(2);
+        assertTrue(ring.offer(null, "s1"));
+        assertTrue(ring.offer(null, "s2"));
+        assertFalse(ring.offer(null, "s3"));
+        assertEquals(2, ring.size());
+
+        assertEquals(1, ring.drainTo(consumer, 1));
+        assertTrue(ring.offer(null, "s4"));
+        assertFalse(ring.offer(null, "s5"));
+    }
+
+    @Test
+    public void drainsAtMostMax() {
+        SpanRingBuffer ring = new SpanRingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(null, i);
+        }
+        assertEquals(3, ring.drainTo(consumer, 3));
+        assertEquals(2, ring.drainTo(consumer, 3));
+        assertEquals(0, ring.drainTo(consumer, 3));
+    }
+
+    @Test
+    public void wrapsAround() {
+        SpanRingBuffer ring = new SpanRingBuffer(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) { // well past the capacity
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(null, next++));
+            }
+            assertEquals(3, ring.drainTo(consumer, 10));
+        }
+        assertEquals(30, spans.size());
+        for (int i = 0; i < spans.size(); i++) {
+            assertEquals(i, spans.get(i));
+        }
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final SpanRingBuffer ring = new SpanRingBuffer(1 << 16);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            final int producer = p;
+            producers[p] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        ring.offer(producer, i);
+                    }
+                }
+            };
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(4000, ring.drainTo(consumer, Integer.MAX_VALUE));
+        // each producer's spans stay in order
+        int[] last = {-1, -1, -1, -1};
+        for (int i = 0; i < spans.size(); i++) {
+            int producer = (Integer) contexts.get(i);
+            int span = (Integer) spans.get(i);
+            assertEquals(last[producer] + 1, span);
+            last[producer] = span;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveHttpSamplerTest {
+
+    static final long START = 1000L;
+    static final long SECOND = AdaptiveHttpSampler.NANOS_PER_SECOND;
+
+    static final HttpSamplingRequest HEALTH = HttpSamplingRequest.server("GET", "/health"),
+        CHECKOUT = HttpSamplingRequest.server("POST", "/checkout");
+
+    AdaptiveHttpSampler sampler = AdaptiveHttpSampler.create(5, 100);
+
+    @Test
+    public void nullRequestDefers() {
+        assertNull(sampler.trySample(null));
+        assertEquals(0, sampler.endpointCount());
+    }
+
+    @Test
+    public void busyEndpointIsLimitedToItsBudget() {
+        assertEquals(5, drain(sampler, HEALTH, START));
+        assertFalse(sampler.trySample(HEALTH, START + SECOND - 1));
+    }
+
+    /** A chatty endpoint can't use up the budget of a rare one. */
+    @Test
+    public void endpointsHaveIndependentBudgets() {
+        assertEquals(5, drain(sampler, HEALTH, START));
+
+        assertTrue(sampler.trySample(CHECKOUT, START));
+        assertEquals(2, sampler.endpointCount());
+    }
+
+    @Test
+    public void endpointIsTheKindMethodPathAndHost() {
+        assertEquals(5, drain(sampler, HttpSamplingRequest.client("GET", "/users", "a"), START));
+
+        assertTrue(sampler.trySample(HttpSamplingRequest.client("GET", "/users", "b"), START));
+        assertTrue(sampler.trySample(HttpSamplingRequest.client("PUT", "/users", "a"), START));
+        assertTrue(sampler.trySample(HttpSamplingRequest.server("GET", "/users"), START));
+        assertFalse(sampler.trySample(HttpSamplingRequest.client("GET", "/users", "a"), START));
+    }
+
+    @Test
+    public void budgetIsRefilledEachSecond() {
+        for (int second = 0; second < 3; second++) {
+            assertEquals(5, drain(sampler, HEALTH, START + second * SECOND));
+        }
+    }
+
+    @Test
+    public void rareEndpointIsAlwaysSampled() {
+        for (int second = 0; second < 10; second++) {
+            assertTrue(sampler.trySample(CHECKOUT, START + second * SECOND));
+        }
+    }
+
+    @Test
+    public void zeroBudgetNeverSamples() {
+        assertEquals(0, drain(AdaptiveHttpSampler.create(0, 100), HEALTH, START));
+    }
+
+    @Test
+    public void boundsTrackedEndpoints() {
+        sampler = AdaptiveHttpSampler.create(5, 4);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(sampler.trySample(HttpSamplingRequest.server("GET", "/" + i), START));
+            assertTrue(sampler.endpointCount() <= 4);
+        }
+    }
+
+    /** Idle endpoints are evicted first, so busy ones keep their exhausted budget. */
+    @Test
+    public void evictsIdleEndpointsFirst() {
+        sampler = AdaptiveHttpSampler.create(1, 4);
+        HttpSamplingRequest idle = HttpSamplingRequest.server("GET", "/idle");
+        sampler.trySample(idle, START);
+        long now = START + 2 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, drain(sampler, HttpSamplingRequest.server("GET", "/" + i), now));
+        }
+
+        assertTrue(sampler.trySample(CHECKOUT, now));
+        assertEquals(4, sampler.endpointCount());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(sampler.trySample(HttpSamplingRequest.server("GET", "/" + i), now));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRateIsInvalid() {
+        AdaptiveHttpSampler.create(-1, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroEndpointsIsInvalid() {
+        AdaptiveHttpSampler.create(5, 0);
+    }
+
+    /** Returns how many requests are sampled at the given time, until the budget is exhausted. */
+    static int drain(AdaptiveHttpSampler sampler, HttpSamplingRequest request, long nanoTime) {
+        int sampled = 0;
+        while (sampler.trySample(request, nanoTime)) {
+            sampled++;
+        }
+        return sampled;
+    }
+}
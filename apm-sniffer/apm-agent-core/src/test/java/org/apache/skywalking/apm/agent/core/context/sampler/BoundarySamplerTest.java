@@ -0,0 +1,103 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class BoundarySamplerTest {
+
+    static final int INPUT_SIZE = 1000000;
+
+    // a fixed seed keeps the test deterministic, while the IDs are as random as real ones
+    final long[] traceIds = new long[INPUT_SIZE];
+
+    {
+        Random random = new Random(1234L);
+        for (int i = 0; i < INPUT_SIZE; i++) {
+            traceIds[i] = random.nextLong();
+        }
+    }
+
+    @Test
+    public void sampledRatio_0_0001() {
+        assertSampledRatio(0.0001f);
+    }
+
+    @Test
+    public void sampledRatio_0_01() {
+        assertSampledRatio(0.01f);
+    }
+
+    @Test
+    public void sampledRatio_0_5() {
+        assertSampledRatio(0.5f);
+    }
+
+    /** Within four standard deviations of the binomial distribution of sampled traces. */
+    void assertSampledRatio(float rate) {
+        Sampler sampler = BoundarySampler.create(rate);
+        int sampled = 0;
+        for (long traceId : traceIds) {
+            if (sampler.isSampled(traceId)) {
+                sampled++;
+            }
+        }
+
+        double expected = (double) rate * INPUT_SIZE;
+        double tolerance = 4 * Math.sqrt(expected * (1 - rate));
+        assertEquals(sampler.toString(), expected, sampled, tolerance);
+    }
+
+    @Test
+    public void decisionIsConsistentPerTraceId() {
+        Sampler sampler = BoundarySampler.create(0.01f), other = BoundarySampler.create(0.01f);
+        for (long traceId : traceIds) {
+            boolean sampled = sampler.isSampled(traceId);
+            assertEquals(sampled, sampler.isSampled(traceId));
+            assertEquals(sampled, other.isSampled(traceId));
+        }
+    }
+
+    /** A trace sampled at a rate is also sampled at any higher rate. */
+    @Test
+    public void higherRateSamplesSuperset() {
+        Sampler low = BoundarySampler.create(0.0001f), high = BoundarySampler.create(0.5f);
+        for (long traceId : traceIds) {
+            if (low.isSampled(traceId)) {
+                assertTrue(high.isSampled(traceId));
+            }
+        }
+    }
+
+    @Test
+    public void ignoresSignBit() {
+        Sampler sampler = BoundarySampler.create(0.5f);
+
+        assertTrue(sampler.isSampled(Long.MIN_VALUE));
+        assertFalse(sampler.isSampled(-1L));
+    }
+
+    @Test
+    public void zeroNeverSamples() {
+        assertSame(Sampler.NEVER_SAMPLE, BoundarySampler.create(0f));
+    }
+
+    @Test
+    public void oneAlwaysSamples() {
+        assertSame(Sampler.ALWAYS_SAMPLE, BoundarySampler.create(1f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateBelowMinimumIsInvalid() {
+        BoundarySampler.create(0.00009f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateAboveOneIsInvalid() {
+        BoundarySampler.create(1.01f);
+    }
+}
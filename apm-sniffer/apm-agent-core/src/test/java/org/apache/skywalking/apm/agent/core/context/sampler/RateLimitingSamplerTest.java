@@ -0,0 +1,158 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+
+public class RateLimitingSamplerTest {
+
+    static final long START = 1000L;
+    static final long DECISECOND = RateLimitingSampler.NANOS_PER_SECOND / 10;
+
+    ExecutorService executor;
+
+    @After
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void zeroNeverSamples() {
+        assertSame(Sampler.NEVER_SAMPLE, RateLimitingSampler.create(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRateIsInvalid() {
+        RateLimitingSampler.create(-1);
+    }
+
+    @Test
+    public void acceptsTheRateEachSecond_belowTen() {
+        for (int rate = 1; rate < 10; rate++) {
+            for (int stripes = 1; stripes <= 8; stripes <<= 1) {
+                RateLimitingSampler sampler = new RateLimitingSampler(rate, stripes, START);
+                for (int second = 0; second < 3; second++) {
+                    long time = START + second * RateLimitingSampler.NANOS_PER_SECOND;
+                    // the whole budget is available at the start of the second
+                    assertEquals(sampler + " stripes=" + stripes, rate, drain(sampler, time));
+                    assertEquals(0, drain(sampler, time + 9 * DECISECOND));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void acceptsTheRateEachSecond_spreadAcrossDeciseconds() {
+        int[] rates = {10, 11, 19, 99, 100, 101, 1003, 65537};
+        for (int rate : rates) {
+            for (int stripes = 1; stripes <= 8; stripes <<= 1) {
+                RateLimitingSampler sampler = new RateLimitingSampler(rate, stripes, START);
+                for (int second = 0; second < 3; second++) {
+                    int total = 0;
+                    for (int decisecond = 0; decisecond < 10; decisecond++) {
+                        long time = START + second * RateLimitingSampler.NANOS_PER_SECOND
+                            + decisecond * DECISECOND;
+                        int accepted = drain(sampler, time);
+                        // interval sizes differ by at most one
+                        assertTrue(sampler + " stripes=" + stripes,
+                            accepted == rate / 10 || accepted == rate / 10 + 1);
+                        total += accepted;
+                    }
+                    assertEquals(sampler + " stripes=" + stripes, rate, total);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void splitsRemainderAcrossStripes() {
+        RateLimitingSampler sampler = new RateLimitingSampler(1003, 4, START);
+
+        // 1003 traces per second are intervals of 100 or 101 traces
+        int total = 0;
+        for (int decisecond = 0; decisecond < 10; decisecond++) {
+            int interval = 0;
+            for (int stripe = 0; stripe < 4; stripe++) {
+                int share = sampler.share(stripe, decisecond);
+                assertTrue(share == 25 || share == 26);
+                interval += share;
+            }
+            assertTrue(interval == 100 || interval == 101);
+            total += interval;
+        }
+        assertEquals(1003, total);
+    }
+
+    @Test
+    public void unusedBudgetIsNotCarriedOver() {
+        RateLimitingSampler sampler = new RateLimitingSampler(100, 4, START);
+
+        assertEquals(10, drain(sampler, START + 25 * DECISECOND));
+        assertEquals(10, drain(sampler, START + 26 * DECISECOND));
+    }
+
+    /** A thread which read the time before the budget was refilled mustn't reset it again. */
+    @Test
+    public void olderIntervalDoesntRefill() {
+        RateLimitingSampler sampler = new RateLimitingSampler(100, 1, START);
+
+        assertEquals(10, drain(sampler, START + DECISECOND));
+        assertFalse(sampler.acquire(START));
+        assertFalse(sampler.acquire(START + DECISECOND));
+    }
+
+    @Test
+    public void concurrentDecisionsDontExceedTheBudget() throws Exception {
+        final RateLimitingSampler sampler = new RateLimitingSampler(1000, 4, START);
+        final int threads = 8;
+        executor = Executors.newFixedThreadPool(threads);
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+
+        for (int decisecond = 1; decisecond <= 20; decisecond++) {
+            final long time = START + decisecond * DECISECOND;
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        barrier.await();
+                        int accepted = 0;
+                        for (int j = 0; j < 100; j++) {
+                            if (sampler.acquire(time)) {
+                                accepted++;
+                            }
+                        }
+                        return accepted;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertEquals(100, total);
+        }
+    }
+
+    /** Returns how many traces are accepted at the given time, until the budget is exhausted. */
+    static int drain(RateLimitingSampler sampler, long nanoTime) {
+        int accepted = 0;
+        while (sampler.acquire(nanoTime)) {
+            accepted++;
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,248 @@
+package org.apache.skywalking.apm.agent.core.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.IndirectMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginIndexTest {
+
+    /** Matches by name, so it is read as a {@link LazyPluginDefine}. */
+    public static class NameDefine extends AbstractClassEnhancePluginDefine {
+
+        static int instances;
+
+        public NameDefine() {
+            instances++;
+        }
+
+        @Override
+        protected DynamicType.Builder<?> enhance(TypeDescription typeDescription,
+            DynamicType.Builder<?> newClassBuilder, ClassLoader classLoader,
+            EnhanceContext context) {
+            return newClassBuilder;
+        }
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return NameMatch.byName("com.example.Target");
+        }
+
+        @Override
+        protected String[] witnessClasses() {
+            return new String[] {"com.example.Witness"};
+        }
+    }
+
+    public static class IndirectDefine extends NameDefine {
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return new IndirectMatch() {
+                @Override
+                public ElementMatcher.Junction buildJunction() {
+                    return ElementMatchers.nameStartsWith("com.example.");
+                }
+
+                @Override
+                public boolean isMatch(TypeDescription typeDescription) {
+                    return typeDescription.getName().startsWith("com.example.");
+                }
+            };
+        }
+    }
+
+    public static class BootstrapDefine extends BootstrapClassEnhancePluginDefine {
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return NameMatch.byName("java.util.concurrent.ThreadPoolExecutor");
+        }
+
+        @Override
+        protected AdviceInterceptPoint[] getAdviceInterceptPoints() {
+            return null;
+        }
+    }
+
+    /** Matches nothing, so it is left out. */
+    public static class NoneDefine extends NameDefine {
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return null;
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Before
+    @After
+    public void reset() {
+        NameDefine.instances = 0;
+        PluginCfg.INSTANCE.getPluginClassList().clear();
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws Exception {
+        List<AbstractClassEnhancePluginDefine> defines =
+            read(write(NameDefine.class, IndirectDefine.class, BootstrapDefine.class,
+                NoneDefine.class));
+        NameDefine.instances = 0;
+
+        assertEquals(3, defines.size());
+        LazyPluginDefine lazy = (LazyPluginDefine) defines.get(0);
+        assertEquals("plugin", lazy.pluginName);
+        assertEquals(NameDefine.class.getName(), lazy.defineClass);
+        assertEquals("com.example.Target", lazy.match.getClassName());
+        assertArrayEquals(new String[] {"com.example.Witness"}, lazy.witnessClasses());
+        assertTrue(defines.get(1) instanceof IndirectDefine);
+        assertTrue(defines.get(2) instanceof BootstrapDefine);
+    }
+
+    @Test
+    public void instantiatesDefineMatchedByNameOnlyWhenUsed() throws Exception {
+        byte[] index = write(NameDefine.class);
+        NameDefine.instances = 0;
+        LazyPluginDefine lazy = (LazyPluginDefine) read(index).get(0);
+        assertEquals(0, NameDefine.instances);
+
+        assertTrue(lazy.delegate() instanceof NameDefine);
+        assertSame(lazy.delegate(), lazy.delegate());
+        assertEquals(1, NameDefine.instances);
+    }
+
+    @Test
+    public void lazyDefineEnhancesByDelegate() throws Exception {
+        LazyPluginDefine lazy = (LazyPluginDefine) read(write(NameDefine.class)).get(0);
+        DynamicType.Builder<?> builder = new ByteBuddy().subclass(Object.class);
+
+        assertSame(builder, lazy.enhance(null, builder, classLoader, new EnhanceContext()));
+    }
+
+    @Test
+    public void lazyDefineOfMissingClassEnhancesNothing() throws Exception {
+        LazyPluginDefine lazy = new LazyPluginDefine("plugin", "com.example.Missing",
+            NameMatch.byName("com.example.Target"), new String[0], classLoader);
+        DynamicType.Builder<?> builder = new ByteBuddy().subclass(Object.class);
+
+        assertNull(lazy.delegate());
+        assertNull(lazy.enhance(null, builder, classLoader, new EnhanceContext()));
+    }
+
+    @Test
+    public void rejectsOtherVersion() throws Exception {
+        byte[] index = write(NameDefine.class);
+        index[4] = PluginIndex.VERSION + 1;
+
+        assertUnsupported(index);
+    }
+
+    @Test
+    public void rejectsOtherFormat() throws Exception {
+        byte[] index = write(NameDefine.class);
+        index[0] = 0;
+
+        assertUnsupported(index);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedIndex() throws Exception {
+        byte[] index = write(NameDefine.class);
+
+        read(Arrays.copyOf(index, index.length - 1));
+    }
+
+    /** Each jar is read from its index, unless the index is corrupt, then from its plugin file. */
+    @Test
+    public void fallsBackToPluginFileOfCorruptIndex() throws Exception {
+        File indexed = jar("indexed", write(IndirectDefine.class), IndirectDefine.class);
+        File corrupt = jar("corrupt", new byte[] {1, 2, 3}, NameDefine.class);
+
+        List<AbstractClassEnhancePluginDefine> defines = new PluginBootstrap().loadPlugins(
+            Arrays.asList(def(indexed), def(corrupt)),
+            Arrays.asList(index(indexed), index(corrupt)), classLoader);
+
+        assertEquals(2, defines.size());
+        assertTrue(defines.get(0) instanceof IndirectDefine);
+        assertEquals(NameDefine.class, defines.get(1).getClass());
+    }
+
+    static void assertUnsupported(byte[] index) {
+        try {
+            read(index);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Unsupported plugin index", e.getMessage());
+        }
+    }
+
+    static List<AbstractClassEnhancePluginDefine> read(byte[] index) throws IOException {
+        return PluginIndex.read(new ByteArrayInputStream(index),
+            PluginIndexTest.class.getClassLoader());
+    }
+
+    @SafeVarargs
+    static byte[] write(Class<? extends AbstractClassEnhancePluginDefine>... defineClasses)
+        throws Exception {
+        List<PluginDefine> pluginDefines = new ArrayList<>();
+        for (Class<?> defineClass : defineClasses) {
+            pluginDefines.add(PluginDefine.build("plugin=" + defineClass.getName()));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PluginIndex.write(pluginDefines, PluginIndexTest.class.getClassLoader(), out);
+        return out.toByteArray();
+    }
+
+    /** Returns a directory holding a plugin file of the define, and the index. */
+    File jar(String name, byte[] index, Class<?> defineClass) throws IOException {
+        File jar = folder.newFolder(name);
+        try (OutputStream out = new FileOutputStream(new File(jar, PluginIndex.RESOURCE_NAME))) {
+            out.write(index);
+        }
+        try (OutputStream out =
+            new FileOutputStream(new File(jar, PluginIndex.DEF_RESOURCE_NAME))) {
+            out.write(("plugin=" + defineClass.getName() + "\n").getBytes("UTF-8"));
+        }
+        return jar;
+    }
+
+    static URL def(File jar) throws IOException {
+        return new File(jar, PluginIndex.DEF_RESOURCE_NAME).toURI().toURL();
+    }
+
+    static URL index(File jar) throws IOException {
+        return new File(jar, PluginIndex.RESOURCE_NAME).toURI().toURL();
+    }
+}
@@ -0,0 +1,54 @@
+package org.apache.skywalking.apm.agent.core.plugin.bootstrap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.skywalking.apm.agent.core.plugin.PluginException;
+import org.junit.Test;
+
+public class BootstrapClassInjectorTest {
+
+    final Map<String, byte[]> classes = new LinkedHashMap<>();
+    final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void readsBridgeClasses() {
+        BootstrapClassInjector.addClasses(classes, classLoader,
+            BootstrapClassInjector.BRIDGE_CLASSES);
+
+        assertArrayEquals(BootstrapClassInjector.BRIDGE_CLASSES,
+            classes.keySet().toArray(new String[0]));
+        for (byte[] bytes : classes.values()) {
+            assertEquals(0xCAFEBABE, ByteBuffer.wrap(bytes).getInt());
+        }
+    }
+
+    @Test
+    public void keepsFirstClassOfName() {
+        byte[] first = {1};
+        String name = BootstrapClassInjector.BRIDGE_CLASSES[0];
+        classes.put(name, first);
+
+        BootstrapClassInjector.addClasses(classes, classLoader, new String[] {name});
+
+        assertSame(first, classes.get(name));
+    }
+
+    @Test
+    public void ignoresNoClasses() {
+        BootstrapClassInjector.addClasses(classes, classLoader, null);
+        BootstrapClassInjector.addClasses(classes, classLoader, new String[0]);
+
+        assertTrue(classes.isEmpty());
+    }
+
+    @Test(expected = PluginException.class)
+    public void failsOnMissingClass() {
+        BootstrapClassInjector.addClasses(classes, classLoader, new String[] {"com.example.Missing"});
+    }
+}
@@ -0,0 +1,276 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.EnhanceContext;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.ConstructorInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InlinedInstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.StaticMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Enhances {@link Target} in inlined mode with an {@link InstanceMethodsAroundInterceptor}, which
+ * should see the same calls as when delegating to {@link InstMethodsInter}.
+ */
+public class InstMethodsAroundAdapterTest {
+
+    /** Loaded by the test's class loader, unlike the enhanced {@link Target}. */
+    public interface Api {
+
+        String hello(String name);
+
+        int twice(int value);
+
+        void run();
+
+        String fail();
+    }
+
+    public static class Target implements Api {
+
+        public String hello(String name) {
+            RecordingInterceptor.calls.add("hello " + name);
+            return "hello " + name;
+        }
+
+        public int twice(int value) {
+            RecordingInterceptor.calls.add("twice " + value);
+            return value * 2;
+        }
+
+        public void run() {
+            RecordingInterceptor.calls.add("run");
+        }
+
+        public String fail() {
+            RecordingInterceptor.calls.add("fail");
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    /** Records calls, and skips methods or replaces return values as the test configures. */
+    public static class RecordingInterceptor implements InstanceMethodsAroundInterceptor {
+
+        public static final List<String> calls = new ArrayList<>();
+        public static final Object NONE = new Object();
+        public static Object skipWith = NONE, returnInstead = NONE;
+
+        @Override
+        public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, MethodInterceptResult result) {
+            assertEquals(Arrays.asList(method.getParameterTypes()), Arrays.asList(argumentsTypes));
+            calls.add("before " + method.getName() + Arrays.toString(allArguments));
+            if (skipWith != NONE) {
+                result.defineReturnValue(skipWith);
+            }
+        }
+
+        @Override
+        public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, Object ret) {
+            calls.add("after " + method.getName() + " " + ret);
+            return returnInstead != NONE ? returnInstead : ret;
+        }
+
+        @Override
+        public void handleMethodException(EnhancedInstance objInst, Method method,
+            Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+            calls.add("exception " + method.getName() + " " + t.getMessage());
+        }
+    }
+
+    @After
+    public void reset() {
+        RecordingInterceptor.calls.clear();
+        RecordingInterceptor.skipWith = RecordingInterceptor.returnInstead =
+            RecordingInterceptor.NONE;
+    }
+
+    final Api target = enhance();
+
+    @Test
+    public void callsInterceptorAroundMethod() {
+        assertEquals("hello world", target.hello("world"));
+
+        assertEquals(Arrays.asList("before hello[world]", "hello world", "after hello hello world"),
+            RecordingInterceptor.calls);
+    }
+
+    @Test
+    public void definedReturnValueSkipsMethod() {
+        RecordingInterceptor.skipWith = "skipped";
+
+        assertEquals("skipped", target.hello("world"));
+        assertEquals(Arrays.asList("before hello[world]", "after hello skipped"),
+            RecordingInterceptor.calls);
+    }
+
+    @Test
+    public void afterMethodReplacesReturnValue() {
+        RecordingInterceptor.returnInstead = "replaced";
+
+        assertEquals("replaced", target.hello("world"));
+    }
+
+    @Test
+    public void primitiveReturns() {
+        assertEquals(4, target.twice(2));
+
+        RecordingInterceptor.returnInstead = 5;
+        assertEquals(5, target.twice(2));
+
+        RecordingInterceptor.skipWith = 6;
+        RecordingInterceptor.returnInstead = RecordingInterceptor.NONE;
+        assertEquals(6, target.twice(2));
+        assertEquals(Arrays.asList(
+            "before twice[2]", "twice 2", "after twice 4",
+            "before twice[2]", "twice 2", "after twice 4",
+            "before twice[2]", "after twice 6"), RecordingInterceptor.calls);
+    }
+
+    @Test
+    public void voidReturns() {
+        target.run();
+
+        RecordingInterceptor.skipWith = null;
+        target.run();
+        assertEquals(Arrays.asList("before run[]", "run", "after run null",
+            "before run[]", "after run null"), RecordingInterceptor.calls);
+    }
+
+    @Test
+    public void handlesMethodException() {
+        RecordingInterceptor.returnInstead = "ignored";
+        try {
+            target.fail();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+
+        assertEquals(Arrays.asList("before fail[]", "fail", "exception fail boom",
+            "after fail null"), RecordingInterceptor.calls);
+    }
+
+    @Test
+    public void callSitesResolveEnhancedMethod() throws Exception {
+        target.hello("world"); // resolves the declaring class
+
+        InstMethodsCallSite[] callSites = callSites(target.getClass());
+        assertEquals(4, callSites.length);
+        for (InstMethodsCallSite callSite : callSites) {
+            if (callSite.methodName.equals("hello")) {
+                assertEquals(target.getClass().getMethod("hello", String.class), callSite.method());
+                assertArrayEquals(new Class<?>[] {String.class}, callSite.argumentTypes());
+            }
+        }
+    }
+
+    /** Call sites are held by the enhanced class, so they mustn't keep its class loader alive. */
+    @Test
+    public void enhancedClassLoaderCanBeCollected() throws Exception {
+        WeakReference<ClassLoader> classLoader = enhanceAndCall();
+
+        for (int i = 0; i < 50 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(classLoader.get());
+    }
+
+    static WeakReference<ClassLoader> enhanceAndCall() {
+        Api target = enhance();
+        target.hello("world");
+        assertTrue(target instanceof EnhancedInstance);
+        return new WeakReference<>(target.getClass().getClassLoader());
+    }
+
+    static InstMethodsCallSite[] callSites(Class<?> type) throws Exception {
+        for (Field field : type.getDeclaredFields()) {
+            if (field.getName().startsWith(InstMethodsAdvice.CALL_SITES_FIELD_PREFIX)) {
+                field.setAccessible(true);
+                return (InstMethodsCallSite[]) field.get(null);
+            }
+        }
+        throw new AssertionError("no call sites field in " + type);
+    }
+
+    /** Enhances {@link Target} in a new class loader. */
+    static Api enhance() {
+        ClassLoader classLoader = InstMethodsAroundAdapterTest.class.getClassLoader();
+        TypeDescription type = new TypeDescription.ForLoadedType(Target.class);
+        DynamicType.Builder<?> builder = new InlinedDefine().define(type,
+            new ByteBuddy().rebase(type, ClassFileLocator.ForClassLoader.of(classLoader)),
+            classLoader, new EnhanceContext());
+        try {
+            return (Api) builder.make()
+                .load(classLoader, ClassLoadingStrategy.Default.CHILD_FIRST)
+                .getLoaded().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static final class InlinedDefine extends ClassEnhancePluginDefine {
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return NameMatch.byName(Target.class.getName());
+        }
+
+        @Override
+        protected ConstructorInterceptPoint[] getConstructorsInterceptPoints() {
+            return new ConstructorInterceptPoint[0];
+        }
+
+        @Override
+        protected InstanceMethodsInterceptPoint[] getInstanceMethodsInterceptPoints() {
+            return new InstanceMethodsInterceptPoint[] {
+                new InlinedInstanceMethodsInterceptPoint() {
+                    @Override
+                    public ElementMatcher<MethodDescription> getMethodMatcher() {
+                        return named("hello").or(named("twice")).or(named("run"))
+                            .or(named("fail"));
+                    }
+
+                    @Override
+                    public String getMethodsInterceptor() {
+                        return RecordingInterceptor.class.getName();
+                    }
+
+                    @Override
+                    public boolean isOverrideArgs() {
+                        return false;
+                    }
+                }
+            };
+        }
+
+        @Override
+        protected StaticMethodsInterceptPoint[] getStaticMethodsInterceptPoints() {
+            return new StaticMethodsInterceptPoint[0];
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.apache.skywalking.apm.agent.core.plugin.loader.InterceptorInstanceLoader.LoaderKey;
+import org.apache.skywalking.apm.agent.core.plugin.loader.InterceptorInstanceLoader.LookupKey;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Plugin loaders are only referenced weakly by the registry, so tests which expect one to be
+ * reused hold it until they are done.
+ */
+public class InterceptorInstanceLoaderTest {
+
+    public static class Interceptor {
+    }
+
+    ClassLoader target = newTargetLoader();
+
+    @After
+    public void evict() {
+        InterceptorInstanceLoader.evict(target);
+    }
+
+    @Test
+    public void keys_equalBySameLoader() {
+        ClassLoader other = newTargetLoader();
+        ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+        LoaderKey key = new LoaderKey(target, queue);
+
+        assertEquals(key, new LoaderKey(target, queue));
+        assertEquals(key, new LookupKey(target));
+        assertEquals(new LookupKey(target), key);
+        assertEquals(new LookupKey(target), new LookupKey(target));
+        assertEquals(key.hashCode(), new LookupKey(target).hashCode());
+        assertNotEquals(key, new LoaderKey(other, queue));
+        assertNotEquals(key, new LookupKey(other));
+        assertNotEquals(new LookupKey(target), new LookupKey(other));
+        assertFalse(key.equals(target));
+        assertFalse(new LookupKey(target).equals(target));
+    }
+
+    /** Loaders which override equals, as some frameworks' do, are still compared by identity. */
+    @Test
+    public void keys_ignoreLoaderEquals() {
+        ClassLoader equalsAll = new URLClassLoader(new URL[0]) {
+            @Override
+            public boolean equals(Object obj) {
+                return true;
+            }
+
+            @Override
+            public int hashCode() {
+                return 0;
+            }
+        };
+
+        assertNotEquals(new LookupKey(equalsAll), new LookupKey(target));
+        assertNotEquals(new LoaderKey(equalsAll, null), new LookupKey(target));
+    }
+
+    @Test
+    public void keys_clearedOnlyEqualsItself() {
+        LoaderKey key = new LoaderKey(target, null);
+        key.clear();
+
+        assertEquals(key, key);
+        assertNotEquals(key, new LookupKey(target));
+        assertNotEquals(key, new LookupKey(null));
+    }
+
+    @Test
+    public void load_cachesInterceptorPerTargetLoader() throws Exception {
+        ClassLoader other = newTargetLoader();
+        AgentClassLoader pluginLoader = InterceptorInstanceLoader.pluginLoader(target);
+        AgentClassLoader otherPluginLoader = InterceptorInstanceLoader.pluginLoader(other);
+        try {
+            Object interceptor = load(target);
+
+            assertSame(interceptor, load(target));
+            assertSame(interceptor, pluginLoader.interceptors.get(Interceptor.class.getName()));
+            assertNotSame(interceptor, load(other));
+            assertNotSame(pluginLoader, otherPluginLoader);
+        } finally {
+            InterceptorInstanceLoader.evict(other);
+        }
+    }
+
+    @Test
+    public void pluginLoader_reusedWhileReachable() throws Exception {
+        AgentClassLoader pluginLoader = InterceptorInstanceLoader.pluginLoader(target);
+
+        assertSame(pluginLoader, InterceptorInstanceLoader.pluginLoader(target));
+        assertSame(target, pluginLoader.getParent());
+    }
+
+    /** The target loader is still in use, but its plugin loader was collected. */
+    @Test
+    public void pluginLoader_replacesCollectedPluginLoader() throws Exception {
+        AgentClassLoader collected = InterceptorInstanceLoader.pluginLoader(target);
+        WeakReference<AgentClassLoader> ref =
+            InterceptorInstanceLoader.PLUGIN_LOADERS.get(new LookupKey(target));
+        assertSame(collected, ref.get());
+        ref.clear();
+
+        AgentClassLoader replacement = InterceptorInstanceLoader.pluginLoader(target);
+
+        assertNotSame(collected, replacement);
+        assertSame(replacement,
+            InterceptorInstanceLoader.PLUGIN_LOADERS.get(new LookupKey(target)).get());
+        assertSame(replacement, InterceptorInstanceLoader.pluginLoader(target));
+    }
+
+    @Test
+    public void expungeCollectedLoaders_removesEnqueuedKeys() throws Exception {
+        InterceptorInstanceLoader.pluginLoader(target);
+        LoaderKey key = keyOf(target);
+
+        key.enqueue(); // as the garbage collector would once the target loader is collected
+        InterceptorInstanceLoader.expungeCollectedLoaders();
+
+        assertFalse(InterceptorInstanceLoader.PLUGIN_LOADERS.containsKey(key));
+        assertNull(InterceptorInstanceLoader.PLUGIN_LOADERS.get(new LookupKey(target)));
+    }
+
+    @Test
+    public void evict_forcesFreshPluginLoader() throws Exception {
+        AgentClassLoader evicted = InterceptorInstanceLoader.pluginLoader(target);
+        Object interceptor = load(target);
+
+        InterceptorInstanceLoader.evict(target);
+
+        assertNull(InterceptorInstanceLoader.PLUGIN_LOADERS.get(new LookupKey(target)));
+        AgentClassLoader fresh = InterceptorInstanceLoader.pluginLoader(target);
+        assertNotSame(evicted, fresh);
+        assertNotSame(interceptor, load(target));
+    }
+
+    @Test
+    public void evict_ignoresUnknownAndNullLoaders() {
+        int size = InterceptorInstanceLoader.PLUGIN_LOADERS.size();
+
+        InterceptorInstanceLoader.evict(newTargetLoader());
+        InterceptorInstanceLoader.evict(null);
+
+        assertEquals(size, InterceptorInstanceLoader.PLUGIN_LOADERS.size());
+    }
+
+    /** The leak this guards against: an undeployed web application's loader stays reachable. */
+    @Test
+    public void droppedTargetLoader_isCollectedWithItsPluginLoader() throws Exception {
+        WeakReference<?>[] refs = loadOnDroppedLoader();
+        LoaderKey key = (LoaderKey) refs[2];
+
+        for (int i = 0; i < 50 && (refs[0].get() != null || refs[1].get() != null); i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertNull("target loader was retained", refs[0].get());
+        assertNull("plugin loader was retained", refs[1].get());
+
+        for (int i = 0; i < 50 && InterceptorInstanceLoader.PLUGIN_LOADERS.containsKey(key); i++) {
+            Thread.sleep(10L); // the key may be enqueued after its referent is cleared
+            InterceptorInstanceLoader.expungeCollectedLoaders();
+        }
+        assertFalse(InterceptorInstanceLoader.PLUGIN_LOADERS.containsKey(key));
+    }
+
+    /**
+     * Loads an interceptor for a loader which isn't referenced afterwards. Returns weak references
+     * to the target loader and its plugin loader, and the registry key of the target loader.
+     */
+    static WeakReference<?>[] loadOnDroppedLoader() throws Exception {
+        ClassLoader dropped = newTargetLoader();
+        load(dropped);
+        AgentClassLoader pluginLoader = InterceptorInstanceLoader.pluginLoader(dropped);
+        return new WeakReference<?>[] {
+            new WeakReference<>(dropped), new WeakReference<>(pluginLoader), keyOf(dropped)
+        };
+    }
+
+    /** Returns the key the registry holds for the loader, which doesn't keep the loader alive. */
+    static LoaderKey keyOf(ClassLoader loader) {
+        for (Object key : InterceptorInstanceLoader.PLUGIN_LOADERS.keySet()) {
+            if (key instanceof LoaderKey && ((LoaderKey) key).get() == loader) {
+                return (LoaderKey) key;
+            }
+        }
+        throw new AssertionError("no key for " + loader);
+    }
+
+    static Object load(ClassLoader target) throws Exception {
+        return InterceptorInstanceLoader.load(Interceptor.class.getName(), target);
+    }
+
+    static ClassLoader newTargetLoader() {
+        return new URLClassLoader(new URL[0], InterceptorInstanceLoaderTest.class.getClassLoader());
+    }
+}
@@ -10,14 +10,18 @@ import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.utility.JavaModule;
 import org.apache.skywalking.apm.agent.core.boot.AgentPackageNotFoundException;
 import org.apache.skywalking.apm.agent.core.boot.ServiceManager;
+import org.apache.skywalking.apm.agent.core.context.TracerContextBridge;
 import org.apache.skywalking.apm.agent.core.plugin.AbstractClassEnhancePluginDefine;
 import org.apache.skywalking.apm.agent.core.plugin.EnhanceContext;
 import org.apache.skywalking.apm.agent.core.plugin.PluginBootstrap;
 import org.apache.skywalking.apm.agent.core.plugin.PluginFinder;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassInjector;
 import org.apache.skywalking.apm.agent.logging.Log;
 import org.apache.skywalking.apm.agent.logging.LogFactory;
 
 import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
 import java.util.List;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
@@ -28,8 +32,19 @@ public class SkyWalkingAgent {
 
     public static void premain(String agentArgs, Instrumentation instrumentation) {
         final PluginFinder pluginFinder;
+        final List<BootstrapClassEnhancePluginDefine> bootstrapDefines =
+            new ArrayList<BootstrapClassEnhancePluginDefine>();
         try {
-            pluginFinder = new PluginFinder(new PluginBootstrap().loadPlugins());
+            List<AbstractClassEnhancePluginDefine> plugins =
+                new ArrayList<AbstractClassEnhancePluginDefine>();
+            for (AbstractClassEnhancePluginDefine define : new PluginBootstrap().loadPlugins()) {
+                if (define instanceof BootstrapClassEnhancePluginDefine) {
+                    bootstrapDefines.add((BootstrapClassEnhancePluginDefine) define);
+                } else {
+                    plugins.add(define);
+                }
+            }
+            pluginFinder = new PluginFinder(plugins);
         } catch (AgentPackageNotFoundException ex) {
             logger.error("Locate agent.jar failure. Shutting down.", ex);
             return;
@@ -40,6 +55,10 @@ public class SkyWalkingAgent {
 
         final ByteBuddy byteBuddy = new ByteBuddy();
 
+        if (!bootstrapDefines.isEmpty()) {
+            installBootstrapPlugins(byteBuddy, instrumentation, bootstrapDefines);
+        }
+
         new AgentBuilder.Default(byteBuddy)
             .ignore(nameStartsWith("net.bytebuddy.")
                 .or(nameStartsWith("org.slf4j."))
@@ -68,6 +87,32 @@ public class SkyWalkingAgent {
         },"skywalking service shutdown thread"));
     }
 
+    /**
+     * JDK classes are usually loaded by now and can't see agent classes, so inject the classes
+     * their advice refers to, then retransform them without changing their format.
+     */
+    private static void installBootstrapPlugins(ByteBuddy byteBuddy,
+        Instrumentation instrumentation, List<BootstrapClassEnhancePluginDefine> defines) {
+        try {
+            BootstrapClassInjector.inject(instrumentation, defines);
+            TracerContextBridge.install();
+        } catch (Throwable ex) {
+            logger.error("Inject bootstrap classes failure. Skip enhancing JDK classes.", ex);
+            return;
+        }
+
+        PluginFinder bootstrapPluginFinder =
+            new PluginFinder(new ArrayList<AbstractClassEnhancePluginDefine>(defines));
+        new AgentBuilder.Default(byteBuddy)
+            .disableClassFormatChanges()
+            .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+            .ignore(any(), not(isBootstrapClassLoader()))
+            .type(bootstrapPluginFinder.buildMatch())
+            .transform(new Transformer(bootstrapPluginFinder))
+            .with(new Listener())
+            .installOn(instrumentation);
+    }
+
     private static class Transformer implements AgentBuilder.Transformer {
 
         private final PluginFinder pluginFinder;
@@ -0,0 +1,141 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.context.sampler.Sampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Measures the span lifecycle used by plugins: an entry span extracted from incoming headers, an
+ * exit span injected into outgoing headers, and stopping both.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class TracerBenchmarks {
+
+    static final Propagation.Getter<Map<String, String>, String> GETTER =
+        new Propagation.Getter<Map<String, String>, String>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        };
+
+    static final Propagation.Setter<Map<String, String>, String> SETTER =
+        new Propagation.Setter<Map<String, String>, String>() {
+            @Override
+            public void put(Map<String, String> carrier, String key, String value) {
+                carrier.put(key, value);
+            }
+        };
+
+    /**
+     * Discards spans after they are converted. Unlike {@link Reporter#NOOP}, this doesn't disable
+     * recording, so sampled spans are measured end to end.
+     */
+    static final Reporter<zipkin2.Span> DISCARDING = new Reporter<zipkin2.Span>() {
+        @Override
+        public void report(zipkin2.Span span) {
+        }
+    };
+
+    Tracing sampled, unsampled;
+    Tracer sampledTracer, unsampledTracer;
+    Extractor<Map<String, String>> extractor;
+    Injector<Map<String, String>> injector;
+
+    final Map<String, String> incoming = new LinkedHashMap<>();
+    final Map<String, String> outgoing = new LinkedHashMap<>();
+    final Map<String, String> incomingNoHeaders = new LinkedHashMap<>();
+
+    @Setup
+    public void init() {
+        sampled = Tracing.newBuilder().spanReporter(DISCARDING).build();
+        unsampled = Tracing.newBuilder().spanReporter(DISCARDING)
+            .sampler(Sampler.NEVER_SAMPLE).build();
+        sampledTracer = sampled.tracer();
+        unsampledTracer = unsampled.tracer();
+        extractor = sampled.propagation().extractor(GETTER);
+        injector = sampled.propagation().injector(SETTER);
+
+        incoming.put("X-B3-TraceId", "463ac35c9f6413ad");
+        incoming.put("X-B3-ParentSpanId", "463ac35c9f6413ad");
+        incoming.put("X-B3-SpanId", "a2fb4a1d1a96d312");
+        incoming.put("X-B3-Sampled", "1");
+    }
+
+    @TearDown
+    public void close() {
+        sampled.close();
+        unsampled.close();
+    }
+
+    @Benchmark
+    public void entrySpan_sampled() {
+        Span span = sampledTracer.createEntrySpan(extractor, incomingNoHeaders);
+        sampledTracer.stopSpan(span);
+    }
+
+    @Benchmark
+    public void entrySpan_unsampled() {
+        Span span = unsampledTracer.createEntrySpan(extractor, incomingNoHeaders);
+        unsampledTracer.stopSpan(span);
+    }
+
+    @Benchmark
+    public void entrySpan_join() {
+        Span span = sampledTracer.createEntrySpan(extractor, incoming);
+        sampledTracer.stopSpan(span);
+    }
+
+    @Benchmark
+    public void entryAndExitSpan_sampled() {
+        Span entry = sampledTracer.createEntrySpan(extractor, incoming);
+        Span exit = sampledTracer.createExitSpan(injector, outgoing);
+        sampledTracer.stopSpan(exit);
+        sampledTracer.stopSpan(entry);
+    }
+
+    @Benchmark
+    public void entryAndExitSpan_unsampled() {
+        Span entry = unsampledTracer.createEntrySpan(extractor, incomingNoHeaders);
+        Span exit = unsampledTracer.createExitSpan(injector, outgoing);
+        unsampledTracer.stopSpan(exit);
+        unsampledTracer.stopSpan(entry);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + TracerBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,109 @@
+package org.apache.skywalking.apm.agent.core.context;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.propagation.B3SingleFormat;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.ScopedCurrentTraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.ThreadLocalCurrentTraceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs a million requests, each on its own virtual thread, which starts a scoped span and writes
+ * its b3 header. Compare {@code storage} to see the cost of thread locals on short-lived threads.
+ *
+ * <p>This needs JDK 21 or later to run, ex.
+ * <pre>{@code
+ * $JDK21/bin/java -jar apm-sniffer/apm-benchmarks/target/benchmarks.jar VirtualThreadBenchmarks \
+ *   -prof gc
+ * }</pre>
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 3, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+public class VirtualThreadBenchmarks {
+
+    static final int REQUESTS = 1_000_000;
+
+    @Param({"threadlocal", "scoped"})
+    public String storage;
+
+    Tracing tracing;
+    Tracer tracer;
+    Runnable request;
+
+    @Setup
+    public void init() throws Exception {
+        // Fails on JDKs older than 21, before anything is measured
+        Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+        CurrentTraceContext currentTraceContext = "scoped".equals(storage)
+            ? ScopedCurrentTraceContext.create()
+            : ThreadLocalCurrentTraceContext.create();
+        tracing = Tracing.newBuilder()
+            .currentTraceContext(currentTraceContext)
+            .spanReporter(TracerBenchmarks.DISCARDING)
+            .build();
+        tracer = tracing.tracer();
+        request = new Runnable() {
+            @Override
+            public void run() {
+                ScopedSpan span = tracer.startScopedSpan("request");
+                try {
+                    B3SingleFormat.writeB3SingleFormat(span.context());
+                } finally {
+                    span.finish();
+                }
+            }
+        };
+    }
+
+    @TearDown
+    public void close() {
+        tracing.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void startScopedSpan_virtualThreadPerRequest() throws Exception {
+        ExecutorService executor = (ExecutorService) Executors.class
+            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(request);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + VirtualThreadBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
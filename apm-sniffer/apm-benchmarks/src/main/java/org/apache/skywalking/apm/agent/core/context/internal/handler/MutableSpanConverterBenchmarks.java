@@ -0,0 +1,110 @@
+package org.apache.skywalking.apm.agent.core.context.internal.handler;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.ErrorParser;
+import org.apache.skywalking.apm.agent.core.context.Span.Kind;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.internal.codec.MutableSpanBytesEncoder;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesEncoder;
+
+/**
+ * Compares converting a finished span to a {@code zipkin2.Span} then encoding it, with encoding the
+ * {@link MutableSpan} directly.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class MutableSpanConverterBenchmarks {
+
+    static final ErrorParser ERROR_PARSER = new ErrorParser();
+
+    static final MutableSpanConverter converter =
+        new MutableSpanConverter(ERROR_PARSER, "unknown", "127.0.0.1", 0);
+
+    static final MutableSpanBytesEncoder jsonEncoder =
+        MutableSpanBytesEncoder.create(Encoding.JSON, ERROR_PARSER, "unknown", "127.0.0.1", 0);
+
+    static final MutableSpanBytesEncoder proto3Encoder =
+        MutableSpanBytesEncoder.create(Encoding.PROTO3, ERROR_PARSER, "unknown", "127.0.0.1", 0);
+
+    static final TraceContext context = TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .parentId(2L)
+        .spanId(3L)
+        .sampled(true)
+        .build();
+
+    final MutableSpan serverSpan = newServerSpan();
+
+    static MutableSpan newServerSpan() {
+        MutableSpan span = new MutableSpan();
+        span.name("get /");
+        span.kind(Kind.SERVER);
+        span.remoteIpAndPort("::1", 63596);
+        span.startTimestamp(1533706251750057L);
+        span.finishTimestamp(1533706251935296L);
+        span.tag("http.method", "GET");
+        span.tag("http.path", "/");
+        span.tag("mvc.controller.class", "Frontend");
+        span.tag("mvc.controller.method", "callBackend");
+        span.annotate(1533706251800000L, "wr");
+        return span;
+    }
+
+    @Benchmark
+    public Span convert() {
+        return converter.convert(context, serverSpan);
+    }
+
+    @Benchmark
+    public byte[] convertThenEncode_json() {
+        return SpanBytesEncoder.JSON_V2.encode(converter.convert(context, serverSpan));
+    }
+
+    @Benchmark
+    public byte[] convertThenEncode_proto3() {
+        return SpanBytesEncoder.PROTO3.encode(converter.convert(context, serverSpan));
+    }
+
+    @Benchmark
+    public byte[] encode_json() {
+        return jsonEncoder.encode(context, serverSpan);
+    }
+
+    @Benchmark
+    public byte[] encode_proto3() {
+        return proto3Encoder.encode(context, serverSpan);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + MutableSpanConverterBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
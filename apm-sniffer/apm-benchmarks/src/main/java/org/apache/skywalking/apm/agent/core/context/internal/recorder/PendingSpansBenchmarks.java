@@ -0,0 +1,105 @@
+package org.apache.skywalking.apm.agent.core.context.internal.recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.skywalking.apm.agent.core.context.Clock;
+import org.apache.skywalking.apm.agent.core.context.handler.FinishedSpanHandler;
+import org.apache.skywalking.apm.agent.core.context.handler.MutableSpan;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the weak-reference and deadline-swept implementations of {@link PendingSpans}. Each
+ * operation creates a span as a child of an in-flight parent, then removes it as finishing would.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class PendingSpansBenchmarks {
+
+    @Param({"weak", "arena"})
+    public String type;
+
+    static final Clock CLOCK = new Clock() {
+        @Override
+        public long currentTimeMicroseconds() {
+            return System.currentTimeMillis() * 1000L;
+        }
+    };
+
+    static final FinishedSpanHandler HANDLER = new FinishedSpanHandler() {
+        @Override
+        public boolean handle(TraceContext context, MutableSpan span) {
+            return true;
+        }
+    };
+
+    final TraceContext parent = TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .spanId(3L)
+        .sampled(true)
+        .build();
+
+    PendingSpans pendingSpans;
+    long nextSpanId = 4L;
+
+    @Setup
+    public void init() {
+        AtomicBoolean noop = new AtomicBoolean();
+        if ("arena".equals(type)) {
+            pendingSpans = new ArenaPendingSpans(CLOCK, HANDLER, noop, 1, TimeUnit.MINUTES);
+        } else {
+            pendingSpans = new WeakPendingSpans(CLOCK, HANDLER, noop);
+        }
+        pendingSpans.getOrCreate(parent, true);
+    }
+
+    @TearDown
+    public void close() {
+        pendingSpans.remove(parent);
+        pendingSpans.close();
+    }
+
+    @Benchmark
+    public PendingSpan getOrCreate_existing() {
+        return pendingSpans.getOrCreate(parent, false);
+    }
+
+    @Benchmark
+    public boolean getOrCreate_child_then_remove() {
+        TraceContext child = parent.toBuilder().parentId(parent.spanId()).spanId(nextSpanId++).build();
+        pendingSpans.getOrCreate(child, true);
+        return pendingSpans.remove(child);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + PendingSpansBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,132 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class B3PropagationBenchmarks {
+
+    static final Propagation<String> b3 = B3Propagation.FACTORY.create(Propagation.KeyFactory.STRING);
+
+    static final Injector<Map<String, String>> b3Injector =
+        b3.injector(new Propagation.Setter<Map<String, String>, String>() {
+            @Override
+            public void put(Map<String, String> carrier, String key, String value) {
+                carrier.put(key, value);
+            }
+        });
+
+    /** Like a carrier of HTTP/2 or messaging headers, whose values are byte arrays. */
+    static final Injector<Map<String, byte[]>> b3BytesInjector =
+        b3.injector(new Propagation.BytesSetter<Map<String, byte[]>, String>() {
+            @Override
+            public void put(Map<String, byte[]> carrier, String key, byte[] value) {
+                carrier.put(key, value);
+            }
+        });
+
+    static final Extractor<Map<String, String>> b3Extractor =
+        b3.extractor(new Propagation.Getter<Map<String, String>, String>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        });
+
+    static final TraceContext context = TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .spanId(3)
+        .sampled(true)
+        .build();
+
+    static final Map<String, String> incoming = new LinkedHashMap<String, String>() {
+        {
+            b3Injector.inject(context, this);
+        }
+    };
+
+    static final Map<String, String> incomingNotSampled = new LinkedHashMap<String, String>() {
+        {
+            put("X-B3-Sampled", "0"); // unsampled
+        }
+    };
+
+    static final Map<String, String> incomingMalformed = new LinkedHashMap<String, String>() {
+        {
+            put("X-B3-TraceId", "463ac35c9f6413ad48485a3953bb6124");
+            put("X-B3-SpanId", "48485a3953bb6124");
+            put("X-B3-ParentSpanId", "-1"); // malformed
+        }
+    };
+
+    static final Map<String, String> nothingIncoming = new LinkedHashMap<>();
+
+    final Map<String, String> carrier = new LinkedHashMap<>();
+
+    final Map<String, byte[]> bytesCarrier = new LinkedHashMap<>();
+
+    @Benchmark
+    public void inject() {
+        b3Injector.inject(context, carrier);
+    }
+
+    /** IDs are encoded once per context, and their bytes written as-is. */
+    @Benchmark
+    public void inject_bytes() {
+        b3BytesInjector.inject(context, bytesCarrier);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract() {
+        return b3Extractor.extract(incoming);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract_nothing() {
+        return b3Extractor.extract(nothingIncoming);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract_unsampled() {
+        return b3Extractor.extract(incomingNotSampled);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract_malformed() {
+        return b3Extractor.extract(incomingMalformed);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + B3PropagationBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
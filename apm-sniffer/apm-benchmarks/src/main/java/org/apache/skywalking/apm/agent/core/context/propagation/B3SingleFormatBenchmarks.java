@@ -0,0 +1,80 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class B3SingleFormatBenchmarks {
+
+    static final TraceContext context = TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .parentId(1L)
+        .spanId(3)
+        .sampled(true)
+        .build();
+
+    static final String b3 = B3SingleFormat.writeB3SingleFormat(context);
+    static final String b3WithoutParent = B3SingleFormat.writeB3SingleFormatWithoutParentId(context);
+
+    @Benchmark
+    public TraceContextOrSamplingFlags parseB3SingleFormat() {
+        return B3SingleFormat.parseB3SingleFormat(b3);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags parseB3SingleFormat_withoutParent() {
+        return B3SingleFormat.parseB3SingleFormat(b3WithoutParent);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags parseB3SingleFormat_samplingFlags() {
+        return B3SingleFormat.parseB3SingleFormat("1");
+    }
+
+    /** Cached on the context after the first call, as when a context is injected repeatedly. */
+    @Benchmark
+    public String writeB3SingleFormat() {
+        return B3SingleFormat.writeB3SingleFormat(context);
+    }
+
+    /** Includes copying the context, so that nothing is cached. */
+    @Benchmark
+    public String writeB3SingleFormat_uncached() {
+        return B3SingleFormat.writeB3SingleFormat(context.toBuilder().build());
+    }
+
+    @Benchmark
+    public byte[] writeB3SingleFormatAsBytes() {
+        return B3SingleFormat.writeB3SingleFormatAsBytes(context);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + B3SingleFormatBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,169 @@
+package org.apache.skywalking.apm.agent.core.context.propagation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class ExtraFieldPropagationBenchmarks {
+
+    static final Propagation.Factory factory =
+        ExtraFieldPropagation.newFactory(B3Propagation.FACTORY, "x-vcap-request-id", "x-amzn-trace-id");
+
+    static final Propagation<String> extra = factory.create(Propagation.KeyFactory.STRING);
+
+    static final Injector<Map<String, String>> extraInjector =
+        extra.injector(new Propagation.Setter<Map<String, String>, String>() {
+            @Override
+            public void put(Map<String, String> carrier, String key, String value) {
+                carrier.put(key, value);
+            }
+        });
+
+    static final Extractor<Map<String, String>> extraExtractor =
+        extra.extractor(new Propagation.Getter<Map<String, String>, String>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        });
+
+    static final TraceContext context = factory.decorate(TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .spanId(3)
+        .sampled(true)
+        .build());
+
+    static final TraceContext undecorated = TraceContext.newBuilder()
+        .traceIdHigh(333L)
+        .traceId(444L)
+        .spanId(4)
+        .sampled(true)
+        .build();
+
+    static {
+        ExtraFieldPropagation.set(context, "x-vcap-request-id", "216a2aea45d08fc9");
+    }
+
+    /** Child of a context without baggage values, so decorating has nothing to copy. */
+    static final TraceContext childOfEmpty = childOf(factory.decorate(undecorated));
+
+    /** Child of a context with baggage values, so decorating copies them. */
+    static final TraceContext childOfValues = childOf(context);
+
+    /** Child whose extra also holds an unrelated element, which is looked up by scanning. */
+    static final TraceContext childOfTraceState = childOf(factory.decorate(undecorated.toBuilder()
+        .extra(Collections.<Object>singletonList(new W3CPropagation.TraceState("congo=t61rcWkgMzE")))
+        .build()));
+
+    static TraceContext childOf(TraceContext parent) {
+        return parent.toBuilder().parentId(parent.spanId()).spanId(parent.spanId() + 10).build();
+    }
+
+    static final Map<String, String> incoming = new LinkedHashMap<String, String>() {
+        {
+            extraInjector.inject(context, this);
+        }
+    };
+
+    static final Map<String, String> incomingNoExtra = new LinkedHashMap<String, String>() {
+        {
+            put("X-B3-TraceId", "463ac35c9f6413ad48485a3953bb6124");
+            put("X-B3-SpanId", "48485a3953bb6124");
+            put("X-B3-Sampled", "1");
+        }
+    };
+
+    final Map<String, String> carrier = new LinkedHashMap<>();
+
+    @Benchmark
+    public TraceContext decorate() {
+        return factory.decorate(undecorated);
+    }
+
+    @Benchmark
+    public TraceContext decorate_alreadyDecorated() {
+        return factory.decorate(context);
+    }
+
+    @Benchmark
+    public TraceContext decorate_childOfEmpty() {
+        return factory.decorate(childOfEmpty);
+    }
+
+    @Benchmark
+    public TraceContext decorate_childOfValues() {
+        return factory.decorate(childOfValues);
+    }
+
+    @Benchmark
+    public TraceContext decorate_childOfTraceState() {
+        return factory.decorate(childOfTraceState);
+    }
+
+    /** Extra fields have a registered slot, so this is an index lookup. */
+    @Benchmark
+    public Object findExtra_slot() {
+        return childOfTraceState.findExtra(ExtraFieldPropagation.Extra.class);
+    }
+
+    /** TraceState has no slot, so this scans the list. */
+    @Benchmark
+    public Object findExtra_scan() {
+        return childOfTraceState.findExtra(W3CPropagation.TraceState.class);
+    }
+
+    @Benchmark
+    public void inject() {
+        extraInjector.inject(context, carrier);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract() {
+        return extraExtractor.extract(incoming);
+    }
+
+    @Benchmark
+    public TraceContextOrSamplingFlags extract_noExtra() {
+        return extraExtractor.extract(incomingNoExtra);
+    }
+
+    @Benchmark
+    public String get() {
+        return ExtraFieldPropagation.get(context, "x-vcap-request-id");
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + ExtraFieldPropagationBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
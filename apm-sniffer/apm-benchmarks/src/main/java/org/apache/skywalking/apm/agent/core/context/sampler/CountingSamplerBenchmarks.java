@@ -0,0 +1,78 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link CountingSampler} shares one counter across all threads, so the interesting numbers are how
+ * it degrades as more threads make decisions at the same time.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CountingSamplerBenchmarks {
+
+    static final Sampler SAMPLER_0_01 = CountingSampler.create(0.01f);
+    static final Sampler SAMPLER_0_5 = CountingSampler.create(0.5f);
+
+    @State(Scope.Thread)
+    public static class Args {
+        final long traceId = new Random().nextLong();
+    }
+
+    @Benchmark
+    @Group("sampler_0_01")
+    @GroupThreads(1)
+    public boolean sampler_0_01_1thread(Args args) {
+        return SAMPLER_0_01.isSampled(args.traceId);
+    }
+
+    @Benchmark
+    @Group("sampler_0_01_contended")
+    @GroupThreads(4)
+    public boolean sampler_0_01_4threads(Args args) {
+        return SAMPLER_0_01.isSampled(args.traceId);
+    }
+
+    @Benchmark
+    @Group("sampler_0_5")
+    @GroupThreads(1)
+    public boolean sampler_0_5_1thread(Args args) {
+        return SAMPLER_0_5.isSampled(args.traceId);
+    }
+
+    @Benchmark
+    @Group("sampler_0_5_contended")
+    @GroupThreads(4)
+    public boolean sampler_0_5_4threads(Args args) {
+        return SAMPLER_0_5.isSampled(args.traceId);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + CountingSamplerBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
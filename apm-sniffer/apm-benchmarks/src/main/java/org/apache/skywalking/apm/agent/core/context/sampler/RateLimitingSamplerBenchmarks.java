@@ -0,0 +1,73 @@
+package org.apache.skywalking.apm.agent.core.context.sampler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link RateLimitingSampler} with {@link CountingSampler} when 32 threads decide at the
+ * same time. At this rate of decisions, the rate limited samplers spend most of the interval with
+ * an exhausted budget, which is the common case under a traffic spike.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RateLimitingSamplerBenchmarks {
+
+    static final Sampler COUNTING_0_01 = CountingSampler.create(0.01f);
+    static final Sampler RATE_LIMITED_100 = RateLimitingSampler.create(100);
+    static final Sampler RATE_LIMITED_100000 = RateLimitingSampler.create(100000);
+
+    @State(Scope.Thread)
+    public static class Args {
+        final long traceId = new Random().nextLong();
+    }
+
+    @Benchmark
+    @Group("counting_0_01_32threads")
+    @GroupThreads(32)
+    public boolean counting_0_01(Args args) {
+        return COUNTING_0_01.isSampled(args.traceId);
+    }
+
+    @Benchmark
+    @Group("rateLimited_100_32threads")
+    @GroupThreads(32)
+    public boolean rateLimited_100(Args args) {
+        return RATE_LIMITED_100.isSampled(args.traceId);
+    }
+
+    @Benchmark
+    @Group("rateLimited_100000_32threads")
+    @GroupThreads(32)
+    public boolean rateLimited_100000(Args args) {
+        return RATE_LIMITED_100000.isSampled(args.traceId);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + RateLimitingSamplerBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,232 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.EnhanceContext;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.ConstructorInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.DeclaredInstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InlinedInstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.InstanceMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.StaticMethodsInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+/**
+ * Compares the cost of calling a method enhanced by delegating to {@link InstMethodsInter}, with
+ * the same method enhanced by {@link InstMethodsAdvice}. Each class is enhanced by {@link
+ * ClassEnhancePluginDefine} as the agent would, and interceptors do nothing.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class InstMethodsAdviceBenchmarks {
+
+    public interface Greeter {
+        String hello(String name);
+    }
+
+    public static class Target implements Greeter {
+        @Override
+        public String hello(String name) {
+            return name;
+        }
+    }
+
+    public static class NoopAroundInterceptor implements InstanceMethodsAroundInterceptor {
+
+        @Override
+        public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        }
+
+        @Override
+        public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, Object ret) {
+            return ret;
+        }
+
+        @Override
+        public void handleMethodException(EnhancedInstance objInst, Method method,
+            Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        }
+    }
+
+    public static class NoopAdviceInterceptor implements InstanceMethodsAdviceInterceptor {
+
+        @Override
+        public boolean needsArguments() {
+            return false;
+        }
+
+        @Override
+        public Object beforeMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+            Object[] allArguments) {
+            return null;
+        }
+
+        @Override
+        public Object afterMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+            Object[] allArguments, Object state, Object ret, Throwable t) {
+            return ret;
+        }
+    }
+
+    Greeter target = new Target(), delegation, inlinedAround, inlined;
+
+    @Setup
+    public void init() throws Exception {
+        delegation = enhance(NoopAroundInterceptor.class, false);
+        inlinedAround = enhance(NoopAroundInterceptor.class, true);
+        inlined = enhance(NoopAdviceInterceptor.class, true);
+    }
+
+    @Benchmark
+    public String direct() {
+        return target.hello("world");
+    }
+
+    @Benchmark
+    public String delegation() {
+        return delegation.hello("world");
+    }
+
+    @Benchmark
+    public String inlinedAround() {
+        return inlinedAround.hello("world");
+    }
+
+    @Benchmark
+    public String inlined() {
+        return inlined.hello("world");
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + InstMethodsAdviceBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+
+    static Greeter enhance(Class<?> interceptor, boolean inlined) throws Exception {
+        ClassLoader classLoader = InstMethodsAdviceBenchmarks.class.getClassLoader();
+        ClassEnhancePluginDefine define = inlined
+            ? new InlinedDefine(interceptor.getName())
+            : new DelegationDefine(interceptor.getName());
+        TypeDescription type = new TypeDescription.ForLoadedType(Target.class);
+        DynamicType.Builder<?> builder = define.define(type,
+            new ByteBuddy().rebase(type, ClassFileLocator.ForClassLoader.of(classLoader)),
+            classLoader, new EnhanceContext());
+        Greeter result = (Greeter) builder.make()
+            .load(classLoader, ClassLoadingStrategy.Default.CHILD_FIRST)
+            .getLoaded().newInstance();
+        if (!(result instanceof EnhancedInstance) || !"world".equals(result.hello("world"))) {
+            throw new AssertionError("enhancement failed");
+        }
+        return result;
+    }
+
+    static class DelegationDefine extends ClassEnhancePluginDefine {
+        final String interceptor;
+
+        DelegationDefine(String interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        InstanceMethodsInterceptPoint point() {
+            return new DeclaredInstanceMethodsInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getMethodMatcher() {
+                    return named("hello");
+                }
+
+                @Override
+                public String getMethodsInterceptor() {
+                    return interceptor;
+                }
+
+                @Override
+                public boolean isOverrideArgs() {
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        protected ClassMatch enhanceClass() {
+            return NameMatch.byName(Target.class.getName());
+        }
+
+        @Override
+        protected ConstructorInterceptPoint[] getConstructorsInterceptPoints() {
+            return new ConstructorInterceptPoint[0];
+        }
+
+        @Override
+        protected InstanceMethodsInterceptPoint[] getInstanceMethodsInterceptPoints() {
+            return new InstanceMethodsInterceptPoint[] {point()};
+        }
+
+        @Override
+        protected StaticMethodsInterceptPoint[] getStaticMethodsInterceptPoints() {
+            return new StaticMethodsInterceptPoint[0];
+        }
+    }
+
+    static final class InlinedDefine extends DelegationDefine {
+
+        InlinedDefine(String interceptor) {
+            super(interceptor);
+        }
+
+        @Override
+        InstanceMethodsInterceptPoint point() {
+            return new InlinedInstanceMethodsInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getMethodMatcher() {
+                    return named("hello");
+                }
+
+                @Override
+                public String getMethodsInterceptor() {
+                    return interceptor;
+                }
+
+                @Override
+                public boolean isOverrideArgs() {
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the overhead an enhanced instance method pays for dispatching through {@link
+ * InstMethodsInter}, with an interceptor that does nothing. This is what generated code calls, minus
+ * the byte-buddy binding of the {@code @SuperCall} callable.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class InstMethodsInterBenchmarks {
+
+    public static class NoopInterceptor implements InstanceMethodsAroundInterceptor {
+
+        @Override
+        public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, MethodInterceptResult result) {
+        }
+
+        @Override
+        public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
+            Class<?>[] argumentsTypes, Object ret) {
+            return ret;
+        }
+
+        @Override
+        public void handleMethodException(EnhancedInstance objInst, Method method,
+            Object[] allArguments, Class<?>[] argumentsTypes, Throwable t) {
+        }
+    }
+
+    public static class Target implements EnhancedInstance {
+
+        Object dynamicField;
+
+        public String hello(String name) {
+            return name;
+        }
+
+        @Override
+        public Object getSkyWalkingDynamicField() {
+            return dynamicField;
+        }
+
+        @Override
+        public void setSkyWalkingDynamicField(Object value) {
+            this.dynamicField = value;
+        }
+    }
+
+    InstMethodsInter inter;
+    Target target;
+    Method method;
+    Object[] allArguments;
+    Callable<Object> zuper;
+
+    @Setup
+    public void init() throws Exception {
+        inter = new InstMethodsInter(NoopInterceptor.class.getName(), getClass().getClassLoader());
+        target = new Target();
+        method = Target.class.getMethod("hello", String.class);
+        allArguments = new Object[] {"world"};
+        zuper = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return target.hello((String) allArguments[0]);
+            }
+        };
+    }
+
+    @Benchmark
+    public Object direct() throws Exception {
+        return zuper.call();
+    }
+
+    @Benchmark
+    public Object interceptor() throws Throwable {
+        return inter.interceptor(target, allArguments, zuper, method);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + InstMethodsInterBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
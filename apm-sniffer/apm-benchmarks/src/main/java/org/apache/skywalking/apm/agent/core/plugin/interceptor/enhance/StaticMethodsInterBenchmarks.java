@@ -0,0 +1,98 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the overhead an enhanced static method pays for dispatching through {@link
+ * StaticMethodsInter}, with an interceptor that does nothing. This is what generated code calls,
+ * minus the byte-buddy binding of the {@code @SuperCall} callable.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class StaticMethodsInterBenchmarks {
+
+    public static class NoopInterceptor implements StaticMethodsAroundInterceptor {
+
+        @Override
+        public void beforeMethod(Class<?> clazz, Method method, Object[] allArguments,
+            Class<?>[] parameterTypes, MethodInterceptResult result) {
+        }
+
+        @Override
+        public Object afterMethod(Class<?> clazz, Method method, Object[] allArguments,
+            Class<?>[] parameterTypes, Object ret) {
+            return ret;
+        }
+
+        @Override
+        public void handleMethodException(Class<?> clazz, Method method, Object[] allArguments,
+            Class<?>[] parameterTypes, Throwable t) {
+        }
+    }
+
+    public static class Target {
+        public static String hello(String name) {
+            return name;
+        }
+    }
+
+    StaticMethodsInter inter;
+    Method method;
+    Object[] allArguments;
+    Callable<Object> zuper;
+
+    @Setup
+    public void init() throws Exception {
+        inter = new StaticMethodsInter(NoopInterceptor.class.getName());
+        method = Target.class.getMethod("hello", String.class);
+        allArguments = new Object[] {"world"};
+        zuper = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return Target.hello((String) allArguments[0]);
+            }
+        };
+    }
+
+    @Benchmark
+    public Object direct() throws Exception {
+        return zuper.call();
+    }
+
+    @Benchmark
+    public Object intercept() throws Throwable {
+        return inter.intercept(Target.class, allArguments, method, zuper);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + StaticMethodsInterBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,111 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import org.apache.skywalking.apm.agent.core.boot.AgentPackagePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how long a new plugin loader takes to load {@link #CLASS_COUNT} classes, as each class
+ * loader with enhanced classes gets one. The plugin directory holds a copy of the benchmarks jar,
+ * and {@link #FILLER_JARS} small jars standing in for the other plugins.
+ *
+ * <p>This is a single shot benchmark, as each plugin loader holds its jars open until collected.
+ */
+@Measurement(iterations = 20)
+@Warmup(iterations = 10)
+@Fork(3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+public class AgentClassLoaderBenchmarks {
+
+    static final int CLASS_COUNT = 300;
+    static final int FILLER_JARS = 30;
+
+    File plugins;
+    List<String> classNames = new ArrayList<>();
+
+    @Setup
+    public void init() throws Exception {
+        plugins = new File(AgentPackagePath.getPath(), "plugins");
+        if (!plugins.mkdir()) {
+            throw new IllegalStateException(plugins + " already exists");
+        }
+        File benchmarks = new File(AgentClassLoaderBenchmarks.class.getProtectionDomain()
+            .getCodeSource().getLocation().toURI());
+        Files.copy(benchmarks.toPath(), new File(plugins, "benchmarks.jar").toPath());
+        for (int i = 0; i < FILLER_JARS; i++) {
+            try (JarOutputStream out =
+                     new JarOutputStream(new FileOutputStream(new File(plugins, i + ".jar")))) {
+                out.putNextEntry(new JarEntry("filler/" + i + ".txt"));
+                out.write(i);
+            }
+        }
+
+        try (JarFile jar = new JarFile(benchmarks)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements() && classNames.size() < CLASS_COUNT) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith("org/openjdk/jmh/") && name.endsWith(".class")) {
+                    classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        File[] files = plugins.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(plugins.toPath());
+    }
+
+    @Benchmark
+    public ClassLoader loadClasses() throws Exception {
+        AgentClassLoader loader = new AgentClassLoader(null); // so that every class is found by it
+        for (String className : classNames) {
+            loader.loadClass(className);
+        }
+        return loader;
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + AgentClassLoaderBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link InterceptorInstanceLoader} with as many threads as a busy application enhancing
+ * classes at startup. {@link #load_newLoader} sees a new class loader each call, as when many web
+ * applications start in parallel. It is a single shot benchmark, as each loader is retained when
+ * the registry pins class loaders.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Threads(16)
+public class InterceptorInstanceLoaderBenchmarks {
+
+    public static class Interceptor {
+    }
+
+    final ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+
+    @Benchmark
+    public Object load_cached() throws Exception {
+        return InterceptorInstanceLoader.load(Interceptor.class.getName(), loader);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = 1000)
+    @Measurement(iterations = 10, batchSize = 1000)
+    public Object load_newLoader() throws Exception {
+        ClassLoader newLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        return InterceptorInstanceLoader.load(Interceptor.class.getName(), newLoader);
+    }
+
+    // Convenience main entry-point
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(".*" + InterceptorInstanceLoaderBenchmarks.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.generated;
+public class TracerBenchmarks_jmhType extends TracerBenchmarks_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.generated;
+public class VirtualThreadBenchmarks_jmhType extends VirtualThreadBenchmarks_jmhType_B3 {
+}
+
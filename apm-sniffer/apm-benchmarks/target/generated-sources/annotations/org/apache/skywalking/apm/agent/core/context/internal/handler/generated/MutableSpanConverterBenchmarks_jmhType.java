@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.internal.handler.generated;
+public class MutableSpanConverterBenchmarks_jmhType extends MutableSpanConverterBenchmarks_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.internal.recorder.generated;
+public class PendingSpansBenchmarks_jmhType extends PendingSpansBenchmarks_jmhType_B3 {
+}
+
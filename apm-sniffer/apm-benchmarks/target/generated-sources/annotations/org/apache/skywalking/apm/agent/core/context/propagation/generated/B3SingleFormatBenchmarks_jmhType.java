@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.propagation.generated;
+public class B3SingleFormatBenchmarks_jmhType extends B3SingleFormatBenchmarks_jmhType_B3 {
+}
+
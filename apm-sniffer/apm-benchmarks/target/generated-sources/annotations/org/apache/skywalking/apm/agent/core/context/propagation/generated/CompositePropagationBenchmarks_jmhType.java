@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.propagation.generated;
+public class CompositePropagationBenchmarks_jmhType extends CompositePropagationBenchmarks_jmhType_B3 {
+}
+
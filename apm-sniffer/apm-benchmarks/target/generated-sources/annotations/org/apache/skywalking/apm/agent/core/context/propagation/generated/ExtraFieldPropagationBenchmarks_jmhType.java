@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.propagation.generated;
+public class ExtraFieldPropagationBenchmarks_jmhType extends ExtraFieldPropagationBenchmarks_jmhType_B3 {
+}
+
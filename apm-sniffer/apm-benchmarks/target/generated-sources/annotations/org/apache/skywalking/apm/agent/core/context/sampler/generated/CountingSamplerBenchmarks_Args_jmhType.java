@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.sampler.generated;
+public class CountingSamplerBenchmarks_Args_jmhType extends CountingSamplerBenchmarks_Args_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.context.sampler.generated;
+public class CountingSamplerBenchmarks_jmhType extends CountingSamplerBenchmarks_jmhType_B3 {
+}
+
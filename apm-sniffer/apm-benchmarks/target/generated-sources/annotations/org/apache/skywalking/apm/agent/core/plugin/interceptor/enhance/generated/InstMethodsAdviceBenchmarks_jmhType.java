@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.generated;
+public class InstMethodsAdviceBenchmarks_jmhType extends InstMethodsAdviceBenchmarks_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.generated;
+public class InstMethodsInterBenchmarks_jmhType extends InstMethodsInterBenchmarks_jmhType_B3 {
+}
+
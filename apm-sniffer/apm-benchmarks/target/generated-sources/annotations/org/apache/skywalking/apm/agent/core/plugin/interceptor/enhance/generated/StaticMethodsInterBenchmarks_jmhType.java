@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.generated;
+public class StaticMethodsInterBenchmarks_jmhType extends StaticMethodsInterBenchmarks_jmhType_B3 {
+}
+
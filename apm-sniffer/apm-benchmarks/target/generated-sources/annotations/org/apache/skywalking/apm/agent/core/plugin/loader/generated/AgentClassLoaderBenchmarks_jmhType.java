@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader.generated;
+public class AgentClassLoaderBenchmarks_jmhType extends AgentClassLoaderBenchmarks_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.skywalking.apm.agent.core.plugin.loader.generated;
+public class InterceptorInstanceLoaderBenchmarks_jmhType extends InterceptorInstanceLoaderBenchmarks_jmhType_B3 {
+}
+
@@ -5,17 +5,36 @@ import java.net.InetAddress;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.RequestLine;
 import org.apache.http.StatusLine;
 import org.apache.skywalking.apm.agent.core.context.Span;
 import org.apache.skywalking.apm.agent.core.context.Span.Kind;
 import org.apache.skywalking.apm.agent.core.context.TracingManager;
 import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Setter;
+import org.apache.skywalking.apm.agent.core.context.sampler.HttpSamplingRequest;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
 
 public class HttpClientExecuteInterceptor implements InstanceMethodsAroundInterceptor {
 
+    /**
+     * Adapts the host and request arguments for the http sampler only when the tracer asks, which
+     * it doesn't when there's an active span to continue.
+     */
+    private final SamplerFunction<Object[]> samplerFunction = new SamplerFunction<Object[]>() {
+        @Override
+        public Boolean trySample(Object[] allArguments) {
+            SamplerFunction<HttpSamplingRequest> httpSampler =
+                TracingManager.getInstance().httpSampler();
+            if (httpSampler == SamplerFunction.<HttpSamplingRequest>deferDecision()) {
+                return null;
+            }
+            return httpSampler.trySample(
+                samplingRequest((HttpRequest) allArguments[1], (HttpHost) allArguments[0]));
+        }
+    };
 
     @Override
     public void beforeMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
@@ -36,7 +55,7 @@ public class HttpClientExecuteInterceptor implements InstanceMethodsAroundInterc
                     public void put(HttpRequest carrier, String key, String value) {
                         carrier.setHeader(key, value);
                     }
-                }), httpRequest);
+                }), httpRequest, samplerFunction, allArguments);
 
         request(httpRequest,httpHost,span);
     }
@@ -53,6 +72,15 @@ public class HttpClientExecuteInterceptor implements InstanceMethodsAroundInterc
         span.customizer().tag("http.client","httpClient");
     }
 
+    /** The sampler sees the target without the query string, so that it is one endpoint */
+    private HttpSamplingRequest samplingRequest(HttpRequest request, HttpHost httpHost) {
+        RequestLine requestLine = request.getRequestLine();
+        String uri = requestLine.getUri();
+        int indexOfQuery = uri.indexOf('?');
+        String path = indexOfQuery != -1 ? uri.substring(0, indexOfQuery) : uri;
+        return HttpSamplingRequest.client(requestLine.getMethod(), path, httpHost.getHostName());
+    }
+
     private void parseTargetAddress(HttpHost host, Span span) {
         InetAddress address = host.getAddress();
         if (address != null) {
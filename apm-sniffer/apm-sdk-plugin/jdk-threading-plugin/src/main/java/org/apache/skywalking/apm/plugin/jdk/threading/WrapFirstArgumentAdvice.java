@@ -0,0 +1,18 @@
+package org.apache.skywalking.apm.plugin.jdk.threading;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.ContextBridge;
+
+/**
+ * Replaces the task passed as the first argument with one that runs in the caller's context. This
+ * is inlined into JDK classes, so it only refers to {@link ContextBridge}.
+ */
+public class WrapFirstArgumentAdvice {
+
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    public static void onEnter(@Advice.Argument(value = 0, readOnly = false,
+        typing = Assigner.Typing.DYNAMIC) Object task) {
+        task = ContextBridge.wrap(task);
+    }
+}
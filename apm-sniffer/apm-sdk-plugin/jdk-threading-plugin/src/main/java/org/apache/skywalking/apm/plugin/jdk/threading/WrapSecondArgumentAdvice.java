@@ -0,0 +1,18 @@
+package org.apache.skywalking.apm.plugin.jdk.threading;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.ContextBridge;
+
+/**
+ * Like {@link WrapFirstArgumentAdvice}, for methods whose first argument is another stage, such as
+ * {@code CompletableFuture.thenCombineAsync(other, fn)}.
+ */
+public class WrapSecondArgumentAdvice {
+
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    public static void onEnter(@Advice.Argument(value = 1, readOnly = false,
+        typing = Assigner.Typing.DYNAMIC) Object task) {
+        task = ContextBridge.wrap(task);
+    }
+}
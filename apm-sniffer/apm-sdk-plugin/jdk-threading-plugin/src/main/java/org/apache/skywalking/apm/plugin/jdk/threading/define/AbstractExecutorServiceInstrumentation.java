@@ -0,0 +1,53 @@
+package org.apache.skywalking.apm.plugin.jdk.threading.define;
+
+import java.util.concurrent.Callable;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+
+/**
+ * {@link AbstractExecutorServiceInstrumentation} wraps the <code>Runnable</code> or
+ * <code>Callable</code> of <code>java.util.concurrent.AbstractExecutorService#newTaskFor</code>,
+ * which its submit and invoke methods call, so that it runs in the submitter's context.
+ * <p>
+ * The <code>FutureTask</code> returned is then executed as is, so that executors still see the
+ * future they returned to the caller, ex. in <code>remove</code>, <code>purge</code> or
+ * <code>afterExecute</code>. Subclasses overriding <code>newTaskFor</code> without calling it
+ * don't propagate the context of submitted tasks.
+ */
+public class AbstractExecutorServiceInstrumentation extends BootstrapClassEnhancePluginDefine {
+
+    private static final String ENHANCE_CLASS = "java.util.concurrent.AbstractExecutorService";
+
+    private static final String ADVICE_CLASS = "org.apache.skywalking.apm.plugin.jdk.threading"
+        + ".WrapFirstArgumentAdvice";
+
+    @Override
+    protected AdviceInterceptPoint[] getAdviceInterceptPoints() {
+        return new AdviceInterceptPoint[] {
+            new AdviceInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getMethodsMatcher() {
+                    return named("newTaskFor").and(takesArgument(0, Runnable.class)
+                        .or(takesArgument(0, Callable.class)));
+                }
+
+                @Override
+                public String getAdviceClass() {
+                    return ADVICE_CLASS;
+                }
+            }
+        };
+    }
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return NameMatch.byName(ENHANCE_CLASS);
+    }
+}
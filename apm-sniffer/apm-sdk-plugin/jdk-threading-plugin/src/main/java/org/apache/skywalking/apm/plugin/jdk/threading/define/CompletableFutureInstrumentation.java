@@ -0,0 +1,82 @@
+package org.apache.skywalking.apm.plugin.jdk.threading.define;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.nameEndsWith;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+
+/**
+ * {@link CompletableFutureInstrumentation} wraps the function of each
+ * <code>java.util.concurrent.CompletableFuture</code> async stage, such as
+ * <code>supplyAsync(Supplier)</code> or <code>thenCombineAsync(other, BiFunction)</code>, so that
+ * it runs in the context of the code that declared the stage, whichever thread completes it.
+ * <p>
+ * The internal tasks the stages pass to their executor are not wrapped again.
+ */
+public class CompletableFutureInstrumentation extends BootstrapClassEnhancePluginDefine {
+
+    private static final String ENHANCE_CLASS = "java.util.concurrent.CompletableFuture";
+
+    private static final String FIRST_ARGUMENT_ADVICE_CLASS =
+        "org.apache.skywalking.apm.plugin.jdk.threading.WrapFirstArgumentAdvice";
+
+    private static final String SECOND_ARGUMENT_ADVICE_CLASS =
+        "org.apache.skywalking.apm.plugin.jdk.threading.WrapSecondArgumentAdvice";
+
+    @Override
+    protected AdviceInterceptPoint[] getAdviceInterceptPoints() {
+        return new AdviceInterceptPoint[] {
+            new AdviceInterceptPoint() {
+                /** ex. thenApplyAsync(fn), supplyAsync(fn, executor) */
+                @Override
+                public ElementMatcher<MethodDescription> getMethodsMatcher() {
+                    return isPublic().and(nameEndsWith("Async")).and(takesTask(0));
+                }
+
+                @Override
+                public String getAdviceClass() {
+                    return FIRST_ARGUMENT_ADVICE_CLASS;
+                }
+            },
+            new AdviceInterceptPoint() {
+                /** ex. thenCombineAsync(other, fn), runAfterEitherAsync(other, action, executor) */
+                @Override
+                public ElementMatcher<MethodDescription> getMethodsMatcher() {
+                    return isPublic().and(nameEndsWith("Async"))
+                        .and(takesArgument(0, CompletionStage.class)).and(takesTask(1));
+                }
+
+                @Override
+                public String getAdviceClass() {
+                    return SECOND_ARGUMENT_ADVICE_CLASS;
+                }
+            }
+        };
+    }
+
+    static ElementMatcher.Junction<MethodDescription> takesTask(int index) {
+        return takesArgument(index, Runnable.class)
+            .or(takesArgument(index, Supplier.class))
+            .or(takesArgument(index, Function.class))
+            .or(takesArgument(index, Consumer.class))
+            .or(takesArgument(index, BiFunction.class))
+            .or(takesArgument(index, BiConsumer.class));
+    }
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return NameMatch.byName(ENHANCE_CLASS);
+    }
+}
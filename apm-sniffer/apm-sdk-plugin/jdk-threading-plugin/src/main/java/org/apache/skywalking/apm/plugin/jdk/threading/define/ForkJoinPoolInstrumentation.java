@@ -0,0 +1,52 @@
+package org.apache.skywalking.apm.plugin.jdk.threading.define;
+
+import java.util.concurrent.Callable;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+
+/**
+ * {@link ForkJoinPoolInstrumentation} wraps the <code>Runnable</code> or <code>Callable</code> of
+ * <code>java.util.concurrent.ForkJoinPool#execute</code> and <code>#submit</code>, so that it runs
+ * in the submitter's context.
+ * <p>
+ * A <code>ForkJoinTask</code> can't be wrapped without losing its identity to the pool, so forked,
+ * invoked and submitted <code>ForkJoinTask</code>s don't propagate the context.
+ */
+public class ForkJoinPoolInstrumentation extends BootstrapClassEnhancePluginDefine {
+
+    private static final String ENHANCE_CLASS = "java.util.concurrent.ForkJoinPool";
+
+    private static final String ADVICE_CLASS = "org.apache.skywalking.apm.plugin.jdk.threading"
+        + ".WrapFirstArgumentAdvice";
+
+    @Override
+    protected AdviceInterceptPoint[] getAdviceInterceptPoints() {
+        return new AdviceInterceptPoint[] {
+            new AdviceInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getMethodsMatcher() {
+                    return named("execute").or(named("submit"))
+                        .and(takesArgument(0, Runnable.class)
+                            .or(takesArgument(0, Callable.class)));
+                }
+
+                @Override
+                public String getAdviceClass() {
+                    return ADVICE_CLASS;
+                }
+            }
+        };
+    }
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return NameMatch.byName(ENHANCE_CLASS);
+    }
+}
@@ -0,0 +1,59 @@
+package org.apache.skywalking.apm.plugin.jdk.threading.define;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.AdviceInterceptPoint;
+import org.apache.skywalking.apm.agent.core.plugin.match.ClassMatch;
+import org.apache.skywalking.apm.agent.core.plugin.match.NameMatch;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+/**
+ * {@link ThreadPoolExecutorInstrumentation} wraps the task of
+ * <code>java.util.concurrent.ThreadPoolExecutor#execute(Runnable)</code>, so that it runs in the
+ * submitter's context.
+ * <p>
+ * A <code>Future</code>, such as the <code>FutureTask</code> which submit and invoke methods
+ * execute, isn't wrapped, as <code>remove</code>, <code>purge</code> and the <code>Future</code>
+ * check of <code>afterExecute</code> would no longer see it. {@link
+ * AbstractExecutorServiceInstrumentation} wraps the task inside it instead. Other tasks are still
+ * replaced by a wrapper: <code>remove(Runnable)</code> doesn't find them, and
+ * <code>shutdownNow()</code>, <code>getQueue()</code>, <code>beforeExecute</code> and
+ * <code>afterExecute</code> see the wrapper.
+ * <p>
+ * <code>ScheduledThreadPoolExecutor</code> overrides execute to schedule, so its tasks aren't
+ * wrapped.
+ */
+public class ThreadPoolExecutorInstrumentation extends BootstrapClassEnhancePluginDefine {
+
+    private static final String ENHANCE_CLASS = "java.util.concurrent.ThreadPoolExecutor";
+
+    private static final String ADVICE_CLASS = "org.apache.skywalking.apm.plugin.jdk.threading"
+        + ".WrapFirstArgumentAdvice";
+
+    @Override
+    protected AdviceInterceptPoint[] getAdviceInterceptPoints() {
+        return new AdviceInterceptPoint[] {
+            new AdviceInterceptPoint() {
+                @Override
+                public ElementMatcher<MethodDescription> getMethodsMatcher() {
+                    return named("execute").and(takesArguments(1))
+                        .and(takesArgument(0, Runnable.class));
+                }
+
+                @Override
+                public String getAdviceClass() {
+                    return ADVICE_CLASS;
+                }
+            }
+        };
+    }
+
+    @Override
+    protected ClassMatch enhanceClass() {
+        return NameMatch.byName(ENHANCE_CLASS);
+    }
+}
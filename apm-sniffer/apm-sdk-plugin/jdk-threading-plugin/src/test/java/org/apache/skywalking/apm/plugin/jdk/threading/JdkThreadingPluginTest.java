@@ -0,0 +1,402 @@
+package org.apache.skywalking.apm.plugin.jdk.threading;
+
+import static net.bytebuddy.matcher.ElementMatchers.any;
+import static net.bytebuddy.matcher.ElementMatchers.isBootstrapClassLoader;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.utility.JavaModule;
+import org.apache.skywalking.apm.agent.core.context.ActiveSpanStack.Snapshot;
+import org.apache.skywalking.apm.agent.core.context.Span;
+import org.apache.skywalking.apm.agent.core.context.Tracer;
+import org.apache.skywalking.apm.agent.core.context.TracerContextBridge;
+import org.apache.skywalking.apm.agent.core.context.TracingManager;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Injector;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContextOrSamplingFlags;
+import org.apache.skywalking.apm.agent.core.plugin.AbstractClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.EnhanceContext;
+import org.apache.skywalking.apm.agent.core.plugin.PluginFinder;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassEnhancePluginDefine;
+import org.apache.skywalking.apm.agent.core.plugin.bootstrap.BootstrapClassInjector;
+import org.apache.skywalking.apm.plugin.jdk.threading.define.AbstractExecutorServiceInstrumentation;
+import org.apache.skywalking.apm.plugin.jdk.threading.define.CompletableFutureInstrumentation;
+import org.apache.skywalking.apm.plugin.jdk.threading.define.ForkJoinPoolInstrumentation;
+import org.apache.skywalking.apm.plugin.jdk.threading.define.ThreadPoolExecutorInstrumentation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Retransforms the executors of this JVM like the agent does, then checks what tasks see. This
+ * class must not refer to the {@code ContextBridge}, which is only loaded once injected into the
+ * bootstrap class loader.
+ */
+public class JdkThreadingPluginTest {
+
+    static Instrumentation instrumentation;
+    static ResettableClassFileTransformer transformer;
+    static final List<String> transformed = Collections.synchronizedList(new ArrayList<String>());
+    static final List<Throwable> errors =
+        Collections.synchronizedList(new ArrayList<Throwable>());
+
+    static final String[] EXECUTORS = {
+        "java.util.concurrent.ThreadPoolExecutor",
+        "java.util.concurrent.AbstractExecutorService",
+        "java.util.concurrent.ForkJoinPool",
+        "java.util.concurrent.CompletableFuture"
+    };
+
+    @BeforeClass
+    public static void retransformExecutors() throws Exception {
+        for (String executor : EXECUTORS) { // as in the agent, they are loaded before enhancing
+            Class.forName(executor);
+        }
+        instrumentation = SelfAttachingAgent.install();
+        List<BootstrapClassEnhancePluginDefine> defines = Arrays.asList(
+            new ThreadPoolExecutorInstrumentation(),
+            new AbstractExecutorServiceInstrumentation(),
+            new ForkJoinPoolInstrumentation(),
+            new CompletableFutureInstrumentation());
+        BootstrapClassInjector.inject(instrumentation, defines);
+        TracerContextBridge.install();
+
+        final PluginFinder pluginFinder =
+            new PluginFinder(new ArrayList<AbstractClassEnhancePluginDefine>(defines));
+        transformer = new AgentBuilder.Default()
+            .disableClassFormatChanges()
+            .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+            .ignore(any(), not(isBootstrapClassLoader()))
+            .type(pluginFinder.buildMatch())
+            .transform(new AgentBuilder.Transformer() {
+                @Override
+                public DynamicType.Builder<?> transform(DynamicType.Builder<?> builder,
+                    TypeDescription typeDescription, ClassLoader classLoader, JavaModule module) {
+                    EnhanceContext context = new EnhanceContext();
+                    for (AbstractClassEnhancePluginDefine define :
+                        pluginFinder.find(typeDescription)) {
+                        DynamicType.Builder<?> newBuilder =
+                            define.define(typeDescription, builder, classLoader, context);
+                        if (newBuilder != null) {
+                            builder = newBuilder;
+                        }
+                    }
+                    return builder;
+                }
+            })
+            .with(new AgentBuilder.Listener.Adapter() {
+                @Override
+                public void onTransformation(TypeDescription typeDescription,
+                    ClassLoader classLoader, JavaModule module, boolean loaded,
+                    DynamicType dynamicType) {
+                    transformed.add(typeDescription.getName());
+                }
+
+                @Override
+                public void onError(String typeName, ClassLoader classLoader, JavaModule module,
+                    boolean loaded, Throwable throwable) {
+                    errors.add(throwable);
+                }
+            })
+            .installOn(instrumentation);
+
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+        assertTrue(transformed.toString(), transformed.containsAll(Arrays.asList(EXECUTORS)));
+    }
+
+    @AfterClass
+    public static void resetExecutors() {
+        if (transformer != null) {
+            transformer.reset(instrumentation, AgentBuilder.RedefinitionStrategy.RETRANSFORMATION);
+        }
+    }
+
+    final Tracer tracer = TracingManager.getInstance().tracer();
+    final RecordingExecutor executor = new RecordingExecutor();
+
+    @After
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(tracer.capture().isEmpty());
+    }
+
+    Span entrySpan() {
+        return tracer.createEntrySpan(new Extractor<Object>() {
+            @Override
+            public TraceContextOrSamplingFlags extract(Object carrier) {
+                return TraceContextOrSamplingFlags.EMPTY;
+            }
+        }, null);
+    }
+
+    Callable<Snapshot> activeSpans() {
+        return new Callable<Snapshot>() {
+            @Override
+            public Snapshot call() {
+                return tracer.capture();
+            }
+        };
+    }
+
+    Runnable recordActiveSpans(final AtomicReference<Snapshot> seen) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                seen.set(tracer.capture());
+            }
+        };
+    }
+
+    /** The task should see the submitter's span, pushed once. */
+    static void assertRanIn(Span span, Snapshot snapshot) {
+        assertEquals(1, snapshot.depth());
+        assertSame(span, snapshot.activeSpan());
+    }
+
+    @Test
+    public void execute() throws Exception {
+        Span span = entrySpan();
+        AtomicReference<Snapshot> seen = new AtomicReference<Snapshot>();
+        try {
+            executor.execute(recordActiveSpans(seen));
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertTrue(executor.afterExecuted.await(10, TimeUnit.SECONDS));
+        assertRanIn(span, seen.get());
+    }
+
+    @Test
+    public void submitCallable() throws Exception {
+        Span span = entrySpan();
+        Future<Snapshot> future;
+        try {
+            future = executor.submit(activeSpans());
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertRanIn(span, future.get());
+    }
+
+    @Test
+    public void submitRunnable() throws Exception {
+        Span span = entrySpan();
+        AtomicReference<Snapshot> seen = new AtomicReference<Snapshot>();
+        Future<?> future;
+        try {
+            future = executor.submit(recordActiveSpans(seen), null);
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        future.get();
+        assertRanIn(span, seen.get());
+    }
+
+    @Test
+    public void invokeAll() throws Exception {
+        Span span = entrySpan();
+        List<Future<Snapshot>> futures;
+        try {
+            futures = executor.invokeAll(Arrays.asList(activeSpans(), activeSpans()));
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        for (Future<Snapshot> future : futures) {
+            assertRanIn(span, future.get());
+        }
+    }
+
+    @Test
+    public void executorSeesSubmittedFuture() throws Exception {
+        Span span = entrySpan();
+        Future<Object> future;
+        try {
+            future = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    throw new IllegalStateException("boom");
+                }
+            });
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertTrue(executor.afterExecuted.await(10, TimeUnit.SECONDS));
+        assertSame(future, executor.beforeExecute);
+        assertSame(future, executor.afterExecute);
+        assertEquals("boom", executor.afterExecuteError.getMessage());
+    }
+
+    @Test
+    public void removeAndPurgeSeeSubmittedFutures() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Span span = entrySpan();
+        Future<Snapshot> removed, cancelled;
+        try {
+            removed = executor.submit(activeSpans());
+            cancelled = executor.submit(activeSpans());
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertTrue(executor.remove((Runnable) removed));
+        cancelled.cancel(false);
+        executor.purge();
+        assertTrue(executor.getQueue().isEmpty());
+        blocked.countDown();
+    }
+
+    @Test
+    public void stackUnwindsWhenTaskThrows() throws Exception {
+        Span span = entrySpan();
+        Future<Object> future;
+        try {
+            future = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    tracer.createExitSpan(new Injector<Object>() {
+                        @Override
+                        public void inject(TraceContext traceContext, Object carrier) {
+                        }
+                    }, null); // never stopped
+                    throw new IllegalStateException("boom");
+                }
+            });
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        assertTrue(executor.submit(activeSpans()).get().isEmpty());
+    }
+
+    @Test
+    public void tasksOutsideOfTracesAreNotWrapped() throws Exception {
+        Runnable task = recordActiveSpans(new AtomicReference<Snapshot>());
+        executor.execute(task);
+
+        assertTrue(executor.afterExecuted.await(10, TimeUnit.SECONDS));
+        assertSame(task, executor.beforeExecute);
+    }
+
+    @Test
+    public void forkJoinPoolSubmit() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            Span span = entrySpan();
+            Future<Snapshot> future;
+            try {
+                future = pool.submit(activeSpans());
+            } finally {
+                tracer.stopSpan(span);
+            }
+
+            assertRanIn(span, future.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void completableFutureAsyncStages() throws Exception {
+        Span span = entrySpan();
+        CompletableFuture<Snapshot> future;
+        try {
+            future = CompletableFuture.supplyAsync(new Supplier<String>() {
+                @Override
+                public String get() {
+                    return "";
+                }
+            }, executor).thenApplyAsync(new Function<String, Snapshot>() {
+                @Override
+                public Snapshot apply(String value) {
+                    return tracer.capture();
+                }
+            }, executor);
+        } finally {
+            tracer.stopSpan(span);
+        }
+
+        assertRanIn(span, future.get());
+    }
+
+    /** Records what the hooks of {@link ThreadPoolExecutor} see of the last task. */
+    static final class RecordingExecutor extends ThreadPoolExecutor {
+
+        volatile Runnable beforeExecute, afterExecute;
+        volatile Throwable afterExecuteError;
+        final CountDownLatch afterExecuted = new CountDownLatch(1);
+
+        RecordingExecutor() {
+            super(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            beforeExecute = r;
+        }
+
+        /** The idiom of {@link ThreadPoolExecutor#afterExecute(Runnable, Throwable)} */
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            afterExecute = r;
+            if (t == null && r instanceof Future<?> && ((Future<?>) r).isDone()) {
+                try {
+                    ((Future<?>) r).get();
+                } catch (ExecutionException e) {
+                    t = e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            afterExecuteError = t;
+            afterExecuted.countDown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.skywalking.apm.plugin.jdk.threading;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Attaches an agent to the test JVM, to get an {@link Instrumentation} able to retransform JDK
+ * classes, like {@code ByteBuddyAgent.install()} does. The agent jar only holds this class, which
+ * the system class loader already loaded, so {@link #agentmain(String, Instrumentation)} sets the
+ * field read by tests.
+ */
+public final class SelfAttachingAgent {
+
+    static volatile Instrumentation instrumentation;
+
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        SelfAttachingAgent.instrumentation = instrumentation;
+    }
+
+    static synchronized Instrumentation install() throws Exception {
+        if (instrumentation != null) {
+            return instrumentation;
+        }
+        File jar = File.createTempFile("self-attaching-agent", ".jar");
+        jar.deleteOnExit();
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Agent-Class", SelfAttachingAgent.class.getName());
+        attributes.putValue("Can-Retransform-Classes", "true");
+        String entry = SelfAttachingAgent.class.getName().replace('.', '/') + ".class";
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+        InputStream in = SelfAttachingAgent.class.getClassLoader().getResourceAsStream(entry);
+        try {
+            out.putNextEntry(new JarEntry(entry));
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            out.closeEntry();
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        // the attach API is in tools.jar until JDK 9
+        File toolsJar = new File(System.getProperty("java.home"), "../lib/tools.jar");
+        ClassLoader attachLoader = toolsJar.isFile()
+            ? new URLClassLoader(new URL[] {toolsJar.toURI().toURL()}, null)
+            : ClassLoader.getSystemClassLoader();
+        Class<?> virtualMachine =
+            Class.forName("com.sun.tools.attach.VirtualMachine", true, attachLoader);
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        Object vm = virtualMachine.getMethod("attach", String.class)
+            .invoke(null, name.substring(0, name.indexOf('@')));
+        Method detach = virtualMachine.getMethod("detach");
+        try {
+            virtualMachine.getMethod("loadAgent", String.class).invoke(vm, jar.getAbsolutePath());
+        } finally {
+            detach.invoke(vm);
+        }
+        if (instrumentation == null) {
+            throw new IllegalStateException("agent was loaded by another class loader");
+        }
+        return instrumentation;
+    }
+
+    private SelfAttachingAgent() {
+    }
+}
@@ -4,6 +4,7 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.apache.skywalking.apm.agent.core.context.Continuation;
 import org.apache.skywalking.apm.agent.core.context.Span;
 import org.apache.skywalking.apm.agent.core.context.Span.Kind;
 import org.apache.skywalking.apm.agent.core.context.SpanCustomizer;
@@ -13,6 +14,8 @@ import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceCont
 import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
 import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Getter;
 import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.sampler.HttpSamplingRequest;
+import org.apache.skywalking.apm.agent.core.context.sampler.SamplerFunction;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAroundInterceptor;
 import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.MethodInterceptResult;
@@ -23,8 +26,30 @@ public class TomcatInvokeInterceptor implements InstanceMethodsAroundInterceptor
 
     private static final Log logger = LogFactory.getLog(TomcatInvokeInterceptor.class);
 
+    /** Holds the {@link Continuation} of a request that went async, for its later dispatches. */
+    static final String CONTINUATION = Continuation.class.getName();
+    /** Holds the scope that resumed the span while an async dispatch is being served. */
+    static final String RESUMED_SCOPE = Continuation.class.getName() + ".scope";
+
     private final Extractor<HttpServletRequest> extractor;
 
+    /**
+     * Adapts the request for the http sampler only when the tracer asks, which it doesn't when the
+     * request carries a sampling decision.
+     */
+    private final SamplerFunction<HttpServletRequest> samplerFunction =
+        new SamplerFunction<HttpServletRequest>() {
+            @Override
+            public Boolean trySample(HttpServletRequest request) {
+                SamplerFunction<HttpSamplingRequest> httpSampler =
+                    TracingManager.getInstance().httpSampler();
+                if (httpSampler == SamplerFunction.<HttpSamplingRequest>deferDecision()) {
+                    return null;
+                }
+                return httpSampler.trySample(samplingRequest(request));
+            }
+        };
+
     public TomcatInvokeInterceptor() {
         extractor = TracingManager.getInstance().propagation().extractor(
             new Getter<HttpServletRequest, String>() {
@@ -41,14 +66,32 @@ public class TomcatInvokeInterceptor implements InstanceMethodsAroundInterceptor
 
         HttpServletRequest request = (HttpServletRequest) allArguments[0];
 
+        // An async dispatch of a traced request continues its span instead of starting a new one
+        Object continuation = request.getAttribute(CONTINUATION);
+        if (continuation instanceof Continuation) {
+            request.setAttribute(RESUMED_SCOPE, ((Continuation) continuation).resume());
+            return;
+        }
         handleReceived(extractor, request);
     }
 
     @Override
     public Object afterMethod(EnhancedInstance objInst, Method method, Object[] allArguments,
         Class<?>[] argumentsTypes, Object ret) throws Throwable {
+        HttpServletRequest request = (HttpServletRequest) allArguments[0];
         HttpServletResponse response = (HttpServletResponse) allArguments[1];
-        handleFinish(response,TracingManager.activeSpan());
+        Object resumed = request.getAttribute(RESUMED_SCOPE);
+        if (resumed instanceof Scope) {
+            request.removeAttribute(RESUMED_SCOPE);
+            ((Scope) resumed).close(); // the listener finishes the span
+            return ret;
+        }
+        Span span = TracingManager.activeSpan();
+        if (request.isAsyncStarted()) {
+            handleAsync(request, response, span);
+        } else {
+            handleFinish(response, span);
+        }
         return ret;
     }
 
@@ -63,17 +106,29 @@ public class TomcatInvokeInterceptor implements InstanceMethodsAroundInterceptor
         span.error(t);
     }
 
+    /**
+     * Keeps the span open until the async request completes, without holding it on this thread,
+     * which goes back to the pool.
+     */
+    private void handleAsync(HttpServletRequest request, HttpServletResponse response, Span span) {
+        Continuation continuation = TracingManager.suspendSpan(span);
+        request.setAttribute(CONTINUATION, continuation);
+        request.getAsyncContext().addListener(new TracingAsyncListener(continuation), request,
+            response);
+    }
+
     private void handleFinish(HttpServletResponse response, Span span) {
-        if (span.isNoop()) {
-            return;
+        // unsampled spans are still on the active span stack, so they must be stopped too
+        if (!span.isNoop()) {
+            span.customizer().tag("http.status_code", String.valueOf(response.getStatus()));
         }
-        span.customizer().tag("http.status_code", String.valueOf(response.getStatus()));
         TracingManager.stopSpan();
     }
 
     private void handleReceived(Extractor<HttpServletRequest> extractor,
         HttpServletRequest request) {
-        Span nextSpan = TracingManager.createEntrySpan(extractor, request);
+        Span nextSpan =
+            TracingManager.createEntrySpan(extractor, request, samplerFunction, request);
         if (nextSpan.isNoop()) {
             return;
         }
@@ -94,6 +149,15 @@ public class TomcatInvokeInterceptor implements InstanceMethodsAroundInterceptor
         return span.remoteIpAndPort(forwardedFor, 0);
     }
 
+    /**
+     * The sampler sees the undecoded request URI, which excludes the query string. This avoids
+     * parsing the URL of requests which won't be sampled.
+     */
+    private HttpSamplingRequest samplingRequest(HttpServletRequest request) {
+        String method = request.getMethod(), path = request.getRequestURI();
+        return method != null && path != null ? HttpSamplingRequest.server(method, path) : null;
+    }
+
     private void request(HttpServletRequest request, SpanCustomizer spanCustomizer) {
         spanCustomizer.name(request.getMethod());
         String methodName = request.getMethod();
@@ -0,0 +1,58 @@
+package org.apache.skywalking.apm.plugin.tomcat78x;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.skywalking.apm.agent.core.context.Continuation;
+import org.apache.skywalking.apm.agent.core.context.Span;
+
+/**
+ * Finishes the span of an asynchronous request when it completes, on whichever thread completes
+ * it. The container clears listeners when the request starts async again after a dispatch, so
+ * this listener re-registers itself.
+ */
+final class TracingAsyncListener implements AsyncListener {
+
+    final Continuation continuation;
+
+    TracingAsyncListener(Continuation continuation) {
+        this.continuation = continuation;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        Span span = continuation.span();
+        ServletResponse response = event.getSuppliedResponse();
+        if (!span.isNoop() && response instanceof HttpServletResponse) {
+            span.tag("http.status_code",
+                String.valueOf(((HttpServletResponse) response).getStatus()));
+        }
+        continuation.finish();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        continuation.span().tag("error",
+            "Timed out after " + event.getAsyncContext().getTimeout() + "ms");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        Throwable throwable = event.getThrowable();
+        if (throwable != null) {
+            continuation.span().error(throwable);
+        }
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        event.getAsyncContext().addListener(this, event.getSuppliedRequest(),
+            event.getSuppliedResponse());
+    }
+
+    @Override
+    public String toString() {
+        return "TracingAsyncListener{" + continuation + "}";
+    }
+}
@@ -0,0 +1,33 @@
+package org.apache.skywalking.apm.plugin.tomcat78x;
+
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.EnhancedInstance;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstMethodsCallSite;
+import org.apache.skywalking.apm.agent.core.plugin.interceptor.enhance.InstanceMethodsAdviceInterceptor;
+import org.apache.skywalking.apm.agent.core.plugin.loader.InterceptorInstanceLoader;
+
+/**
+ * Once a web application class loader stopped, nothing is loaded by it anymore, so its
+ * interceptors can be forgotten.
+ */
+public class WebappClassLoaderStopInterceptor implements InstanceMethodsAdviceInterceptor {
+
+    @Override
+    public boolean needsArguments() {
+        return false;
+    }
+
+    @Override
+    public Object beforeMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments) {
+        return null;
+    }
+
+    @Override
+    public Object afterMethod(EnhancedInstance objInst, InstMethodsCallSite callSite,
+        Object[] allArguments, Object state, Object ret, Throwable t) {
+        if (t == null) {
+            InterceptorInstanceLoader.evict((ClassLoader) objInst);
+        }
+        return ret;
+    }
+}
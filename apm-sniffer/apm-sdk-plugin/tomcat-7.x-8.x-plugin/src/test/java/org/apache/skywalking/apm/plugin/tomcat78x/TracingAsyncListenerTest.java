@@ -0,0 +1,182 @@
+package org.apache.skywalking.apm.plugin.tomcat78x;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.AsyncEvent;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.skywalking.apm.agent.core.context.Continuation;
+import org.apache.skywalking.apm.agent.core.context.Span;
+import org.apache.skywalking.apm.agent.core.context.Tracer;
+import org.apache.skywalking.apm.agent.core.context.Tracing;
+import org.apache.skywalking.apm.agent.core.context.propagation.CurrentTraceContext.Scope;
+import org.apache.skywalking.apm.agent.core.context.propagation.Propagation.Getter;
+import org.apache.skywalking.apm.agent.core.context.propagation.TraceContext.Extractor;
+import org.apache.skywalking.apm.agent.core.context.sampler.Sampler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Follows the lifecycle of an async request: the span is suspended on the request thread, and the
+ * listener finishes it on the thread which completes the request.
+ */
+public class TracingAsyncListenerTest {
+
+    final List<zipkin2.Span> spans = Collections.synchronizedList(new ArrayList<zipkin2.Span>());
+
+    Tracing tracing;
+    Tracer tracer;
+    Extractor<Map<String, String>> extractor;
+
+    @Before
+    public void setup() {
+        tracing = Tracing.newBuilder()
+            .localServiceName("tomcat")
+            .sampler(Sampler.ALWAYS_SAMPLE)
+            .spanReporter(new Reporter<zipkin2.Span>() {
+                @Override
+                public void report(zipkin2.Span span) {
+                    spans.add(span);
+                }
+            })
+            .build();
+        tracer = tracing.tracer();
+        extractor = tracing.propagation().extractor(new Getter<Map<String, String>, String>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        });
+    }
+
+    @After
+    public void close() {
+        tracing.close();
+    }
+
+    @Test
+    public void completedOnAnotherThread_reportsSpanOnce() throws Exception {
+        Span span = tracer.createEntrySpan(extractor, Collections.<String, String>emptyMap());
+        final TracingAsyncListener listener = new TracingAsyncListener(tracer.suspendSpan(span));
+        assertTrue(tracer.capture().isEmpty()); // the request thread goes back to the pool
+        assertTrue(spans.isEmpty());
+
+        final AsyncEvent event = new AsyncEvent(null, null, response(202));
+        boolean asyncThreadEmpty = onAsyncThread(new AsyncWork() {
+            @Override
+            public void run() throws Exception {
+                listener.onComplete(event);
+                listener.onComplete(event); // only the first completion finishes the span
+            }
+        });
+
+        assertTrue(asyncThreadEmpty);
+        assertTrue(tracer.capture().isEmpty());
+        assertEquals(1, spans.size());
+        assertEquals(span.context().spanIdString(), spans.get(0).id());
+        assertEquals("202", spans.get(0).tags().get("http.status_code"));
+    }
+
+    /** Async dispatches resume the span on their thread, which must leave nothing behind. */
+    @Test
+    public void dispatchedAndCompletedOnAnotherThread_reportsSpanOnce() throws Exception {
+        Span span = tracer.createEntrySpan(extractor, Collections.<String, String>emptyMap());
+        final Continuation continuation = tracer.suspendSpan(span);
+        final TracingAsyncListener listener = new TracingAsyncListener(continuation);
+
+        final AtomicReference<Span> activeWhileResumed = new AtomicReference<Span>();
+        boolean asyncThreadEmpty = onAsyncThread(new AsyncWork() {
+            @Override
+            public void run() throws Exception {
+                Scope scope = continuation.resume();
+                try {
+                    activeWhileResumed.set(tracer.activeSpan());
+                } finally {
+                    scope.close();
+                }
+                listener.onError(new AsyncEvent(null, new IllegalStateException("boom")));
+                listener.onComplete(new AsyncEvent(null, null, response(500)));
+            }
+        });
+
+        assertTrue(asyncThreadEmpty);
+        assertTrue(tracer.capture().isEmpty());
+        assertEquals(span, activeWhileResumed.get());
+        assertEquals(1, spans.size());
+        assertEquals("500", spans.get(0).tags().get("http.status_code"));
+        assertEquals("boom", spans.get(0).tags().get("error"));
+    }
+
+    @Test
+    public void completedWithoutResponse_stillReportsSpan() throws Exception {
+        Span span = tracer.createEntrySpan(extractor, Collections.<String, String>emptyMap());
+        final TracingAsyncListener listener = new TracingAsyncListener(tracer.suspendSpan(span));
+
+        boolean asyncThreadEmpty = onAsyncThread(new AsyncWork() {
+            @Override
+            public void run() throws Exception {
+                listener.onComplete(new AsyncEvent(null));
+            }
+        });
+
+        assertTrue(asyncThreadEmpty);
+        assertEquals(1, spans.size());
+        assertNull(spans.get(0).tags().get("http.status_code"));
+    }
+
+    interface AsyncWork {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the work on a new thread, like a container thread completing the request, and returns
+     * whether that thread's active span stack was empty afterwards.
+     */
+    boolean onAsyncThread(final AsyncWork work) throws Exception {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicReference<Boolean> empty = new AtomicReference<Boolean>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    work.run();
+                    empty.set(tracer.capture().isEmpty());
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        }, "async-completion");
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        return empty.get();
+    }
+
+    /** Only answers the status, which is all the listener reads. */
+    static HttpServletResponse response(final int status) {
+        return (HttpServletResponse) Proxy.newProxyInstance(
+            TracingAsyncListenerTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getStatus")) {
+                        return status;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}